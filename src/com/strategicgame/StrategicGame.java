@@ -4,9 +4,13 @@ import com.strategicgame.core.*;
 import com.strategicgame.player.Player;
 import com.strategicgame.units.*;
 import com.strategicgame.buildings.*;
-import com.strategicgame.combat.CombatResolver;
-import com.strategicgame.resources.ResourceType;
+import com.strategicgame.persistence.AutoSaver;
+import com.strategicgame.persistence.GameSnapshot;
 import com.strategicgame.ui.GameUI;
+import com.strategicgame.util.Constants;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import com.strategicgame.map.*;
 
@@ -30,6 +34,9 @@ public class StrategicGame extends Game {
     private static final int MAP_HEIGHT = 20;
     private static final int PLAYER_COUNT = 2;
     private AiController aiController;
+    private GameActions gameActions;
+    private AutoSaver autoSaver;
+    private Path loadPath;   // partie à charger, null pour une nouvelle partie
 
     /**
      * Main entry point for the game.
@@ -44,8 +51,11 @@ public class StrategicGame extends Game {
         game.ui = ui;                      // réutiliser la même UI
         game.run();                        // lance initialize() puis la boucle update/render
     } else if (choice == 2) {
-        // Charger partie (pas implémenté :( )
-        ui.showMessage("Load Game not implemented yet.");
+        // Charger la partie sauvegardée
+        StrategicGame game = new StrategicGame();
+        game.ui = ui;
+        game.loadPath = Paths.get(Constants.SAVE_FILE);
+        game.run();
     } else if (choice == 3) {
         // Quitter le jeu
         ui.showMessage("Goodbye!");
@@ -62,8 +72,31 @@ public class StrategicGame extends Game {
         isRunning = true;
         gameManager = GameManager.getInstance();
         aiController = new AiController();
-        ui = new GameUI();
+        aiController.setUseInfluence(true);
+        aiController.setUseVisibility(true);
+        gameActions = gameManager.getActions();
+        if (ui == null) {
+            ui = new GameUI(gameManager);
+        }
         
+        if (Constants.AUTO_SAVE_ENABLED) {
+            autoSaver = new AutoSaver(Paths.get(Constants.AUTO_SAVE_FILE));
+        }
+
+        if (loadPath != null) {
+            currentState = GameState.LOADING;
+            try {
+                GameSnapshot.load(loadPath, gameManager);
+            } catch (IOException e) {
+                ui.showError("Could not load the game: " + e.getMessage());
+                isRunning = false;
+                return;
+            }
+            currentState = GameState.PLAYING;
+            System.out.println("Game loaded from " + loadPath + " (turn " + gameManager.getTurnNumber() + ")");
+            return;
+        }
+
         System.out.println("Initializing GridWar...");
         
         // Initialize game with map and players
@@ -80,39 +113,8 @@ public class StrategicGame extends Game {
      * Initializes starting units and buildings for players.
      */
     private void initializePlayerStartingResources() {
+        gameManager.setupStartingForces();
         for (Player player : gameManager.getPlayers()) {
-            // Add starting units
-            Unit soldier1 = new Soldier();
-            Unit soldier2 = new Soldier();
-            Unit archer = new Archer();
-            
-            player.addUnit(soldier1);
-            player.addUnit(soldier2);
-            player.addUnit(archer);
-
-            // Place starting units on the map by default
-            Position pos1 = new Position(0, 0);
-            Position pos2 = new Position(1, 0);
-            Position pos3 = new Position(2, 0);
-
-            Tile tile1 = gameManager.getGameMap().getTile(pos1);
-            Tile tile2 = gameManager.getGameMap().getTile(pos2);
-            Tile tile3 = gameManager.getGameMap().getTile(pos3);
-
-            tile1.setOccupant(soldier1);
-            tile2.setOccupant(soldier2);
-            tile3.setOccupant(archer);
-            
-            System.out.println("Placed unit id=" + soldier1.getId() + " at (0,0) for player " + player.getName());
-            System.out.println("Placed unit id=" + soldier2.getId() + " at (1,0) for player " + player.getName());
-            System.out.println("Placed unit id=" + archer.getId()   + " at (2,0) for player " + player.getName());
-
-
-            // Add starting building
-            Building commandCenter = new CommandCenter();
-            commandCenter.completeConstruction();
-            player.addBuilding(commandCenter);
-            
             System.out.println(player.getName() + " [" + 
                 player.getFaction().getDisplayName() + "] ready!");
         }
@@ -144,7 +146,8 @@ public class StrategicGame extends Game {
                     ui.displayBuildings(currentPlayer);
                     break;
                 case 3:
-                    ui.displayMap(gameManager.getGameMap());
+                    ui.displayMap(gameManager.getGameMap(), currentPlayer);
+                    ui.displayInfluence(gameManager.getGameMap(), currentPlayer);
                     break;
                 case 4:
                     trainUnit(currentPlayer);
@@ -159,10 +162,12 @@ public class StrategicGame extends Game {
                     attack(currentPlayer);
                     break;
                 case 8:
-                    currentPlayer.endTurn();
-                    gameManager.nextTurn();
+                    gameActions.endTurn(currentPlayer);
                     turnComplete = true;
                     break;
+                case 9:
+                    saveGame();
+                    break;
                 default:
                     ui.showError("Invalid choice!");
             }
@@ -170,7 +175,12 @@ public class StrategicGame extends Game {
     } else {
         // AI turn
         aiController.playTurn(currentPlayer, gameManager);
-        gameManager.nextTurn();
+        gameActions.endTurn(currentPlayer);
+    }
+
+    // Autosave once every player has played
+    if (autoSaver != null && gameManager.getCurrentPlayerIndex() == 0) {
+        autoSaver.requestSave(gameManager);
     }
 
     // Check win condition
@@ -181,6 +191,20 @@ public class StrategicGame extends Game {
 }
 
 
+    /**
+     * Saves the game to the save file.
+     */
+    private void saveGame() {
+        currentState = GameState.SAVING;
+        try {
+            GameSnapshot.save(gameManager, Paths.get(Constants.SAVE_FILE));
+            ui.showMessage("Game saved to " + Constants.SAVE_FILE);
+        } catch (IOException e) {
+            ui.showError("Could not save the game: " + e.getMessage());
+        }
+        currentState = GameState.PLAYING;
+    }
+
     /**
      * Handles unit training. 
      * @param player The player training units
@@ -191,31 +215,24 @@ public class StrategicGame extends Game {
             return;
         }
 
-        Unit newUnit = UnitFactory.createUnit(unitType);
-        if (newUnit == null) {
+        UnitType type = null;
+        for (UnitType candidate : UnitType.values()) {
+            if (candidate.getDisplayName().equalsIgnoreCase(unitType)) {
+                type = candidate;
+            }
+        }
+        if (type == null) {
             ui.showError("Invalid unit type!");
             return;
         }
 
-        // Check if player has training camp
-        boolean hasTrainingCamp = player.getBuildings().stream()
-            .anyMatch(b -> b instanceof TrainingCamp && b.isConstructed());
-
-        if (!hasTrainingCamp) {
-            ui.showError("You need a TrainingCamp to train units!");
+        // Created in the store of the player once paid for
+        ActionResult result = gameActions.trainUnit(player, type);
+        if (!result.isSuccess()) {
+            ui.showError(result.getMessage());
             return;
         }
 
-        // Check resources
-        Map<ResourceType, Integer> cost = new HashMap<>();
-        cost.put(ResourceType.GOLD, newUnit.getCost());
-
-        if (!player.getResourceManager().spend(cost)) {
-            ui.showError("Not enough resources!");
-            return;
-        }
-
-        player.addUnit(newUnit);
         ui.showMessage("Trained " + unitType + " successfully!");
     }
 
@@ -235,13 +252,12 @@ public class StrategicGame extends Game {
             return;
         }
 
-        // Check resources
-        if (!player.getResourceManager().spend(newBuilding.getConstructionCost())) {
-            ui.showError("Not enough resources!");
+        ActionResult result = gameActions.build(player, newBuilding);
+        if (!result.isSuccess()) {
+            ui.showError(result.getMessage());
             return;
         }
 
-        player.addBuilding(newBuilding);
         ui.showMessage("Started construction of " + buildingType + 
             " (" + newBuilding.getConstructionTime() + " turns)");
     }
@@ -297,15 +313,21 @@ public class StrategicGame extends Game {
         com.strategicgame.units.Unit defender =
                 defenderPlayer.getUnits().get(defenderIndex);
 
-        CombatResolver resolver = new CombatResolver();
-        boolean defenderKilled = resolver.resolveCombat(attacker, defender);
+        ActionResult result = gameActions.attackUnit(attackerPlayer, attacker, defender);
+        if (result == ActionResult.OUT_OF_RANGE) {
+            ui.showError("Target is out of range (range " + attacker.getRange() + ")!");
+            return;
+        }
+        if (!result.isSuccess()) {
+            ui.showError(result.getMessage());
+            return;
+        }
 
         ui.showMessage(attacker.getName() + " attacked "
                 + defender.getName() + " (HP now: " + defender.getHealth() + ")");
 
-        if (defenderKilled) {
+        if (result == ActionResult.TARGET_DESTROYED) {
             ui.showMessage("The enemy unit was defeated!");
-            defenderPlayer.removeUnit(defender);
         }
 
         } else if (targetType == 2) {
@@ -345,17 +367,19 @@ public class StrategicGame extends Game {
                 defenderPlayer.getBuildings().get(buildingIndex);
 
         // Appliquer les dégâts 
-        int damage = attacker.getAttack(); 
-        targetBuilding.takeDamage(damage);
+        ActionResult result = gameActions.attackBuilding(attackerPlayer, attacker, targetBuilding);
+        if (!result.isSuccess()) {
+            ui.showError(result.getMessage());
+            return;
+        }
 
         ui.showMessage(attacker.getName() + " attacked building "
                 + targetBuilding.getName() + " (HP now: "
                 + targetBuilding.getCurrentHealth() + ")");
 
-        // Si détruit, retirer le bâtiment
-        if (targetBuilding.isDestroyed()) {
+        // Si détruit, le bâtiment a été retiré
+        if (result == ActionResult.TARGET_DESTROYED) {
             ui.showMessage("The enemy building was destroyed!");
-            defenderPlayer.removeBuilding(targetBuilding);
         }
 
     } else {
@@ -387,8 +411,8 @@ public class StrategicGame extends Game {
     }
     
     System.out.println("Trying to move unit id=" + unit.getId() + " of player " + player.getName());
-    Position debugPos = gameManager.getGameMap().findUnitPosition(unit);
-    System.out.println("Debug position = " + debugPos);
+    Position currentPos = gameManager.getGameMap().findUnitPosition(unit);
+    System.out.println("Debug position = " + currentPos);
 
 
     // 2. Saisie de la position cible
@@ -399,41 +423,14 @@ public class StrategicGame extends Game {
 
     Position target = new Position(x, y);
 
-    // 3. Vérifications
-
-    // 3.1. Limites de la carte
-    if (!(gameManager.getGameMap()).isWithinBounds(target)) {
-        System.out.println("Target position is out of bounds.");
-        return;
-    }
-
-    Tile targetTile = gameManager.getGameMap().getTile(target);
-
-    // 3.2. Passable ?
-    if (!targetTile.isPassable()) {
-        System.out.println("You cannot move to this tile (not passable).");
-        return;
-    }
-
-    // 3.3. Occupation
-    if (!targetTile.isEmpty()) {
-        System.out.println("This tile is already occupied.");
+    // 3. Vérifications et mouvement
+    ActionResult result = gameActions.moveUnit(player, unit, target);
+    if (!result.isSuccess()) {
+        System.out.println(result.getMessage());
         return;
     }
 
-    // 4. Trouver la position actuelle de l'unité
-    Position currentPos = gameManager.getGameMap().findUnitPosition(unit);
-    if (currentPos == null) {
-        System.out.println("Could not find the current position of this unit on the map.");
-        return;
-    }
-
-    // 5. Appliquer le mouvement
-    Tile currentTile = gameManager.getGameMap().getTile(currentPos);
-    currentTile.clearOccupant();     // enlève l'unité de l'ancienne case
-    targetTile.setOccupant(unit);    // place l'unité sur la nouvelle case
-
-    // 6. Feedback
+    // 4. Feedback
     System.out.println("Unit " + unitId + " moved from " +
             "(" + currentPos.getX() + "," + currentPos.getY() + ") to " +
             "(" + target.getX() + "," + target.getY() + ").");
@@ -450,6 +447,9 @@ public class StrategicGame extends Game {
 
     @Override
     protected void cleanup() {
+        if (autoSaver != null) {
+            autoSaver.close();
+        }
         System.out.println("Shutting down game...");
     }
 }
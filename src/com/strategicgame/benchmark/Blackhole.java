@@ -0,0 +1,65 @@
+package com.strategicgame.benchmark;
+
+/**
+ * Blackhole receives the results of benchmarked operations so that the
+ * JIT cannot remove them as dead code. Consumed values are folded into an
+ * accumulator published once per iteration.
+ *
+ */
+public final class Blackhole {
+    private static volatile long sink;
+
+    private long accumulator;
+
+    /**
+     * Consumes an object.
+     * @param value The value to keep alive
+     */
+    public void consume(Object value) {
+        if (value != null) {
+            accumulator++;
+        }
+    }
+
+    /**
+     * Consumes an int.
+     * @param value The value to keep alive
+     */
+    public void consume(int value) {
+        accumulator += value;
+    }
+
+    /**
+     * Consumes a long.
+     * @param value The value to keep alive
+     */
+    public void consume(long value) {
+        accumulator += value;
+    }
+
+    /**
+     * Consumes a double (a float widens to it, instead of being boxed).
+     * @param value The value to keep alive
+     */
+    public void consume(double value) {
+        accumulator += Double.doubleToRawLongBits(value);
+    }
+
+    /**
+     * Consumes a boolean.
+     * @param value The value to keep alive
+     */
+    public void consume(boolean value) {
+        if (value) {
+            accumulator++;
+        }
+    }
+
+    /**
+     * Publishes what was consumed so far.
+     */
+    void flush() {
+        sink += accumulator;
+        accumulator = 0;
+    }
+}
@@ -0,0 +1,596 @@
+package com.strategicgame.benchmark;
+
+import com.strategicgame.buildings.Building;
+import com.strategicgame.buildings.BuildingFactory;
+import com.strategicgame.buildings.BuildingType;
+import com.strategicgame.buildings.CommandCenter;
+import com.strategicgame.buildings.ResourceFarm;
+import com.strategicgame.buildings.TrainingCamp;
+import com.strategicgame.combat.CombatBatchResult;
+import com.strategicgame.combat.CombatResolver;
+import com.strategicgame.core.AiController;
+import com.strategicgame.core.EndTurnPipeline;
+import com.strategicgame.core.GameManager;
+import com.strategicgame.map.GameMap;
+import com.strategicgame.map.InfluenceMap;
+import com.strategicgame.map.NeighborIterator;
+import com.strategicgame.map.Position;
+import com.strategicgame.map.TileGrid;
+import com.strategicgame.map.VisibilityMap;
+import com.strategicgame.player.Faction;
+import com.strategicgame.player.Player;
+import com.strategicgame.resources.CostTable;
+import com.strategicgame.resources.ResourceCost;
+import com.strategicgame.resources.ResourceManager;
+import com.strategicgame.resources.ResourceType;
+import com.strategicgame.units.Unit;
+import com.strategicgame.units.UnitFactory;
+import com.strategicgame.units.UnitStore;
+import com.strategicgame.units.UnitType;
+import com.strategicgame.util.GameLog;
+import com.strategicgame.util.GameRandom;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Micro-benchmarks of the map, pathfinding, combat and turn processing,
+ * parameterised by map size and unit count. Every run reports ns/op and
+ * B/op, so that a regression shows in time as well as in allocation rate.
+ * Usage: GameBenchmarks [--sizes=64,256,1024] [--units=16,256] [--warmup=3]
+ *        [--iterations=5] [--time=200] [--seed=42] [filter]
+ * The filter keeps the benchmarks whose name contains it.
+ *
+ */
+public class GameBenchmarks {
+    /** Random queries cycled through by lookup benchmarks (power of two). */
+    private static final int QUERIES = 1024;
+    /** Random pairs cycled through by the path benchmark. */
+    private static final int PATH_QUERIES = 64;
+    /** Side of the map of streamedAiTurn, large enough to be streamed (see GameMap.STREAMING_THRESHOLD). */
+    private static final int STREAMED_SIZE = 5000;
+    /** Food given to players so that no unit starves during a run. */
+    private static final int PLENTY = 1_000_000_000;
+
+    private final long seed;
+    private final Microbenchmark bench;
+    private final String filter;
+
+    public GameBenchmarks(long seed, Microbenchmark bench, String filter) {
+        this.seed = seed;
+        this.bench = bench;
+        this.filter = filter;
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = {64, 256, 1024};
+        int[] unitCounts = {16, 256};
+        int warmup = 3;
+        int iterations = 5;
+        long time = 200;
+        long seed = 42L;
+        String filter = "";
+        for (String arg : args) {
+            if (arg.startsWith("--sizes=")) {
+                sizes = parseList(arg.substring(8));
+            } else if (arg.startsWith("--units=")) {
+                unitCounts = parseList(arg.substring(8));
+            } else if (arg.startsWith("--warmup=")) {
+                warmup = Integer.parseInt(arg.substring(9));
+            } else if (arg.startsWith("--iterations=")) {
+                iterations = Integer.parseInt(arg.substring(13));
+            } else if (arg.startsWith("--time=")) {
+                time = Long.parseLong(arg.substring(7));
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring(7));
+            } else {
+                filter = arg;
+            }
+        }
+
+        GameLog.setEnabled(false);
+        System.out.printf("%d warmup + %d measured iterations of %d ms%n", warmup, iterations, time);
+        new GameBenchmarks(seed, new Microbenchmark(warmup, iterations, time), filter)
+            .runAll(sizes, unitCounts);
+    }
+
+    /**
+     * Runs every benchmark selected by the filter, once per parameter
+     * combination it depends on.
+     * @param sizes Map sizes (width and height)
+     * @param unitCounts Unit counts
+     */
+    public void runAll(int[] sizes, int[] unitCounts) {
+        for (int size : sizes) {
+            generateMap(size);
+            getTile(size);
+            streamedGetTile(size);
+            neighbors(size);
+        }
+        for (int units : unitCounts) {
+            resolveCombat(units);
+            resolveBatch(units);
+            playerEndTurn(units);
+            endTurns(units);
+        }
+        resourceManager();
+        streamedAiTurn();
+        for (int size : sizes) {
+            for (int units : unitCounts) {
+                if (units > size * size / 4) {
+                    System.out.printf("skipped size=%d units=%d: map too small%n", size, units);
+                    continue;
+                }
+                findUnitPosition(size, units);
+                findPath(size, units);
+                nextTurnCycle(size, units);
+                fork(size, units);
+                influence(size, units);
+                visibility(size, units);
+            }
+        }
+    }
+
+    private void generateMap(int size) {
+        if (!selected("generateMap")) return;
+        GameMap map = new GameMap(size, size, new GameRandom(seed));
+        report(bench.run("generateMap", "size=" + size, null, blackhole -> map.generateMap()));
+    }
+
+    private void getTile(int size) {
+        if (!selected("getTile")) return;
+        GameMap map = newMap(size);
+        Random random = new GameRandom(seed);
+        int[] xs = new int[QUERIES];
+        int[] ys = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            xs[i] = random.nextInt(size);
+            ys[i] = random.nextInt(size);
+        }
+        int[] next = {0};
+        report(bench.run("getTile", "size=" + size, null, blackhole -> {
+            int i = next[0]++ & (QUERIES - 1);
+            blackhole.consume(map.getTile(xs[i], ys[i]));
+        }));
+    }
+
+    /**
+     * getTile on a streamed map: random tiles, so most queries outside the
+     * cached chunks generate (or reload) one.
+     */
+    private void streamedGetTile(int size) {
+        if (!selected("streamedGetTile")) return;
+        GameMap map;
+        try {
+            map = GameMap.streamed(size, size, new GameRandom(seed));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Random random = new GameRandom(seed);
+        int[] xs = new int[QUERIES];
+        int[] ys = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            xs[i] = random.nextInt(size);
+            ys[i] = random.nextInt(size);
+        }
+        int[] next = {0};
+        report(bench.run("streamedGetTile", "size=" + size, null, blackhole -> {
+            int i = next[0]++ & (QUERIES - 1);
+            blackhole.consume(map.getTile(xs[i], ys[i]).getType());
+        }));
+        map.close();
+    }
+
+    /**
+     * AI turns on a streamed map, whose pathfinding must stay within a bounded
+     * share of the heap : run it under -Xmx256m (or less) as a heap check.
+     */
+    private void streamedAiTurn() {
+        if (!selected("streamedAiTurn")) return;
+        GameManager gameManager = new GameManager(seed);
+        gameManager.initializeGame(STREAMED_SIZE, STREAMED_SIZE, 2);
+        gameManager.setupStartingForces();
+        AiController ai = new AiController(new GameRandom(seed));
+        report(bench.run("streamedAiTurn", "size=" + STREAMED_SIZE,
+            () -> gameManager.getPlayers().forEach(p -> resetResources(p.getResourceManager())),
+            blackhole -> {
+                ai.playTurn(gameManager.getCurrentPlayer(), gameManager);
+                gameManager.nextTurn();
+                blackhole.consume(gameManager.getTurnNumber());
+            }));
+        gameManager.getGameMap().close();
+    }
+
+    /**
+     * The 8 neighbours of random tiles: a list of new positions against the
+     * reusable iterator.
+     */
+    private void neighbors(int size) {
+        if (!selected("neighbors")) return;
+        GameMap map = newMap(size);
+        Random random = new GameRandom(seed);
+        int[] tiles = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            tiles[i] = random.nextInt(size * size);
+        }
+        TileGrid grid = map.getGrid();
+        int[] next = {0};
+        report(bench.run("neighbors.getAdjacentPositions", "size=" + size, null, blackhole -> {
+            int tile = tiles[next[0]++ & (QUERIES - 1)];
+            for (Position adjacent : grid.positionOf(tile).getAdjacentPositions(size, size)) {
+                blackhole.consume(grid.isPassable(grid.indexOf(adjacent.getX(), adjacent.getY())));
+            }
+        }));
+        NeighborIterator iterator = new NeighborIterator(grid);
+        report(bench.run("neighbors.NeighborIterator", "size=" + size, null, blackhole -> {
+            iterator.reset(tiles[next[0]++ & (QUERIES - 1)]);
+            while (iterator.next()) {
+                blackhole.consume(grid.isPassable(iterator.index()));
+            }
+        }));
+    }
+
+    private void findUnitPosition(int size, int units) {
+        if (!selected("findUnitPosition")) return;
+        GameMap map = newMap(size);
+        Player player = new Player("Bench", 0);
+        List<Unit> placed = placeUnits(map, player, units, new GameRandom(seed));
+        int[] next = {0};
+        report(bench.run("findUnitPosition", params(size, units), null, blackhole -> {
+            int i = next[0]++;
+            if (next[0] == placed.size()) {
+                next[0] = 0;
+            }
+            blackhole.consume(map.findUnitPosition(placed.get(i)));
+        }));
+    }
+
+    private void findPath(int size, int units) {
+        if (!selected("findPath")) return;
+        GameMap map = newMap(size);
+        Random random = new GameRandom(seed);
+        placeUnits(map, new Player("Bench", 0), units, random);
+        Position[] from = new Position[PATH_QUERIES];
+        Position[] to = new Position[PATH_QUERIES];
+        for (int i = 0; i < PATH_QUERIES; i++) {
+            from[i] = randomFree(map, random);
+            to[i] = randomFree(map, random);
+        }
+        int[] next = {0};
+        report(bench.run("findPath", params(size, units), null, blackhole -> {
+            int i = next[0]++ & (PATH_QUERIES - 1);
+            blackhole.consume(map.findPath(from[i], to[i]).size());
+        }));
+    }
+
+    private void resolveCombat(int units) {
+        if (!selected("resolveCombat")) return;
+        CombatResolver resolver = new CombatResolver(new GameRandom(seed));
+        Player red = new Player("Red", 0);
+        Player blue = new Player("Blue", 1);
+        UnitType[] types = UnitType.values();
+        Unit[] attackers = new Unit[units];
+        Unit[] defenders = new Unit[units];
+        for (int i = 0; i < units; i++) {
+            // Units off the map are always in range
+            attackers[i] = UnitFactory.createUnit(types[i % types.length]);
+            defenders[i] = UnitFactory.createUnit(types[(i + 1) % types.length]);
+            red.addUnit(attackers[i]);
+            blue.addUnit(defenders[i]);
+        }
+        int[] next = {0};
+        report(bench.run("resolveCombat", "units=" + units, null, blackhole -> {
+            int i = next[0]++;
+            if (next[0] == units) {
+                next[0] = 0;
+            }
+            blackhole.consume(resolver.resolveCombat(attackers[i], defenders[i]));
+            if (!defenders[i].isAlive()) {
+                defenders[i].setHealth(Integer.MAX_VALUE); // back to full health
+            }
+        }));
+    }
+
+    private void resolveBatch(int units) {
+        if (!selected("resolveBatch")) return;
+        CombatResolver resolver = new CombatResolver(new GameRandom(seed));
+        CombatBatchResult result = new CombatBatchResult(units);
+        UnitStore store = new UnitStore(2 * units);
+        Player red = new Player("Red", 0, Faction.EMPIRE, store);
+        Player blue = new Player("Blue", 1, Faction.KINGDOM, store);
+        UnitType[] types = UnitType.values();
+        for (int i = 0; i < units; i++) {
+            red.addUnit(UnitFactory.createUnit(types[i % types.length], store));
+            blue.addUnit(UnitFactory.createUnit(types[(i + 1) % types.length], store));
+        }
+        // Pairs in slot order, over the owner column
+        int[] attackers = new int[units];
+        int[] defenders = new int[units];
+        int reds = 0;
+        int blues = 0;
+        for (int slot = 0; slot < store.size(); slot++) {
+            if (store.getOwnerId(slot) == 0) {
+                attackers[reds++] = slot;
+            } else {
+                defenders[blues++] = slot;
+            }
+        }
+        // One operation is a whole batch of units engagements
+        report(bench.run("resolveBatch", "units=" + units, null, blackhole -> {
+            blackhole.consume(resolver.resolveBatch(store, attackers, defenders, units, result));
+            for (int slot : defenders) {
+                if (store.getHealth(slot) == 0) {
+                    store.view(slot).setHealth(Integer.MAX_VALUE);
+                }
+            }
+        }));
+    }
+
+    private void playerEndTurn(int units) {
+        if (!selected("Player.endTurn")) return;
+        Player player = new Player("Bench", 0);
+        UnitType[] types = UnitType.values();
+        for (int i = 0; i < units; i++) {
+            player.addUnit(UnitFactory.createUnit(types[i % types.length], player.getUnitStore()));
+        }
+        CommandCenter commandCenter = new CommandCenter();
+        commandCenter.completeConstruction();
+        player.addBuilding(commandCenter);
+        ResourceFarm farm = new ResourceFarm();
+        farm.completeConstruction();
+        player.addBuilding(farm);
+        player.addBuilding(new TrainingCamp()); // under construction
+        report(bench.run("Player.endTurn", "units=" + units,
+            () -> resetResources(player.getResourceManager()),
+            blackhole -> {
+                player.endTurn();
+                blackhole.consume(player.getUnits().size());
+            }));
+    }
+
+    /**
+     * Ends the turn of 8 players sharing a unit store, serially and through
+     * the parallel pipeline.
+     */
+    private void endTurns(int units) {
+        if (!selected("endTurns")) return;
+        UnitStore store = new UnitStore();
+        List<Player> players = new ArrayList<>();
+        UnitType[] types = UnitType.values();
+        BuildingType[] buildingTypes = BuildingType.values();
+        for (int p = 0; p < 8; p++) {
+            Player player = new Player("Bench " + p, p, Faction.values()[p % Faction.values().length], store);
+            for (int i = 0; i < units; i++) {
+                player.addUnit(UnitFactory.createUnit(types[i % types.length], store));
+            }
+            for (int i = 0; i < units / 2; i++) {
+                Building building = BuildingFactory.createBuilding(buildingTypes[i % buildingTypes.length]);
+                if (i % 4 != 0) {
+                    building.completeConstruction();
+                }
+                player.addBuilding(building);
+            }
+            players.add(player);
+        }
+        Runnable reset = () -> players.forEach(p -> resetResources(p.getResourceManager()));
+        report(bench.run("endTurns.serial", "units=" + units + " x8", reset, blackhole -> {
+            for (Player player : players) {
+                player.endTurn();
+            }
+        }));
+        EndTurnPipeline pipeline = new EndTurnPipeline();
+        report(bench.run("endTurns.pipeline", "units=" + units + " x8", reset,
+            blackhole -> pipeline.endTurns(players)));
+    }
+
+    private void resourceManager() {
+        Map<ResourceType, Integer> cost = new TrainingCamp().getConstructionCost();
+        if (selected("ResourceManager.canAfford")) {
+            ResourceManager resources = new ResourceManager();
+            report(bench.run("ResourceManager.canAfford", "Map", null,
+                blackhole -> blackhole.consume(resources.canAfford(cost))));
+        }
+        if (selected("ResourceManager.spend")) {
+            ResourceManager resources = new ResourceManager();
+            report(bench.run("ResourceManager.spend", "Map", () -> refill(resources), blackhole -> {
+                if (!resources.spend(cost)) {
+                    refill(resources);
+                }
+            }));
+        }
+        ResourceCost resourceCost = CostTable.of(BuildingType.TRAINING_CAMP);
+        if (selected("ResourceManager.canAfford")) {
+            ResourceManager resources = new ResourceManager();
+            report(bench.run("ResourceManager.canAfford", "ResourceCost", null,
+                blackhole -> blackhole.consume(resources.canAfford(resourceCost))));
+        }
+        if (selected("ResourceManager.spend")) {
+            ResourceManager resources = new ResourceManager();
+            report(bench.run("ResourceManager.spend", "ResourceCost", () -> refill(resources), blackhole -> {
+                if (!resources.spend(resourceCost)) {
+                    refill(resources);
+                }
+            }));
+        }
+    }
+
+    private void nextTurnCycle(int size, int units) {
+        if (!selected("GameManager.nextTurn")) return;
+        GameManager gameManager = newGame(size, units, new GameRandom(seed));
+        int playerCount = gameManager.getPlayers().size();
+        report(bench.run("GameManager.nextTurn", params(size, units),
+            () -> gameManager.getPlayers().forEach(p -> resetResources(p.getResourceManager())),
+            blackhole -> {
+                // One cycle is a turn of every player
+                for (int i = 0; i < playerCount; i++) {
+                    gameManager.nextTurn();
+                }
+                blackhole.consume(gameManager.getTurnNumber());
+            }));
+    }
+
+    private void fork(int size, int units) {
+        if (!selected("GameManager.fork")) return;
+        Random random = new GameRandom(seed);
+        GameManager gameManager = newGame(size, units, random);
+        report(bench.run("GameManager.fork", params(size, units), null,
+            blackhole -> blackhole.consume(gameManager.fork())));
+
+        // A fork and a move, which copies the chunk of the map it writes to
+        Position target = randomFree(gameManager.getGameMap(), random);
+        report(bench.run("GameManager.fork+move", params(size, units), null, blackhole -> {
+            GameManager fork = gameManager.fork();
+            Player owner = fork.getPlayers().get(0);
+            blackhole.consume(fork.getActions().moveUnit(owner, owner.getUnits().get(0), target));
+        }));
+    }
+
+    private void influence(int size, int units) {
+        if (!selected("InfluenceMap")) return;
+        moveAndRebuild("InfluenceMap", size, units, map -> {
+            InfluenceMap influence = map.getInfluenceMap();
+            return new MapLayer(tile -> influence.getBalance(0, tile), influence::rebuild, influence::size);
+        });
+    }
+
+    private void visibility(int size, int units) {
+        if (!selected("VisibilityMap")) return;
+        moveAndRebuild("VisibilityMap", size, units, map -> {
+            VisibilityMap visibility = map.getVisibilityMap();
+            return new MapLayer(tile -> visibility.isVisible(0, tile) ? 1 : 0, visibility::rebuild, visibility::size);
+        });
+    }
+
+    /**
+     * Measures a layer of the map kept up to date on every move against
+     * its rebuild from scratch, units of two players being on the map.
+     * @param name Name of the layer, prefix of the benchmarks
+     * @param layerOf Creates the layer of a map, once its units are placed
+     */
+    private void moveAndRebuild(String name, int size, int units, Function<GameMap, MapLayer> layerOf) {
+        GameMap map = newMap(size);
+        Random random = new GameRandom(seed);
+        placeUnits(map, new Player("Bench", 0), units / 2, random);
+        List<Unit> placed = placeUnits(map, new Player("Enemy", 1), units - units / 2, random);
+        MapLayer layer = layerOf.apply(map);
+        TileGrid grid = map.getGrid();
+
+        // One unit going back and forth: the incremental cost of a move
+        Unit mover = placed.get(0);
+        Position free = randomFree(map, random);
+        int[] tiles = {grid.tileOf(mover.getEntityId()), grid.indexOf(free.getX(), free.getY())};
+        int[] next = {1};
+        report(bench.run(name + ".move", params(size, units), null, blackhole -> {
+            grid.setOccupant(tiles[next[0]], mover);
+            next[0] ^= 1;
+            blackhole.consume(layer.probe.applyAsDouble(tiles[next[0]]));
+        }));
+
+        // What the same information costs when recomputed from scratch
+        report(bench.run(name + ".rebuild", params(size, units), null, blackhole -> {
+            layer.rebuild.run();
+            blackhole.consume(layer.size.getAsInt());
+        }));
+    }
+
+    /**
+     * A map layer as seen by moveAndRebuild : what a move changes on a
+     * tile, its rebuild and its size.
+     */
+    private static final class MapLayer {
+        final IntToDoubleFunction probe;
+        final Runnable rebuild;
+        final IntSupplier size;
+
+        MapLayer(IntToDoubleFunction probe, Runnable rebuild, IntSupplier size) {
+            this.probe = probe;
+            this.rebuild = rebuild;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Creates a game of two players with their starting forces, topped
+     * up to a number of units per player placed on random free tiles.
+     */
+    private GameManager newGame(int size, int units, Random random) {
+        GameManager gameManager = new GameManager(seed);
+        gameManager.initializeGame(size, size, 2);
+        gameManager.setupStartingForces();
+        for (Player player : gameManager.getPlayers()) {
+            placeUnits(gameManager.getGameMap(), player, units - player.getUnits().size(), random);
+        }
+        return gameManager;
+    }
+
+    private GameMap newMap(int size) {
+        GameMap map = new GameMap(size, size, new GameRandom(seed));
+        map.generateMap();
+        return map;
+    }
+
+    /**
+     * Creates units for a player and places them on random free tiles.
+     */
+    private static List<Unit> placeUnits(GameMap map, Player player, int count, Random random) {
+        UnitType[] types = UnitType.values();
+        List<Unit> placed = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Unit unit = UnitFactory.createUnit(types[i % types.length], player.getUnitStore());
+            player.addUnit(unit);
+            map.getTile(randomFree(map, random)).setOccupant(unit);
+            placed.add(unit);
+        }
+        return placed;
+    }
+
+    private static Position randomFree(GameMap map, Random random) {
+        TileGrid grid = map.getGrid();
+        while (true) {
+            int index = random.nextInt(grid.size());
+            if (grid.isPassable(index)) {
+                return new Position(grid.xOf(index), grid.yOf(index));
+            }
+        }
+    }
+
+    private static void resetResources(ResourceManager resources) {
+        for (ResourceType type : ResourceType.values()) {
+            resources.setResource(type, 500);
+        }
+        resources.setResource(ResourceType.FOOD, PLENTY);
+    }
+
+    private static void refill(ResourceManager resources) {
+        for (ResourceType type : ResourceType.values()) {
+            resources.setResource(type, Integer.MAX_VALUE);
+        }
+    }
+
+    private boolean selected(String name) {
+        return name.contains(filter);
+    }
+
+    private static void report(Microbenchmark.Result result) {
+        System.out.println(result.format());
+    }
+
+    private static String params(int size, int units) {
+        return "size=" + size + " units=" + units;
+    }
+
+    private static int[] parseList(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+}
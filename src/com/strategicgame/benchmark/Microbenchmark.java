@@ -0,0 +1,204 @@
+package com.strategicgame.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Microbenchmark runs operations for a fixed time per iteration, after
+ * warmup iterations, and reports the time and the bytes allocated per
+ * operation (allocation profiling through the thread allocation counter
+ * of the JVM, as JMH's gc profiler does).
+ *
+ */
+public final class Microbenchmark {
+
+    /**
+     * A benchmarked operation, called in a loop.
+     */
+    public interface Operation {
+        void run(Blackhole blackhole);
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final Blackhole blackhole = new Blackhole();
+
+    /**
+     * @param warmupIterations Iterations run before measuring
+     * @param measurementIterations Measured iterations
+     * @param iterationMillis Duration of an iteration, in milliseconds
+     */
+    public Microbenchmark(int warmupIterations, int measurementIterations, long iterationMillis) {
+        if (measurementIterations < 1 || iterationMillis < 1) {
+            throw new IllegalArgumentException("At least one measured iteration of 1 ms is needed");
+        }
+        this.warmupIterations = Math.max(0, warmupIterations);
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    /**
+     * Runs an operation.
+     * @param name Benchmark name
+     * @param params Parameters of the run, for display
+     * @param iterationSetup Called before every iteration, outside of the measure (may be null)
+     * @param operation The operation
+     * @return The measure
+     */
+    public Result run(String name, String params, Runnable iterationSetup, Operation operation) {
+        int batch = calibrate(iterationSetup, operation);
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(iterationSetup, operation, batch);
+        }
+
+        double[] nanosPerOp = new double[measurementIterations];
+        long totalOps = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < measurementIterations; i++) {
+            long[] measure = iteration(iterationSetup, operation, batch);
+            nanosPerOp[i] = (double) measure[1] / measure[0];
+            totalOps += measure[0];
+            totalBytes += measure[2];
+        }
+        double bytesPerOp = THREADS == null ? Double.NaN : (double) totalBytes / totalOps;
+        return new Result(name, params, nanosPerOp, bytesPerOp, totalOps);
+    }
+
+    /**
+     * Finds how many calls make about a millisecond, so that the clock is
+     * read rarely compared to the operation.
+     */
+    private int calibrate(Runnable iterationSetup, Operation operation) {
+        if (iterationSetup != null) {
+            iterationSetup.run();
+        }
+        int batch = 1;
+        while (batch < (1 << 24)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < batch; i++) {
+                operation.run(blackhole);
+            }
+            if (System.nanoTime() - start >= 1_000_000L) {
+                break;
+            }
+            batch <<= 1;
+        }
+        blackhole.flush();
+        return batch;
+    }
+
+    /**
+     * Runs batches until the iteration time is spent.
+     * @return {operations, elapsed nanos, allocated bytes}
+     */
+    private long[] iteration(Runnable iterationSetup, Operation operation, int batch) {
+        if (iterationSetup != null) {
+            iterationSetup.run();
+        }
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long elapsed;
+        long ops = 0;
+        do {
+            for (int i = 0; i < batch; i++) {
+                operation.run(blackhole);
+            }
+            ops += batch;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        long bytes = allocatedBytes() - bytesBefore;
+        blackhole.flush();
+        return new long[]{ops, elapsed, bytes};
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+        return null; // allocation rate not available on this JVM
+    }
+
+    /**
+     * Measure of a benchmark.
+     */
+    public static final class Result {
+        private final String name;
+        private final String params;
+        private final double[] nanosPerOp;
+        private final double bytesPerOp;
+        private final long operations;
+
+        Result(String name, String params, double[] nanosPerOp, double bytesPerOp, long operations) {
+            this.name = name;
+            this.params = params;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+            this.operations = operations;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getParams() {
+            return params;
+        }
+
+        /**
+         * Gets the mean time of an operation over the measured iterations.
+         * @return Nanoseconds per operation
+         */
+        public double getNanosPerOp() {
+            double sum = 0;
+            for (double value : nanosPerOp) {
+                sum += value;
+            }
+            return sum / nanosPerOp.length;
+        }
+
+        /**
+         * Gets the standard deviation of the time per operation between iterations.
+         * @return Nanoseconds per operation
+         */
+        public double getNanosPerOpDeviation() {
+            double mean = getNanosPerOp();
+            double sum = 0;
+            for (double value : nanosPerOp) {
+                sum += (value - mean) * (value - mean);
+            }
+            return nanosPerOp.length > 1 ? Math.sqrt(sum / (nanosPerOp.length - 1)) : 0;
+        }
+
+        /**
+         * Gets the bytes allocated per operation.
+         * @return Bytes per operation, or NaN if the JVM cannot tell
+         */
+        public double getBytesPerOp() {
+            return bytesPerOp;
+        }
+
+        public long getOperations() {
+            return operations;
+        }
+
+        /**
+         * Formats the result as a table row.
+         * @return One line, without line separator
+         */
+        public String format() {
+            return String.format("%-26s %-20s %14.1f +- %10.1f ns/op %12.1f B/op",
+                name, params, getNanosPerOp(), getNanosPerOpDeviation(), bytesPerOp);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.strategicgame.benchmark;
+
+import com.strategicgame.map.GameMap;
+import com.strategicgame.map.PathFinder;
+import com.strategicgame.map.Position;
+import com.strategicgame.map.TileType;
+import com.strategicgame.pathfinding.AStarPathFinder;
+import com.strategicgame.pathfinding.HierarchicalPathFinder;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares flat A* with hierarchical pathfinding on the same queries.
+ * Usage: PathfindingBenchmark [mapSize] [queries] [seed]
+ * 
+ */
+public class PathfindingBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+
+        GameMap map = new GameMap(size, size);
+        map.generateMap();
+        Position[][] pairs = randomQueries(map, queries, new Random(seed));
+
+        HierarchicalPathFinder hierarchical = new HierarchicalPathFinder();
+        long buildStart = System.nanoTime();
+        hierarchical.bind(map.getGrid());
+        long buildTime = System.nanoTime() - buildStart;
+
+        System.out.printf("Map %dx%d, %d queries%n", size, size, queries);
+        System.out.printf("HPA* graph: %d nodes built in %.1f ms%n",
+            hierarchical.getAbstractNodeCount(), buildTime / 1e6);
+
+        double flatLength = run("A*  ", new AStarPathFinder(), map, pairs);
+        double hpaLength = run("HPA*", hierarchical, map, pairs);
+        if (flatLength > 0) {
+            System.out.printf("HPA* path length / A* path length: %.3f%n", hpaLength / flatLength);
+        }
+    }
+
+    /**
+     * Runs every query once to warm up, then once timed.
+     * @return Total number of steps of the paths found
+     */
+    private static double run(String label, PathFinder finder, GameMap map, Position[][] pairs) {
+        for (Position[] pair : pairs) {
+            finder.findPath(map, pair[0], pair[1]);
+        }
+        long steps = 0;
+        int found = 0;
+        long start = System.nanoTime();
+        for (Position[] pair : pairs) {
+            List<Position> path = finder.findPath(map, pair[0], pair[1]);
+            if (!path.isEmpty()) {
+                found++;
+                steps += path.size() - 1;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%s: %.3f ms/query, %d/%d paths found%n",
+            label, elapsed / 1e6 / pairs.length, found, pairs.length);
+        return steps;
+    }
+
+    private static Position[][] randomQueries(GameMap map, int count, Random random) {
+        Position[][] pairs = new Position[count][];
+        for (int i = 0; i < count; i++) {
+            pairs[i] = new Position[]{randomPassable(map, random), randomPassable(map, random)};
+        }
+        return pairs;
+    }
+
+    private static Position randomPassable(GameMap map, Random random) {
+        while (true) {
+            int x = random.nextInt(map.getWidth());
+            int y = random.nextInt(map.getHeight());
+            TileType type = map.getTile(x, y).getType();
+            if (type.isPassable()) {
+                return new Position(x, y);
+            }
+        }
+    }
+}
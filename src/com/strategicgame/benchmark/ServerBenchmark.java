@@ -0,0 +1,149 @@
+package com.strategicgame.benchmark;
+
+import com.strategicgame.core.ActionResult;
+import com.strategicgame.map.NeighborIterator;
+import com.strategicgame.map.TileGrid;
+import com.strategicgame.network.GameClient;
+import com.strategicgame.network.GameServer;
+import com.strategicgame.units.Unit;
+import com.strategicgame.units.UnitType;
+import com.strategicgame.util.GameLog;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads a GameServer over the loopback : every client plays its own
+ * session against the AI of the server, a few threads driving them in
+ * turn, each client training a unit, moving one and ending its turn.
+ * Every END_TURN event checks the copy of the game of the client against
+ * the state hash of the server.
+ * Usage: ServerBenchmark [clients] [turns] [threads] [mapSize] [seed]
+ *
+ */
+public class ServerBenchmark {
+    private static final UnitType[] UNIT_TYPES = UnitType.values();
+
+    private static final AtomicLong actions = new AtomicLong();
+    private static final AtomicLong succeeded = new AtomicLong();
+    private static final AtomicLong roundTripNanos = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int turns = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int threadCount = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int mapSize = args.length > 3 ? Integer.parseInt(args[3]) : 24;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42L;
+        GameLog.setEnabled(false);
+
+        GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), seed, mapSize);
+        Thread serverThread = new Thread(server, "game-server");
+        serverThread.start();
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+
+        long joinStart = System.nanoTime();
+        List<GameClient> clients = new ArrayList<>(clientCount);
+        for (int i = 0; i < clientCount; i++) {
+            GameClient client = GameClient.connect(address);
+            client.join(i, 0);
+            clients.add(client);
+        }
+        long joinTime = System.nanoTime() - joinStart;
+        System.out.printf("%d clients joined in %.1f ms (%.0f us per join)%n",
+            clientCount, joinTime / 1e6, joinTime / 1e3 / clientCount);
+
+        List<Thread> drivers = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threadCount; t++) {
+            List<GameClient> slice = clients.subList(clientCount * t / threadCount, clientCount * (t + 1) / threadCount);
+            Thread driver = new Thread(() -> {
+                try {
+                    for (int turn = 0; turn < turns; turn++) {
+                        for (GameClient client : slice) {
+                            playTurn(client, turn);
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }, "client-driver-" + t);
+            drivers.add(driver);
+            driver.start();
+        }
+        for (Thread driver : drivers) {
+            driver.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long events = 0;
+        int finished = 0;
+        for (GameClient client : clients) {
+            events += client.getEventCount();
+            if (client.getGame().isGameOver()) {
+                finished++;
+            }
+            client.close();
+        }
+        server.close();
+        serverThread.join();
+
+        long count = actions.get();
+        System.out.printf("%d actions (%d succeeded) in %.1f ms: %.0f actions/s, %.1f us per round trip%n",
+            count, succeeded.get(), elapsed / 1e6, count / (elapsed / 1e9),
+            count == 0 ? 0.0 : roundTripNanos.get() / 1e3 / count);
+        System.out.printf("%d events applied by the clients, %d games over, %d clients failed%n",
+            events, finished, failures.size());
+        for (Throwable failure : failures) {
+            System.out.println("  " + failure);
+        }
+    }
+
+    /**
+     * Trains a unit, moves the first unit that can to an empty neighbour
+     * tile, ends the turn and waits for the next one.
+     */
+    private static void playTurn(GameClient client, int turn) throws IOException {
+        if (client.getGame().isGameOver()) {
+            return;
+        }
+        long trainStart = System.nanoTime();
+        record(client.trainUnit(UNIT_TYPES[turn % UNIT_TYPES.length]), trainStart);
+        TileGrid grid = client.getGame().getGameMap().getGrid();
+        NeighborIterator neighbors = new NeighborIterator(grid);
+        for (Unit unit : client.getPlayer().getUnits()) {
+            int tile = grid.tileOf(unit.getEntityId());
+            if (tile < 0 || unit.hasMovedThisTurn()) {
+                continue;
+            }
+            neighbors.reset(tile);
+            int target = -1;
+            while (target < 0 && neighbors.next()) {
+                if (grid.isPassable(neighbors.index())) {
+                    target = neighbors.index();
+                }
+            }
+            if (target >= 0) {
+                long start = System.nanoTime();
+                record(client.moveUnit(unit, grid.positionOf(target)), start);
+                break;
+            }
+        }
+        long start = System.nanoTime();
+        record(client.endTurn(), start);
+        client.awaitTurn();
+    }
+
+    private static void record(ActionResult result, long start) {
+        roundTripNanos.addAndGet(System.nanoTime() - start);
+        actions.incrementAndGet();
+        if (result.isSuccess()) {
+            succeeded.incrementAndGet();
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.strategicgame.buildings;
 
+import com.strategicgame.map.MapEntity;
 import com.strategicgame.map.Position;
 import com.strategicgame.player.Player;
+import com.strategicgame.resources.ResourceCost;
 import com.strategicgame.resources.ResourceType;
+import com.strategicgame.util.EntityIds;
 import java.util.*;
 
 /**
@@ -12,9 +15,10 @@ import java.util.*;
  * 
  */
 
-public abstract class Building {
+public abstract class Building implements MapEntity, Cloneable {
+    private final int entityId;
     private final String name;
-    private final Map<ResourceType, Integer> constructionCost;
+    private final ResourceCost constructionCost;
     private final int constructionTime;
     private final int health;
     private final int armor;
@@ -27,16 +31,45 @@ public abstract class Building {
 
     protected Building(String name, int health, int armor,
                       Map<ResourceType, Integer> cost, int constructionTime) {
+        this(name, health, armor, ResourceCost.of(cost), constructionTime);
+    }
+
+    protected Building(String name, int health, int armor,
+                      ResourceCost cost, int constructionTime) {
+        this.entityId = EntityIds.next();
         this.name = name;
         this.health = health;
         this.armor = armor;
-        this.constructionCost = new HashMap<>(cost);
+        this.constructionCost = cost;
         this.constructionTime = constructionTime;
         this.remainingConstructionTime = constructionTime;
         this.isConstructed = false;
         this.currentHealth = health;
     }
 
+    /**
+     * Copies the building for a fork of the game (see GameManager.fork) :
+     * the copy keeps the entity id and the state of this building, its
+     * owner being set by the caller.
+     * @return The copy
+     */
+    public Building copy() {
+        try {
+            return (Building) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Gets the unique entity id of this building.
+     * @return Entity id
+     */
+    @Override
+    public int getEntityId() {
+        return entityId;
+    }
+
     /**
      * Gets the building name.
      * @return Building name
@@ -50,7 +83,15 @@ public abstract class Building {
      * @return Map of resource types and costs
      */
     public Map<ResourceType, Integer> getConstructionCost() {
-        return new HashMap<>(constructionCost);
+        return constructionCost.toMap();
+    }
+
+    /**
+     * Gets construction cost, without copying it.
+     * @return The cost
+     */
+    public ResourceCost getResourceCost() {
+        return constructionCost;
     }
 
     /**
@@ -77,6 +118,14 @@ public abstract class Building {
         return currentHealth;
     }
 
+    /**
+     * Sets current health, e.g. when loading a saved game.
+     * @param currentHealth Health points, kept between 0 and max health
+     */
+    public void setCurrentHealth(int currentHealth) {
+        this.currentHealth = Math.max(0, Math.min(health, currentHealth));
+    }
+
     /**
      * Damages the building. 
      * @param damage Damage to apply
@@ -98,6 +147,7 @@ public abstract class Building {
      * Gets position of building.
      * @return Position on map
      */
+    @Override
     public Position getPosition() {
         return position;
     }
@@ -107,6 +157,7 @@ public abstract class Building {
      * (the option of deplacing a building was supposed to be added but we didn't finish it :'))
      * @param position New position
      */
+    @Override
     public void setPosition(Position position) {
         this.position = position;
     }
@@ -163,6 +214,17 @@ public abstract class Building {
         onConstructionComplete();
     }
 
+    /**
+     * Restores the construction progress of a saved building,
+     * without triggering the completion effects again.
+     * @param remainingTime Turns left until complete
+     * @param constructed true if the building is finished
+     */
+    public void setConstructionProgress(int remainingTime, boolean constructed) {
+        this.remainingConstructionTime = constructed ? 0 : remainingTime;
+        this.isConstructed = constructed;
+    }
+
     /**
      * Called when construction is completed - override for special effects.
      */
@@ -184,6 +246,15 @@ public abstract class Building {
      */
     public abstract void produce();
 
+    /**
+     * Gets the resource that produce() adds to the owner, getProductionRate()
+     * per turn. Buildings whose produce() does anything else return null.
+     * @return The produced resource, or null
+     */
+    public ResourceType getProducedResource() {
+        return null;
+    }
+
     /**
      * Gets production rate per turn. 
      * @return Production amount
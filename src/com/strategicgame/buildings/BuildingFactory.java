@@ -1,6 +1,8 @@
 package com.strategicgame.buildings;
 
+import com.strategicgame.resources.CostTable;
 import com.strategicgame.resources.ResourceType;
+import com.strategicgame.util.GameLog;
 /**
  * BuildingFactory implements the Factory Design Pattern.
  * Responsible for creating buildings - encapsulates building instantiation.
@@ -16,21 +18,34 @@ public class BuildingFactory {
      * @return A new Building instance, or null if type not recognized
      */
     public static Building createBuilding(String buildingType) {
+        BuildingType type = typeOf(buildingType);
+        if (type == null) {
+            GameLog.error("Unknown building type: " + buildingType);
+            return null;
+        }
+        return createBuilding(type);
+    }
+
+    /**
+     * Finds the building type named by a player.
+     * @param buildingType Type name (case-insensitive)
+     * @return The type, or null if not recognized
+     */
+    private static BuildingType typeOf(String buildingType) {
         switch (buildingType.toLowerCase()) {
             case "commandcenter":
             case "command":
-                return new CommandCenter();
+                return BuildingType.COMMAND_CENTER;
             case "trainingcamp":
             case "training":
-                return new TrainingCamp();
+                return BuildingType.TRAINING_CAMP;
             case "mine":
-                return new ResourceMine();
+                return BuildingType.MINE;
             case "farm":
-                return new ResourceFarm();
+                return BuildingType.FARM;
             case "sawmill":
-                return new ResourceSawmill();
+                return BuildingType.SAWMILL;
             default:
-                System.err.println("Unknown building type: " + buildingType);
                 return null;
         }
     }
@@ -42,7 +57,20 @@ public class BuildingFactory {
      * @return A new Building instance
      */
     public static Building createBuilding(BuildingType type) {
-        return createBuilding(type.name());
+        switch (type) {
+            case COMMAND_CENTER:
+                return new CommandCenter();
+            case TRAINING_CAMP:
+                return new TrainingCamp();
+            case MINE:
+                return new ResourceMine();
+            case FARM:
+                return new ResourceFarm();
+            case SAWMILL:
+                return new ResourceSawmill();
+            default:
+                throw new AssertionError("Unknown building type: " + type);
+        }
     }
 
     /**
@@ -60,7 +88,7 @@ public class BuildingFactory {
      */
     public static java.util.Map<ResourceType, Integer> 
             getBuildingCost(String buildingType) {
-        Building building = createBuilding(buildingType);
-        return building != null ? building.getConstructionCost() : null;
+        BuildingType type = typeOf(buildingType);
+        return type != null ? CostTable.of(type).toMap() : null;
     }
 }
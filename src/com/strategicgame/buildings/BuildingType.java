@@ -20,4 +20,19 @@ public enum BuildingType {
     public String getDisplayName() {
         return displayName;
     }
+
+    /**
+     * Gets the type of a building.
+     * @param building The building
+     * @return Its type
+     * @throws IllegalArgumentException if the building has no matching type
+     */
+    public static BuildingType of(Building building) {
+        for (BuildingType type : values()) {
+            if (type.displayName.equals(building.getName())) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown building type: " + building.getName());
+    }
 }
@@ -1,7 +1,8 @@
 package com.strategicgame.buildings;
 
+import com.strategicgame.resources.CostTable;
 import com.strategicgame.resources.ResourceType;
-import java.util.*;
+import com.strategicgame.util.GameLog;
 
 /**
  * CommandCenter building - central control structure of each faction.
@@ -15,15 +16,7 @@ public class CommandCenter extends Building {
     private static final int CONSTRUCTION_TIME = 5;
 
     public CommandCenter() {
-        super("CommandCenter", HEALTH, ARMOR, createCost(), CONSTRUCTION_TIME);
-    }
-
-    private static Map<ResourceType, Integer> createCost() {
-        Map<ResourceType, Integer> cost = new HashMap<>();
-        cost.put(ResourceType.GOLD, 200);
-        cost.put(ResourceType.WOOD, 150);
-        cost.put(ResourceType.STONE, 100);
-        return cost;
+        super("CommandCenter", HEALTH, ARMOR, CostTable.of(BuildingType.COMMAND_CENTER), CONSTRUCTION_TIME);
     }
 
     @Override
@@ -38,8 +31,13 @@ public class CommandCenter extends Building {
         return PRODUCTION_RATE;
     }
 
+    @Override
+    public ResourceType getProducedResource() {
+        return ResourceType.GOLD;
+    }
+
     @Override
     protected void onConstructionComplete() {
-        System.out.println("CommandCenter construction complete!");
+        GameLog.info("CommandCenter construction complete!");
     }
 }
@@ -1,7 +1,8 @@
 package com.strategicgame.buildings;
 
+import com.strategicgame.resources.CostTable;
 import com.strategicgame.resources.ResourceType;
-import java.util.*;
+import com.strategicgame.util.GameLog;
 
 /**
  * ResourceFarm building - produces food resources.
@@ -15,14 +16,7 @@ public class ResourceFarm extends Building {
     private static final int CONSTRUCTION_TIME = 2;
 
     public ResourceFarm() {
-        super("Farm", HEALTH, ARMOR, createCost(), CONSTRUCTION_TIME);
-    }
-
-    private static Map<ResourceType, Integer> createCost() {
-        Map<ResourceType, Integer> cost = new HashMap<>();
-        cost.put(ResourceType.GOLD, 30);
-        cost.put(ResourceType.WOOD, 40);
-        return cost;
+        super("Farm", HEALTH, ARMOR, CostTable.of(BuildingType.FARM), CONSTRUCTION_TIME);
     }
 
     @Override
@@ -37,8 +31,13 @@ public class ResourceFarm extends Building {
         return PRODUCTION_RATE;
     }
 
+    @Override
+    public ResourceType getProducedResource() {
+        return ResourceType.FOOD;
+    }
+
     @Override
     protected void onConstructionComplete() {
-        System.out.println("Farm construction complete - Food production started!");
+        GameLog.info("Farm construction complete - Food production started!");
     }
 }
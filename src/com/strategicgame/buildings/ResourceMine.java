@@ -1,7 +1,8 @@
 package com.strategicgame.buildings;
 
+import com.strategicgame.resources.CostTable;
 import com.strategicgame.resources.ResourceType;
-import java.util.*;
+import com.strategicgame.util.GameLog;
 
 /**
  * ResourceMine building - produces stone resources.
@@ -15,14 +16,7 @@ public class ResourceMine extends Building {
     private static final int CONSTRUCTION_TIME = 3;
 
     public ResourceMine() {
-        super("Mine", HEALTH, ARMOR, createCost(), CONSTRUCTION_TIME);
-    }
-
-    private static Map<ResourceType, Integer> createCost() {
-        Map<ResourceType, Integer> cost = new HashMap<>();
-        cost.put(ResourceType.GOLD, 50);
-        cost.put(ResourceType.WOOD, 50);
-        return cost;
+        super("Mine", HEALTH, ARMOR, CostTable.of(BuildingType.MINE), CONSTRUCTION_TIME);
     }
 
     @Override
@@ -37,8 +31,13 @@ public class ResourceMine extends Building {
         return PRODUCTION_RATE;
     }
 
+    @Override
+    public ResourceType getProducedResource() {
+        return ResourceType.STONE;
+    }
+
     @Override
     protected void onConstructionComplete() {
-        System.out.println("Mine construction complete - Stone production started!");
+        GameLog.info("Mine construction complete - Stone production started!");
     }
 }
@@ -1,7 +1,8 @@
 package com.strategicgame.buildings;
 
+import com.strategicgame.resources.CostTable;
 import com.strategicgame.resources.ResourceType;
-import java.util.*;
+import com.strategicgame.util.GameLog;
 
 /**
  * ResourceSawmill building - produces wood resources.
@@ -15,14 +16,7 @@ public class ResourceSawmill extends Building {
     private static final int CONSTRUCTION_TIME = 3;
 
     public ResourceSawmill() {
-        super("Sawmill", HEALTH, ARMOR, createCost(), CONSTRUCTION_TIME);
-    }
-
-    private static Map<ResourceType, Integer> createCost() {
-        Map<ResourceType, Integer> cost = new HashMap<>();
-        cost.put(ResourceType.GOLD, 40);
-        cost.put(ResourceType.STONE, 30);
-        return cost;
+        super("Sawmill", HEALTH, ARMOR, CostTable.of(BuildingType.SAWMILL), CONSTRUCTION_TIME);
     }
 
     @Override
@@ -37,8 +31,13 @@ public class ResourceSawmill extends Building {
         return PRODUCTION_RATE;
     }
 
+    @Override
+    public ResourceType getProducedResource() {
+        return ResourceType.WOOD;
+    }
+
     @Override
     protected void onConstructionComplete() {
-        System.out.println("Sawmill construction complete - Wood production started!");
+        GameLog.info("Sawmill construction complete - Wood production started!");
     }
 }
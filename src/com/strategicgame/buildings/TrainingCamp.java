@@ -1,7 +1,7 @@
 package com.strategicgame.buildings;
 
-import com.strategicgame.resources.ResourceType;
-import java.util.*;
+import com.strategicgame.resources.CostTable;
+import com.strategicgame.util.GameLog;
 
 /**
  * TrainingCamp building - produces military units.
@@ -15,14 +15,7 @@ public class TrainingCamp extends Building {
     private static final int CONSTRUCTION_TIME = 4;
 
     public TrainingCamp() {
-        super("TrainingCamp", HEALTH, ARMOR, createCost(), CONSTRUCTION_TIME);
-    }
-
-    private static Map<ResourceType, Integer> createCost() {
-        Map<ResourceType, Integer> cost = new HashMap<>();
-        cost.put(ResourceType.GOLD, 100);
-        cost.put(ResourceType.WOOD, 75);
-        return cost;
+        super("TrainingCamp", HEALTH, ARMOR, CostTable.of(BuildingType.TRAINING_CAMP), CONSTRUCTION_TIME);
     }
 
     @Override
@@ -40,6 +33,6 @@ public class TrainingCamp extends Building {
 
     @Override
     protected void onConstructionComplete() {
-        System.out.println("TrainingCamp construction complete - units can now be trained!");
+        GameLog.info("TrainingCamp construction complete - units can now be trained!");
     }
 }
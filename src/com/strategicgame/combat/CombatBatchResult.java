@@ -0,0 +1,111 @@
+package com.strategicgame.combat;
+
+import java.util.Arrays;
+
+/**
+ * CombatBatchResult is the reusable outcome buffer of a batch of
+ * engagements (see CombatResolver.resolveBatch).
+ * Every engagement is packed in one int: the damage in the low bits and
+ * three flags (resolved, critical, killed) in the high bits.
+ *
+ */
+public final class CombatBatchResult {
+    private static final int DAMAGE_MASK = (1 << 28) - 1;
+    private static final int RESOLVED = 1 << 28;
+    private static final int CRITICAL = 1 << 29;
+    private static final int KILLED = 1 << 30;
+
+    private int[] outcomes;
+    private int size;
+    private int kills;
+    private long totalDamage;
+
+    public CombatBatchResult() {
+        this(64);
+    }
+
+    /**
+     * @param capacity Initial number of engagements held without growing
+     */
+    public CombatBatchResult(int capacity) {
+        this.outcomes = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Gets the number of engagements of the last batch.
+     * @return Engagement count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if an engagement took place: both units were alive, enemies
+     * and in range at the start of the batch.
+     * @param i Engagement index
+     * @return true if resolved
+     */
+    public boolean isResolved(int i) {
+        return (outcomes[i] & RESOLVED) != 0;
+    }
+
+    /**
+     * @param i Engagement index
+     * @return Damage dealt, 0 if the engagement was not resolved
+     */
+    public int getDamage(int i) {
+        return outcomes[i] & DAMAGE_MASK;
+    }
+
+    /**
+     * @param i Engagement index
+     * @return true if the hit was critical
+     */
+    public boolean isCritical(int i) {
+        return (outcomes[i] & CRITICAL) != 0;
+    }
+
+    /**
+     * Checks if an engagement dealt the killing blow. A defender killed by
+     * several attackers is credited to one engagement only.
+     * @param i Engagement index
+     * @return true if the defender died from this engagement
+     */
+    public boolean isKilled(int i) {
+        return (outcomes[i] & KILLED) != 0;
+    }
+
+    /**
+     * @return Number of defenders killed by the batch
+     */
+    public int getKills() {
+        return kills;
+    }
+
+    /**
+     * @return Sum of the damage dealt by the batch
+     */
+    public long getTotalDamage() {
+        return totalDamage;
+    }
+
+    void reset(int count) {
+        if (outcomes.length < count) {
+            outcomes = Arrays.copyOf(outcomes, Math.max(count, outcomes.length * 2));
+        }
+        Arrays.fill(outcomes, 0, count, 0);
+        size = count;
+        kills = 0;
+        totalDamage = 0;
+    }
+
+    void setHit(int i, int damage, boolean critical) {
+        outcomes[i] = RESOLVED | Math.min(damage, DAMAGE_MASK) | (critical ? CRITICAL : 0);
+        totalDamage += damage;
+    }
+
+    void setKilled(int i) {
+        outcomes[i] |= KILLED;
+        kills++;
+    }
+}
@@ -1,20 +1,66 @@
 package com.strategicgame.combat;
 
+import com.strategicgame.map.Position;
 import com.strategicgame.units.Unit;
+import com.strategicgame.units.UnitStore;
+import com.strategicgame.units.UnitType;
+import com.strategicgame.util.GameUtils;
+import java.util.Arrays;
 import java.util.Random;
 
 /**
  * CombatResolver handles all combat calculations and resolutions.
  * Implements the Single Responsibility Principle.
  * Encapsulates combat logic including damage calculations and outcomes.
+ * Mass engagements go through resolveBatch, which works on arrays of unit
+ * stats kept by the resolver and reused from one batch to the next.
  * 
  */
 public class CombatResolver {
+    private static final double CRITICAL_CHANCE = 0.15;
+    private static final double CRITICAL_MULTIPLIER = 1.5;
+    private static final byte NO_PROFILE = -1;
+
+    // Damage profiles indexed by UnitType ordinal
+    private static final UnitType[] TYPES = UnitType.values();
+    private static final int[] MULTIPLIER = new int[TYPES.length];
+    private static final int[] BONUS = new int[TYPES.length];
+    private static final int[] VARIANCE_MIN = new int[TYPES.length];
+    private static final int[] VARIANCE_SPREAD = new int[TYPES.length];
+    private static final int[] MINIMUM = new int[TYPES.length];
+
+    static {
+        for (UnitType type : TYPES) {
+            int t = type.ordinal();
+            MULTIPLIER[t] = type.getDamageMultiplier();
+            BONUS[t] = type.getDamageBonus();
+            VARIANCE_MIN[t] = type.getVarianceMin();
+            VARIANCE_SPREAD[t] = type.getVarianceSpread();
+            MINIMUM[t] = type.getMinimumDamage();
+        }
+    }
+
     private final Random random;
     private CombatObserver observer;
 
+    // Batch scratch, struct-of-arrays: one slot per engagement
+    private int[] attack = new int[0];
+    private int[] defense = new int[0];
+    private byte[] profile = new byte[0];
+    private int[] damage = new int[0];
+    private boolean[] engaged = new boolean[0];
+
     public CombatResolver() {
-        this.random = new Random();
+        this(new Random());
+    }
+
+    /**
+     * Creates a resolver drawing critical hits from the given generator.
+     * 
+     * @param random Random generator of the game
+     */
+    public CombatResolver(Random random) {
+        this.random = random;
         this.observer = null;
     }
 
@@ -40,11 +86,11 @@ public class CombatResolver {
         }
 
         // Check critical hit
-        boolean isCritical = random.nextDouble() < 0.15;
+        boolean isCritical = random.nextDouble() < CRITICAL_CHANCE;
         
         // Calculate damage
         int baseDamage = calculateDamage(attacker, defender);
-        int finalDamage = isCritical ? (int)(baseDamage * 1.5) : baseDamage;
+        int finalDamage = isCritical ? (int)(baseDamage * CRITICAL_MULTIPLIER) : baseDamage;
 
         // Apply damage
         defender.takeDamage(finalDamage);
@@ -58,6 +104,152 @@ public class CombatResolver {
         return !defender.isAlive();
     }
 
+    /**
+     * Resolves many engagements at once. Every engagement is checked and its
+     * damage computed from the state at the start of the batch, then all the
+     * damage is applied: a unit killed in the batch still strikes back, and
+     * the order of the pairs has no effect on the outcome. Random draws are
+     * made in pair order, the same as resolveCombat called pair by pair.
+     * Killed defenders stay in their army; removing them is up to the caller.
+     * 
+     * @param attackers Attacking units
+     * @param defenders Defending units, defenders[i] being attacked by attackers[i]
+     * @param count Number of pairs to resolve
+     * @param result Buffer receiving the outcome of every pair
+     * @return Number of defenders killed
+     */
+    public int resolveBatch(Unit[] attackers, Unit[] defenders, int count, CombatBatchResult result) {
+        if (count > attackers.length || count > defenders.length) {
+            throw new IllegalArgumentException("Fewer pairs than count: " + count);
+        }
+        ensureCapacity(count);
+        result.reset(count);
+
+        // Gather the stats of every pair
+        for (int i = 0; i < count; i++) {
+            Unit attacker = attackers[i];
+            Unit defender = defenders[i];
+            engaged[i] = canAttack(attacker, defender);
+            attack[i] = attacker.getAttack();
+            defense[i] = defender.getDefense();
+            UnitType type = attacker.getType();
+            profile[i] = type == null ? NO_PROFILE : (byte) type.ordinal();
+        }
+
+        // Compute the damage of every pair
+        for (int i = 0; i < count; i++) {
+            if (!engaged[i]) {
+                continue;
+            }
+            boolean isCritical = random.nextDouble() < CRITICAL_CHANCE;
+            int baseDamage = profile[i] == NO_PROFILE
+                ? calculateDamage(attackers[i], defenders[i]) : profiledDamage(i);
+            damage[i] = isCritical ? (int)(baseDamage * CRITICAL_MULTIPLIER) : baseDamage;
+            result.setHit(i, damage[i], isCritical);
+        }
+
+        // Apply it all; the hit that brings a defender to 0 gets the kill
+        for (int i = 0; i < count; i++) {
+            if (!engaged[i]) {
+                continue;
+            }
+            Unit defender = defenders[i];
+            boolean wasAlive = defender.isAlive();
+            defender.takeDamage(damage[i]);
+            if (wasAlive && !defender.isAlive()) {
+                result.setKilled(i);
+            }
+            if (observer != null) {
+                observer.onCombat(attackers[i], defender, damage[i], result.isCritical(i));
+            }
+        }
+        return result.getKills();
+    }
+
+    /**
+     * Resolves many engagements between units of one store, like
+     * resolveBatch(Unit[], Unit[], ...) but reading and damaging the
+     * columns of the store directly : no unit view is touched, unless an
+     * observer is set or a unit is outside of UnitType.
+     * 
+     * @param store Store holding the units
+     * @param attackerSlots Slots of the attacking units
+     * @param defenderSlots Slots of the defending units, defenderSlots[i] being attacked by attackerSlots[i]
+     * @param count Number of pairs to resolve
+     * @param result Buffer receiving the outcome of every pair
+     * @return Number of defenders killed
+     */
+    public int resolveBatch(UnitStore store, int[] attackerSlots, int[] defenderSlots, int count,
+                            CombatBatchResult result) {
+        if (count > attackerSlots.length || count > defenderSlots.length) {
+            throw new IllegalArgumentException("Fewer pairs than count: " + count);
+        }
+        ensureCapacity(count);
+        result.reset(count);
+
+        // Gather the stats of every pair
+        for (int i = 0; i < count; i++) {
+            int a = attackerSlots[i];
+            int d = defenderSlots[i];
+            engaged[i] = canAttack(store, a, d);
+            attack[i] = store.getAttack(a);
+            defense[i] = store.getDefense(d);
+            UnitType type = store.getType(a);
+            profile[i] = type == null ? NO_PROFILE : (byte) type.ordinal();
+        }
+
+        // Compute the damage of every pair
+        for (int i = 0; i < count; i++) {
+            if (!engaged[i]) {
+                continue;
+            }
+            boolean isCritical = random.nextDouble() < CRITICAL_CHANCE;
+            int baseDamage = profile[i] == NO_PROFILE
+                ? calculateDamage(store.view(attackerSlots[i]), store.view(defenderSlots[i]))
+                : profiledDamage(i);
+            damage[i] = isCritical ? (int)(baseDamage * CRITICAL_MULTIPLIER) : baseDamage;
+            result.setHit(i, damage[i], isCritical);
+        }
+
+        // Apply it all; the hit that brings a defender to 0 gets the kill
+        for (int i = 0; i < count; i++) {
+            if (!engaged[i]) {
+                continue;
+            }
+            int d = defenderSlots[i];
+            boolean wasAlive = store.getHealth(d) > 0;
+            store.damage(d, damage[i]);
+            if (wasAlive && store.getHealth(d) == 0) {
+                result.setKilled(i);
+            }
+            if (observer != null) {
+                observer.onCombat(store.view(attackerSlots[i]), store.view(d), damage[i], result.isCritical(i));
+            }
+        }
+        return result.getKills();
+    }
+
+    /**
+     * Damage of a pair from its gathered stats and the profile of its attacker.
+     */
+    private int profiledDamage(int i) {
+        int t = profile[i];
+        int variance = random.nextInt(VARIANCE_SPREAD[t]) + VARIANCE_MIN[t];
+        return Math.max(MINIMUM[t], Math.max(1, attack[i] - defense[i]) * MULTIPLIER[t] + BONUS[t] + variance);
+    }
+
+    private void ensureCapacity(int count) {
+        if (attack.length >= count) {
+            return;
+        }
+        int capacity = Math.max(count, attack.length * 2);
+        attack = Arrays.copyOf(attack, capacity);
+        defense = Arrays.copyOf(defense, capacity);
+        profile = Arrays.copyOf(profile, capacity);
+        damage = Arrays.copyOf(damage, capacity);
+        engaged = Arrays.copyOf(engaged, capacity);
+    }
+
     /**
      * Checks if attacker can target defender.
      * 
@@ -74,8 +266,44 @@ public class CombatResolver {
             return false; // Can't attack own units
         }
 
-        // Check range (simplified - no actual position checking here)
-        return attacker.getRange() >= 1;
+        return attacker.getRange() >= 1 && isInRange(attacker, defender);
+    }
+
+    /**
+     * Same checks as canAttack(Unit, Unit), on the columns of a store.
+     */
+    private static boolean canAttack(UnitStore store, int attacker, int defender) {
+        if (store.getHealth(attacker) <= 0 || store.getHealth(defender) <= 0
+                || store.getOwnerId(attacker) == store.getOwnerId(defender)) {
+            return false;
+        }
+        int range = store.getRange(attacker);
+        int x = store.getX(attacker);
+        int targetX = store.getX(defender);
+        if (range < 1) {
+            return false;
+        }
+        if (x == UnitStore.NO_COORDINATE || targetX == UnitStore.NO_COORDINATE) {
+            return true;
+        }
+        return Math.abs(targetX - x) + Math.abs(store.getY(defender) - store.getY(attacker)) <= range;
+    }
+
+    /**
+     * Checks if the defender is within the attacker's range (Manhattan distance).
+     * Units that are not placed on the map are considered in range.
+     * 
+     * @param attacker The attacking unit
+     * @param defender The defending unit
+     * @return true if close enough to attack
+     */
+    public boolean isInRange(Unit attacker, Unit defender) {
+        Position from = attacker.getPosition();
+        Position to = defender.getPosition();
+        if (from == null || to == null) {
+            return true;
+        }
+        return GameUtils.calculateDistance(from, to) <= attacker.getRange();
     }
 
     /**
@@ -86,7 +314,7 @@ public class CombatResolver {
      * @return Damage amount
      */
     private int calculateDamage(Unit attacker, Unit defender) {
-        return attacker.calculateDamage(defender);
+        return attacker.calculateDamage(defender, random);
     }
 
 }
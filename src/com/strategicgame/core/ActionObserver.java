@@ -0,0 +1,65 @@
+package com.strategicgame.core;
+
+import com.strategicgame.buildings.Building;
+import com.strategicgame.map.Position;
+import com.strategicgame.player.Player;
+import com.strategicgame.units.Unit;
+
+/**
+ * ActionObserver interface - implements Observer Design Pattern.
+ * Notified by GameActions of every action successfully applied,
+ * e.g. to record a game in a replay journal.
+ * 
+ */
+public interface ActionObserver {
+
+    /**
+     * Called after a unit was trained and placed.
+     * 
+     * @param player The training player
+     * @param unit The new unit
+     */
+    void onUnitTrained(Player player, Unit unit);
+
+    /**
+     * Called after the construction of a building started.
+     * 
+     * @param player The building player
+     * @param building The new building
+     */
+    void onBuildingStarted(Player player, Building building);
+
+    /**
+     * Called after a unit moved.
+     * 
+     * @param player The player owning the unit
+     * @param unit The unit
+     * @param target Its new position
+     */
+    void onUnitMoved(Player player, Unit unit, Position target);
+
+    /**
+     * Called when a unit attack is about to be resolved.
+     * 
+     * @param player The attacking player
+     * @param attacker The attacking unit
+     * @param defender The targeted unit
+     */
+    void onUnitAttacked(Player player, Unit attacker, Unit defender);
+
+    /**
+     * Called when an attack on a building is about to be applied.
+     * 
+     * @param player The attacking player
+     * @param attacker The attacking unit
+     * @param target The targeted building
+     */
+    void onBuildingAttacked(Player player, Unit attacker, Building target);
+
+    /**
+     * Called after a player ended its turn and the game moved to the next player.
+     * 
+     * @param player The player who ended the turn
+     */
+    void onTurnEnded(Player player);
+}
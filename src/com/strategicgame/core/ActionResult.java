@@ -0,0 +1,44 @@
+package com.strategicgame.core;
+
+/**
+ * Enum of the outcomes of a player action (train, build, move, attack).
+ * Each outcome carries the message shown to the player.
+ *
+ */
+public enum ActionResult {
+    SUCCESS("Done."),
+    TARGET_DESTROYED("The target was destroyed!"),
+    INVALID("Invalid action!"),
+    NOT_YOUR_TURN("It is not your turn!"),
+    NOT_ENOUGH_RESOURCES("Not enough resources!"),
+    NO_TRAINING_CAMP("You need a TrainingCamp to train units!"),
+    OUT_OF_RANGE("Target is out of range!"),
+    OUT_OF_BOUNDS("Target position is out of bounds."),
+    NOT_PASSABLE("You cannot move to this tile (not passable)."),
+    OCCUPIED("This tile is already occupied."),
+    NOT_ON_MAP("Could not find the current position of this unit on the map.");
+
+    private final String message;
+
+    ActionResult(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Gets the message describing this outcome.
+     * 
+     * @return Message for the player
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Checks if the action was applied.
+     * 
+     * @return true for SUCCESS and TARGET_DESTROYED
+     */
+    public boolean isSuccess() {
+        return this == SUCCESS || this == TARGET_DESTROYED;
+    }
+}
@@ -1,66 +1,393 @@
 package com.strategicgame.core;
 
+import com.strategicgame.buildings.Building;
+import com.strategicgame.buildings.BuildingFactory;
+import com.strategicgame.buildings.BuildingType;
+import com.strategicgame.buildings.TrainingCamp;
 import com.strategicgame.player.Player;
+import com.strategicgame.resources.CostTable;
+import com.strategicgame.resources.ResourceManager;
 import com.strategicgame.units.Unit;
-import com.strategicgame.combat.CombatResolver;
+import com.strategicgame.units.UnitType;
+import com.strategicgame.util.GameLog;
+import com.strategicgame.map.DistanceMetric;
+import com.strategicgame.map.GameMap;
+import com.strategicgame.map.InfluenceMap;
+import com.strategicgame.map.MapEntity;
+import com.strategicgame.map.NeighborIterator;
+import com.strategicgame.map.Position;
+import com.strategicgame.map.SpatialIndex;
+import com.strategicgame.map.TileGrid;
+import com.strategicgame.map.VisibilityMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 /**
- * Very simple AI controller plays as Player 2 (mode solo contre la machine).
+ * Simple AI controller plays as Player 2 (mode solo contre la machine).
  * The AI:
- *  - finds the human player,
- *  - if both have units, attacks a random human unit,
- *  - otherwise just ends its turn (can be developped later)
+ *  - finds the first enemy still in the game,
+ *  - builds a TrainingCamp, then trains a unit of its training mix whenever gold allows,
+ *  - attacks the weakest enemy unit within range of one of its units,
+ *  - otherwise moves its unit closest to the enemy towards it,
+ *  - units not placed on the map fall back to attacking a random unit,
+ *  - attacks enemy buildings once the enemy has no units left.
+ * With the influence map enabled, it prefers the targets standing where its
+ * own influence outweighs the enemy's (see InfluenceMap).
+ * With the fog of war enabled, it only attacks the enemy units it sees, and
+ * advances towards the nearest one it sees, or else towards the nearest
+ * enemy, as a scout would (see VisibilityMap).
+ * Ending the turn is left to the caller (GameManager.nextTurn).
  */
 public class AiController {
+    /** Nearest enemies compared by influence when choosing where to advance. */
+    private static final int INFLUENCE_TARGET_CHOICES = 3;
 
-    private final Random random = new Random();
+    private final Random random;
+    private final UnitType[] trainingMix;
+    private final List<MapEntity> candidates = new ArrayList<>();
+    private GameActions actions;
+    private boolean useInfluence;
+    private boolean useVisibility;
+
+    public AiController() {
+        this(new Random());
+    }
+
+    /**
+     * Creates an AI training every unit type.
+     * @param random Random generator of the game
+     */
+    public AiController(Random random) {
+        this(random, UnitType.values());
+    }
+
+    /**
+     * Creates an AI training only the given unit types, picked at random.
+     * A type listed twice is trained twice as often.
+     * @param random Random generator of the game
+     * @param trainingMix Unit types to train
+     */
+    public AiController(Random random, UnitType... trainingMix) {
+        if (trainingMix.length == 0) {
+            throw new IllegalArgumentException("Training mix must not be empty");
+        }
+        this.random = random;
+        this.trainingMix = trainingMix.clone();
+    }
+
+    /**
+     * Sets whether targets are chosen with the influence map of the game.
+     * Off by default, so that seeded games play as before.
+     * @param useInfluence true to weigh targets by influence
+     */
+    public void setUseInfluence(boolean useInfluence) {
+        this.useInfluence = useInfluence;
+    }
+
+    public boolean isUsingInfluence() {
+        return useInfluence;
+    }
+
+    /**
+     * Sets whether the AI only attacks the enemy units it sees (fog of war).
+     * Off by default, so that seeded games play as before.
+     * @param useVisibility true to play under the fog of war
+     */
+    public void setUseVisibility(boolean useVisibility) {
+        this.useVisibility = useVisibility;
+    }
+
+    public boolean isUsingVisibility() {
+        return useVisibility;
+    }
 
     public void playTurn(Player aiPlayer, GameManager gameManager) {
-        System.out.println("\n=== AI TURN (" + aiPlayer.getName() + ") ===");
+        if (GameLog.isLogging()) {
+            GameLog.info("\n=== AI TURN (" + aiPlayer.getName() + ") ===");
+        }
+        actions = gameManager.getActions();
 
-        // Find human player 
+        // Find the first enemy still in the game
         Player human = gameManager.getPlayers()
                 .stream()
-                .filter(p -> p != aiPlayer)
+                .filter(p -> p != aiPlayer && (p.hasUnits() || p.hasBuildings()))
                 .findFirst()
                 .orElse(null);
 
         if (human == null) {
-            System.out.println("AI: no human player found.");
-            aiPlayer.endTurn();
+            GameLog.info("AI: no human player found.");
             return;
         }
 
+        manageEconomy(aiPlayer);
+
         List<Unit> aiUnits = aiPlayer.getUnits();
         List<Unit> humanUnits = human.getUnits();
 
-        // If no combat possible, just end turn
-        if (aiUnits.isEmpty() || humanUnits.isEmpty()) {
-            System.out.println("AI: no combat possible, ending turn.");
-            aiPlayer.endTurn();
+        if (aiUnits.isEmpty()) {
+            GameLog.info("AI: no combat possible, ending turn.");
+            return;
+        }
+        if (humanUnits.isEmpty()) {
+            attackBuilding(aiPlayer, aiUnits, human);
+            return;
+        }
+
+        GameMap map = gameManager.getGameMap();
+        InfluenceMap influence = useInfluence ? map.getInfluenceMap() : null;
+        VisibilityMap visibility = useVisibility ? map.getVisibilityMap() : null;
+        if (!attackInRange(aiPlayer, aiUnits, human, map, influence, visibility)
+                && !advanceTowardsEnemy(aiPlayer, aiUnits, human, map, influence, visibility)) {
+            attackRandomUnplaced(aiUnits, humanUnits, human);
+        }
+    }
+
+    /**
+     * Builds a TrainingCamp if the AI has none, then trains a random unit
+     * once the camp is constructed and gold allows.
+     */
+    private void manageEconomy(Player aiPlayer) {
+        TrainingCamp camp = null;
+        for (Building building : aiPlayer.getBuildings()) {
+            if (building instanceof TrainingCamp) {
+                camp = (TrainingCamp) building;
+                break;
+            }
+        }
+        ResourceManager resources = aiPlayer.getResourceManager();
+        if (camp == null) {
+            if (resources.canAfford(CostTable.of(BuildingType.TRAINING_CAMP))
+                    && actions.build(aiPlayer, BuildingFactory.createBuilding(BuildingType.TRAINING_CAMP)).isSuccess()) {
+                GameLog.info("AI: started construction of a TrainingCamp");
+            }
+            return;
+        }
+        if (!camp.isConstructed()) {
             return;
         }
+        UnitType type = trainingMix[random.nextInt(trainingMix.length)];
+        if (resources.canAfford(CostTable.of(type))
+                && actions.trainUnit(aiPlayer, type).isSuccess() && GameLog.isLogging()) {
+            GameLog.info("AI: trained a " + type.getDisplayName());
+        }
+    }
 
+    /**
+     * Attacks the first enemy building with the strongest AI unit.
+     */
+    private void attackBuilding(Player aiPlayer, List<Unit> aiUnits, Player human) {
+        if (!human.hasBuildings()) {
+            return;
+        }
+        Unit attacker = aiUnits.get(0);
+        for (Unit unit : aiUnits) {
+            if (unit.getAttack() > attacker.getAttack()) {
+                attacker = unit;
+            }
+        }
+        Building target = human.getBuildings().get(0);
+        ActionResult result = actions.attackBuilding(aiPlayer, attacker, target);
+        if (result.isSuccess() && GameLog.isLogging()) {
+            GameLog.info("AI: " + attacker.getName() + " attacked your building " + target.getName()
+                    + " (HP now: " + target.getCurrentHealth() + ")");
+        }
+        if (result == ActionResult.TARGET_DESTROYED) {
+            GameLog.info("AI: your building was destroyed!");
+        }
+    }
+
+    /**
+     * Attacks the weakest enemy unit standing within range of an AI unit;
+     * with an influence map, the one where the AI dominates most among the weakest;
+     * with a visibility map, only among the units the AI sees.
+     * @return true if an attack was made
+     */
+    private boolean attackInRange(Player aiPlayer, List<Unit> aiUnits, Player human, GameMap map,
+                                  InfluenceMap influence, VisibilityMap visibility) {
+        SpatialIndex index = map.getSpatialIndex();
+        int aiId = aiPlayer.getPlayerId();
+        Unit attacker = null;
+        Unit defender = null;
+        float defenderBalance = 0f;
+        for (Unit unit : aiUnits) {
+            Position pos = unit.getPosition();
+            if (pos == null) {
+                continue;
+            }
+            candidates.clear();
+            index.findWithinRadius(pos.getX(), pos.getY(), unit.getRange(), DistanceMetric.MANHATTAN,
+                e -> e instanceof Unit && ((Unit) e).getOwner() == human
+                    && (visibility == null || visibility.canSee(aiId, e)), candidates);
+            for (MapEntity entity : candidates) {
+                Unit target = (Unit) entity;
+                float balance = influence == null ? 0f : balanceAt(influence, aiPlayer, target, map);
+                if (defender == null || target.getHealth() < defender.getHealth()
+                        || (target.getHealth() == defender.getHealth() && balance > defenderBalance)) {
+                    attacker = unit;
+                    defender = target;
+                    defenderBalance = balance;
+                }
+            }
+        }
+        if (attacker == null) {
+            return false;
+        }
+        attack(attacker, defender, human);
+        return true;
+    }
+
+    /**
+     * Moves an AI unit along a path towards its nearest enemy, as far as its
+     * movement speed allows. Units are tried from the closest to the enemy
+     * to the farthest, until one of them can move.
+     * With an influence map, each unit heads for the enemy, among its few
+     * nearest, standing where the AI dominates most.
+     * With a visibility map, the enemies seen come first.
+     * @return true if a unit moved
+     */
+    private boolean advanceTowardsEnemy(Player aiPlayer, List<Unit> aiUnits, Player human, GameMap map,
+                                        InfluenceMap influence, VisibilityMap visibility) {
+        int choices = influence == null ? 1 : INFLUENCE_TARGET_CHOICES;
+        int aiId = aiPlayer.getPlayerId();
+        List<Unit> movers = new ArrayList<>();
+        Map<Unit, Unit> targets = new HashMap<>();
+        for (Unit unit : aiUnits) {
+            Position pos = unit.getPosition();
+            if (pos == null) {
+                continue;
+            }
+            candidates.clear();
+            map.getSpatialIndex().findNearest(pos.getX(), pos.getY(), choices, DistanceMetric.MANHATTAN,
+                e -> e instanceof Unit && ((Unit) e).getOwner() == human
+                    && (visibility == null || visibility.canSee(aiId, e)), candidates);
+            if (candidates.isEmpty() && visibility != null) {
+                // Nobody in sight: scout towards the nearest enemy
+                map.getSpatialIndex().findNearest(pos.getX(), pos.getY(), 1, DistanceMetric.MANHATTAN,
+                    e -> e instanceof Unit && ((Unit) e).getOwner() == human, candidates);
+            }
+            if (candidates.isEmpty()) {
+                continue;
+            }
+            Unit target = (Unit) candidates.get(0);
+            if (influence != null) {
+                float best = balanceAt(influence, aiPlayer, target, map);
+                for (int i = 1; i < candidates.size(); i++) {
+                    Unit candidate = (Unit) candidates.get(i);
+                    float balance = balanceAt(influence, aiPlayer, candidate, map);
+                    if (balance > best) {
+                        target = candidate;
+                        best = balance;
+                    }
+                }
+            }
+            movers.add(unit);
+            targets.put(unit, target);
+        }
+        movers.sort(Comparator.comparingInt(
+            unit -> unit.getPosition().getManhattanDistance(targets.get(unit).getPosition())));
+
+        for (Unit mover : movers) {
+            if (moveTowards(mover, targets.get(mover), map)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static float balanceAt(InfluenceMap influence, Player aiPlayer, Unit target, GameMap map) {
+        Position pos = target.getPosition();
+        return influence.getBalance(aiPlayer.getPlayerId(), map.getGrid().indexOf(pos.getX(), pos.getY()));
+    }
+
+    /**
+     * Moves a unit towards its target, as far as its movement speed allows.
+     * @return true if the unit moved
+     */
+    private boolean moveTowards(Unit mover, Unit target, GameMap map) {
+        Position from = mover.getPosition();
+        Position destination = stepTowards(mover, target, map);
+        if (destination == null || !actions.moveUnit(mover.getOwner(), mover, destination).isSuccess()) {
+            return false;
+        }
+        if (GameLog.isLogging()) {
+            GameLog.info("AI: " + mover.getName() + " moved from " + from + " to " + destination);
+        }
+        return true;
+    }
+
+    /**
+     * Finds where a unit can go this turn on the path to the free tile,
+     * within its range of the target, that is the closest to it.
+     * 
+     * @param mover The unit, on the map
+     * @param target The target, on the map
+     * @param map The map
+     * @return The destination, or null if the unit cannot get closer
+     */
+    static Position stepTowards(Unit mover, Unit target, GameMap map) {
+        Position from = mover.getPosition();
+        Position center = target.getPosition();
+        TileGrid grid = map.getGrid();
+        NeighborIterator neighbors = new NeighborIterator(grid);
+        neighbors.reset(center.getX(), center.getY());
+        int goal = -1;
+        int goalDistance = Integer.MAX_VALUE;
+        while (neighbors.next()) {
+            int x = neighbors.x();
+            int y = neighbors.y();
+            int distance = Math.abs(from.getX() - x) + Math.abs(from.getY() - y);
+            if (Math.abs(center.getX() - x) + Math.abs(center.getY() - y) <= mover.getRange()
+                    && grid.isPassable(neighbors.index()) && distance < goalDistance) {
+                goal = neighbors.index();
+                goalDistance = distance;
+            }
+        }
+        if (goal < 0) {
+            return null;
+        }
+        List<Position> path = map.findPath(from, grid.positionOf(goal));
+        if (path.size() < 2) {
+            return null;
+        }
+        return path.get(Math.min(mover.getMovementSpeed(), path.size() - 1));
+    }
+
+    /**
+     * Former behaviour, kept for units that are not on the map :
+     * a random attacker hits a random defender.
+     */
+    private void attackRandomUnplaced(List<Unit> aiUnits, List<Unit> humanUnits, Player human) {
         // Choose random attacker from AI units
         Unit attacker = aiUnits.get(random.nextInt(aiUnits.size()));
 
         // Choose random defender from human units
         Unit defender = humanUnits.get(random.nextInt(humanUnits.size()));
 
-        CombatResolver resolver = new CombatResolver();
-        boolean defenderKilled = resolver.resolveCombat(attacker, defender);
+        if (attacker.getPosition() != null && defender.getPosition() != null) {
+            GameLog.info("AI: no target in range.");
+            return;
+        }
+        attack(attacker, defender, human);
+    }
 
-        System.out.println("AI: " + attacker.getName()
-                + " attacked your unit " + defender.getName()
-                + " (HP now: " + defender.getHealth() + ")");
+    private void attack(Unit attacker, Unit defender, Player human) {
+        ActionResult result = actions.attackUnit(attacker.getOwner(), attacker, defender);
+        if (!result.isSuccess()) {
+            return;
+        }
 
-        if (defenderKilled) {
-            System.out.println("AI: your unit was defeated!");
-            human.removeUnit(defender);
+        if (GameLog.isLogging()) {
+            GameLog.info("AI: " + attacker.getName()
+                    + " attacked your unit " + defender.getName()
+                    + " (HP now: " + defender.getHealth() + ")");
         }
 
-        aiPlayer.endTurn();
+        if (result == ActionResult.TARGET_DESTROYED) {
+            GameLog.info("AI: your unit was defeated!");
+        }
     }
 }
@@ -0,0 +1,222 @@
+package com.strategicgame.core;
+
+import com.strategicgame.buildings.Building;
+import com.strategicgame.pathfinding.IntList;
+import com.strategicgame.player.Player;
+import com.strategicgame.resources.ResourceManager;
+import com.strategicgame.resources.ResourceType;
+import com.strategicgame.units.UnitStore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * EndTurnPipeline runs the end of turn of players (see Player.endTurn) on a
+ * ForkJoinPool. The buildings and the units of every player are cut into
+ * batches scanned in parallel: a batch sums the production of its buildings
+ * and resets the movement of its units, without touching shared state.
+ * A merge step then applies the sums, runs what remains serial (other
+ * building effects, construction, starvation) in building and player order,
+ * so the result is the same as calling Player.endTurn player by player.
+ *
+ */
+public final class EndTurnPipeline {
+    /** Buildings or unit slots handled by one task. */
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    private static final ResourceType[] RESOURCE_TYPES = ResourceType.values();
+
+    private final ForkJoinPool pool;
+    private final int batchSize;
+
+    /**
+     * Creates a pipeline running on the common pool.
+     */
+    public EndTurnPipeline() {
+        this(ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param pool Pool running the batches
+     * @param batchSize Buildings or unit slots handled by one task
+     */
+    public EndTurnPipeline(ForkJoinPool pool, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Ends the turn of a player.
+     * @param player The player
+     */
+    public void endTurn(Player player) {
+        endTurns(Collections.singletonList(player));
+    }
+
+    /**
+     * Ends the turn of several players, as if Player.endTurn was called on
+     * each of them in list order. Players sharing a unit store must have
+     * different ids.
+     *
+     * @param players The players
+     */
+    public void endTurns(List<Player> players) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        long work = 0;
+        BuildingBatch[][] batches = new BuildingBatch[players.size()][];
+        // getBuildings copies the list : one copy per player, shared by its batches and its merge
+        List<List<Building>> buildings = new ArrayList<>(players.size());
+        for (int p = 0; p < players.size(); p++) {
+            Player player = players.get(p);
+            buildings.add(player.getBuildings());
+            int buildingCount = buildings.get(p).size();
+            batches[p] = new BuildingBatch[Math.max(1, (buildingCount + batchSize - 1) / batchSize)];
+            for (int b = 0; b < batches[p].length; b++) {
+                int from = b * batchSize;
+                batches[p][b] = new BuildingBatch(player, buildings.get(p), from,
+                    Math.min(buildingCount, from + batchSize));
+                tasks.add(batches[p][b]);
+            }
+            work += buildingCount;
+        }
+
+        // Players of a game share their store: sweep it once for all of them
+        Map<UnitStore, IntList> owners = new IdentityHashMap<>();
+        for (Player player : players) {
+            owners.computeIfAbsent(player.getUnitStore(), store -> new IntList()).add(player.getPlayerId());
+        }
+        for (Map.Entry<UnitStore, IntList> entry : owners.entrySet()) {
+            UnitStore store = entry.getKey();
+            int[] ownerIds = entry.getValue().toArray();
+            work += store.size();
+            for (int from = 0; from < store.size(); from += batchSize) {
+                tasks.add(new UnitBatch(store, ownerIds, from, Math.min(store.size(), from + batchSize)));
+            }
+        }
+
+        if (work <= batchSize) {
+            for (ForkJoinTask<?> task : tasks) {
+                task.invoke(); // too little to share, stay on this thread
+            }
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        }
+
+        for (int p = 0; p < players.size(); p++) {
+            merge(players.get(p), buildings.get(p), batches[p]);
+        }
+    }
+
+    /**
+     * Applies the batches of a player, in building order.
+     */
+    private static void merge(Player player, List<Building> buildings, BuildingBatch[] batches) {
+        ResourceManager resources = player.getResourceManager();
+        long[] produced = new long[RESOURCE_TYPES.length];
+        for (BuildingBatch batch : batches) {
+            for (int r = 0; r < produced.length; r++) {
+                produced[r] += batch.produced[r];
+            }
+        }
+        for (int r = 0; r < produced.length; r++) {
+            if (produced[r] != 0) {
+                // Saturated rather than truncated if the sum leaves the int range
+                int amount = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, produced[r]));
+                resources.addResource(RESOURCE_TYPES[r], amount);
+            }
+        }
+
+        for (BuildingBatch batch : batches) {
+            for (int i = 0; i < batch.otherEffects.size(); i++) {
+                buildings.get(batch.otherEffects.get(i)).produce();
+            }
+        }
+        for (BuildingBatch batch : batches) {
+            for (int i = 0; i < batch.underConstruction.size(); i++) {
+                buildings.get(batch.underConstruction.get(i)).updateConstruction();
+            }
+        }
+        player.applyStarvation();
+    }
+
+    /**
+     * Sums the production of a range of buildings, and lists the buildings
+     * left to the merge step.
+     */
+    private static final class BuildingBatch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Player player;
+        private final List<Building> buildings;
+        private final int from;
+        private final int to;
+        final long[] produced = new long[RESOURCE_TYPES.length];
+        final IntList otherEffects = new IntList();
+        final IntList underConstruction = new IntList();
+
+        BuildingBatch(Player player, List<Building> buildings, int from, int to) {
+            this.player = player;
+            this.buildings = buildings;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = from; i < to; i++) {
+                Building building = buildings.get(i);
+                if (!building.isConstructed()) {
+                    underConstruction.add(i);
+                    continue;
+                }
+                ResourceType resource = building.getProducedResource();
+                if (resource != null && building.getOwner() == player) {
+                    produced[resource.ordinal()] += building.getProductionRate();
+                } else {
+                    otherEffects.add(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resets the movement of the units of some players in a range of slots.
+     */
+    private static final class UnitBatch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final UnitStore store;
+        private final int[] ownerIds;
+        private final int from;
+        private final int to;
+
+        UnitBatch(UnitStore store, int[] ownerIds, int from, int to) {
+            this.store = store;
+            this.ownerIds = ownerIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            for (int ownerId : ownerIds) {
+                store.resetTurn(ownerId, from, to);
+            }
+        }
+    }
+}
@@ -9,8 +9,7 @@ public abstract class Game {
     protected GameManager gameManager;
     protected GameState currentState;
     protected volatile boolean isRunning;
-    protected long fps = 60;
-    protected long frameTime = 1000 / fps;
+    protected final TickScheduler scheduler = new TickScheduler();
 
     /**
      * Initializes the game with necessary components.
@@ -20,7 +19,7 @@ public abstract class Game {
     /**
      * Updates game logic based on delta time.
      * 
-     * @param delta Time elapsed since last update
+     * @param delta Time elapsed since last update (the fixed tick period, in milliseconds)
      */
     public abstract void update(double delta);
 
@@ -30,24 +29,12 @@ public abstract class Game {
     public abstract void render();
 
     /**
-     * Main game loop - continuously updates and renders until game stops.
+     * Main game loop - updates at a fixed timestep and renders until game stops.
+     * The thread sleeps between frames (see TickScheduler).
      */
     public void run() {
         initialize();
-        long lastTime = System.currentTimeMillis();
-
-        while (isRunning) {
-            long currentTime = System.currentTimeMillis();
-            long delta = currentTime - lastTime;
-            lastTime = currentTime;
-
-            if (delta >= frameTime) {
-                update(delta);
-                render();
-                delta = 0;
-            }
-        }
-
+        scheduler.run(this);
         cleanup();
     }
 
@@ -65,6 +52,19 @@ public abstract class Game {
         // Override in subclasses for cleanup logic
     }
 
+    /**
+     * Checks if the game loop is running.
+     * 
+     * @return true until the game stops
+     */
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    public TickScheduler getScheduler() {
+        return scheduler;
+    }
+
     public GameManager getGameManager() {
         return gameManager;
     }
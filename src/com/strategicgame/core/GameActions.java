@@ -0,0 +1,267 @@
+package com.strategicgame.core;
+
+import com.strategicgame.buildings.Building;
+import com.strategicgame.buildings.TrainingCamp;
+import com.strategicgame.combat.CombatResolver;
+import com.strategicgame.map.GameMap;
+import com.strategicgame.map.Position;
+import com.strategicgame.map.Tile;
+import com.strategicgame.player.Player;
+import com.strategicgame.resources.CostTable;
+import com.strategicgame.resources.ResourceCost;
+import com.strategicgame.resources.ResourceType;
+import com.strategicgame.units.Unit;
+import com.strategicgame.units.UnitFactory;
+import com.strategicgame.units.UnitType;
+
+/**
+ * GameActions applies the actions of a player on a game : train, build,
+ * move, attack and end turn. It holds the rules only, without any
+ * input or output, so the console UI, the AI and headless simulations
+ * all go through the same code.
+ * 
+ */
+public class GameActions {
+    private final GameManager gameManager;
+    private final CombatResolver combatResolver;
+    private ActionObserver observer;
+
+    public GameActions(GameManager gameManager) {
+        this.gameManager = gameManager;
+        this.combatResolver = new CombatResolver(gameManager.getRandom());
+    }
+
+    /**
+     * Sets the observer notified of every action applied.
+     * 
+     * @param observer The observer, or null
+     */
+    public void setObserver(ActionObserver observer) {
+        this.observer = observer;
+    }
+
+    /**
+     * Gets the game these actions apply to.
+     * 
+     * @return The game manager
+     */
+    public GameManager getGameManager() {
+        return gameManager;
+    }
+
+    /**
+     * Trains a unit : needs a constructed TrainingCamp and gold.
+     * The unit is placed on a free tile next to the player's army if possible.
+     * 
+     * @param player The player training
+     * @param unit The new unit
+     * @return Outcome of the action
+     */
+    public ActionResult trainUnit(Player player, Unit unit) {
+        ResourceCost cost = unit.getType() != null
+            ? CostTable.of(unit.getType()) : ResourceCost.of(ResourceType.GOLD, unit.getCost());
+        ActionResult result = payTraining(player, cost);
+        if (!result.isSuccess()) {
+            return result;
+        }
+        return enlist(player, unit);
+    }
+
+    /**
+     * Trains a unit of a type, created in the unit store of the player
+     * once the training is paid (see trainUnit(Player, Unit)).
+     * 
+     * @param player The player training
+     * @param type Type of the new unit
+     * @return Outcome of the action
+     */
+    public ActionResult trainUnit(Player player, UnitType type) {
+        ActionResult result = payTraining(player, CostTable.of(type));
+        if (!result.isSuccess()) {
+            return result;
+        }
+        return enlist(player, UnitFactory.createUnit(type, player.getUnitStore()));
+    }
+
+    /**
+     * Checks that the player has a constructed TrainingCamp, then spends the cost.
+     */
+    private ActionResult payTraining(Player player, ResourceCost cost) {
+        boolean hasTrainingCamp = false;
+        for (Building building : player.getBuildings()) {
+            if (building instanceof TrainingCamp && building.isConstructed()) {
+                hasTrainingCamp = true;
+                break;
+            }
+        }
+        if (!hasTrainingCamp) {
+            return ActionResult.NO_TRAINING_CAMP;
+        }
+        if (!player.getResourceManager().spend(cost)) {
+            return ActionResult.NOT_ENOUGH_RESOURCES;
+        }
+        return ActionResult.SUCCESS;
+    }
+
+    private ActionResult enlist(Player player, Unit unit) {
+        player.addUnit(unit);
+        placeNearArmy(player, unit);
+        if (observer != null) {
+            observer.onUnitTrained(player, unit);
+        }
+        return ActionResult.SUCCESS;
+    }
+
+    /**
+     * Starts the construction of a building.
+     * 
+     * @param player The player building
+     * @param building The new building
+     * @return Outcome of the action
+     */
+    public ActionResult build(Player player, Building building) {
+        if (!player.getResourceManager().spend(building.getResourceCost())) {
+            return ActionResult.NOT_ENOUGH_RESOURCES;
+        }
+        player.addBuilding(building);
+        if (observer != null) {
+            observer.onBuildingStarted(player, building);
+        }
+        return ActionResult.SUCCESS;
+    }
+
+    /**
+     * Moves a unit to a free passable tile.
+     * 
+     * @param player The player owning the unit
+     * @param unit The unit to move
+     * @param target The destination
+     * @return Outcome of the action
+     */
+    public ActionResult moveUnit(Player player, Unit unit, Position target) {
+        GameMap map = gameManager.getGameMap();
+        if (unit.getOwner() != player) {
+            return ActionResult.INVALID;
+        }
+        if (!map.isWithinBounds(target)) {
+            return ActionResult.OUT_OF_BOUNDS;
+        }
+        Tile targetTile = map.getTile(target);
+        if (!targetTile.isEmpty()) {
+            return ActionResult.OCCUPIED;
+        }
+        if (!targetTile.isPassable()) {
+            return ActionResult.NOT_PASSABLE;
+        }
+        if (map.findUnitPosition(unit) == null) {
+            return ActionResult.NOT_ON_MAP;
+        }
+        targetTile.setOccupant(unit);   // leaves the former tile
+        unit.moveTurn();
+        if (observer != null) {
+            observer.onUnitMoved(player, unit, target);
+        }
+        return ActionResult.SUCCESS;
+    }
+
+    /**
+     * Attacks an enemy unit; a killed unit is removed from its army.
+     * 
+     * @param player The attacking player
+     * @param attacker The attacking unit
+     * @param defender The targeted unit
+     * @return SUCCESS, TARGET_DESTROYED or the reason of the failure
+     */
+    public ActionResult attackUnit(Player player, Unit attacker, Unit defender) {
+        if (attacker.getOwner() != player || defender.getOwner() == player
+                || !attacker.isAlive() || !defender.isAlive()) {
+            return ActionResult.INVALID;
+        }
+        if (!combatResolver.isInRange(attacker, defender)) {
+            return ActionResult.OUT_OF_RANGE;
+        }
+        if (observer != null) {
+            observer.onUnitAttacked(player, attacker, defender);   // before the defender may leave its army
+        }
+        boolean defenderKilled = combatResolver.resolveCombat(attacker, defender);
+        if (defenderKilled) {
+            defender.getOwner().removeUnit(defender);
+            return ActionResult.TARGET_DESTROYED;
+        }
+        return ActionResult.SUCCESS;
+    }
+
+    /**
+     * Attacks an enemy building with the attack power of a unit;
+     * a destroyed building is removed from its owner.
+     * 
+     * @param player The attacking player
+     * @param attacker The attacking unit
+     * @param target The targeted building
+     * @return SUCCESS, TARGET_DESTROYED or INVALID
+     */
+    public ActionResult attackBuilding(Player player, Unit attacker, Building target) {
+        if (attacker.getOwner() != player || target.getOwner() == player || target.isDestroyed()) {
+            return ActionResult.INVALID;
+        }
+        if (observer != null) {
+            observer.onBuildingAttacked(player, attacker, target);
+        }
+        target.takeDamage(attacker.getAttack());
+        if (target.isDestroyed()) {
+            target.getOwner().removeBuilding(target);
+            return ActionResult.TARGET_DESTROYED;
+        }
+        return ActionResult.SUCCESS;
+    }
+
+    /**
+     * Ends the turn of the current player.
+     * 
+     * @param player The player ending the turn
+     * @return SUCCESS, or NOT_YOUR_TURN
+     */
+    public ActionResult endTurn(Player player) {
+        if (gameManager.getCurrentPlayer() != player) {
+            return ActionResult.NOT_YOUR_TURN;
+        }
+        gameManager.nextTurn();
+        if (observer != null) {
+            observer.onTurnEnded(player);
+        }
+        return ActionResult.SUCCESS;
+    }
+
+    /**
+     * Places a unit on the free tile closest to the first placed unit of its player.
+     * The unit stays off the map if there is no room nearby.
+     */
+    private void placeNearArmy(Player player, Unit unit) {
+        GameMap map = gameManager.getGameMap();
+        Position anchor = null;
+        for (Unit other : player.getUnits()) {
+            if (other != unit && other.getPosition() != null) {
+                anchor = other.getPosition();
+                break;
+            }
+        }
+        if (anchor == null) {
+            return;
+        }
+        int maxRing = Math.max(map.getWidth(), map.getHeight());
+        for (int ring = 1; ring <= maxRing; ring++) {
+            for (int dy = -ring; dy <= ring; dy++) {
+                for (int dx = -ring; dx <= ring; dx++) {
+                    if (Math.max(Math.abs(dx), Math.abs(dy)) != ring) {
+                        continue;
+                    }
+                    Tile tile = map.getTile(anchor.getX() + dx, anchor.getY() + dy);
+                    if (tile != null && tile.isPassable()) {
+                        tile.setOccupant(unit);
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,12 +1,27 @@
 package com.strategicgame.core;
 
+import com.strategicgame.buildings.Building;
+import com.strategicgame.buildings.CommandCenter;
+import com.strategicgame.player.Faction;
 import com.strategicgame.player.Player;
 import com.strategicgame.map.GameMap;
+import com.strategicgame.map.MapEntity;
+import com.strategicgame.map.Position;
+import com.strategicgame.units.Unit;
+import com.strategicgame.units.UnitFactory;
+import com.strategicgame.units.UnitStore;
+import com.strategicgame.units.UnitType;
+import com.strategicgame.util.GameLog;
+import com.strategicgame.util.GameRandom;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 /**
- * Singleton GameManager responsible for game state management and turn coordination.
- * Implements the Singleton pattern.
+ * GameManager is responsible for game state management and turn coordination.
+ * Each instance holds one independent game with its own random generator, so
+ * several games can run side by side. The console game uses the shared
+ * instance given by getInstance.
  * 
  */
 public class GameManager {
@@ -18,8 +33,28 @@ public class GameManager {
     private int turnNumber;
     private boolean gameOver;
     private Player winner;
+    private final GameRandom random;
+    private GameActions actions;
+    private EndTurnPipeline endTurnPipeline;
 
-    private GameManager() {
+    /**
+     * Creates a game manager with an unseeded random generator.
+     */
+    public GameManager() {
+        this(new GameRandom());
+    }
+
+    /**
+     * Creates a game manager whose game is driven by a seeded random generator.
+     * 
+     * @param seed Seed of the game
+     */
+    public GameManager(long seed) {
+        this(new GameRandom(seed));
+    }
+
+    private GameManager(GameRandom random) {
+        this.random = random;
         this.players = new ArrayList<>();
         this.currentPlayerIndex = 0;
         this.turnNumber = 1;
@@ -27,7 +62,7 @@ public class GameManager {
     }
 
     /**
-     * Gets the singleton instance of GameManager.
+     * Gets the shared instance of GameManager used by the console game.
      * @return The GameManager instance
      */
     public static synchronized GameManager getInstance() {
@@ -45,12 +80,161 @@ public class GameManager {
      * @param playerCount Number of players
      */
     public void initializeGame(int mapWidth, int mapHeight, int playerCount) {
-        this.gameMap = new GameMap(mapWidth, mapHeight);
-        gameMap.generateMap();
-        
+        Faction[] factions = new Faction[playerCount];
         for (int i = 0; i < playerCount; i++) {
-            Player player = new Player("Player " + (i + 1), i);
-            players.add(player);
+            factions[i] = Faction.values()[i % Faction.values().length];
+        }
+        initializeGame(mapWidth, mapHeight, factions);
+    }
+
+    /**
+     * Initializes the game with map and one player per given faction.
+     * 
+     * @param mapWidth Width of the game map
+     * @param mapHeight Height of the game map
+     * @param factions Faction of each player
+     */
+    public void initializeGame(int mapWidth, int mapHeight, Faction... factions) {
+        if ((long) mapWidth * mapHeight > GameMap.STREAMING_THRESHOLD) {
+            // Too large to hold : generated chunk by chunk as it is visited
+            try {
+                this.gameMap = GameMap.streamed(mapWidth, mapHeight, random);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            this.gameMap = new GameMap(mapWidth, mapHeight, random);
+            gameMap.generateMap();
+        }
+
+        // A new game starts from scratch, even on a reused manager
+        players.clear();
+        currentPlayerIndex = 0;
+        turnNumber = 1;
+        gameOver = false;
+        winner = null;
+        
+        UnitStore unitStore = new UnitStore();  // shared by the players of the game
+        for (int i = 0; i < factions.length; i++) {
+            addPlayer(new Player("Player " + (i + 1), i, factions[i], unitStore));
+        }
+    }
+
+    /**
+     * Replaces the game with a saved state (see GameSnapshot).
+     * 
+     * @param map The restored map, with its terrain and occupants
+     * @param restoredPlayers The restored players, in turn order
+     * @param turn Turn number
+     * @param playerIndex Index of the current player
+     * @param over true if the game is finished
+     * @param winningPlayer The winner, or null
+     * @param randomState State of the random generator
+     */
+    public void restoreState(GameMap map, List<Player> restoredPlayers, int turn, int playerIndex,
+                             boolean over, Player winningPlayer, long randomState) {
+        this.gameMap = map;
+        players.clear();
+        for (Player player : restoredPlayers) {
+            addPlayer(player);
+        }
+        this.turnNumber = turn;
+        this.currentPlayerIndex = playerIndex;
+        this.gameOver = over;
+        this.winner = winningPlayer;
+        random.setState(randomState);
+    }
+
+    /**
+     * Forks the game : creates an independent game in the same state, for
+     * lookahead search or what-if previews. The tile storage of the map is
+     * shared copy-on-write (see ArrayTileStorage.fork), so a fork costs a
+     * reference per chunk of the map and a copy of the units and buildings,
+     * then a chunk per region of the map it changes. Entities keep their
+     * entity ids. The fork has no action observer.
+     * The game must not change while it is forked.
+     * 
+     * @return The fork
+     */
+    public GameManager fork() {
+        GameManager fork = new GameManager(random.getState());
+        Map<UnitStore, UnitStore> stores = new IdentityHashMap<>();
+        Map<MapEntity, MapEntity> counterparts = new IdentityHashMap<>();
+        List<Player> forkedPlayers = new ArrayList<>(players.size());
+        Player forkedWinner = null;
+        for (Player player : players) {
+            Player copy = player.fork(stores.computeIfAbsent(player.getUnitStore(), UnitStore::fork));
+            List<Unit> units = player.getUnits();
+            List<Unit> forkedUnits = copy.getUnits();
+            for (int i = 0; i < forkedUnits.size(); i++) {
+                counterparts.put(units.get(i), forkedUnits.get(i));
+            }
+            // getBuildings copies the list : once per player, not per building
+            List<Building> buildings = player.getBuildings();
+            List<Building> forkedBuildings = copy.getBuildings();
+            for (int i = 0; i < forkedBuildings.size(); i++) {
+                counterparts.put(buildings.get(i), forkedBuildings.get(i));
+            }
+            if (player == winner) {
+                forkedWinner = copy;
+            }
+            forkedPlayers.add(copy);
+        }
+
+        GameMap forkedMap = gameMap.fork(fork.random, counterparts::get);
+        for (Player copy : forkedPlayers) {
+            forkedMap.getGrid().registerOwner(copy);
+        }
+        fork.restoreState(forkedMap, forkedPlayers, turnNumber, currentPlayerIndex, gameOver,
+            forkedWinner, random.getState());
+        fork.endTurnPipeline = endTurnPipeline;
+        return fork;
+    }
+
+    private void addPlayer(Player player) {
+        // Units leaving an army also leave the map
+        player.setObserver((owner, unit) -> gameMap.removeOccupant(unit));
+        players.add(player);
+    }
+
+    /**
+     * Gives each player its starting forces : two soldiers, an archer
+     * and a constructed CommandCenter. Even player ids start on the top row,
+     * odd ones on the bottom row, each unit on the free tile nearest to its
+     * spot (see GameMap.findFreeTile) within the largest region of land, so
+     * that every army can reach the others (on a streamed map, too large to
+     * scan, the nearest free tile is taken).
+     */
+    public void setupStartingForces() {
+        long[] mainland = gameMap.findLargestRegion();
+        for (Player player : players) {
+            UnitStore store = player.getUnitStore();
+            Unit soldier1 = UnitFactory.createUnit(UnitType.SOLDIER, store);
+            Unit soldier2 = UnitFactory.createUnit(UnitType.SOLDIER, store);
+            Unit archer = UnitFactory.createUnit(UnitType.ARCHER, store);
+            player.addUnit(soldier1);
+            player.addUnit(soldier2);
+            player.addUnit(archer);
+
+            int id = player.getPlayerId();
+            int row = id % 2 == 0 ? 0 : gameMap.getHeight() - 1;
+            int column = Math.min((id / 2) * 4, Math.max(0, gameMap.getWidth() - 3));
+            Unit[] starting = {soldier1, soldier2, archer};
+            for (int i = 0; i < starting.length; i++) {
+                Position spot = gameMap.findFreeTile(column + i, row, mainland);
+                if (spot == null) {
+                    GameLog.error("No free tile for unit id=" + starting[i].getId() + " of player " + player.getName());
+                    continue;
+                }
+                gameMap.getTile(spot).setOccupant(starting[i]);
+                if (GameLog.isLogging()) {
+                    GameLog.info("Placed unit id=" + starting[i].getId() + " at " + spot + " for player " + player.getName());
+                }
+            }
+
+            Building commandCenter = new CommandCenter();
+            commandCenter.completeConstruction();
+            player.addBuilding(commandCenter);
         }
     }
 
@@ -62,7 +246,11 @@ public class GameManager {
 
         // Current player ends their turn
         Player currentPlayer = getCurrentPlayer();
-        currentPlayer.endTurn();
+        if (endTurnPipeline != null) {
+            endTurnPipeline.endTurn(currentPlayer);
+        } else {
+            currentPlayer.endTurn();
+        }
 
         // Move to next player
         currentPlayerIndex = (currentPlayerIndex + 1) % players.size();
@@ -93,6 +281,16 @@ public class GameManager {
         }
     }
 
+    /**
+     * Sets the pipeline ending the turn of players in parallel batches,
+     * for games with large economies. Without one, turns end serially.
+     * 
+     * @param endTurnPipeline The pipeline, or null
+     */
+    public void setEndTurnPipeline(EndTurnPipeline endTurnPipeline) {
+        this.endTurnPipeline = endTurnPipeline;
+    }
+
     /**
      * Gets the current active player.
      * 
@@ -147,6 +345,29 @@ public class GameManager {
         return gameOver;
     }
 
+    /**
+     * Gets the actions of this game. Every player, human or AI, should act
+     * through them so that observers (e.g. a replay journal) see every change.
+     * 
+     * @return The game actions
+     */
+    public GameActions getActions() {
+        if (actions == null) {
+            actions = new GameActions(this);
+        }
+        return actions;
+    }
+
+    /**
+     * Gets the random generator driving the rules of this game (map, combat).
+     * Other consumers, like the AI, should use a split of it.
+     * 
+     * @return The game random generator
+     */
+    public GameRandom getRandom() {
+        return random;
+    }
+
     /**
      * Gets the winner if game is over.
      * 
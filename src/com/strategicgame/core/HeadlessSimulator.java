@@ -0,0 +1,149 @@
+package com.strategicgame.core;
+
+import com.strategicgame.player.Player;
+import com.strategicgame.util.Constants;
+import com.strategicgame.util.GameLog;
+import java.util.List;
+
+/**
+ * HeadlessSimulator plays whole games between AI controllers, without any
+ * console input or output inside the game loop, and reports the throughput.
+ * Usage: HeadlessSimulator [games] [mapSize] [players] [maxTurns] [seed]
+ * 
+ */
+public class HeadlessSimulator {
+    private final int mapWidth;
+    private final int mapHeight;
+    private final int playerCount;
+    private final int maxTurns;
+
+    private long gamesPlayed;
+    private long turnsPlayed;
+    private long draws;
+    private long[] wins;
+
+    /**
+     * Creates a simulator.
+     * 
+     * @param mapWidth Width of the maps
+     * @param mapHeight Height of the maps
+     * @param playerCount Number of AI players per game
+     * @param maxTurns Turn limit after which a game is a draw
+     */
+    public HeadlessSimulator(int mapWidth, int mapHeight, int playerCount, int maxTurns) {
+        if (playerCount < 2) {
+            throw new IllegalArgumentException("A game needs at least 2 players");
+        }
+        this.mapWidth = mapWidth;
+        this.mapHeight = mapHeight;
+        this.playerCount = playerCount;
+        this.maxTurns = maxTurns;
+        this.wins = new long[playerCount];
+    }
+
+    /**
+     * Plays one seeded game until a player wins or the turn limit is reached.
+     * 
+     * @param seed Seed of the game
+     * @return The winning player, or null on a draw
+     */
+    public Player playGame(long seed) {
+        GameManager gameManager = new GameManager(seed);
+        gameManager.initializeGame(mapWidth, mapHeight, playerCount);
+        gameManager.setupStartingForces();
+
+        AiController[] controllers = new AiController[playerCount];
+        for (int i = 0; i < playerCount; i++) {
+            controllers[i] = new AiController(gameManager.getRandom().split());
+        }
+
+        turnsPlayed += play(gameManager, controllers, maxTurns);
+        gamesPlayed++;
+        Player winner = gameManager.isGameOver() ? gameManager.getWinner() : null;
+        if (winner == null) {
+            draws++;
+        } else {
+            wins[winner.getPlayerId()]++;
+        }
+        return winner;
+    }
+
+    /**
+     * Runs the turns of an initialized game, each player being played by
+     * its controller, until the game is over or the turn limit is reached.
+     * 
+     * @param gameManager The game
+     * @param controllers One controller per player
+     * @param maxTurns Turn limit
+     * @return Number of player turns played
+     */
+    public static int play(GameManager gameManager, AiController[] controllers, int maxTurns) {
+        List<Player> players = gameManager.getPlayers();
+        int turns = 0;
+        while (!gameManager.isGameOver() && gameManager.getTurnNumber() <= maxTurns) {
+            int index = gameManager.getCurrentPlayerIndex();
+            controllers[index].playTurn(players.get(index), gameManager);
+            gameManager.getActions().endTurn(players.get(index));
+            turns++;
+        }
+        return turns;
+    }
+
+    public long getGamesPlayed() {
+        return gamesPlayed;
+    }
+
+    /**
+     * Gets the number of player turns played, over all games.
+     * 
+     * @return Player turn count
+     */
+    public long getTurnsPlayed() {
+        return turnsPlayed;
+    }
+
+    public long getDraws() {
+        return draws;
+    }
+
+    /**
+     * Gets the number of games won by a player id.
+     * 
+     * @param playerId Player id
+     * @return Win count
+     */
+    public long getWins(int playerId) {
+        return wins[playerId];
+    }
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : Constants.MAP_WIDTH;
+        int players = args.length > 2 ? Integer.parseInt(args[2]) : Constants.PLAYER_COUNT;
+        int maxTurns = args.length > 3 ? Integer.parseInt(args[3]) : Constants.MAX_GAME_TURNS;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+
+        boolean logging = GameLog.isEnabled();
+        GameLog.setEnabled(false);
+        HeadlessSimulator simulator = new HeadlessSimulator(size, size, players, maxTurns);
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < games; i++) {
+                simulator.playGame(TournamentRunner.gameSeed(seed, i));
+            }
+        } finally {
+            GameLog.setEnabled(logging);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d games on %dx%d maps, %d players, max %d turns%n",
+            games, size, size, players, maxTurns);
+        System.out.printf("%.3f s : %.1f games/s, %.0f turns/s (%.1f turns/game)%n",
+            seconds, games / seconds, simulator.getTurnsPlayed() / seconds,
+            (double) simulator.getTurnsPlayed() / games);
+        for (int i = 0; i < players; i++) {
+            System.out.printf("Player %d wins: %d%n", i + 1, simulator.getWins(i));
+        }
+        System.out.printf("Draws: %d%n", simulator.getDraws());
+    }
+}
@@ -0,0 +1,661 @@
+package com.strategicgame.core;
+
+import com.strategicgame.buildings.Building;
+import com.strategicgame.buildings.BuildingFactory;
+import com.strategicgame.buildings.BuildingType;
+import com.strategicgame.buildings.TrainingCamp;
+import com.strategicgame.map.DistanceMetric;
+import com.strategicgame.map.GameMap;
+import com.strategicgame.map.MapEntity;
+import com.strategicgame.map.Position;
+import com.strategicgame.map.SpatialIndex;
+import com.strategicgame.player.Player;
+import com.strategicgame.resources.CostTable;
+import com.strategicgame.resources.ResourceManager;
+import com.strategicgame.resources.ResourceType;
+import com.strategicgame.units.Unit;
+import com.strategicgame.units.UnitType;
+import com.strategicgame.util.GameLog;
+import com.strategicgame.util.GameRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * MctsController plays a turn by Monte Carlo tree search over the plans
+ * of the turn : an economy action (nothing, build, train) combined with a
+ * military action (nothing, move a unit towards the enemy, attack the
+ * weakest unit in range, attack a building).
+ * The tree is the root and its plans (flat MCTS). Both halves of a plan
+ * are picked with UCB1, each from its own statistics, so that a few
+ * hundred playouts are enough to rank them; the plan is applied on a fork
+ * of the game (GameManager.fork), and the game is played on by
+ * scripted AIs (AiController) for a few rounds. A playout scores 1 for a
+ * win, 0 for a loss, else the share of the armies and economies held by
+ * the player.
+ * Playouts run in parallel on a ForkJoinPool, each worker growing its own
+ * statistics (root parallelization) until the time budget of the turn is
+ * spent; the most visited actions are played.
+ * With a time budget the choice depends on the speed of the machine; a
+ * playout limit makes a single worker search reproducible.
+ */
+public class MctsController extends AiController {
+    /** Default time budget of a turn, in milliseconds. */
+    public static final long DEFAULT_BUDGET_MILLIS = 50;
+    /** Default number of rounds played after a plan. */
+    public static final int DEFAULT_HORIZON = 4;
+
+    private static final double EXPLORATION = Math.sqrt(2);
+    private static final double TURN_DECAY = 0.01;
+    private static final int MAX_UNIT_OPTIONS = 5;
+    private static final int MAX_BUILDING_TARGETS = 3;
+    private static final int[] BUILDING_VALUES = buildingValues();   // summed cost, by BuildingType ordinal
+
+    private final GameRandom random;
+    private final ForkJoinPool pool;
+    private final int workers;
+    private final long budgetNanos;
+    private final int horizon;
+    private int playoutLimit;
+    private final List<MapEntity> candidates = new ArrayList<>();
+
+    private long lastPlayouts;
+    private long lastNanos;
+    private long totalPlayouts;
+    private long totalNanos;
+    private int lastPlanCount;
+
+    /**
+     * Creates an AI searching for DEFAULT_BUDGET_MILLIS per turn on the common pool.
+     * @param random Random generator of the game
+     */
+    public MctsController(GameRandom random) {
+        this(random, DEFAULT_BUDGET_MILLIS, DEFAULT_HORIZON, ForkJoinPool.commonPool(),
+            ForkJoinPool.commonPool().getParallelism());
+    }
+
+    /**
+     * Creates an AI.
+     * @param random Random generator of the game
+     * @param budgetMillis Time spent searching a turn, in milliseconds
+     * @param horizon Rounds played by the scripted AIs after a plan
+     * @param pool Pool running the playouts
+     * @param workers Number of playouts run at the same time
+     */
+    public MctsController(GameRandom random, long budgetMillis, int horizon, ForkJoinPool pool, int workers) {
+        super(random);
+        if (budgetMillis < 1 || horizon < 1 || workers < 1) {
+            throw new IllegalArgumentException("Budget, horizon and workers must be positive");
+        }
+        this.random = random;
+        this.budgetNanos = budgetMillis * 1_000_000L;
+        this.horizon = horizon;
+        this.pool = pool;
+        this.workers = workers;
+    }
+
+    /**
+     * Replaces the time budget by a number of playouts per turn, shared
+     * between the workers. With one worker, the search is reproducible.
+     * @param playoutLimit Playouts per turn, or 0 to use the time budget
+     */
+    public void setPlayoutLimit(int playoutLimit) {
+        this.playoutLimit = Math.max(0, playoutLimit);
+    }
+
+    @Override
+    public void playTurn(Player aiPlayer, GameManager gameManager) {
+        if (GameLog.isLogging()) {
+            GameLog.info("\n=== AI TURN (" + aiPlayer.getName() + ") ===");
+        }
+        List<TurnPlan> economy = economyPlans(aiPlayer);
+        List<TurnPlan> military = militaryPlans(aiPlayer, gameManager);
+        lastPlanCount = economy.size() * military.size();
+        TurnPlan best = TurnPlan.NOTHING;
+        long start = System.nanoTime();
+        lastPlayouts = 0;
+        if (lastPlanCount > 1) {
+            best = search(aiPlayer, gameManager, economy, military, start);
+        }
+        lastNanos = System.nanoTime() - start;
+        totalPlayouts += lastPlayouts;
+        totalNanos += lastNanos;
+
+        best.apply(gameManager, aiPlayer);
+        if (GameLog.isLogging()) {
+            GameLog.info("AI: played " + best + " after " + lastPlayouts + " playouts");
+        }
+    }
+
+    private TurnPlan search(Player aiPlayer, GameManager gameManager, List<TurnPlan> economy,
+                            List<TurnPlan> military, long start) {
+        long deadline = playoutLimit > 0 ? Long.MAX_VALUE : start + budgetNanos;
+        int playerIndex = gameManager.getPlayers().indexOf(aiPlayer);
+        Search[] searches = new Search[workers];
+        for (int i = 0; i < workers; i++) {
+            int limit = playoutLimit > 0 ? Math.max(1, (playoutLimit + workers - 1 - i) / workers) : Integer.MAX_VALUE;
+            // Each worker forks its own copy, the game being forked on this thread only
+            searches[i] = new Search(gameManager.fork(), economy, military, playerIndex, random.nextLong(),
+                deadline, limit, i == 0);
+        }
+        if (workers == 1) {
+            searches[0].invoke();
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(searches);
+                }
+            });
+        }
+
+        // Merge the statistics of the workers
+        Bandit economyTotal = new Bandit(economy.size());
+        Bandit militaryTotal = new Bandit(military.size());
+        for (Search search : searches) {
+            economyTotal.add(search.economy);
+            militaryTotal.add(search.military);
+            lastPlayouts += search.playouts;
+        }
+        return economy.get(economyTotal.best()).then(military.get(militaryTotal.best()));
+    }
+
+    /**
+     * Lists the economy actions of a turn : nothing, building a
+     * TrainingCamp or a resource building the player lacks, training a unit.
+     */
+    private static List<TurnPlan> economyPlans(Player aiPlayer) {
+        List<TurnPlan> economy = new ArrayList<>();
+        economy.add(TurnPlan.NOTHING);
+        ResourceManager resources = aiPlayer.getResourceManager();
+        TrainingCamp camp = null;
+        boolean[] owned = new boolean[BuildingType.values().length];
+        for (Building building : aiPlayer.getBuildings()) {
+            if (building instanceof TrainingCamp) {
+                camp = (TrainingCamp) building;
+            }
+            owned[BuildingType.of(building).ordinal()] = true;
+        }
+        for (BuildingType type : BuildingType.values()) {
+            if (type != BuildingType.COMMAND_CENTER && !owned[type.ordinal()]
+                    && resources.canAfford(CostTable.of(type))) {
+                economy.add(TurnPlan.build(type));
+            }
+        }
+        if (camp != null && camp.isConstructed()) {
+            for (UnitType type : UnitType.values()) {
+                if (resources.canAfford(CostTable.of(type))) {
+                    economy.add(TurnPlan.train(type));
+                }
+            }
+        }
+        return economy;
+    }
+
+    /**
+     * Lists the military actions of a turn, the first one doing nothing.
+     */
+    private List<TurnPlan> militaryPlans(Player aiPlayer, GameManager gameManager) {
+        List<TurnPlan> military = new ArrayList<>();
+        military.add(TurnPlan.NOTHING);
+        addUnitOptions(aiPlayer, gameManager.getGameMap(), gameManager.getPlayers(), military);
+        addBuildingOptions(aiPlayer, gameManager.getPlayers(), military);
+        return military;
+    }
+
+    /**
+     * Adds, for the units closest to an enemy unit, an attack on the weakest
+     * enemy unit in range, or else a move towards the nearest one.
+     * Enemy units off the map can be attacked from anywhere.
+     */
+    private void addUnitOptions(Player aiPlayer, GameMap map, List<Player> players, List<TurnPlan> options) {
+        SpatialIndex index = map.getSpatialIndex();
+        List<Unit> units = new ArrayList<>();
+        List<Unit> nearest = new ArrayList<>();
+        Unit strongest = null;
+        for (Unit unit : aiPlayer.getUnits()) {
+            if (strongest == null || unit.getAttack() > strongest.getAttack()) {
+                strongest = unit;
+            }
+            Position pos = unit.getPosition();
+            if (pos == null) {
+                continue;
+            }
+            candidates.clear();
+            index.findNearest(pos.getX(), pos.getY(), 1, DistanceMetric.MANHATTAN,
+                e -> isEnemyUnit(e, aiPlayer), candidates);
+            if (!candidates.isEmpty()) {
+                units.add(unit);
+                nearest.add((Unit) candidates.get(0));
+            }
+        }
+        Integer[] order = new Integer[units.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(
+            i -> units.get(i).getPosition().getManhattanDistance(nearest.get(i).getPosition())));
+
+        int added = 0;
+        for (int n = 0; n < order.length && added < MAX_UNIT_OPTIONS; n++) {
+            Unit unit = units.get(order[n]);
+            Position pos = unit.getPosition();
+            candidates.clear();
+            index.findWithinRadius(pos.getX(), pos.getY(), unit.getRange(), DistanceMetric.MANHATTAN,
+                e -> isEnemyUnit(e, aiPlayer), candidates);
+            Unit weakest = null;
+            for (MapEntity entity : candidates) {
+                Unit target = (Unit) entity;
+                if (weakest == null || target.getHealth() < weakest.getHealth()) {
+                    weakest = target;
+                }
+            }
+            if (weakest != null) {
+                options.add(TurnPlan.attack(unit, weakest));
+                added++;
+                continue;
+            }
+            Position destination = stepTowards(unit, nearest.get(order[n]), map);
+            if (destination != null) {
+                options.add(TurnPlan.move(unit, destination));
+                added++;
+            }
+        }
+
+        if (strongest != null) {
+            for (Player enemy : players) {
+                if (enemy == aiPlayer) {
+                    continue;
+                }
+                for (Unit target : enemy.getUnits()) {
+                    if (target.getPosition() == null) {
+                        options.add(TurnPlan.attack(strongest, target));
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds attacks of the strongest unit on the buildings of enemies
+     * without units left.
+     */
+    private static void addBuildingOptions(Player aiPlayer, List<Player> players, List<TurnPlan> options) {
+        Unit strongest = null;
+        for (Unit unit : aiPlayer.getUnits()) {
+            if (strongest == null || unit.getAttack() > strongest.getAttack()) {
+                strongest = unit;
+            }
+        }
+        if (strongest == null) {
+            return;
+        }
+        for (Player enemy : players) {
+            if (enemy == aiPlayer || enemy.hasUnits()) {
+                continue;
+            }
+            List<Building> buildings = enemy.getBuildings();
+            for (int b = 0; b < Math.min(buildings.size(), MAX_BUILDING_TARGETS); b++) {
+                options.add(TurnPlan.attackBuilding(strongest, enemy, b));
+            }
+        }
+    }
+
+    private static boolean isEnemyUnit(MapEntity entity, Player player) {
+        return entity instanceof Unit && ((Unit) entity).getOwner() != player;
+    }
+
+    /**
+     * Scores a playout for a player : 1 for a win, 0 for a loss, else its
+     * share of the strength of the game, in [0, 1]. A win is worth a little
+     * less for every turn it took, a loss a little more, so that the AI
+     * does not put off a win that every plan leads to.
+     */
+    static double evaluate(GameManager gameManager, Player player, int turns) {
+        if (gameManager.isGameOver()) {
+            double delay = Math.min(0.5, TURN_DECAY * turns);
+            return gameManager.getWinner() == player ? 1.0 - delay : delay;
+        }
+        double own = strength(player);
+        double strongestEnemy = 0;
+        for (Player other : gameManager.getPlayers()) {
+            if (other != player) {
+                strongestEnemy = Math.max(strongestEnemy, strength(other));
+            }
+        }
+        double total = own + strongestEnemy;
+        return total == 0 ? 0.5 : own / total;
+    }
+
+    /**
+     * Strength of a player in resources : its units and its buildings at
+     * their cost, in proportion to their remaining health, and a fraction
+     * of its stock.
+     */
+    private static double strength(Player player) {
+        double value = 0;
+        for (Unit unit : player.getUnits()) {
+            value += unit.getCost() * unit.getHealthPercentage() / 100.0;
+        }
+        for (Building building : player.getBuildings()) {
+            value += (double) BUILDING_VALUES[BuildingType.of(building).ordinal()]
+                * building.getCurrentHealth() / building.getHealth();
+        }
+        ResourceManager resources = player.getResourceManager();
+        for (ResourceType type : ResourceType.values()) {
+            if (type != ResourceType.FOOD) {
+                value += resources.getResource(type) / 4.0;
+            }
+        }
+        return value;
+    }
+
+    private static int[] buildingValues() {
+        BuildingType[] types = BuildingType.values();
+        int[] values = new int[types.length];
+        for (BuildingType type : types) {
+            for (ResourceType resource : ResourceType.values()) {
+                values[type.ordinal()] += CostTable.of(type).get(resource);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Gets the number of playouts run for the last turn.
+     * @return Playout count
+     */
+    public long getLastPlayouts() {
+        return lastPlayouts;
+    }
+
+    /**
+     * Gets the number of plans considered for the last turn.
+     * @return Plan count
+     */
+    public int getLastPlanCount() {
+        return lastPlanCount;
+    }
+
+    /**
+     * Gets the playout rate of the last turn.
+     * @return Playouts per second
+     */
+    public double getLastPlayoutsPerSecond() {
+        return lastNanos == 0 ? 0 : lastPlayouts * 1e9 / lastNanos;
+    }
+
+    /**
+     * Gets the number of playouts run since the AI was created.
+     * @return Playout count
+     */
+    public long getTotalPlayouts() {
+        return totalPlayouts;
+    }
+
+    /**
+     * Gets the time spent searching since the AI was created.
+     * @return Nanoseconds
+     */
+    public long getTotalSearchNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Gets the playout rate over all the turns played.
+     * @return Playouts per second
+     */
+    public double getPlayoutsPerSecond() {
+        return totalNanos == 0 ? 0 : totalPlayouts * 1e9 / totalNanos;
+    }
+
+    /**
+     * Visit counts and summed scores of the arms of a choice.
+     */
+    private static final class Bandit {
+        final long[] visits;
+        final double[] values;
+        long total;
+
+        Bandit(int arms) {
+            visits = new long[arms];
+            values = new double[arms];
+        }
+
+        /**
+         * UCB1 : every arm once, then the best mean plus exploration bonus.
+         */
+        int select() {
+            int best = 0;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            double logTotal = Math.log(Math.max(1, total));
+            for (int arm = 0; arm < visits.length; arm++) {
+                if (visits[arm] == 0) {
+                    return arm;
+                }
+                double score = values[arm] / visits[arm] + EXPLORATION * Math.sqrt(logTotal / visits[arm]);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = arm;
+                }
+            }
+            return best;
+        }
+
+        void update(int arm, double value) {
+            visits[arm]++;
+            values[arm] += value;
+            total++;
+        }
+
+        void add(Bandit other) {
+            for (int arm = 0; arm < visits.length; arm++) {
+                visits[arm] += other.visits[arm];
+                values[arm] += other.values[arm];
+            }
+            total += other.total;
+        }
+
+        /**
+         * The most visited arm, the best mean between arms visited as often.
+         */
+        int best() {
+            int best = 0;
+            for (int arm = 1; arm < visits.length; arm++) {
+                if (visits[arm] > visits[best] || (visits[arm] == visits[best] && visits[arm] > 0
+                        && values[arm] / visits[arm] > values[best] / visits[best])) {
+                    best = arm;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * One worker of the search : picks plans with UCB1 and plays them out
+     * on clones of the game, until the deadline or its playout limit.
+     */
+    private final class Search extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final GameManager root;
+        private final List<TurnPlan> economyPlans;
+        private final List<TurnPlan> militaryPlans;
+        private final int playerIndex;
+        private final GameRandom workerRandom;
+        private final long deadline;
+        private final int limit;
+        private final boolean atLeastOne;
+        final Bandit economy;
+        final Bandit military;
+        long playouts;
+
+        Search(GameManager root, List<TurnPlan> economyPlans, List<TurnPlan> militaryPlans, int playerIndex,
+               long seed, long deadline, int limit, boolean atLeastOne) {
+            this.root = root;
+            this.economyPlans = economyPlans;
+            this.militaryPlans = militaryPlans;
+            this.playerIndex = playerIndex;
+            this.workerRandom = new GameRandom(seed);
+            this.deadline = deadline;
+            this.limit = limit;
+            this.atLeastOne = atLeastOne;
+            this.economy = new Bandit(economyPlans.size());
+            this.military = new Bandit(militaryPlans.size());
+        }
+
+        @Override
+        protected void compute() {
+            GameLog.setMutedOnThisThread(true);
+            try {
+                AiController rollout = new AiController(workerRandom);
+                AiController[] controllers = null;
+                while (playouts < limit && (System.nanoTime() < deadline || (atLeastOne && playouts == 0))) {
+                    int first = economy.select();
+                    int second = military.select();
+                    GameManager clone = forkRoot();
+                    if (controllers == null) {
+                        controllers = new AiController[clone.getPlayers().size()];
+                        Arrays.fill(controllers, rollout);
+                    }
+                    Player player = clone.getPlayers().get(playerIndex);
+                    economyPlans.get(first).then(militaryPlans.get(second)).apply(clone, player);
+                    clone.getActions().endTurn(player);
+                    int turns = 1 + HeadlessSimulator.play(clone, controllers, clone.getTurnNumber() + horizon);
+                    double value = evaluate(clone, player, turns);
+                    economy.update(first, value);
+                    military.update(second, value);
+                    playouts++;
+                }
+            } finally {
+                GameLog.setMutedOnThisThread(false);
+            }
+        }
+
+        private GameManager forkRoot() {
+            GameManager clone = root.fork();
+            clone.getRandom().setSeed(workerRandom.nextLong());   // each playout rolls its own dice
+            return clone;
+        }
+    }
+
+    /**
+     * A plan of a turn, that stays valid on clones of the game : units are
+     * identified by player id and unit id, buildings by their index.
+     */
+    static final class TurnPlan {
+        static final TurnPlan NOTHING = new TurnPlan(null, null, Kind.NONE, 0, 0, 0, 0, 0);
+
+        enum Kind { NONE, MOVE, ATTACK, ATTACK_BUILDING }
+
+        private final UnitType train;
+        private final BuildingType build;
+        private final Kind kind;
+        private final int unitId;
+        private final int targetPlayerId;
+        private final int targetId;     // unit id, or building index
+        private final int x;
+        private final int y;
+
+        private TurnPlan(UnitType train, BuildingType build, Kind kind, int unitId,
+                         int targetPlayerId, int targetId, int x, int y) {
+            this.train = train;
+            this.build = build;
+            this.kind = kind;
+            this.unitId = unitId;
+            this.targetPlayerId = targetPlayerId;
+            this.targetId = targetId;
+            this.x = x;
+            this.y = y;
+        }
+
+        static TurnPlan train(UnitType type) {
+            return new TurnPlan(type, null, Kind.NONE, 0, 0, 0, 0, 0);
+        }
+
+        static TurnPlan build(BuildingType type) {
+            return new TurnPlan(null, type, Kind.NONE, 0, 0, 0, 0, 0);
+        }
+
+        static TurnPlan move(Unit unit, Position destination) {
+            return new TurnPlan(null, null, Kind.MOVE, unit.getId(), 0, 0, destination.getX(), destination.getY());
+        }
+
+        static TurnPlan attack(Unit attacker, Unit defender) {
+            return new TurnPlan(null, null, Kind.ATTACK, attacker.getId(),
+                defender.getOwner().getPlayerId(), defender.getId(), 0, 0);
+        }
+
+        static TurnPlan attackBuilding(Unit attacker, Player enemy, int buildingIndex) {
+            return new TurnPlan(null, null, Kind.ATTACK_BUILDING, attacker.getId(),
+                enemy.getPlayerId(), buildingIndex, 0, 0);
+        }
+
+        /**
+         * Combines the economy action of this plan with the military action of another.
+         */
+        TurnPlan then(TurnPlan military) {
+            return new TurnPlan(train, build, military.kind, military.unitId,
+                military.targetPlayerId, military.targetId, military.x, military.y);
+        }
+
+        /**
+         * Plays the plan for a player; actions no longer possible are skipped.
+         */
+        void apply(GameManager gameManager, Player player) {
+            GameActions actions = gameManager.getActions();
+            if (build != null) {
+                actions.build(player, BuildingFactory.createBuilding(build));
+            } else if (train != null) {
+                actions.trainUnit(player, train);
+            }
+            if (kind == Kind.NONE) {
+                return;
+            }
+            Unit unit = player.getUnitById(unitId);
+            if (unit == null) {
+                return;
+            }
+            if (kind == Kind.MOVE) {
+                actions.moveUnit(player, unit, gameManager.getGameMap().getPosition(x, y));
+                return;
+            }
+            Player enemy = null;
+            for (Player other : gameManager.getPlayers()) {
+                if (other.getPlayerId() == targetPlayerId) {
+                    enemy = other;
+                }
+            }
+            if (enemy == null) {
+                return;
+            }
+            if (kind == Kind.ATTACK) {
+                Unit defender = enemy.getUnitById(targetId);
+                if (defender != null) {
+                    actions.attackUnit(player, unit, defender);
+                }
+            } else if (targetId < enemy.getBuildings().size()) {
+                actions.attackBuilding(player, unit, enemy.getBuildings().get(targetId));
+            }
+        }
+
+        @Override
+        public String toString() {
+            String economy = build != null ? "build " + build : train != null ? "train " + train : "no economy";
+            switch (kind) {
+                case MOVE:
+                    return economy + ", move unit " + unitId + " to (" + x + "," + y + ")";
+                case ATTACK:
+                    return economy + ", unit " + unitId + " attacks unit " + targetId + " of player " + targetPlayerId;
+                case ATTACK_BUILDING:
+                    return economy + ", unit " + unitId + " attacks building " + targetId + " of player " + targetPlayerId;
+                default:
+                    return economy;
+            }
+        }
+    }
+}
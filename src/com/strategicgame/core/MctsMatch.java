@@ -0,0 +1,69 @@
+package com.strategicgame.core;
+
+import com.strategicgame.player.Player;
+import com.strategicgame.util.Constants;
+import com.strategicgame.util.GameLog;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * MctsMatch plays seeded games of the MCTS AI against the scripted AI,
+ * the MCTS AI taking each seat in turn, and reports its results and its
+ * playout rate.
+ * Usage: MctsMatch [games] [mapSize] [maxTurns] [budgetMillis] [workers] [seed]
+ *
+ */
+public class MctsMatch {
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : Constants.MAP_WIDTH;
+        int maxTurns = args.length > 2 ? Integer.parseInt(args[2]) : Constants.MAX_GAME_TURNS;
+        long budget = args.length > 3 ? Long.parseLong(args[3]) : MctsController.DEFAULT_BUDGET_MILLIS;
+        int workers = args.length > 4 ? Integer.parseInt(args[4]) : ForkJoinPool.commonPool().getParallelism();
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : System.nanoTime();
+
+        boolean logging = GameLog.isEnabled();
+        GameLog.setEnabled(false);
+        int wins = 0;
+        int losses = 0;
+        long playouts = 0;
+        long mctsTurns = 0;
+        long searchNanos = 0;
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < games; i++) {
+                GameManager gameManager = new GameManager(TournamentRunner.gameSeed(seed, i));
+                gameManager.initializeGame(size, size, 2);
+                gameManager.setupStartingForces();
+
+                int seat = i % 2;
+                MctsController mcts = new MctsController(gameManager.getRandom().split(), budget,
+                    MctsController.DEFAULT_HORIZON, ForkJoinPool.commonPool(), workers);
+                AiController[] controllers = new AiController[2];
+                controllers[seat] = mcts;
+                controllers[1 - seat] = new AiController(gameManager.getRandom().split());
+                int turns = HeadlessSimulator.play(gameManager, controllers, maxTurns);
+
+                Player winner = gameManager.isGameOver() ? gameManager.getWinner() : null;
+                if (winner != null && winner.getPlayerId() == seat) {
+                    wins++;
+                } else if (winner != null) {
+                    losses++;
+                }
+                playouts += mcts.getTotalPlayouts();
+                mctsTurns += (turns + 1 - seat) / 2;
+                searchNanos += mcts.getTotalSearchNanos();
+            }
+        } finally {
+            GameLog.setEnabled(logging);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d games on %dx%d maps, max %d turns, %d ms per turn, %d workers%n",
+            games, size, size, maxTurns, budget, workers);
+        System.out.printf("MCTS wins: %d, losses: %d, draws: %d%n", wins, losses, games - wins - losses);
+        System.out.printf("%.3f s : %d playouts in %d turns (%.0f per turn), %.0f playouts/s%n",
+            seconds, playouts, mctsTurns, (double) playouts / Math.max(1, mctsTurns),
+            playouts * 1e9 / Math.max(1, searchNanos));
+    }
+}
@@ -0,0 +1,144 @@
+package com.strategicgame.core;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * TickScheduler drives a Game with fixed-timestep updates.
+ * Elapsed time, measured with System.nanoTime, goes into an accumulator
+ * that is consumed one tick period at a time; between frames the thread
+ * is parked instead of spinning. Each GameState has its own tick rate
+ * (a paused game or a menu does not need 60 updates per second), and a
+ * catch-up limit bounds the number of updates run in one frame : ticks
+ * beyond it are dropped rather than piling up after a long stall.
+ * 
+ */
+public class TickScheduler {
+    /** Tick rate used by states without an explicit rate. */
+    public static final int DEFAULT_TICK_RATE = 60;
+    /** Default maximum number of updates run to catch up in one frame. */
+    public static final int DEFAULT_MAX_CATCH_UP_TICKS = 5;
+
+    private final Map<GameState, Long> tickNanos = new EnumMap<>(GameState.class);
+    private final TickStats stats = new TickStats();
+    private volatile int maxCatchUpTicks = DEFAULT_MAX_CATCH_UP_TICKS;
+    private volatile long spinThresholdNanos = 0;
+
+    public TickScheduler() {
+        setTickRate(GameState.MENU, 10);
+        setTickRate(GameState.PAUSED, 10);
+        setTickRate(GameState.GAME_OVER, 10);
+    }
+
+    /**
+     * Sets the number of updates per second while the game is in a state.
+     * 
+     * @param state The game state
+     * @param ticksPerSecond Updates per second, must be positive
+     */
+    public void setTickRate(GameState state, int ticksPerSecond) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("Tick rate must be positive: " + ticksPerSecond);
+        }
+        tickNanos.put(state, 1_000_000_000L / ticksPerSecond);
+    }
+
+    /**
+     * Gets the tick period of a state.
+     * 
+     * @param state The game state, or null before initialization
+     * @return Tick period in nanoseconds
+     */
+    public long getTickNanos(GameState state) {
+        Long nanos = state == null ? null : tickNanos.get(state);
+        return nanos != null ? nanos : 1_000_000_000L / DEFAULT_TICK_RATE;
+    }
+
+    /**
+     * Sets the maximum number of updates run in one frame to catch up.
+     * 
+     * @param maxCatchUpTicks Maximum updates per frame, at least 1
+     */
+    public void setMaxCatchUpTicks(int maxCatchUpTicks) {
+        if (maxCatchUpTicks < 1) {
+            throw new IllegalArgumentException("Catch-up limit must be at least 1");
+        }
+        this.maxCatchUpTicks = maxCatchUpTicks;
+    }
+
+    public int getMaxCatchUpTicks() {
+        return maxCatchUpTicks;
+    }
+
+    /**
+     * Sets the delay under which the scheduler spins instead of parking.
+     * Spinning improves precision at the cost of CPU time; the default (0)
+     * always parks, which suits hosts running many games.
+     * 
+     * @param spinThresholdNanos Spin threshold in nanoseconds
+     */
+    public void setSpinThresholdNanos(long spinThresholdNanos) {
+        this.spinThresholdNanos = Math.max(0, spinThresholdNanos);
+    }
+
+    public TickStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Runs the update/render loop of a game until it stops running.
+     * Updates receive the fixed tick period, in milliseconds.
+     * 
+     * @param game The game to drive
+     */
+    public void run(Game game) {
+        stats.reset();
+        long previous = System.nanoTime();
+        long accumulator = 0;
+
+        while (game.isRunning()) {
+            long period = getTickNanos(game.getCurrentState());
+            long now = System.nanoTime();
+            accumulator += now - previous;
+            previous = now;
+
+            if (accumulator < period) {
+                if (!waitNanos(period - accumulator)) {
+                    game.stop();
+                }
+                continue;
+            }
+
+            stats.recordFrame(accumulator - period);
+            int ticks = 0;
+            while (accumulator >= period && ticks < maxCatchUpTicks && game.isRunning()) {
+                long start = System.nanoTime();
+                game.update(period / 1e6);
+                stats.recordTick(System.nanoTime() - start, period);
+                accumulator -= period;
+                ticks++;
+                period = getTickNanos(game.getCurrentState());   // the update may change the state
+            }
+            if (accumulator >= period) {
+                // Too far behind : drop the missed ticks instead of spiralling
+                stats.recordDropped(accumulator / period);
+                accumulator %= period;
+            }
+            game.render();
+        }
+    }
+
+    /**
+     * Parks the thread for a delay, spinning for the last part if configured.
+     * @return false if the thread was interrupted
+     */
+    private boolean waitNanos(long nanos) {
+        if (nanos > spinThresholdNanos) {
+            LockSupport.parkNanos(nanos - spinThresholdNanos);
+        } else {
+            Thread.onSpinWait();
+        }
+        return !Thread.currentThread().isInterrupted();
+    }
+}
@@ -0,0 +1,101 @@
+package com.strategicgame.core;
+
+/**
+ * TickStats collects the timing of a TickScheduler : ticks run, ticks whose
+ * update took longer than the tick period (overruns), ticks dropped by the
+ * catch-up limit, and the jitter of the frames, i.e. how late a frame
+ * started after its ticks were due.
+ * All times are in nanoseconds. Written by the game loop thread only.
+ * 
+ */
+public class TickStats {
+    private volatile long ticks;
+    private volatile long frames;
+    private volatile long overruns;
+    private volatile long droppedTicks;
+    private volatile long maxUpdateNanos;
+    private volatile long totalJitterNanos;
+    private volatile long maxJitterNanos;
+
+    /**
+     * Clears all the counters.
+     */
+    public void reset() {
+        ticks = 0;
+        frames = 0;
+        overruns = 0;
+        droppedTicks = 0;
+        maxUpdateNanos = 0;
+        totalJitterNanos = 0;
+        maxJitterNanos = 0;
+    }
+
+    void recordFrame(long jitterNanos) {
+        frames++;
+        totalJitterNanos += jitterNanos;
+        if (jitterNanos > maxJitterNanos) {
+            maxJitterNanos = jitterNanos;
+        }
+    }
+
+    void recordTick(long updateNanos, long periodNanos) {
+        ticks++;
+        if (updateNanos > periodNanos) {
+            overruns++;
+        }
+        if (updateNanos > maxUpdateNanos) {
+            maxUpdateNanos = updateNanos;
+        }
+    }
+
+    void recordDropped(long count) {
+        droppedTicks += count;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Gets the number of ticks whose update lasted longer than the tick period.
+     * @return Overrun count
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * Gets the number of ticks skipped because the loop fell too far behind.
+     * @return Dropped tick count
+     */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    public long getMaxUpdateNanos() {
+        return maxUpdateNanos;
+    }
+
+    /**
+     * Gets the mean delay between the time a frame was due and its start.
+     * @return Mean jitter in nanoseconds
+     */
+    public double getMeanJitterNanos() {
+        return frames == 0 ? 0.0 : (double) totalJitterNanos / frames;
+    }
+
+    public long getMaxJitterNanos() {
+        return maxJitterNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ticks=%d frames=%d overruns=%d dropped=%d maxUpdate=%.3fms jitter(mean=%.3fms, max=%.3fms)",
+            ticks, frames, overruns, droppedTicks, maxUpdateNanos / 1e6,
+            getMeanJitterNanos() / 1e6, maxJitterNanos / 1e6);
+    }
+}
@@ -0,0 +1,121 @@
+package com.strategicgame.core;
+
+import com.strategicgame.player.Faction;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * TournamentResult aggregates the outcome of many games : games played,
+ * turns, draws, and games/wins per faction and per unit composition.
+ * Results of independent games are combined with merge, so every worker
+ * of a tournament fills its own result without any locking.
+ * 
+ */
+public class TournamentResult {
+    private long games;
+    private long turns;
+    private long draws;
+    private final Map<Faction, long[]> factionStats = new EnumMap<>(Faction.class);   // {games, wins}
+    private final Map<String, long[]> compositionStats = new TreeMap<>();             // {games, wins}
+
+    /**
+     * Records a finished game.
+     * 
+     * @param factions Faction of each player
+     * @param compositions Unit composition name of each player
+     * @param winnerId Id of the winner, or -1 on a draw
+     * @param turnCount Number of player turns played
+     */
+    public void recordGame(Faction[] factions, String[] compositions, int winnerId, int turnCount) {
+        games++;
+        turns += turnCount;
+        if (winnerId < 0) {
+            draws++;
+        }
+        for (int i = 0; i < factions.length; i++) {
+            long[] faction = factionStats.computeIfAbsent(factions[i], f -> new long[2]);
+            long[] composition = compositionStats.computeIfAbsent(compositions[i], c -> new long[2]);
+            faction[0]++;
+            composition[0]++;
+            if (i == winnerId) {
+                faction[1]++;
+                composition[1]++;
+            }
+        }
+    }
+
+    /**
+     * Adds the games of another result to this one.
+     * 
+     * @param other The result to merge
+     * @return This result
+     */
+    public TournamentResult merge(TournamentResult other) {
+        games += other.games;
+        turns += other.turns;
+        draws += other.draws;
+        other.factionStats.forEach((faction, stats) -> add(factionStats.computeIfAbsent(faction, f -> new long[2]), stats));
+        other.compositionStats.forEach((name, stats) -> add(compositionStats.computeIfAbsent(name, c -> new long[2]), stats));
+        return this;
+    }
+
+    private static void add(long[] target, long[] stats) {
+        target[0] += stats[0];
+        target[1] += stats[1];
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getTurns() {
+        return turns;
+    }
+
+    public long getDraws() {
+        return draws;
+    }
+
+    /**
+     * Gets the share of the games played by a faction that it won.
+     * 
+     * @param faction The faction
+     * @return Win rate between 0 and 1 (0 if the faction never played)
+     */
+    public double getWinRate(Faction faction) {
+        return winRate(factionStats.get(faction));
+    }
+
+    /**
+     * Gets the share of the games played with a unit composition that it won.
+     * 
+     * @param composition Composition name
+     * @return Win rate between 0 and 1 (0 if the composition never played)
+     */
+    public double getWinRate(String composition) {
+        return winRate(compositionStats.get(composition));
+    }
+
+    private static double winRate(long[] stats) {
+        return stats == null || stats[0] == 0 ? 0.0 : (double) stats[1] / stats[0];
+    }
+
+    /**
+     * Formats the win rates per faction and per composition.
+     * 
+     * @return Multi-line report
+     */
+    public String format() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Games: %d, draws: %d, turns/game: %.1f%n",
+            games, draws, games == 0 ? 0.0 : (double) turns / games));
+        report.append("Win rate per faction:").append(System.lineSeparator());
+        factionStats.forEach((faction, stats) -> report.append(String.format("  %-12s %6.1f%% (%d/%d)%n",
+            faction.getDisplayName(), 100.0 * winRate(stats), stats[1], stats[0])));
+        report.append("Win rate per unit composition:").append(System.lineSeparator());
+        compositionStats.forEach((name, stats) -> report.append(String.format("  %-22s %6.1f%% (%d/%d)%n",
+            name, 100.0 * winRate(stats), stats[1], stats[0])));
+        return report.toString();
+    }
+}
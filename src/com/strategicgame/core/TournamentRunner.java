@@ -0,0 +1,200 @@
+package com.strategicgame.core;
+
+import com.strategicgame.player.Faction;
+import com.strategicgame.player.Player;
+import com.strategicgame.units.UnitType;
+import com.strategicgame.util.Constants;
+import com.strategicgame.util.GameLog;
+import com.strategicgame.util.GameRandom;
+import java.util.Random;
+import java.util.StringJoiner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * TournamentRunner plays many independent AI-vs-AI games in parallel on a
+ * work-stealing ForkJoinPool. Every game has its own GameManager and its own
+ * random generator, seeded from the tournament seed and the game number, so
+ * a tournament gives the same results whatever the number of threads.
+ * Each player gets a random faction and a random unit composition, and the
+ * win rates are aggregated per faction and per composition.
+ * Usage: TournamentRunner [games] [mapSize] [players] [maxTurns] [threads] [seed] [--scaling]
+ * 
+ */
+public class TournamentRunner {
+    /** Games played by a task without splitting it further. */
+    private static final int GAMES_PER_TASK = 4;
+
+    /** Unit compositions the AI players are drawn from. */
+    private static final UnitType[][] COMPOSITIONS = {
+        {UnitType.SOLDIER},
+        {UnitType.ARCHER},
+        {UnitType.CAVALRY},
+        {UnitType.SOLDIER, UnitType.ARCHER},
+        {UnitType.SOLDIER, UnitType.CAVALRY},
+        {UnitType.ARCHER, UnitType.CAVALRY},
+        {UnitType.SOLDIER, UnitType.ARCHER, UnitType.CAVALRY}
+    };
+
+    private final int mapSize;
+    private final int playerCount;
+    private final int maxTurns;
+    private final long seed;
+
+    /**
+     * Creates a tournament.
+     * 
+     * @param mapSize Width and height of the maps
+     * @param playerCount Number of players per game
+     * @param maxTurns Turn limit after which a game is a draw
+     * @param seed Seed of the tournament
+     */
+    public TournamentRunner(int mapSize, int playerCount, int maxTurns, long seed) {
+        if (playerCount < 2) {
+            throw new IllegalArgumentException("A game needs at least 2 players");
+        }
+        this.mapSize = mapSize;
+        this.playerCount = playerCount;
+        this.maxTurns = maxTurns;
+        this.seed = seed;
+    }
+
+    /**
+     * Plays games 0 to games - 1 on a pool of the given size.
+     * 
+     * @param games Number of games
+     * @param threads Parallelism of the pool
+     * @return Aggregated result
+     */
+    public TournamentResult run(int games, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.invoke(new GamesTask(0, games));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Plays a single game of the tournament.
+     * 
+     * @param gameNumber Number of the game in the tournament
+     * @param result Result the game is recorded into
+     */
+    public void playGame(int gameNumber, TournamentResult result) {
+        GameManager gameManager = new GameManager(gameSeed(seed, gameNumber));
+        Random random = gameManager.getRandom().split();
+
+        Faction[] factions = new Faction[playerCount];
+        String[] compositionNames = new String[playerCount];
+        AiController[] controllers = new AiController[playerCount];
+        for (int i = 0; i < playerCount; i++) {
+            UnitType[] composition = COMPOSITIONS[random.nextInt(COMPOSITIONS.length)];
+            factions[i] = Faction.values()[random.nextInt(Faction.values().length)];
+            compositionNames[i] = nameOf(composition);
+            controllers[i] = new AiController(random, composition);
+        }
+
+        gameManager.initializeGame(mapSize, mapSize, factions);
+        gameManager.setupStartingForces();
+        int turns = HeadlessSimulator.play(gameManager, controllers, maxTurns);
+
+        Player winner = gameManager.isGameOver() ? gameManager.getWinner() : null;
+        result.recordGame(factions, compositionNames, winner == null ? -1 : winner.getPlayerId(), turns);
+    }
+
+    /**
+     * Derives the seed of a game from the tournament seed (SplitMix64 finalizer),
+     * so that neighbouring games get unrelated random sequences.
+     * 
+     * @param seed Tournament seed
+     * @param gameNumber Number of the game
+     * @return Seed of the game
+     */
+    public static long gameSeed(long seed, long gameNumber) {
+        return GameRandom.mix(seed + (gameNumber + 1) * 0x9E3779B97F4A7C15L);
+    }
+
+    private static String nameOf(UnitType[] composition) {
+        StringJoiner name = new StringJoiner("+");
+        for (UnitType type : composition) {
+            name.add(type.getDisplayName());
+        }
+        return name.toString();
+    }
+
+    /**
+     * Plays a range of games, splitting it in halves until it is small enough.
+     */
+    private class GamesTask extends RecursiveTask<TournamentResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        GamesTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TournamentResult compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                TournamentResult result = new TournamentResult();
+                for (int game = from; game < to; game++) {
+                    playGame(game, result);
+                }
+                return result;
+            }
+            int middle = (from + to) >>> 1;
+            GamesTask left = new GamesTask(from, middle);
+            left.fork();
+            TournamentResult right = new GamesTask(middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : Constants.MAP_WIDTH;
+        int players = args.length > 2 ? Integer.parseInt(args[2]) : Constants.PLAYER_COUNT;
+        int maxTurns = args.length > 3 ? Integer.parseInt(args[3]) : Constants.MAX_GAME_TURNS;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 42L;
+        boolean scaling = args.length > 6 && args[6].equals("--scaling");
+
+        boolean logging = GameLog.isEnabled();
+        GameLog.setEnabled(false);
+        try {
+            TournamentRunner runner = new TournamentRunner(size, players, maxTurns, seed);
+            if (scaling) {
+                // Same tournament on 1, 2, 4... threads up to the requested count
+                double baseline = timedRun(runner, games, 1, false);
+                for (int t = Math.min(2, threads); t > 1; t = t == threads ? 0 : Math.min(t * 2, threads)) {
+                    double rate = timedRun(runner, games, t, false);
+                    System.out.printf("  speedup x%.2f on %d threads%n", rate / baseline, t);
+                }
+            } else {
+                timedRun(runner, games, threads, true);
+            }
+        } finally {
+            GameLog.setEnabled(logging);
+        }
+    }
+
+    /**
+     * Runs a tournament and prints its throughput.
+     * @return Games per second
+     */
+    private static double timedRun(TournamentRunner runner, int games, int threads, boolean report) {
+        long start = System.nanoTime();
+        TournamentResult result = runner.run(games, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games on %d threads: %.3f s, %.1f games/s, %.0f turns/s%n",
+            games, threads, seconds, games / seconds, result.getTurns() / seconds);
+        if (report) {
+            System.out.print(result.format());
+        }
+        return games / seconds;
+    }
+}
@@ -0,0 +1,56 @@
+package com.strategicgame.generation;
+
+import com.strategicgame.map.TileType;
+
+/**
+ * Biomes of generated terrain, chosen from the elevation and the moisture
+ * of a tile, each laid down as a tile type.
+ *
+ */
+public enum Biome {
+    OCEAN(TileType.WATER),
+    SWAMP(TileType.SWAMP),
+    DESERT(TileType.DESERT),
+    PLAINS(TileType.GRASS),
+    FOREST(TileType.FOREST),
+    MOUNTAINS(TileType.MOUNTAIN);
+
+    /** Elevation under which the ground is under water. */
+    public static final float SEA_LEVEL = 0.36f;
+    /** Elevation above which the ground is mountains. */
+    public static final float MOUNTAIN_LEVEL = 0.66f;
+    /** Height above the sea under which wet ground is a swamp. */
+    public static final float LOWLAND_HEIGHT = 0.05f;
+
+    private final TileType tileType;
+
+    Biome(TileType tileType) {
+        this.tileType = tileType;
+    }
+
+    public TileType getTileType() {
+        return tileType;
+    }
+
+    /**
+     * Chooses the biome of a tile.
+     * @param elevation Elevation, in [0, 1]
+     * @param moisture Moisture, in [0, 1]
+     * @return The biome
+     */
+    public static Biome classify(float elevation, float moisture) {
+        if (elevation < SEA_LEVEL) {
+            return OCEAN;
+        }
+        if (elevation > MOUNTAIN_LEVEL) {
+            return MOUNTAINS;
+        }
+        if (moisture < 0.36f) {
+            return DESERT;
+        }
+        if (moisture > 0.58f) {
+            return elevation < SEA_LEVEL + LOWLAND_HEIGHT ? SWAMP : FOREST;
+        }
+        return PLAINS;
+    }
+}
@@ -0,0 +1,149 @@
+package com.strategicgame.generation;
+
+import com.strategicgame.util.GameRandom;
+import java.util.Arrays;
+
+/**
+ * FractalNoise is seeded coherent noise: the sum of octaves of value noise,
+ * each a lattice of random values smoothly interpolated, the next octave
+ * having cells half as large and half the amplitude.
+ * The value of a tile depends only on the seed and its coordinates, so
+ * regions filled separately (and in any order) join without seams.
+ *
+ */
+public final class FractalNoise {
+    private final long seed;
+    private final int octaves;
+    private final int cellShift;
+    private final float normalization;
+
+    /**
+     * Creates a noise.
+     *
+     * @param seed The seed
+     * @param featureSize Cell size of the first octave, in tiles (a power of two)
+     * @param octaves Number of octaves, each halving the cell size (at least 1)
+     */
+    public FractalNoise(long seed, int featureSize, int octaves) {
+        if (featureSize < 2 || Integer.bitCount(featureSize) != 1) {
+            throw new IllegalArgumentException("Feature size must be a power of two: " + featureSize);
+        }
+        if (octaves < 1 || featureSize >> (octaves - 1) < 1) {
+            throw new IllegalArgumentException("Invalid octave count: " + octaves);
+        }
+        this.seed = seed;
+        this.octaves = octaves;
+        this.cellShift = Integer.numberOfTrailingZeros(featureSize);
+        this.normalization = 1f / (2f - 2f / (1 << octaves));   // 1 / sum of the amplitudes
+    }
+
+    /**
+     * Fills a rectangle with the noise, row-major.
+     *
+     * @param originX Left column of the rectangle
+     * @param originY Top row of the rectangle
+     * @param width Rectangle width
+     * @param height Rectangle height
+     * @param out Receives width * height values in [0, 1)
+     * @param scratch Work buffers, reusable between calls
+     */
+    public void fill(int originX, int originY, int width, int height, float[] out, Scratch scratch) {
+        Arrays.fill(out, 0, width * height, 0f);
+        float amplitude = normalization;
+        for (int octave = 0; octave < octaves; octave++) {
+            addOctave(octave, cellShift - octave, amplitude, originX, originY, width, height, out, scratch);
+            amplitude *= 0.5f;
+        }
+    }
+
+    private void addOctave(int octave, int shift, float amplitude, int originX, int originY,
+                           int width, int height, float[] out, Scratch scratch) {
+        int cellMask = (1 << shift) - 1;
+        float cellScale = 1f / (1 << shift);
+        long octaveSeed = GameRandom.mix(seed + octave * 0x9E3779B97F4A7C15L);
+
+        // Lattice values around the rectangle
+        int firstCellX = originX >> shift;
+        int firstCellY = originY >> shift;
+        int cellsX = ((originX + width - 1) >> shift) - firstCellX + 2;
+        int cellsY = ((originY + height - 1) >> shift) - firstCellY + 2;
+        float[] lattice = scratch.lattice(cellsX * cellsY);
+        for (int j = 0; j < cellsY; j++) {
+            for (int i = 0; i < cellsX; i++) {
+                lattice[j * cellsX + i] = latticeValue(octaveSeed, firstCellX + i, firstCellY + j);
+            }
+        }
+
+        // Cell and smoothed weight of every column
+        int[] columnCells = scratch.columnCells(width);
+        float[] columnWeights = scratch.columnWeights(width);
+        for (int x = 0; x < width; x++) {
+            columnCells[x] = ((originX + x) >> shift) - firstCellX;
+            columnWeights[x] = fade(((originX + x) & cellMask) * cellScale);
+        }
+
+        // Interpolate each row vertically once per lattice column, then horizontally per tile
+        float[] row = scratch.row(cellsX);
+        for (int y = 0; y < height; y++) {
+            int top = (((originY + y) >> shift) - firstCellY) * cellsX;
+            float weight = fade(((originY + y) & cellMask) * cellScale);
+            for (int i = 0; i < cellsX; i++) {
+                float above = lattice[top + i];
+                row[i] = above + (lattice[top + cellsX + i] - above) * weight;
+            }
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int cell = columnCells[x];
+                float left = row[cell];
+                out[offset + x] += amplitude * (left + (row[cell + 1] - left) * columnWeights[x]);
+            }
+        }
+    }
+
+    private static float latticeValue(long seed, int x, int y) {
+        long hash = GameRandom.mix(seed + x * 0xC2B2AE3D27D4EB4FL + y * 0x165667B19E3779F9L);
+        return (hash >>> 40) * 0x1.0p-24f;
+    }
+
+    private static float fade(float t) {
+        return t * t * (3f - 2f * t);
+    }
+
+    /**
+     * Work buffers of fill, grown on demand. One per thread.
+     */
+    public static final class Scratch {
+        private float[] lattice = new float[0];
+        private float[] row = new float[0];
+        private int[] columnCells = new int[0];
+        private float[] columnWeights = new float[0];
+
+        float[] lattice(int size) {
+            if (lattice.length < size) {
+                lattice = new float[size];
+            }
+            return lattice;
+        }
+
+        float[] row(int size) {
+            if (row.length < size) {
+                row = new float[size];
+            }
+            return row;
+        }
+
+        int[] columnCells(int size) {
+            if (columnCells.length < size) {
+                columnCells = new int[size];
+            }
+            return columnCells;
+        }
+
+        float[] columnWeights(int size) {
+            if (columnWeights.length < size) {
+                columnWeights = new float[size];
+            }
+            return columnWeights;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.strategicgame.generation;
+
+import com.strategicgame.map.ChunkGenerator;
+import com.strategicgame.map.TileGrid;
+import com.strategicgame.util.GameRandom;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * MapGenerator builds the terrain of a map from a seed.
+ * Two coherent noises give every tile an elevation and a moisture, which
+ * choose its biome (see Biome); a little per-tile jitter roughens the
+ * borders between biomes.
+ * The noises are sampled every SAMPLE_STEP tiles and interpolated in
+ * between (which only smooths their finest octave); a square of tiles
+ * between four samples that cannot cross a biome border is filled at once,
+ * so only the tiles along the borders are classified one by one.
+ * The map is cut into square chunks of CHUNK_SIZE tiles. A chunk depends
+ * only on the seed and its coordinates (its jitter comes from a seed derived
+ * from them, see chunkSeed), so it can be generated alone (generateChunk,
+ * e.g. to stream a map, see ChunkedTileStorage), and the rows of chunks of
+ * a map are generated in parallel on a ForkJoinPool with the same result
+ * whatever the number of threads.
+ *
+ */
+public final class MapGenerator implements ChunkGenerator {
+    /** Width and height of a chunk, in tiles. */
+    public static final int CHUNK_SIZE = ChunkGenerator.CHUNK_SIZE;
+    /** Size of the largest terrain features, in tiles. */
+    public static final int DEFAULT_FEATURE_SIZE = 64;
+    /** Distance between two noise samples, in tiles. */
+    public static final int SAMPLE_STEP = 4;
+
+    private static final int SAMPLE_SHIFT = 2;
+    private static final int SQUARES_SHIFT = 4;   // squares per chunk side: CHUNK_SIZE / SAMPLE_STEP
+    private static final int SQUARES_MASK = (1 << SQUARES_SHIFT) - 1;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final int ELEVATION_OCTAVES = 4;
+    private static final int MOISTURE_OCTAVES = 3;
+
+    // Noise values are handled in fixed point, 1.0 = ONE
+    private static final int ONE = 1 << 16;
+    // Jitter: a signed byte shifted by JITTER_SHIFT, i.e. less than 1/128
+    private static final int JITTER_SHIFT = 2;
+    private static final int JITTER = 128 << JITTER_SHIFT;
+
+    // Biome lookup table, indexed by elevation and moisture levels (ONE / LEVELS wide),
+    // with margins for values pushed out of [0, 1] by the jitter
+    private static final int LEVELS = 256;
+    private static final int LEVEL_SHIFT = 8;
+    private static final int MARGIN = 4;
+    private static final int STRIDE = LEVELS + 2 * MARGIN;
+    private static final byte[] BIOME_TYPES = new byte[STRIDE * STRIDE];
+    // Band of each level, bands being cut at every level where the biome can change:
+    // one biome per pair of bands, and whether a span of bands holds a single biome
+    private static final int[] ELEVATION_BANDS = new int[STRIDE];
+    private static final int[] MOISTURE_BANDS = new int[STRIDE];
+    private static final int ELEVATION_BAND_COUNT;
+    private static final int MOISTURE_BAND_COUNT;
+    private static final boolean[] SINGLE_BIOME_SPANS;
+
+    static {
+        for (int e = 0; e < STRIDE; e++) {
+            for (int m = 0; m < STRIDE; m++) {
+                Biome biome = Biome.classify(levelValue(e), levelValue(m));
+                BIOME_TYPES[e * STRIDE + m] = (byte) biome.getTileType().ordinal();
+            }
+        }
+        for (int level = 1; level < STRIDE; level++) {
+            boolean elevationBorder = false;
+            boolean moistureBorder = false;
+            for (int other = 0; other < STRIDE; other++) {
+                elevationBorder |= BIOME_TYPES[level * STRIDE + other] != BIOME_TYPES[(level - 1) * STRIDE + other];
+                moistureBorder |= BIOME_TYPES[other * STRIDE + level] != BIOME_TYPES[other * STRIDE + level - 1];
+            }
+            ELEVATION_BANDS[level] = ELEVATION_BANDS[level - 1] + (elevationBorder ? 1 : 0);
+            MOISTURE_BANDS[level] = MOISTURE_BANDS[level - 1] + (moistureBorder ? 1 : 0);
+        }
+        ELEVATION_BAND_COUNT = ELEVATION_BANDS[STRIDE - 1] + 1;
+        MOISTURE_BAND_COUNT = MOISTURE_BANDS[STRIDE - 1] + 1;
+        byte[] bandTypes = new byte[ELEVATION_BAND_COUNT * MOISTURE_BAND_COUNT];
+        for (int e = 0; e < STRIDE; e++) {
+            for (int m = 0; m < STRIDE; m++) {
+                bandTypes[ELEVATION_BANDS[e] * MOISTURE_BAND_COUNT + MOISTURE_BANDS[m]] = BIOME_TYPES[e * STRIDE + m];
+            }
+        }
+        SINGLE_BIOME_SPANS = new boolean[ELEVATION_BAND_COUNT * ELEVATION_BAND_COUNT
+            * MOISTURE_BAND_COUNT * MOISTURE_BAND_COUNT];
+        for (int lowE = 0; lowE < ELEVATION_BAND_COUNT; lowE++) {
+            for (int highE = lowE; highE < ELEVATION_BAND_COUNT; highE++) {
+                for (int lowM = 0; lowM < MOISTURE_BAND_COUNT; lowM++) {
+                    for (int highM = lowM; highM < MOISTURE_BAND_COUNT; highM++) {
+                        boolean single = true;
+                        for (int e = lowE; e <= highE; e++) {
+                            for (int m = lowM; m <= highM; m++) {
+                                single &= bandTypes[e * MOISTURE_BAND_COUNT + m]
+                                    == bandTypes[lowE * MOISTURE_BAND_COUNT + lowM];
+                            }
+                        }
+                        SINGLE_BIOME_SPANS[spanIndex(lowE, highE, lowM, highM)] = single;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int spanIndex(int lowElevationBand, int highElevationBand,
+                                 int lowMoistureBand, int highMoistureBand) {
+        return ((lowElevationBand * ELEVATION_BAND_COUNT + highElevationBand) * MOISTURE_BAND_COUNT
+            + lowMoistureBand) * MOISTURE_BAND_COUNT + highMoistureBand;
+    }
+
+    // Writes the four tiles of a square row at once
+    private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final long seed;
+    private final FractalNoise elevation;
+    private final FractalNoise moisture;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a generator running on the common pool.
+     * @param seed The seed of the terrain
+     */
+    public MapGenerator(long seed) {
+        this(seed, DEFAULT_FEATURE_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a generator running on the common pool.
+     * @param seed The seed of the terrain
+     * @param featureSize Size of the largest terrain features, in tiles (a power of two, at least 16)
+     */
+    public MapGenerator(long seed, int featureSize) {
+        this(seed, featureSize, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a generator.
+     *
+     * @param seed The seed of the terrain
+     * @param featureSize Size of the largest terrain features, in tiles (a power of two, at least 16)
+     * @param pool Pool generating the rows of chunks
+     */
+    public MapGenerator(long seed, int featureSize, ForkJoinPool pool) {
+        if (featureSize < 16 || Integer.bitCount(featureSize) != 1) {
+            throw new IllegalArgumentException("Feature size must be a power of two, at least 16: " + featureSize);
+        }
+        this.seed = seed;
+        this.elevation = noise(GameRandom.mix(seed ^ 0x3C6EF372FE94F82BL), featureSize, ELEVATION_OCTAVES);
+        this.moisture = noise(GameRandom.mix(seed ^ 0xA54FF53A5F1D36F1L), 2 * featureSize, MOISTURE_OCTAVES);
+        this.pool = pool;
+    }
+
+    /**
+     * Creates a noise over the sample grid, dropping the octaves finer than a sample.
+     */
+    private static FractalNoise noise(long seed, int featureSize, int octaves) {
+        int sampleFeature = featureSize >> SAMPLE_SHIFT;
+        int maxOctaves = Integer.numberOfTrailingZeros(sampleFeature) + 1;
+        return new FractalNoise(seed, sampleFeature, Math.min(octaves, maxOctaves));
+    }
+
+    /**
+     * Picks a feature size suited to a map, so that small maps still hold
+     * several biomes.
+     * @param width Map width
+     * @param height Map height
+     * @return A feature size between 16 and DEFAULT_FEATURE_SIZE
+     */
+    public static int featureSizeFor(int width, int height) {
+        int size = Integer.highestOneBit(Math.max(1, Math.min(width, height))) / 2;
+        return Math.max(16, Math.min(DEFAULT_FEATURE_SIZE, size));
+    }
+
+    /**
+     * Derives the seed of the jitter of a chunk.
+     *
+     * @param seed The seed of the terrain
+     * @param chunkX Chunk column
+     * @param chunkY Chunk row
+     * @return The chunk seed
+     */
+    public static long chunkSeed(long seed, int chunkX, int chunkY) {
+        return GameRandom.mix(seed + GameRandom.mix(((long) chunkY << 32) | (chunkX & 0xFFFFFFFFL)));
+    }
+
+    /**
+     * Generates the terrain of a grid, replacing all its tile types.
+     * @param grid The grid
+     */
+    public void generate(TileGrid grid) {
+        grid.readTypes(ByteBuffer.wrap(generate(grid.getWidth(), grid.getHeight())));
+    }
+
+    /**
+     * Generates terrain.
+     *
+     * @param width Map width
+     * @param height Map height
+     * @return The TileType ordinal of every tile, row-major
+     */
+    public byte[] generate(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Map dimensions must be positive");
+        }
+        byte[] types = new byte[Math.multiplyExact(width, height)];
+        int chunkRows = (height + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        List<Region> tasks = new ArrayList<>(chunkRows);
+        for (int chunkY = 0; chunkY < chunkRows; chunkY++) {
+            int originY = chunkY * CHUNK_SIZE;
+            tasks.add(new Region(types, originY * width, width, 0, originY, width,
+                Math.min(CHUNK_SIZE, height - originY)));
+        }
+        if (chunkRows == 1) {
+            tasks.get(0).invoke(); // too little to share, stay on this thread
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        }
+        return types;
+    }
+
+    /**
+     * Generates the terrain of one chunk: the same tiles as generate gives
+     * there, whatever the size of the map.
+     *
+     * @param chunkX Chunk column
+     * @param chunkY Chunk row
+     * @param types Receives the CHUNK_SIZE * CHUNK_SIZE TileType ordinals of the chunk, row-major
+     */
+    @Override
+    public void generateChunk(int chunkX, int chunkY, byte[] types) {
+        new Region(types, 0, CHUNK_SIZE, chunkX * CHUNK_SIZE, chunkY * CHUNK_SIZE, CHUNK_SIZE, CHUNK_SIZE).compute();
+    }
+
+    private static float levelValue(int level) {
+        return Math.max(0f, Math.min(1f, (level - MARGIN + 0.5f) / LEVELS));
+    }
+
+    private static int level(int value) {
+        return Math.max(0, Math.min(STRIDE - 1, (value >> LEVEL_SHIFT) + MARGIN));
+    }
+
+    private static int fixed(float value) {
+        return (int) (value * ONE);
+    }
+
+    /**
+     * Generates a region of at most one chunk row, sample square by sample square.
+     */
+    private final class Region extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] out;
+        private final int offset;
+        private final int stride;
+        private final int originX;
+        private final int originY;
+        private final int width;
+        private final int height;
+
+        /**
+         * @param out Receives the tile types
+         * @param offset Index in out of the top left tile
+         * @param stride Distance in out between two rows
+         * @param originX Left column, a multiple of CHUNK_SIZE
+         * @param originY Top row, a multiple of CHUNK_SIZE
+         * @param width Region width
+         * @param height Region height, at most CHUNK_SIZE
+         */
+        Region(byte[] out, int offset, int stride, int originX, int originY, int width, int height) {
+            this.out = out;
+            this.offset = offset;
+            this.stride = stride;
+            this.originX = originX;
+            this.originY = originY;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        protected void compute() {
+            int samplesX = ((width - 1) >> SAMPLE_SHIFT) + 2;
+            int samplesY = ((height - 1) >> SAMPLE_SHIFT) + 2;
+            int[] elevations = sample(elevation, samplesX, samplesY);
+            int[] moistures = sample(moisture, samplesX, samplesY);
+
+            int chunkY = originY / CHUNK_SIZE;
+            long[] chunkSeeds = new long[(width + CHUNK_SIZE - 1) / CHUNK_SIZE];
+            for (int c = 0; c < chunkSeeds.length; c++) {
+                chunkSeeds[c] = chunkSeed(seed, originX / CHUNK_SIZE + c, chunkY);
+            }
+            for (int sy = 0; sy < samplesY - 1; sy++) {
+                int squareRows = Math.min(SAMPLE_STEP, height - (sy << SAMPLE_SHIFT));
+                for (int sx = 0; sx < samplesX - 1; sx++) {
+                    int squareColumns = Math.min(SAMPLE_STEP, width - (sx << SAMPLE_SHIFT));
+                    int corner = sy * samplesX + sx;
+                    int index = offset + (sy << SAMPLE_SHIFT) * stride + (sx << SAMPLE_SHIFT);
+                    int square = (sy << SQUARES_SHIFT) | (sx & SQUARES_MASK);   // within its chunk
+                    fillSquare(index, squareColumns, squareRows,
+                        elevations[corner], elevations[corner + 1],
+                        elevations[corner + samplesX], elevations[corner + samplesX + 1],
+                        moistures[corner], moistures[corner + 1],
+                        moistures[corner + samplesX], moistures[corner + samplesX + 1],
+                        chunkSeeds[(sx << SAMPLE_SHIFT) / CHUNK_SIZE], square);
+                }
+            }
+        }
+
+        private int[] sample(FractalNoise noise, int samplesX, int samplesY) {
+            float[] values = new float[samplesX * samplesY];
+            noise.fill(originX >> SAMPLE_SHIFT, originY >> SAMPLE_SHIFT, samplesX, samplesY,
+                values, new FractalNoise.Scratch());
+            int[] fixedValues = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                fixedValues[i] = fixed(values[i]);
+            }
+            return fixedValues;
+        }
+
+        /**
+         * Fills the tiles between four samples (top left, top right, bottom
+         * left, bottom right). The jitter of its rows is drawn at the position
+         * of the square in the sequence of the chunk.
+         */
+        private void fillSquare(int index, int columns, int rows, int e00, int e01, int e10, int e11,
+                                int m00, int m01, int m10, int m11, long chunkSeed, int square) {
+            // Interpolated values stay between the corners: one biome if no border lies in between
+            int lowElevation = level(Math.min(Math.min(e00, e01), Math.min(e10, e11)) - JITTER);
+            int highElevation = level(Math.max(Math.max(e00, e01), Math.max(e10, e11)) + JITTER);
+            int lowMoisture = level(Math.min(Math.min(m00, m01), Math.min(m10, m11)) - JITTER);
+            int highMoisture = level(Math.max(Math.max(m00, m01), Math.max(m10, m11)) + JITTER);
+            if (SINGLE_BIOME_SPANS[spanIndex(ELEVATION_BANDS[lowElevation], ELEVATION_BANDS[highElevation],
+                    MOISTURE_BANDS[lowMoisture], MOISTURE_BANDS[highMoisture])]) {
+                byte type = BIOME_TYPES[lowElevation * STRIDE + lowMoisture];
+                if (columns == SAMPLE_STEP) {
+                    int four = (type & 0xFF) * 0x01010101;
+                    for (int y = 0; y < rows; y++) {
+                        INTS.set(out, index + y * stride, four);
+                    }
+                    return;
+                }
+                for (int y = 0; y < rows; y++) {
+                    int row = index + y * stride;
+                    for (int x = 0; x < columns; x++) {
+                        out[row + x] = type;
+                    }
+                }
+                return;
+            }
+
+            for (int y = 0; y < rows; y++) {
+                int e = e00 + (((e10 - e00) * y) >> SAMPLE_SHIFT);
+                int m = m00 + (((m10 - m00) * y) >> SAMPLE_SHIFT);
+                int elevationStep = (e01 + (((e11 - e01) * y) >> SAMPLE_SHIFT) - e) >> SAMPLE_SHIFT;
+                int moistureStep = (m01 + (((m11 - m01) * y) >> SAMPLE_SHIFT) - m) >> SAMPLE_SHIFT;
+                long jitter = GameRandom.mix(chunkSeed + (square * SAMPLE_STEP + y + 1) * GOLDEN_GAMMA);
+                int row = index + y * stride;   // 16 bits of jitter per tile
+                for (int x = 0; x < columns; x++) {
+                    int jitteredElevation = e + ((byte) jitter << JITTER_SHIFT);
+                    int jitteredMoisture = m + ((byte) (jitter >>> 8) << JITTER_SHIFT);
+                    out[row + x] = BIOME_TYPES[level(jitteredElevation) * STRIDE + level(jitteredMoisture)];
+                    e += elevationStep;
+                    m += moistureStep;
+                    jitter >>>= 16;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.strategicgame.map;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * ArrayTileStorage keeps the tile values in primitive arrays on heap.
+ * This is the default storage of a TileGrid.
+ * The arrays are cut into chunks of CHUNK_SIZE tiles, shared copy-on-write
+ * between a storage and its forks : fork() copies the chunk tables only,
+ * and a chunk is copied the first time a shared one is written, so a fork
+ * costs one reference per chunk and then one chunk per region changed.
+ *
+ */
+public final class ArrayTileStorage implements TileStorage {
+    /** Number of tiles per chunk (a power of two). */
+    public static final int CHUNK_SIZE = 1 << 12;
+
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int width;
+    private final int height;
+    private final int size;
+    private final byte[][] types;
+    private final short[][] ownerIds;
+    private final int[][] occupantIds;
+    // Chunks shared with another storage, copied before their first write
+    private final long[] sharedTypes;
+    private final long[] sharedOwnerIds;
+    private final long[] sharedOccupantIds;
+
+    public ArrayTileStorage(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Grid dimensions must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        this.size = Math.multiplyExact(width, height);
+        int chunks = (size + CHUNK_MASK) >>> CHUNK_SHIFT;
+        this.types = new byte[chunks][];
+        this.ownerIds = new short[chunks][];
+        this.occupantIds = new int[chunks][];
+        for (int c = 0; c < chunks; c++) {
+            int length = Math.min(CHUNK_SIZE, size - (c << CHUNK_SHIFT));
+            types[c] = new byte[length];
+            ownerIds[c] = new short[length];
+            occupantIds[c] = new int[length];
+        }
+        this.sharedTypes = new long[(chunks + 63) >>> 6];
+        this.sharedOwnerIds = new long[sharedTypes.length];
+        this.sharedOccupantIds = new long[sharedTypes.length];
+    }
+
+    private ArrayTileStorage(ArrayTileStorage source) {
+        this.width = source.width;
+        this.height = source.height;
+        this.size = source.size;
+        this.types = source.types.clone();
+        this.ownerIds = source.ownerIds.clone();
+        this.occupantIds = source.occupantIds.clone();
+        this.sharedTypes = new long[source.sharedTypes.length];
+        this.sharedOwnerIds = new long[sharedTypes.length];
+        this.sharedOccupantIds = new long[sharedTypes.length];
+    }
+
+    /**
+     * Creates a storage holding the same values as this one, sharing every
+     * chunk with it until one of them writes to it.
+     * A storage must not be forked while another thread uses it.
+     * @return The fork
+     */
+    @Override
+    public ArrayTileStorage fork() {
+        ArrayTileStorage fork = new ArrayTileStorage(this);
+        Arrays.fill(sharedTypes, -1L);
+        Arrays.fill(sharedOwnerIds, -1L);
+        Arrays.fill(sharedOccupantIds, -1L);
+        Arrays.fill(fork.sharedTypes, -1L);
+        Arrays.fill(fork.sharedOwnerIds, -1L);
+        Arrays.fill(fork.sharedOccupantIds, -1L);
+        return fork;
+    }
+
+    private static boolean claim(long[] shared, int chunk) {
+        long bit = 1L << chunk;
+        if ((shared[chunk >>> 6] & bit) == 0) {
+            return false;
+        }
+        shared[chunk >>> 6] &= ~bit;
+        return true;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public byte getType(int index) {
+        return types[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    @Override
+    public void setType(int index, byte type) {
+        int chunk = index >>> CHUNK_SHIFT;
+        if (claim(sharedTypes, chunk)) {
+            types[chunk] = types[chunk].clone();
+        }
+        types[chunk][index & CHUNK_MASK] = type;
+    }
+
+    @Override
+    public short getOwnerId(int index) {
+        return ownerIds[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    @Override
+    public void setOwnerId(int index, short ownerId) {
+        int chunk = index >>> CHUNK_SHIFT;
+        if (claim(sharedOwnerIds, chunk)) {
+            ownerIds[chunk] = ownerIds[chunk].clone();
+        }
+        ownerIds[chunk][index & CHUNK_MASK] = ownerId;
+    }
+
+    @Override
+    public int getOccupantId(int index) {
+        return occupantIds[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    @Override
+    public void setOccupantId(int index, int entityId) {
+        int chunk = index >>> CHUNK_SHIFT;
+        if (claim(sharedOccupantIds, chunk)) {
+            occupantIds[chunk] = occupantIds[chunk].clone();
+        }
+        occupantIds[chunk][index & CHUNK_MASK] = entityId;
+    }
+
+    @Override
+    public void writeTypes(ByteBuffer buffer) {
+        for (byte[] chunk : types) {
+            buffer.put(chunk);
+        }
+    }
+
+    @Override
+    public void readTypes(ByteBuffer buffer) {
+        for (int c = 0; c < types.length; c++) {
+            if (claim(sharedTypes, c)) {
+                types[c] = new byte[types[c].length];
+            }
+            buffer.get(types[c]);
+        }
+    }
+
+    @Override
+    public void writeOwnerIds(ByteBuffer buffer) {
+        for (short[] chunk : ownerIds) {
+            buffer.asShortBuffer().put(chunk);
+            buffer.position(buffer.position() + 2 * chunk.length);
+        }
+    }
+
+    @Override
+    public void readOwnerIds(ByteBuffer buffer) {
+        for (int c = 0; c < ownerIds.length; c++) {
+            if (claim(sharedOwnerIds, c)) {
+                ownerIds[c] = new short[ownerIds[c].length];
+            }
+            buffer.asShortBuffer().get(ownerIds[c]);
+            buffer.position(buffer.position() + 2 * ownerIds[c].length);
+        }
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    @Override
+    public void flush() {
+        // Nothing to write back
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+}
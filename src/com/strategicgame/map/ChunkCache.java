@@ -0,0 +1,101 @@
+package com.strategicgame.map;
+
+import java.util.function.IntFunction;
+
+/**
+ * ChunkCache keeps per-tile objects of a map (tile views, positions) by
+ * square chunks of 64x64 tiles, each created on first access. Beyond a
+ * capacity the oldest chunk is dropped, so the objects of a huge streamed
+ * map take a bounded share of the heap whatever its size (see capacityFor).
+ * A dropped object is simply created again by its owner.
+ *
+ * @param <T> Type of the cached objects
+ */
+final class ChunkCache<T> {
+    /** Chunk side, in tiles. */
+    static final int CHUNK_SIZE = 64;
+    /** Tiles per chunk. */
+    static final int CHUNK_TILES = CHUNK_SIZE * CHUNK_SIZE;
+
+    private static final int CHUNK_SHIFT = 6;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // Share of the heap each cache takes, and its bounds in chunks
+    private static final int HEAP_SHARE = 16;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1024;
+
+    private final int chunksX;
+    private final T[][] chunks;
+    private final IntFunction<T[]> factory;
+    private final int[] order;   // ring, oldest at next
+    private int next;
+    private int count;
+
+    /**
+     * @param width Map width
+     * @param height Map height
+     * @param capacity Maximum number of chunks kept
+     * @param factory Creates the (empty) array of a chunk
+     */
+    @SuppressWarnings("unchecked")
+    ChunkCache(int width, int height, int capacity, IntFunction<T[]> factory) {
+        this.chunksX = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+        int chunksY = (height + CHUNK_MASK) >> CHUNK_SHIFT;
+        this.chunks = (T[][]) new Object[chunksX * chunksY][];
+        this.factory = factory;
+        this.order = new int[Math.min(capacity, chunks.length)];
+    }
+
+    /**
+     * Gets the number of chunks a cache keeps : a sixteenth of the maximum
+     * heap, between 16 and 1024 chunks.
+     * @param bytesPerTile Heap taken by the object of one tile, reference included
+     * @return Capacity in chunks
+     */
+    static int capacityFor(int bytesPerTile) {
+        long chunks = Runtime.getRuntime().maxMemory() / HEAP_SHARE / ((long) bytesPerTile * CHUNK_TILES);
+        return (int) Math.max(MIN_CAPACITY, Math.min(MAX_CAPACITY, chunks));
+    }
+
+    /**
+     * Gets the chunk holding a tile, creating it (and dropping the oldest
+     * one when full) if needed.
+     * @param x X coordinate, in the map
+     * @param y Y coordinate, in the map
+     * @return The objects of the chunk, indexed by slotOf
+     */
+    T[] chunkOf(int x, int y) {
+        int chunk = (y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT);
+        T[] objects = chunks[chunk];
+        if (objects == null) {
+            objects = factory.apply(CHUNK_TILES);
+            chunks[chunk] = objects;
+            if (count == order.length) {
+                chunks[order[next]] = null;
+            } else {
+                count++;
+            }
+            order[next] = chunk;
+            next = (next + 1) % order.length;
+        }
+        return objects;
+    }
+
+    /**
+     * Gets the slot of a tile in its chunk.
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return Slot index
+     */
+    static int slotOf(int x, int y) {
+        return ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
+    }
+
+    /**
+     * Gets the number of chunks kept at most.
+     * @return Capacity in chunks
+     */
+    int capacity() {
+        return order.length;
+    }
+}
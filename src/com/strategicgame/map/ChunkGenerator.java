@@ -0,0 +1,21 @@
+package com.strategicgame.map;
+
+/**
+ * ChunkGenerator produces the terrain of a map one square chunk at a time,
+ * for storages that create their tiles on first access (ChunkedTileStorage).
+ * A chunk must depend only on its coordinates, so that a chunk generated
+ * again after being dropped is the same.
+ *
+ */
+public interface ChunkGenerator {
+    /** Chunk side, in tiles. */
+    int CHUNK_SIZE = 64;
+
+    /**
+     * Generates the terrain of a chunk.
+     * @param chunkX Chunk column (tile column / CHUNK_SIZE)
+     * @param chunkY Chunk row (tile row / CHUNK_SIZE)
+     * @param types Receives the CHUNK_SIZE * CHUNK_SIZE TileType ordinals of the chunk, row-major
+     */
+    void generateChunk(int chunkX, int chunkY, byte[] types);
+}
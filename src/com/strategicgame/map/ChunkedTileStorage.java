@@ -0,0 +1,615 @@
+package com.strategicgame.map;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * ChunkedTileStorage streams a map chunk by chunk, so the size of the world
+ * no longer depends on the heap : only the chunks in use are in memory.
+ * A chunk (CHUNK_SIZE x CHUNK_SIZE tiles) is created the first time one of
+ * its tiles is touched, by a ChunkGenerator or from the chunk file if it was
+ * written before, and kept in a cache of a bounded number of chunks. When
+ * the cache is full the least recently used chunk is dropped, after being
+ * written to the chunk file if it changed since it was loaded.
+ *
+ * The chunk file holds a 4 KB aligned header (magic "GWCK", version, width,
+ * height, chunk size, then the slot of every chunk, 0 = never written)
+ * followed by the written chunks, each in a slot of fixed size : terrain
+ * bytes and owner shorts of its tiles, in big-endian order (version 1 slots
+ * also held occupant ids, ignored). Occupant ids are entity ids of the
+ * running process : they are kept on heap (see TileOccupants) and never
+ * reach the file.
+ *
+ */
+public final class ChunkedTileStorage implements TileStorage {
+    /** "GWCK" */
+    public static final int MAGIC = 0x4757434B;
+    public static final int VERSION = 2;
+    /** Chunk side, in tiles. */
+    public static final int CHUNK_SIZE = ChunkGenerator.CHUNK_SIZE;
+
+    private static final int CHUNK_SHIFT = 6;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int CHUNK_TILES = CHUNK_SIZE * CHUNK_SIZE;
+    private static final int HEADER_BYTES = 20;
+    private static final int PAGE_BYTES = 4096;
+    // Terrain and owners of a chunk : in a slot, and in memory
+    private static final int SLOT_BYTES = 3 * CHUNK_TILES;
+    private static final int VERSION_1_SLOT_BYTES = 7 * CHUNK_TILES;
+    // Share of the heap the cache takes by default, and its bounds in chunks
+    private static final int HEAP_SHARE = 8;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 4096;
+    private static final short[] NO_OWNERS = new short[CHUNK_TILES];
+
+    private final FileChannel channel;
+    private final Path temporaryFile;
+    private ChunkGenerator generator;
+    private final int width;
+    private final int height;
+    private final int chunksX;
+    private final int[] slots;   // per chunk, 0 = never written
+    private int slotCount;
+    private final long slotsOffset;
+    private final int slotBytes;
+    private final TileOccupants occupants = new TileOccupants();
+    private final Chunk[] loaded;   // per chunk, null when not in memory
+    private final int capacity;
+    private int loadedCount;
+    // Most recently used chunk first
+    private Chunk head;
+    private Chunk tail;
+    private final ByteBuffer io = ByteBuffer.allocate(SLOT_BYTES);
+    private long generations;
+    private long loads;
+    private long evictions;
+
+    /**
+     * Chunk in memory. Reused for another chunk when evicted.
+     */
+    private static final class Chunk {
+        int id;
+        final byte[] types = new byte[CHUNK_TILES];
+        short[] ownerIds;   // null while no tile of the chunk is owned
+        boolean dirty;
+        Chunk previous;
+        Chunk next;
+    }
+
+    private ChunkedTileStorage(FileChannel channel, Path temporaryFile, ChunkGenerator generator,
+                               int width, int height, int[] slots, int slotBytes, int capacity) {
+        this.channel = channel;
+        this.temporaryFile = temporaryFile;
+        this.generator = generator;
+        this.width = width;
+        this.height = height;
+        this.chunksX = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+        this.slots = slots;
+        this.slotsOffset = align(HEADER_BYTES + 4L * slots.length);
+        this.slotBytes = slotBytes;
+        this.slotCount = Arrays.stream(slots).max().orElse(0);
+        this.loaded = new Chunk[slots.length];
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates a chunk file for a new map, whose chunks are generated on first
+     * access. An existing file is replaced.
+     *
+     * @param path The chunk file
+     * @param width Map width
+     * @param height Map height
+     * @param generator Generates the terrain of the chunks
+     * @param capacity Maximum number of chunks in memory
+     * @return The storage
+     * @throws IOException if the file cannot be created
+     */
+    public static ChunkedTileStorage create(Path path, int width, int height, ChunkGenerator generator,
+                                            int capacity) throws IOException {
+        return create(path, null, width, height, generator, capacity);
+    }
+
+    /**
+     * Creates a storage over a temporary chunk file, deleted when the storage
+     * is closed (or else when the JVM exits), with a cache sized to the heap (see defaultCapacity).
+     *
+     * @param width Map width
+     * @param height Map height
+     * @param generator Generates the terrain of the chunks
+     * @return The storage
+     * @throws IOException if the file cannot be created
+     */
+    public static ChunkedTileStorage createTemporary(int width, int height, ChunkGenerator generator)
+            throws IOException {
+        Path path = Files.createTempFile("gridwar", ".chunks");
+        path.toFile().deleteOnExit();   // if the storage is never closed
+        try {
+            return create(path, path, width, height, generator, defaultCapacity());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    private static ChunkedTileStorage create(Path path, Path temporaryFile, int width, int height,
+                                             ChunkGenerator generator, int capacity) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Grid dimensions must be positive");
+        }
+        Math.multiplyExact(width, height);   // tile indexes are ints
+        checkCapacity(capacity);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            int chunks = chunkCount(width, height);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(CHUNK_SIZE).flip();
+            channel.write(header, 0);
+            // Empty slot table, up to the first slot
+            channel.write(ByteBuffer.allocate(1), align(HEADER_BYTES + 4L * chunks) - 1);
+            return new ChunkedTileStorage(channel, temporaryFile, generator, width, height,
+                new int[chunks], SLOT_BYTES, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing chunk file. Chunks it does not hold are generated.
+     *
+     * @param path The chunk file
+     * @param generator Generates the terrain of the chunks never written
+     * @param capacity Maximum number of chunks in memory
+     * @return The storage
+     * @throws IOException if the file cannot be read or is not a chunk file
+     */
+    public static ChunkedTileStorage open(Path path, ChunkGenerator generator, int capacity) throws IOException {
+        checkCapacity(capacity);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException("Not a GridWar chunk file: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION && version != 1) {
+                throw new IOException("Unsupported chunk file version " + version);
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            int chunkSize = header.getInt();
+            if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+                throw new IOException("Invalid map size " + width + "x" + height);
+            }
+            if (chunkSize != CHUNK_SIZE) {
+                throw new IOException("Unsupported chunk size " + chunkSize);
+            }
+            ByteBuffer table = ByteBuffer.allocate(4 * chunkCount(width, height));
+            readFully(channel, table, HEADER_BYTES);
+            if (table.hasRemaining()) {
+                throw new IOException("Truncated chunk file: " + path);
+            }
+            table.flip();
+            int[] slots = new int[table.capacity() / 4];
+            table.asIntBuffer().get(slots);
+            return new ChunkedTileStorage(channel, null, generator, width, height, slots,
+                version == 1 ? VERSION_1_SLOT_BYTES : SLOT_BYTES, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the number of chunks the cache holds by default : an eighth of the
+     * maximum heap, between 16 and 4096 chunks (12 KB each).
+     * @return Capacity in chunks
+     */
+    public static int defaultCapacity() {
+        long chunks = Runtime.getRuntime().maxMemory() / HEAP_SHARE / SLOT_BYTES;
+        return (int) Math.max(MIN_CAPACITY, Math.min(MAX_CAPACITY, chunks));
+    }
+
+    private static void checkCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+    }
+
+    private static int chunkCount(int width, int height) {
+        return ((width + CHUNK_MASK) >> CHUNK_SHIFT) * ((height + CHUNK_MASK) >> CHUNK_SHIFT);
+    }
+
+    private static long align(long offset) {
+        return (offset + PAGE_BYTES - 1) & -PAGE_BYTES;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return;
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * Gets the chunk holding a tile, loading it if needed.
+     * @return The chunk
+     */
+    private Chunk chunkOf(int index) {
+        int y = index / width;
+        int x = index - y * width;
+        int id = (y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT);
+        Chunk chunk = head;
+        if (chunk != null && chunk.id == id) {
+            return chunk;
+        }
+        chunk = loaded[id];
+        if (chunk == null) {
+            chunk = load(id);
+        } else {
+            unlink(chunk);
+        }
+        pushFront(chunk);
+        return chunk;
+    }
+
+    /**
+     * Offset of a tile within its chunk.
+     */
+    private int offsetOf(int index) {
+        int y = index / width;
+        int x = index - y * width;
+        return ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
+    }
+
+    private Chunk load(int id) {
+        Chunk chunk;
+        if (loadedCount < capacity) {
+            chunk = new Chunk();
+            loadedCount++;
+        } else {
+            chunk = tail;
+            unlink(chunk);
+            evict(chunk);
+        }
+        chunk.id = id;
+        chunk.dirty = false;
+        if (slots[id] == 0) {
+            generator.generateChunk(id % chunksX, id / chunksX, chunk.types);
+            chunk.ownerIds = null;
+            generations++;
+        } else {
+            read(chunk);
+            loads++;
+        }
+        loaded[id] = chunk;
+        return chunk;
+    }
+
+    private void evict(Chunk chunk) {
+        if (chunk.dirty) {
+            write(chunk);
+        }
+        loaded[chunk.id] = null;
+        evictions++;
+    }
+
+    private void read(Chunk chunk) {
+        io.clear();
+        try {
+            readFully(channel, io, slotOffset(slots[chunk.id]));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        io.flip();
+        io.get(chunk.types);
+        if (chunk.ownerIds == null) {
+            chunk.ownerIds = new short[CHUNK_TILES];
+        }
+        io.asShortBuffer().get(chunk.ownerIds);
+    }
+
+    private void write(Chunk chunk) {
+        try {
+            if (slots[chunk.id] == 0) {
+                slots[chunk.id] = ++slotCount;
+                ByteBuffer entry = ByteBuffer.allocate(4).putInt(0, slotCount);
+                writeFully(channel, entry, HEADER_BYTES + 4L * chunk.id);
+            }
+            io.clear();
+            io.put(chunk.types);
+            io.asShortBuffer().put(chunk.ownerIds != null ? chunk.ownerIds : NO_OWNERS);
+            io.clear();
+            writeFully(channel, io, slotOffset(slots[chunk.id]));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunk.dirty = false;
+    }
+
+    private long slotOffset(int slot) {
+        return slotsOffset + (long) (slot - 1) * slotBytes;
+    }
+
+    private void unlink(Chunk chunk) {
+        if (chunk.previous != null) {
+            chunk.previous.next = chunk.next;
+        } else {
+            head = chunk.next;
+        }
+        if (chunk.next != null) {
+            chunk.next.previous = chunk.previous;
+        } else {
+            tail = chunk.previous;
+        }
+        chunk.previous = null;
+        chunk.next = null;
+    }
+
+    private void pushFront(Chunk chunk) {
+        chunk.next = head;
+        if (head != null) {
+            head.previous = chunk;
+        } else {
+            tail = chunk;
+        }
+        head = chunk;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public byte getType(int index) {
+        return chunkOf(index).types[offsetOf(index)];
+    }
+
+    @Override
+    public void setType(int index, byte type) {
+        Chunk chunk = chunkOf(index);
+        chunk.types[offsetOf(index)] = type;
+        chunk.dirty = true;
+    }
+
+    @Override
+    public short getOwnerId(int index) {
+        short[] ownerIds = chunkOf(index).ownerIds;
+        return ownerIds == null ? 0 : ownerIds[offsetOf(index)];
+    }
+
+    @Override
+    public void setOwnerId(int index, short ownerId) {
+        Chunk chunk = chunkOf(index);
+        if (chunk.ownerIds == null) {
+            if (ownerId == 0) {
+                return;
+            }
+            chunk.ownerIds = new short[CHUNK_TILES];
+        }
+        chunk.ownerIds[offsetOf(index)] = ownerId;
+        chunk.dirty = true;
+    }
+
+    @Override
+    public int getOccupantId(int index) {
+        return occupants.get(index);
+    }
+
+    @Override
+    public void setOccupantId(int index, int entityId) {
+        occupants.set(index, entityId);
+    }
+
+    /**
+     * Copies every terrain byte into a buffer, loading the chunks one after
+     * the other : the whole map goes through the cache.
+     */
+    @Override
+    public void writeTypes(ByteBuffer buffer) {
+        int start = buffer.position();
+        forEachChunkRow((chunk, offset, index, length) ->
+            buffer.put(start + index, chunk.types, offset, length));
+        buffer.position(start + width * height);
+    }
+
+    @Override
+    public void readTypes(ByteBuffer buffer) {
+        int start = buffer.position();
+        forEachChunkRow((chunk, offset, index, length) -> {
+            buffer.get(start + index, chunk.types, offset, length);
+            chunk.dirty = true;
+        });
+        buffer.position(start + width * height);
+    }
+
+    @Override
+    public void writeOwnerIds(ByteBuffer buffer) {
+        int start = buffer.position();
+        forEachChunkRow((chunk, offset, index, length) -> {
+            for (int i = 0; i < length; i++) {
+                buffer.putShort(start + 2 * (index + i), chunk.ownerIds == null ? 0 : chunk.ownerIds[offset + i]);
+            }
+        });
+        buffer.position(start + 2 * width * height);
+    }
+
+    @Override
+    public void readOwnerIds(ByteBuffer buffer) {
+        int start = buffer.position();
+        forEachChunkRow((chunk, offset, index, length) -> {
+            for (int i = 0; i < length; i++) {
+                short ownerId = buffer.getShort(start + 2 * (index + i));
+                if (ownerId != 0 && chunk.ownerIds == null) {
+                    chunk.ownerIds = new short[CHUNK_TILES];
+                }
+                if (chunk.ownerIds != null) {
+                    chunk.ownerIds[offset + i] = ownerId;
+                }
+            }
+            chunk.dirty = true;
+        });
+        buffer.position(start + 2 * width * height);
+    }
+
+    /**
+     * Action on the part of a tile row lying in one chunk.
+     */
+    private interface ChunkRowAction {
+        void apply(Chunk chunk, int offset, int index, int length);
+    }
+
+    /**
+     * Visits the map chunk by chunk, each chunk row by row.
+     */
+    private void forEachChunkRow(ChunkRowAction action) {
+        int chunksY = loaded.length / chunksX;
+        for (int cy = 0; cy < chunksY; cy++) {
+            for (int cx = 0; cx < chunksX; cx++) {
+                int originX = cx << CHUNK_SHIFT;
+                int originY = cy << CHUNK_SHIFT;
+                Chunk chunk = chunkOf(originY * width + originX);
+                int columns = Math.min(CHUNK_SIZE, width - originX);
+                int rows = Math.min(CHUNK_SIZE, height - originY);
+                for (int y = 0; y < rows; y++) {
+                    action.apply(chunk, y << CHUNK_SHIFT, (originY + y) * width + originX, columns);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops every chunk, in memory and in the file : the tiles are generated
+     * again by the given generator as they are visited, unowned and empty.
+     * The grid over the storage must have no occupant.
+     * @param generator Generates the terrain of the chunks
+     */
+    public void reset(ChunkGenerator generator) {
+        this.generator = generator;
+        for (Chunk chunk = head; chunk != null; chunk = chunk.next) {
+            loaded[chunk.id] = null;
+        }
+        head = null;
+        tail = null;
+        loadedCount = 0;
+        Arrays.fill(slots, 0);
+        slotCount = 0;
+        try {
+            channel.truncate(slotsOffset);
+            writeFully(channel, ByteBuffer.allocate(4 * slots.length), HEADER_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creating a fork would copy the whole map : streamed maps cannot be forked.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public TileStorage fork() {
+        throw new UnsupportedOperationException("A chunked map cannot be forked");
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    /**
+     * Gets the maximum number of chunks in memory.
+     * @return Capacity in chunks
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of chunks in memory.
+     * @return Loaded chunk count
+     */
+    public int getLoadedChunkCount() {
+        return loadedCount;
+    }
+
+    /**
+     * Gets the number of chunks created by the generator.
+     * @return Generation count
+     */
+    public long getGenerationCount() {
+        return generations;
+    }
+
+    /**
+     * Gets the number of chunks read back from the file.
+     * @return Load count
+     */
+    public long getLoadCount() {
+        return loads;
+    }
+
+    /**
+     * Gets the number of chunks dropped from memory.
+     * @return Eviction count
+     */
+    public long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Writes the changed chunks to the file.
+     */
+    @Override
+    public void flush() {
+        for (Chunk chunk = head; chunk != null; chunk = chunk.next) {
+            if (chunk.dirty) {
+                write(chunk);
+            }
+        }
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the changed chunks and closes the file (deleting it if temporary).
+     */
+    @Override
+    public void close() {
+        try {
+            if (temporaryFile == null) {
+                flush();
+            }
+            channel.close();
+            if (temporaryFile != null) {
+                Files.deleteIfExists(temporaryFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
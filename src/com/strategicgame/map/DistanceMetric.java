@@ -0,0 +1,34 @@
+package com.strategicgame.map;
+
+/**
+ * Enum of the distance formulas used for range queries.
+ * Match Position.getManhattanDistance and Position.getEuclideanDistance.
+ * 
+ */
+public enum DistanceMetric {
+    MANHATTAN("Manhattan"),
+    EUCLIDEAN("Euclidean");
+
+    private final String displayName;
+
+    DistanceMetric(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Computes the distance for a coordinate difference.
+     * @param dx Difference on X
+     * @param dy Difference on Y
+     * @return Distance
+     */
+    public double distance(int dx, int dy) {
+        if (this == MANHATTAN) {
+            return Math.abs(dx) + Math.abs(dy);
+        }
+        return Math.sqrt((double) dx * dx + (double) dy * dy);
+    }
+}
@@ -1,6 +1,10 @@
 package com.strategicgame.map;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.function.UnaryOperator;
+import com.strategicgame.generation.MapGenerator;
+import com.strategicgame.pathfinding.AStarPathFinder;
 import com.strategicgame.units.Unit;
 
 /**
@@ -9,35 +13,105 @@ import com.strategicgame.units.Unit;
  * 
  */
 public class GameMap {
+    /** Number of tiles above which GameManager streams the map (see streamed). */
+    public static final long STREAMING_THRESHOLD = 1L << 24;
+
+    // Heap taken by a tile view (object and reference), to size their cache
+    private static final int TILE_VIEW_BYTES = 28;
+
     private final int width;
     private final int height;
-    private final Map<Position, Tile> tiles;
+    private final TileGrid grid;
+    private final ChunkCache<Tile> tileViews;   // created on first access, bounded by the heap
+    private SpatialIndex spatialIndex;
+    private InfluenceMap influenceMap;
+    private VisibilityMap visibilityMap;
     private final Random random;
+    private PathFinder pathFinder;
 
     public GameMap(int width, int height) {
-        this.width = width;
-        this.height = height;
-        this.tiles = new HashMap<>(width * height);
-        this.random = new Random();
+        this(width, height, new Random());
+    }
+
+    /**
+     * Creates a map whose terrain generation uses the given random generator.
+     * @param width Map width
+     * @param height Map height
+     * @param random Random generator, shared with the rest of the game
+     */
+    public GameMap(int width, int height, Random random) {
+        this(new ArrayTileStorage(width, height), random);
+    }
+
+    /**
+     * Creates a map over an existing tile storage, e.g. a memory-mapped
+     * map file; its terrain is used as is.
+     * @param storage The tile storage
+     * @param random Random generator, shared with the rest of the game
+     */
+    public GameMap(TileStorage storage, Random random) {
+        this(new TileGrid(storage), random);
+    }
+
+    private GameMap(TileGrid grid, Random random) {
+        this.width = grid.getWidth();
+        this.height = grid.getHeight();
+        this.grid = grid;
+        this.tileViews = new ChunkCache<>(width, height, ChunkCache.capacityFor(TILE_VIEW_BYTES), Tile[]::new);
+        this.random = random;
+        this.pathFinder = AStarPathFinder.perThread();
+    }
+
+    /**
+     * Creates a map streamed chunk by chunk (see ChunkedTileStorage) from a
+     * temporary file : its terrain is generated, from a seed drawn from the
+     * random generator, as the chunks are first visited, and only the chunks
+     * in use stay in memory. Such a map cannot be forked.
+     * @param width Map width
+     * @param height Map height
+     * @param random Random generator, shared with the rest of the game
+     * @return The map
+     * @throws IOException if the chunk file cannot be created
+     */
+    public static GameMap streamed(int width, int height, Random random) throws IOException {
+        MapGenerator generator = new MapGenerator(random.nextLong(), MapGenerator.featureSizeFor(width, height));
+        return new GameMap(ChunkedTileStorage.createTemporary(width, height, generator), random);
+    }
+
+    /**
+     * Creates a map holding the same tiles and occupants, sharing its tile
+     * storage copy-on-write with this one (see TileGrid.fork). The fork
+     * searches paths with the default path finder.
+     * @param random Random generator of the forked game
+     * @param counterpart Gives the entity of the fork standing for an entity of this map
+     * @return The fork
+     */
+    public GameMap fork(Random random, UnaryOperator<MapEntity> counterpart) {
+        return new GameMap(grid.fork(counterpart), random);
     }
 
     /**
-     * Generates the map with random terrain.
+     * Generates the terrain of the map (see MapGenerator), from a seed drawn
+     * from the random generator of the map, with features sized to the map.
      */
     public void generateMap() {
-        TileType[] terrainTypes = TileType.values();
-        
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                Position pos = new Position(x, y);
-                
-                // Bias towards grass tiles
-                TileType type = random.nextDouble() < 0.6 ? TileType.GRASS : 
-                               terrainTypes[random.nextInt(terrainTypes.length)];
-                
-                tiles.put(pos, new Tile(pos, type));
+        generateMap(new MapGenerator(random.nextLong(), MapGenerator.featureSizeFor(width, height)));
+    }
+
+    /**
+     * Generates the terrain of the map with a given generator.
+     * @param generator The generator
+     */
+    public void generateMap(MapGenerator generator) {
+        if (grid.getStorage() instanceof ChunkedTileStorage) {
+            // Streamed : the chunks are generated again as they are visited
+            if (grid.getOccupantCount() > 0) {
+                throw new IllegalStateException("Cannot regenerate a streamed map with entities on it");
             }
+            ((ChunkedTileStorage) grid.getStorage()).reset(generator);
+            return;
         }
+        generator.generate(grid);
     }
 
     /**
@@ -46,7 +120,7 @@ public class GameMap {
      * @return The tile at this position, or null if out of bounds
      */
     public Tile getTile(Position position) {
-        return tiles.get(position);
+        return getTile(position.getX(), position.getY());
     }
 
     /**
@@ -56,7 +130,141 @@ public class GameMap {
      * @return The tile, or null if out of bounds
      */
     public Tile getTile(int x, int y) {
-        return getTile(new Position(x, y));
+        if (!grid.contains(x, y)) {
+            return null;
+        }
+        Tile[] views = tileViews.chunkOf(x, y);
+        int slot = ChunkCache.slotOf(x, y);
+        Tile tile = views[slot];
+        if (tile == null) {
+            tile = new Tile(grid, grid.indexOf(x, y), grid.positionAt(x, y));
+            views[slot] = tile;
+        }
+        return tile;
+    }
+
+    /**
+     * Gets the position of a tile, without allocating (see PositionPool).
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return The shared position of the tile, or a new one if out of bounds
+     */
+    public Position getPosition(int x, int y) {
+        return grid.positionAt(x, y);
+    }
+
+    /**
+     * Finds the free tile nearest to coordinates : the first tile units can
+     * enter (passable terrain, no occupant), ring by ring around them, each
+     * ring scanned row by row.
+     * @param x X coordinate, clamped to the map
+     * @param y Y coordinate, clamped to the map
+     * @return The position of the tile, or null if no tile of the map is free
+     */
+    public Position findFreeTile(int x, int y) {
+        return findFreeTile(x, y, null);
+    }
+
+    /**
+     * Finds the free tile nearest to coordinates within a region.
+     * @param x X coordinate, clamped to the map
+     * @param y Y coordinate, clamped to the map
+     * @param region Bitset of the allowed tiles (see findLargestRegion), or null for any tile
+     * @return The position of the tile, or null if no tile of the region is free
+     */
+    public Position findFreeTile(int x, int y, long[] region) {
+        int cx = Math.max(0, Math.min(width - 1, x));
+        int cy = Math.max(0, Math.min(height - 1, y));
+        int maxRadius = Math.max(Math.max(cx, width - 1 - cx), Math.max(cy, height - 1 - cy));
+        for (int radius = 0; radius <= maxRadius; radius++) {
+            for (int ty = Math.max(0, cy - radius); ty <= Math.min(height - 1, cy + radius); ty++) {
+                boolean edgeRow = Math.abs(ty - cy) == radius;
+                int step = edgeRow || radius == 0 ? 1 : 2 * radius;   // inner rows: both ends only
+                for (int tx = cx - radius; tx <= cx + radius; tx += step) {
+                    if (tx < 0 || tx >= width) {
+                        continue;
+                    }
+                    int index = grid.indexOf(tx, ty);
+                    if (grid.isPassable(index) && (region == null || (region[index >>> 6] & (1L << index)) != 0)) {
+                        return grid.positionAt(tx, ty);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the largest region of passable terrain : units can walk from any
+     * of its tiles to any other (diagonal moves do not cut corners, so
+     * regions are joined by their sides). Costs a pass over the whole map.
+     * @return Bitset of the tiles of the region (bit index & 63 of word
+     *         index >>> 6), or null for a streamed map, too large to scan
+     */
+    public long[] findLargestRegion() {
+        if (grid.getStorage() instanceof ChunkedTileStorage) {
+            return null;
+        }
+        long[] seen = new long[(grid.size() + 63) >>> 6];
+        int largestSeed = -1;
+        int largestSize = 0;
+        for (int index = 0; index < grid.size(); index++) {
+            if ((seen[index >>> 6] & (1L << index)) == 0 && grid.getType(index).isPassable()) {
+                int regionSize = fillRegion(index, seen);
+                if (regionSize > largestSize) {
+                    largestSize = regionSize;
+                    largestSeed = index;
+                }
+            }
+        }
+        long[] region = new long[seen.length];
+        if (largestSeed >= 0) {
+            fillRegion(largestSeed, region);
+        }
+        return region;
+    }
+
+    /**
+     * Marks the passable tiles joined to a tile by their sides.
+     * @return Number of tiles marked
+     */
+    private int fillRegion(int start, long[] marks) {
+        int[] stack = new int[64];
+        int depth = 0;
+        int count = 0;
+        marks[start >>> 6] |= 1L << start;
+        stack[depth++] = start;
+        while (depth > 0) {
+            int index = stack[--depth];
+            count++;
+            int x = grid.xOf(index);
+            int y = grid.yOf(index);
+            for (int side = 0; side < 4; side++) {
+                int nx = side == 0 ? x - 1 : side == 1 ? x + 1 : x;
+                int ny = side == 2 ? y - 1 : side == 3 ? y + 1 : y;
+                if (!grid.contains(nx, ny)) {
+                    continue;
+                }
+                int next = grid.indexOf(nx, ny);
+                if ((marks[next >>> 6] & (1L << next)) == 0 && grid.getType(next).isPassable()) {
+                    marks[next >>> 6] |= 1L << next;
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                    }
+                    stack[depth++] = next;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets a tile by its grid index.
+     * @param index Row-major tile index
+     * @return The tile
+     */
+    public Tile getTile(int index) {
+        return getTile(grid.xOf(index), grid.yOf(index));
     }
 
     /**
@@ -65,16 +273,76 @@ public class GameMap {
      * @return true if valid position
      */
     public boolean isWithinBounds(Position position) {
-        return position.getX() >= 0 && position.getX() < width &&
-               position.getY() >= 0 && position.getY() < height;
+        return grid.contains(position.getX(), position.getY());
+    }
+
+    /**
+     * Checks if coordinates are within map bounds.
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return true if valid coordinates
+     */
+    public boolean isWithinBounds(int x, int y) {
+        return grid.contains(x, y);
+    }
+
+    /**
+     * Gets the dense tile storage backing this map.
+     * @return The tile grid
+     */
+    public TileGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Gets the spatial index used for range queries on units and buildings,
+     * created on first call (so that forks that never query it, e.g. in
+     * playouts, do not build its cell table).
+     * @return The spatial index
+     */
+    public SpatialIndex getSpatialIndex() {
+        if (spatialIndex == null) {
+            spatialIndex = new SpatialIndex(grid, SpatialIndex.cellSizeFor(width, height));
+        }
+        return spatialIndex;
     }
 
     /**
-     * Gets all tiles as a collection. 
+     * Gets the influence map of the players, created on first call
+     * (so that maps and forks that never ask for it do not maintain it).
+     * @return The influence map
+     */
+    public InfluenceMap getInfluenceMap() {
+        if (influenceMap == null) {
+            influenceMap = new InfluenceMap(grid);
+        }
+        return influenceMap;
+    }
+
+    /**
+     * Gets the fog of war of the players, created on first call
+     * (so that maps and forks that never ask for it do not maintain it).
+     * @return The visibility map
+     */
+    public VisibilityMap getVisibilityMap() {
+        if (visibilityMap == null) {
+            visibilityMap = new VisibilityMap(grid);
+        }
+        return visibilityMap;
+    }
+
+    /**
+     * Gets all tiles as a collection, in row-major order. 
      * @return Collection of all tiles
      */
     public Collection<Tile> getAllTiles() {
-        return new ArrayList<>(tiles.values());
+        List<Tile> result = new ArrayList<>(grid.size());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                result.add(getTile(x, y));
+            }
+        }
+        return result;
     }
 
     /**
@@ -84,37 +352,39 @@ public class GameMap {
      */
     public List<Tile> getTilesByType(TileType type) {
         List<Tile> result = new ArrayList<>();
-        for (Tile tile : tiles.values()) {
-            if (tile.getType() == type) {
-                result.add(tile);
+        for (int i = 0; i < grid.size(); i++) {
+            if (grid.getType(i) == type) {
+                result.add(getTile(i));
             }
         }
         return result;
     }
 
     /**
-     * Finds a path from start to end position
+     * Finds a path from start to end position, using the current path finder
+     * (terrain-aware A* by default).
      * @param start Starting position
      * @param end Ending position
      * @return List of positions representing the path, empty if no path found
      */
     public List<Position> findPath(Position start, Position end) {
-        // Simplified pathfinding - returns direct line if passable
-        List<Position> path = new ArrayList<>();
-        
-        if (!isWithinBounds(start) || !isWithinBounds(end)) {
-            return path;
-        }
+        return pathFinder.findPath(this, start, end);
+    }
 
-        // Check if direct path exists
-        Tile endTile = getTile(end);
-        if (endTile == null || !endTile.isPassable()) {
-            return path;
-        }
+    /**
+     * Gets the pathfinding strategy.
+     * @return The current path finder
+     */
+    public PathFinder getPathFinder() {
+        return pathFinder;
+    }
 
-        path.add(start);
-        path.add(end);
-        return path;
+    /**
+     * Sets the pathfinding strategy.
+     * @param pathFinder The path finder to use
+     */
+    public void setPathFinder(PathFinder pathFinder) {
+        this.pathFinder = pathFinder;
     }
 
     /**
@@ -137,8 +407,22 @@ public class GameMap {
      * Displays the map in console .
      */
     public void displayMap() {
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
+        displayRegion(0, 0, width, height);
+    }
+
+    /**
+     * Displays a rectangle of the map in console, clipped to the map : on a
+     * streamed map only the chunks it covers are loaded.
+     * @param minX Left column
+     * @param minY Top row
+     * @param regionWidth Width in tiles
+     * @param regionHeight Height in tiles
+     */
+    public void displayRegion(int minX, int minY, int regionWidth, int regionHeight) {
+        int maxX = Math.min(width, minX + regionWidth);
+        int maxY = Math.min(height, minY + regionHeight);
+        for (int y = Math.max(0, minY); y < maxY; y++) {
+            for (int x = Math.max(0, minX); x < maxX; x++) {
                 Tile tile = getTile(x, y);
                 if (tile != null) {
                     System.out.print(tile.getType().name().charAt(0) + " ");
@@ -151,16 +435,35 @@ public class GameMap {
     }
 
 
+    /**
+     * Finds the position of a unit on the map, in constant time.
+     * @param unit The unit to look for
+     * @return Its position, or null if the unit is not on the map
+     */
     public Position findUnitPosition(Unit unit) {
-    for (Map.Entry<Position, Tile> entry : tiles.entrySet()) {
-        Tile tile = entry.getValue();
-        Object occupant = tile.getOccupant();   // Unit ou Building
+        int index = grid.tileOf(unit.getEntityId());
+        if (index < 0) {
+            return null;
+        }
+        return grid.positionOf(index);
+    }
 
-        if (occupant == unit) {                // same instance
-            return entry.getKey();             // la Position associée
+    /**
+     * Releases the tile storage of the map (see TileGrid.close).
+     */
+    public void close() {
+        grid.close();
+    }
+
+    /**
+     * Removes an entity from the map (e.g. a dead unit).
+     * @param entity The unit or building to remove
+     */
+    public void removeOccupant(MapEntity entity) {
+        int index = grid.tileOf(entity.getEntityId());
+        if (index >= 0) {
+            grid.setOccupant(index, null);
         }
     }
-    return null;
-}
 
 }
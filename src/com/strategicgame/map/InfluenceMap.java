@@ -0,0 +1,210 @@
+package com.strategicgame.map;
+
+import com.strategicgame.buildings.Building;
+import com.strategicgame.player.Player;
+import com.strategicgame.units.Unit;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * InfluenceMap measures how strongly each player controls every tile of a
+ * map, as one float grid per player the size of the map.
+ * A unit spreads its attack over the tiles it can reach and hit next turn
+ * (its movement speed plus its range, by Manhattan distance), falling off
+ * linearly with the distance; a building on the map holds the tiles around it.
+ * It listens to the tile grid: a move or a death subtracts the stamp of the
+ * entity where it was and adds it where it goes, so a turn costs one stamp
+ * per entity moved, never a full recomputation.
+ *
+ */
+public class InfluenceMap implements TileChangeListener {
+    /** Influence of a building on its own tile. */
+    public static final float BUILDING_STRENGTH = 10f;
+    /** Distance over which a building holds the ground. */
+    public static final int BUILDING_RADIUS = 2;
+    /** Influence below which a tile counts as empty (rounding left by removed stamps). */
+    public static final float NEGLIGIBLE = 0.01f;
+
+    private final TileGrid grid;
+    private final int width;
+    private final int height;
+    // One grid per player id (null until the player has an entity), and their sum
+    private float[][] influence = new float[0][];
+    private final float[] total;
+    // What each entity added, so that it is removed exactly even once dead
+    private final Map<MapEntity, Stamp> stamps = new IdentityHashMap<>();
+
+    public InfluenceMap(TileGrid grid) {
+        this.grid = grid;
+        this.width = grid.getWidth();
+        this.height = grid.getHeight();
+        this.total = new float[grid.size()];
+        stampOccupants();
+        grid.addListener(this);
+    }
+
+    /**
+     * Stamp of an entity: its owner, strength and reach when it was placed.
+     */
+    private static final class Stamp {
+        final int ownerId;
+        final float strength;
+        final int radius;
+        final int tile;
+
+        Stamp(int ownerId, float strength, int radius, int tile) {
+            this.ownerId = ownerId;
+            this.strength = strength;
+            this.radius = radius;
+            this.tile = tile;
+        }
+    }
+
+    @Override
+    public void onOccupantChanged(int index, Object previous, Object current) {
+        if (previous != null) {
+            Stamp stamp = stamps.remove(previous);
+            if (stamp != null) {
+                spread(stamp, -1f);
+            }
+        }
+        if (current != null) {
+            place((MapEntity) current, index);
+        }
+    }
+
+    private void place(MapEntity entity, int tile) {
+        Stamp stamp = stampOf(entity, tile);
+        if (stamp != null) {
+            stamps.put(entity, stamp);
+            spread(stamp, 1f);
+        }
+    }
+
+    /**
+     * Computes the stamp of an entity, or null if it has no owner or no strength.
+     */
+    private static Stamp stampOf(MapEntity entity, int tile) {
+        if (entity instanceof Unit) {
+            Unit unit = (Unit) entity;
+            Player owner = unit.getOwner();
+            if (owner == null || unit.getAttack() <= 0) {
+                return null;
+            }
+            return new Stamp(owner.getPlayerId(), unit.getAttack(),
+                unit.getRange() + unit.getMovementSpeed(), tile);
+        }
+        if (entity instanceof Building) {
+            Player owner = ((Building) entity).getOwner();
+            return owner == null ? null : new Stamp(owner.getPlayerId(), BUILDING_STRENGTH, BUILDING_RADIUS, tile);
+        }
+        return null;
+    }
+
+    /**
+     * Adds (sign 1) or subtracts (sign -1) a stamp over its diamond of tiles.
+     */
+    private void spread(Stamp stamp, float sign) {
+        float[] own = gridOf(stamp.ownerId);
+        int cx = grid.xOf(stamp.tile);
+        int cy = grid.yOf(stamp.tile);
+        int radius = stamp.radius;
+        float step = stamp.strength / (radius + 1);
+        for (int y = Math.max(0, cy - radius); y <= Math.min(height - 1, cy + radius); y++) {
+            int reach = radius - Math.abs(y - cy);
+            int row = y * width;
+            for (int x = Math.max(0, cx - reach); x <= Math.min(width - 1, cx + reach); x++) {
+                float value = sign * (stamp.strength - step * (Math.abs(x - cx) + Math.abs(y - cy)));
+                own[row + x] += value;
+                total[row + x] += value;
+            }
+        }
+    }
+
+    private float[] gridOf(int playerId) {
+        if (playerId >= influence.length) {
+            influence = Arrays.copyOf(influence, playerId + 1);
+        }
+        if (influence[playerId] == null) {
+            influence[playerId] = new float[total.length];
+        }
+        return influence[playerId];
+    }
+
+    private void stampOccupants() {
+        OccupantIndex occupants = grid.getOccupantIndex();
+        for (int slot = 0; slot < occupants.capacity(); slot++) {
+            MapEntity entity = occupants.entityAt(slot);
+            if (entity != null) {
+                place(entity, occupants.tileAt(slot));
+            }
+        }
+    }
+
+    /**
+     * Recomputes every grid from the entities on the map.
+     * Needed after a unit changed attack, range or speed while on the map,
+     * and clears the rounding drift of long series of moves.
+     */
+    public void rebuild() {
+        for (float[] values : influence) {
+            if (values != null) {
+                Arrays.fill(values, 0f);
+            }
+        }
+        Arrays.fill(total, 0f);
+        stamps.clear();
+        stampOccupants();
+    }
+
+    /**
+     * Gets the influence of a player on a tile.
+     * @param playerId The player id
+     * @param index Row-major index of the tile
+     * @return Influence (0 if the player has none there)
+     */
+    public float getInfluence(int playerId, int index) {
+        if (playerId < 0 || playerId >= influence.length || influence[playerId] == null) {
+            return 0f;
+        }
+        return influence[playerId][index];
+    }
+
+    /**
+     * Gets the influence of all the other players on a tile.
+     * @param playerId The player id
+     * @param index Row-major index of the tile
+     * @return Sum of the influence of the opponents
+     */
+    public float getThreat(int playerId, int index) {
+        return total[index] - getInfluence(playerId, index);
+    }
+
+    /**
+     * Gets how much a player dominates a tile.
+     * @param playerId The player id
+     * @param index Row-major index of the tile
+     * @return Own influence minus the threat: positive where the player has control
+     */
+    public float getBalance(int playerId, int index) {
+        return 2 * getInfluence(playerId, index) - total[index];
+    }
+
+    /**
+     * Gets the influence grid of a player, row-major, updated in place.
+     * @param playerId The player id
+     * @return The grid, or null if the player never had an entity on the map
+     */
+    public float[] getGrid(int playerId) {
+        return playerId >= 0 && playerId < influence.length ? influence[playerId] : null;
+    }
+
+    /**
+     * Gets the number of entities contributing to the grids.
+     * @return Entity count
+     */
+    public int size() {
+        return stamps.size();
+    }
+}
@@ -0,0 +1,27 @@
+package com.strategicgame.map;
+
+/**
+ * MapEntity interface for anything that can occupy a tile (units, buildings).
+ * The entity id is unique across the game and keys the map occupant index.
+ * 
+ */
+public interface MapEntity {
+
+    /**
+     * Gets the unique entity id (always greater than 0).
+     * @return Entity id
+     */
+    int getEntityId();
+
+    /**
+     * Gets the position of the entity on the map.
+     * @return Current position, or null if not on the map
+     */
+    Position getPosition();
+
+    /**
+     * Sets the position of the entity; called by the map when it is placed.
+     * @param position New position, or null when removed from the map
+     */
+    void setPosition(Position position);
+}
@@ -0,0 +1,263 @@
+package com.strategicgame.map;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedTileStorage keeps the tile values in a memory-mapped file, so very
+ * large maps (16k x 16k tiles and more) live outside the Java heap and are
+ * paged in by the operating system only where they are used. Opening a map
+ * only maps the file : it takes milliseconds whatever its size.
+ *
+ * The file holds a 4 KB header (magic "GWMP", version, width, height)
+ * followed by two page-aligned planes : terrain bytes and owner shorts, in
+ * big-endian order. Each plane is mapped in segments of at most 1 GB, the
+ * limit of a single MappedByteBuffer being 2 GB. Version 1 files had a third
+ * plane of occupant ids; it is ignored.
+ *
+ * Open modes :
+ *  - READ_WRITE : changes go to the file, shared with other processes;
+ *  - READ_ONLY : the pages are shared between processes, changes to the
+ *    terrain or the owners are rejected (units can still be placed);
+ *  - PRIVATE : the pages are shared until written, changes stay in this
+ *    process (copy-on-write) and never reach the file.
+ * Occupant ids are entity ids of the running process : they are kept on
+ * heap (see TileOccupants) and never reach the file, so a map opened again,
+ * even after a crash, is always empty, and a READ_ONLY map can be played on.
+ * 
+ */
+public final class MappedTileStorage implements TileStorage {
+    /** "GWMP" */
+    public static final int MAGIC = 0x47574D50;
+    public static final int VERSION = 2;
+
+    private static final int HEADER_BYTES = 4096;
+    private static final int PAGE_BYTES = 4096;
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_BYTES = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_BYTES - 1;
+
+    private final FileChannel channel;
+    private final FileChannel.MapMode mode;
+    private final int width;
+    private final int height;
+    private final long size;
+    private final MappedByteBuffer[] typePlane;
+    private final MappedByteBuffer[] ownerPlane;
+    private final TileOccupants occupants = new TileOccupants();
+
+    private MappedTileStorage(FileChannel channel, FileChannel.MapMode mode, int width, int height) throws IOException {
+        this.channel = channel;
+        this.mode = mode;
+        this.width = width;
+        this.height = height;
+        this.size = (long) width * height;
+        long typesOffset = HEADER_BYTES;
+        long ownersOffset = align(typesOffset + size);
+        this.typePlane = map(typesOffset, size);
+        this.ownerPlane = map(ownersOffset, 2 * size);
+    }
+
+    /**
+     * Creates a map file of the given size (all tiles GRASS, unowned, empty)
+     * and opens it in READ_WRITE mode. An existing file is replaced.
+     * 
+     * @param path The map file
+     * @param width Map width
+     * @param height Map height
+     * @return The storage
+     * @throws IOException if the file cannot be created
+     */
+    public static MappedTileStorage create(Path path, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Grid dimensions must be positive");
+        }
+        Math.multiplyExact(width, height);   // tile indexes are ints
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            long size = (long) width * height;
+            long fileSize = align(align(HEADER_BYTES + size) + 2 * size);
+            ByteBuffer header = ByteBuffer.allocate(16);
+            header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).flip();
+            channel.write(header, 0);
+            channel.write(ByteBuffer.allocate(1), fileSize - 1);   // sparse file of the full size
+            return new MappedTileStorage(channel, FileChannel.MapMode.READ_WRITE, width, height);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing map file.
+     * 
+     * @param path The map file
+     * @param mode READ_WRITE, READ_ONLY or PRIVATE
+     * @return The storage
+     * @throws IOException if the file cannot be read or is not a map file
+     */
+    public static MappedTileStorage open(Path path, FileChannel.MapMode mode) throws IOException {
+        // A PRIVATE mapping needs a writable channel too, even if the file is never written
+        FileChannel channel = mode == FileChannel.MapMode.READ_ONLY
+            ? FileChannel.open(path, StandardOpenOption.READ)
+            : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(16);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // read the whole header
+            }
+            header.flip();
+            if (header.remaining() < 16 || header.getInt() != MAGIC) {
+                throw new IOException("Not a GridWar map file: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION && version != 1) {   // version 1 differs by a trailing plane only
+                throw new IOException("Unsupported map file version " + version);
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            if (width <= 0 || height <= 0) {
+                throw new IOException("Invalid map size " + width + "x" + height);
+            }
+            return new MappedTileStorage(channel, mode, width, height);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private MappedByteBuffer[] map(long offset, long length) throws IOException {
+        int count = (int) ((length + SEGMENT_BYTES - 1) >>> SEGMENT_SHIFT);
+        MappedByteBuffer[] segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = (long) i << SEGMENT_SHIFT;
+            segments[i] = channel.map(mode, offset + start, Math.min(SEGMENT_BYTES, length - start));
+        }
+        return segments;
+    }
+
+    private static long align(long offset) {
+        return (offset + PAGE_BYTES - 1) & -PAGE_BYTES;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public byte getType(int index) {
+        return typePlane[index >>> SEGMENT_SHIFT].get((int) (index & SEGMENT_MASK));
+    }
+
+    @Override
+    public void setType(int index, byte type) {
+        typePlane[index >>> SEGMENT_SHIFT].put((int) (index & SEGMENT_MASK), type);
+    }
+
+    @Override
+    public short getOwnerId(int index) {
+        long offset = (long) index << 1;
+        return ownerPlane[(int) (offset >>> SEGMENT_SHIFT)].getShort((int) (offset & SEGMENT_MASK));
+    }
+
+    @Override
+    public void setOwnerId(int index, short ownerId) {
+        long offset = (long) index << 1;
+        ownerPlane[(int) (offset >>> SEGMENT_SHIFT)].putShort((int) (offset & SEGMENT_MASK), ownerId);
+    }
+
+    @Override
+    public int getOccupantId(int index) {
+        return occupants.get(index);
+    }
+
+    @Override
+    public void setOccupantId(int index, int entityId) {
+        occupants.set(index, entityId);
+    }
+
+    @Override
+    public void writeTypes(ByteBuffer buffer) {
+        copyOut(typePlane, buffer);
+    }
+
+    @Override
+    public void readTypes(ByteBuffer buffer) {
+        copyIn(buffer, typePlane);
+    }
+
+    @Override
+    public void writeOwnerIds(ByteBuffer buffer) {
+        copyOut(ownerPlane, buffer);
+    }
+
+    @Override
+    public void readOwnerIds(ByteBuffer buffer) {
+        copyIn(buffer, ownerPlane);
+    }
+
+    private static void copyOut(MappedByteBuffer[] plane, ByteBuffer buffer) {
+        for (MappedByteBuffer segment : plane) {
+            buffer.put(segment.duplicate().clear());
+        }
+    }
+
+    private static void copyIn(ByteBuffer buffer, MappedByteBuffer[] plane) {
+        for (MappedByteBuffer segment : plane) {
+            ByteBuffer source = buffer.duplicate();
+            source.limit(source.position() + segment.capacity());
+            segment.duplicate().clear().put(source);
+            buffer.position(source.limit());
+        }
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return mode == FileChannel.MapMode.READ_ONLY;
+    }
+
+    /**
+     * Gets the mode the file was mapped with.
+     * @return READ_WRITE, READ_ONLY or PRIVATE
+     */
+    public FileChannel.MapMode getMode() {
+        return mode;
+    }
+
+    @Override
+    public void flush() {
+        if (mode == FileChannel.MapMode.READ_WRITE) {
+            for (MappedByteBuffer[] plane : new MappedByteBuffer[][] {typePlane, ownerPlane}) {
+                for (MappedByteBuffer segment : plane) {
+                    segment.force();
+                }
+            }
+        }
+    }
+
+    /**
+     * Flushes the changes and closes the file. The mapping itself is released
+     * by the garbage collector once the buffers are unreachable.
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
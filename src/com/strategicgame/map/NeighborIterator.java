@@ -0,0 +1,105 @@
+package com.strategicgame.map;
+
+/**
+ * NeighborIterator walks the 8 tiles around a tile of a grid (those inside
+ * the map) as tile indexes, without allocating : one iterator is reset on
+ * each tile to visit, where Position.getAdjacentPositions builds a list of
+ * new positions every time.
+ * Order : by column from left to right, each column from top to bottom
+ * (the order of getAdjacentPositions).
+ * <pre>
+ * neighbors.reset(index);
+ * while (neighbors.next()) {
+ *     ... neighbors.index(), neighbors.x(), neighbors.y()
+ * }
+ * </pre>
+ *
+ */
+public final class NeighborIterator {
+    private static final int[] DX = {-1, -1, -1, 0, 0, 1, 1, 1};
+    private static final int[] DY = {-1, 0, 1, -1, 1, -1, 0, 1};
+
+    private final int width;
+    private final int height;
+    private int centerX;
+    private int centerY;
+    private int direction;
+    private int x;
+    private int y;
+
+    /**
+     * Creates an iterator over the tiles of a grid, to reset before use.
+     * @param grid The tile grid
+     */
+    public NeighborIterator(TileGrid grid) {
+        this.width = grid.getWidth();
+        this.height = grid.getHeight();
+        this.direction = DX.length;
+    }
+
+    /**
+     * Starts over around a tile.
+     * @param index Row-major index of the tile
+     */
+    public void reset(int index) {
+        reset(index % width, index / width);
+    }
+
+    /**
+     * Starts over around a tile.
+     * @param x X coordinate of the tile
+     * @param y Y coordinate of the tile
+     */
+    public void reset(int x, int y) {
+        this.centerX = x;
+        this.centerY = y;
+        this.direction = -1;
+    }
+
+    /**
+     * Moves to the next neighbour inside the map.
+     * @return false once every neighbour was visited
+     */
+    public boolean next() {
+        while (++direction < DX.length) {
+            x = centerX + DX[direction];
+            y = centerY + DY[direction];
+            if (x >= 0 && y >= 0 && x < width && y < height) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the index of the current neighbour.
+     * @return Row-major tile index
+     */
+    public int index() {
+        return x + y * width;
+    }
+
+    /**
+     * Gets the X coordinate of the current neighbour.
+     * @return X coordinate
+     */
+    public int x() {
+        return x;
+    }
+
+    /**
+     * Gets the Y coordinate of the current neighbour.
+     * @return Y coordinate
+     */
+    public int y() {
+        return y;
+    }
+
+    /**
+     * Checks if the current neighbour is diagonal to the tile.
+     * @return true for the 4 corners
+     */
+    public boolean isDiagonal() {
+        return x != centerX && y != centerY;
+    }
+}
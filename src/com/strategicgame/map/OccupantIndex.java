@@ -0,0 +1,178 @@
+package com.strategicgame.map;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * OccupantIndex maps entity ids to the entity and the index of its tile.
+ * Open addressing with linear probing over primitive arrays:
+ * lookups are O(1) and never box.
+ * 
+ */
+final class OccupantIndex {
+    private static final int EMPTY = 0; // entity ids start at 1
+
+    private int[] keys;
+    private int[] tiles;
+    private MapEntity[] entities;
+    private int size;
+    private int mask;
+
+    OccupantIndex() {
+        keys = new int[64];
+        tiles = new int[64];
+        entities = new MapEntity[64];
+        mask = 63;
+    }
+
+    /**
+     * Creates an index of the same ids and tiles, holding the counterparts
+     * of the entities (see TileGrid.fork).
+     */
+    OccupantIndex(OccupantIndex source, UnaryOperator<MapEntity> counterpart) {
+        keys = source.keys.clone();
+        tiles = source.tiles.clone();
+        entities = new MapEntity[keys.length];
+        mask = source.mask;
+        size = source.size;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                MapEntity entity = counterpart.apply(source.entities[slot]);
+                if (entity == null || entity.getEntityId() != keys[slot]) {
+                    throw new IllegalStateException("No counterpart for entity " + keys[slot]);
+                }
+                entities[slot] = entity;
+            }
+        }
+    }
+
+    /**
+     * Gets the tile of an entity.
+     * @param entityId Entity id
+     * @return Tile index, or -1 if not indexed
+     */
+    int tileOf(int entityId) {
+        int slot = find(entityId);
+        return slot < 0 ? -1 : tiles[slot];
+    }
+
+    /**
+     * Gets an indexed entity.
+     * @param entityId Entity id
+     * @return The entity, or null if not indexed
+     */
+    MapEntity entity(int entityId) {
+        int slot = find(entityId);
+        return slot < 0 ? null : entities[slot];
+    }
+
+    /**
+     * Adds or moves an entity.
+     * @param entity The entity
+     * @param tile Its tile index
+     */
+    void put(MapEntity entity, int tile) {
+        int key = entity.getEntityId();
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                tiles[slot] = tile;
+                entities[slot] = entity;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        tiles[slot] = tile;
+        entities[slot] = entity;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Removes an entity.
+     * @param entityId Entity id
+     */
+    void remove(int entityId) {
+        int slot = find(entityId);
+        if (slot < 0) {
+            return;
+        }
+        size--;
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                tiles[hole] = tiles[next];
+                entities[hole] = entities[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        entities[hole] = null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of slots, to visit every entry with entityAt/tileAt.
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Gets the entity stored in a slot, or null if the slot is empty.
+     */
+    MapEntity entityAt(int slot) {
+        return entities[slot];
+    }
+
+    /**
+     * Gets the tile of the entity stored in a slot.
+     */
+    int tileAt(int slot) {
+        return tiles[slot];
+    }
+
+    private int find(int key) {
+        if (key == EMPTY) {
+            return -1;
+        }
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldTiles = tiles;
+        MapEntity[] oldEntities = entities;
+        keys = new int[oldKeys.length * 2];
+        tiles = new int[keys.length];
+        entities = new MapEntity[keys.length];
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldEntities[i], oldTiles[i]);
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,23 @@
+package com.strategicgame.map;
+
+import java.util.List;
+
+/**
+ * PathFinder interface - implements the Strategy Design Pattern.
+ * Lets GameMap switch between pathfinding algorithms.
+ * 
+ */
+public interface PathFinder {
+
+    /**
+     * Finds a path between two positions of a map.
+     * The start tile may be occupied (by the moving unit itself),
+     * every other tile of the path must be passable.
+     * 
+     * @param map The map to search
+     * @param start Starting position
+     * @param end Ending position
+     * @return List of positions from start to end included, empty if no path found
+     */
+    List<Position> findPath(GameMap map, Position start, Position end);
+}
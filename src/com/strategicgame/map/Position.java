@@ -57,6 +57,8 @@ public class Position {
 
     /**
      * Gets all adjacent positions (8-way adjacency).
+     * Allocates a list and its positions : loops over many tiles use a
+     * NeighborIterator instead.
      * 
      * @param maxX Maximum X coordinate
      * @param maxY Maximum Y coordinate
@@ -87,7 +89,7 @@ public class Position {
 
     @Override
     public int hashCode() {
-        return Objects.hash(x, y);
+        return 31 * (31 + x) + y;   // Objects.hash(x, y), without boxing
     }
 
     /**
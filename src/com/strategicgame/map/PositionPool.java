@@ -0,0 +1,54 @@
+package com.strategicgame.map;
+
+/**
+ * PositionPool hands out one shared Position per tile of a map, created on
+ * first request, so code asking again and again for the position of a tile
+ * (tile views, moving units, paths) does not allocate.
+ * Positions are kept in a ChunkCache, sized from the heap like the tile
+ * views, so the pool of a huge streamed map stays bounded by the heap, not
+ * by the map. A dropped position is simply created again : positions are
+ * compared with equals, never by identity.
+ *
+ */
+public final class PositionPool {
+    // Heap taken by a position (object and reference), to size the cache
+    private static final int POSITION_BYTES = 28;
+
+    private final int width;
+    private final int height;
+    private final ChunkCache<Position> chunks;
+
+    public PositionPool(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.chunks = new ChunkCache<>(width, height, ChunkCache.capacityFor(POSITION_BYTES), Position[]::new);
+    }
+
+    /**
+     * Gets the position of a tile.
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return The shared position, or a new one if out of the map
+     */
+    public Position get(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return new Position(x, y);
+        }
+        Position[] positions = chunks.chunkOf(x, y);
+        int slot = ChunkCache.slotOf(x, y);
+        Position position = positions[slot];
+        if (position == null) {
+            position = new Position(x, y);
+            positions[slot] = position;
+        }
+        return position;
+    }
+
+    /**
+     * Gets the number of chunks of positions kept at most.
+     * @return Capacity in chunks
+     */
+    public int getCapacity() {
+        return chunks.capacity();
+    }
+}
@@ -0,0 +1,285 @@
+package com.strategicgame.map;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * SpatialIndex buckets the entities of a map into a uniform grid of cells,
+ * so range queries only visit the cells overlapping the searched area.
+ * It listens to the tile grid and is updated incrementally on every move.
+ * Supports radius, rectangle and k-nearest queries, under Manhattan or
+ * Euclidean distance.
+ * 
+ */
+public class SpatialIndex implements TileChangeListener {
+    public static final int DEFAULT_CELL_SIZE = 8;
+    /** Number of cells above which cellSizeFor uses larger cells. */
+    public static final int MAX_CELLS = 1 << 20;
+
+    private final TileGrid grid;
+    private final int cellSize;
+    private final int cellsX;
+    private final int cellsY;
+    private final MapEntity[][] cellEntities;
+    private final int[][] cellTiles;
+    private final int[] cellCounts;
+
+    // Scratch buffers of nearest queries
+    private double[] nearestDistances = new double[8];
+    private MapEntity[] nearestEntities = new MapEntity[8];
+
+    public SpatialIndex(TileGrid grid) {
+        this(grid, DEFAULT_CELL_SIZE);
+    }
+
+    public SpatialIndex(TileGrid grid, int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.grid = grid;
+        this.cellSize = cellSize;
+        this.cellsX = (grid.getWidth() + cellSize - 1) / cellSize;
+        this.cellsY = (grid.getHeight() + cellSize - 1) / cellSize;
+        this.cellEntities = new MapEntity[cellsX * cellsY][];
+        this.cellTiles = new int[cellsX * cellsY][];
+        this.cellCounts = new int[cellsX * cellsY];
+
+        // Index what is already on the grid, then follow its changes
+        OccupantIndex occupants = grid.getOccupantIndex();
+        for (int slot = 0; slot < occupants.capacity(); slot++) {
+            MapEntity entity = occupants.entityAt(slot);
+            if (entity != null) {
+                insert(entity, occupants.tileAt(slot));
+            }
+        }
+        grid.addListener(this);
+    }
+
+    /**
+     * Gets a cell size for a map : DEFAULT_CELL_SIZE, doubled until the map
+     * has at most MAX_CELLS cells, so the index of a huge map stays small.
+     * @param width Map width
+     * @param height Map height
+     * @return Cell size in tiles
+     */
+    public static int cellSizeFor(int width, int height) {
+        int cellSize = DEFAULT_CELL_SIZE;
+        while (((long) width + cellSize - 1) / cellSize * (((long) height + cellSize - 1) / cellSize) > MAX_CELLS) {
+            cellSize *= 2;
+        }
+        return cellSize;
+    }
+
+    @Override
+    public void onOccupantChanged(int index, Object previous, Object current) {
+        if (previous != null) {
+            remove((MapEntity) previous, index);
+        }
+        if (current != null) {
+            insert((MapEntity) current, index);
+        }
+    }
+
+    private void insert(MapEntity entity, int tile) {
+        int cell = cellOf(grid.xOf(tile), grid.yOf(tile));
+        int count = cellCounts[cell];
+        if (cellEntities[cell] == null) {
+            cellEntities[cell] = new MapEntity[4];
+            cellTiles[cell] = new int[4];
+        } else if (count == cellEntities[cell].length) {
+            cellEntities[cell] = Arrays.copyOf(cellEntities[cell], count * 2);
+            cellTiles[cell] = Arrays.copyOf(cellTiles[cell], count * 2);
+        }
+        cellEntities[cell][count] = entity;
+        cellTiles[cell][count] = tile;
+        cellCounts[cell] = count + 1;
+    }
+
+    private void remove(MapEntity entity, int tile) {
+        int cell = cellOf(grid.xOf(tile), grid.yOf(tile));
+        MapEntity[] entities = cellEntities[cell];
+        int last = cellCounts[cell] - 1;
+        for (int i = 0; i <= last; i++) {
+            if (entities[i] == entity) {
+                entities[i] = entities[last];
+                cellTiles[cell][i] = cellTiles[cell][last];
+                entities[last] = null;
+                cellCounts[cell] = last;
+                return;
+            }
+        }
+    }
+
+    private int cellOf(int x, int y) {
+        return (y / cellSize) * cellsX + (x / cellSize);
+    }
+
+    /**
+     * Finds the entities within a distance of a tile.
+     * 
+     * @param x Center X
+     * @param y Center Y
+     * @param radius Maximum distance (inclusive)
+     * @param metric Distance formula
+     * @param filter Entities to keep, or null for all
+     * @param out Receives the matching entities (not cleared)
+     * @return Number of entities added
+     */
+    public int findWithinRadius(int x, int y, double radius, DistanceMetric metric,
+                                Predicate<? super MapEntity> filter, List<? super MapEntity> out) {
+        int reach = (int) Math.floor(radius);
+        int added = 0;
+        int minCellX = Math.max(0, (x - reach) / cellSize);
+        int maxCellX = Math.min(cellsX - 1, Math.max(0, x + reach) / cellSize);
+        int minCellY = Math.max(0, (y - reach) / cellSize);
+        int maxCellY = Math.min(cellsY - 1, Math.max(0, y + reach) / cellSize);
+        for (int cy = minCellY; cy <= maxCellY; cy++) {
+            for (int cx = minCellX; cx <= maxCellX; cx++) {
+                int cell = cy * cellsX + cx;
+                MapEntity[] entities = cellEntities[cell];
+                int[] tiles = cellTiles[cell];
+                for (int i = 0; i < cellCounts[cell]; i++) {
+                    int dx = grid.xOf(tiles[i]) - x;
+                    int dy = grid.yOf(tiles[i]) - y;
+                    if (metric.distance(dx, dy) <= radius && (filter == null || filter.test(entities[i]))) {
+                        out.add(entities[i]);
+                        added++;
+                    }
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Finds the entities inside a rectangle.
+     * 
+     * @param minX Left column (inclusive)
+     * @param minY Top row (inclusive)
+     * @param maxX Right column (inclusive)
+     * @param maxY Bottom row (inclusive)
+     * @param filter Entities to keep, or null for all
+     * @param out Receives the matching entities (not cleared)
+     * @return Number of entities added
+     */
+    public int findInRectangle(int minX, int minY, int maxX, int maxY,
+                               Predicate<? super MapEntity> filter, List<? super MapEntity> out) {
+        minX = Math.max(0, minX);
+        minY = Math.max(0, minY);
+        maxX = Math.min(grid.getWidth() - 1, maxX);
+        maxY = Math.min(grid.getHeight() - 1, maxY);
+        int added = 0;
+        for (int cy = minY / cellSize; cy <= maxY / cellSize && minY <= maxY; cy++) {
+            for (int cx = minX / cellSize; cx <= maxX / cellSize && minX <= maxX; cx++) {
+                int cell = cy * cellsX + cx;
+                MapEntity[] entities = cellEntities[cell];
+                int[] tiles = cellTiles[cell];
+                for (int i = 0; i < cellCounts[cell]; i++) {
+                    int tx = grid.xOf(tiles[i]);
+                    int ty = grid.yOf(tiles[i]);
+                    if (tx >= minX && tx <= maxX && ty >= minY && ty <= maxY
+                            && (filter == null || filter.test(entities[i]))) {
+                        out.add(entities[i]);
+                        added++;
+                    }
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Finds the k entities closest to a tile, searching rings of cells
+     * outwards until no closer entity can exist.
+     * 
+     * @param x Center X
+     * @param y Center Y
+     * @param k Maximum number of entities
+     * @param metric Distance formula
+     * @param filter Entities to keep, or null for all
+     * @param out Receives the entities, closest first (not cleared)
+     * @return Number of entities added
+     */
+    public int findNearest(int x, int y, int k, DistanceMetric metric,
+                           Predicate<? super MapEntity> filter, List<? super MapEntity> out) {
+        if (k <= 0) {
+            return 0;
+        }
+        if (nearestDistances.length < k) {
+            nearestDistances = new double[k];
+            nearestEntities = new MapEntity[k];
+        }
+        int found = 0;
+        int centerX = Math.min(cellsX - 1, Math.max(0, x / cellSize));
+        int centerY = Math.min(cellsY - 1, Math.max(0, y / cellSize));
+        int maxRing = Math.max(Math.max(centerX, cellsX - 1 - centerX), Math.max(centerY, cellsY - 1 - centerY));
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Anything in this ring is at least this far (both metrics dominate Chebyshev)
+            double lowerBound = Math.max(0, (ring - 1) * cellSize + 1);
+            if (found == k && nearestDistances[k - 1] < lowerBound) {
+                break;
+            }
+            for (int cy = centerY - ring; cy <= centerY + ring; cy++) {
+                if (cy < 0 || cy >= cellsY) {
+                    continue;
+                }
+                boolean edgeRow = cy == centerY - ring || cy == centerY + ring;
+                for (int cx = centerX - ring; cx <= centerX + ring; cx += edgeRow ? 1 : 2 * ring) {
+                    if (cx >= 0 && cx < cellsX) {
+                        found = collectNearest(cy * cellsX + cx, x, y, k, metric, filter, found);
+                    }
+                    if (ring == 0) {
+                        break;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < found; i++) {
+            out.add(nearestEntities[i]);
+            nearestEntities[i] = null;
+        }
+        return found;
+    }
+
+    /**
+     * Merges the entities of a cell into the sorted k-best buffers.
+     * @return New number of entities in the buffers
+     */
+    private int collectNearest(int cell, int x, int y, int k, DistanceMetric metric,
+                               Predicate<? super MapEntity> filter, int found) {
+        MapEntity[] entities = cellEntities[cell];
+        int[] tiles = cellTiles[cell];
+        for (int i = 0; i < cellCounts[cell]; i++) {
+            double distance = metric.distance(grid.xOf(tiles[i]) - x, grid.yOf(tiles[i]) - y);
+            if (found == k && distance >= nearestDistances[k - 1]) {
+                continue;
+            }
+            if (filter != null && !filter.test(entities[i])) {
+                continue;
+            }
+            int slot = found < k ? found++ : k - 1;
+            while (slot > 0 && nearestDistances[slot - 1] > distance) {
+                nearestDistances[slot] = nearestDistances[slot - 1];
+                nearestEntities[slot] = nearestEntities[slot - 1];
+                slot--;
+            }
+            nearestDistances[slot] = distance;
+            nearestEntities[slot] = entities[i];
+        }
+        return found;
+    }
+
+    /**
+     * Gets the number of indexed entities.
+     * @return Entity count
+     */
+    public int size() {
+        int total = 0;
+        for (int count : cellCounts) {
+            total += count;
+        }
+        return total;
+    }
+}
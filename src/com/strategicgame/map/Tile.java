@@ -5,19 +5,19 @@ import com.strategicgame.player.Player;
 /**
  * Tile represents a single cell on the game map.
  * Encapsulates tile type, owner, and any entities placed on it.
+ * A Tile is a view over one index of the map's TileGrid : the state
+ * itself lives in the grid arrays.
  * 
  */
 public class Tile {
+    private final TileGrid grid;
+    private final int index;
     private final Position position;
-    private final TileType type;
-    private Player owner;
-    private Object occupant; // Can be a Unit or Building
 
-    public Tile(Position position, TileType type) {
+    Tile(TileGrid grid, int index, Position position) {
+        this.grid = grid;
+        this.index = index;
         this.position = position;
-        this.type = type;
-        this.owner = null;
-        this.occupant = null;
     }
 
     /**
@@ -33,7 +33,15 @@ public class Tile {
      * @return The tile type
      */
     public TileType getType() {
-        return type;
+        return grid.getType(index);
+    }
+
+    /**
+     * Gets the index of this tile in the map grid.
+     * @return Row-major tile index
+     */
+    public int getIndex() {
+        return index;
     }
 
     /**
@@ -41,7 +49,7 @@ public class Tile {
      * @return The owning player, or null if unowned
      */
     public Player getOwner() {
-        return owner;
+        return grid.getOwner(index);
     }
 
     /**
@@ -49,7 +57,7 @@ public class Tile {
      * @param owner The new owner
      */
     public void setOwner(Player owner) {
-        this.owner = owner;
+        grid.setOwner(index, owner);
     }
 
     /**
@@ -57,7 +65,7 @@ public class Tile {
      * @return true if units can move through this tile
      */
     public boolean isPassable() {
-        return type.isPassable() && occupant == null;
+        return grid.isPassable(index);
     }
 
     /**
@@ -65,7 +73,7 @@ public class Tile {
      * @return The occupant (Unit or Building), or null if empty
      */
     public Object getOccupant() {
-        return occupant;
+        return grid.getOccupant(index);
     }
 
     /**
@@ -73,14 +81,14 @@ public class Tile {
      * @param occupant The entity to place (Unit or Building)
      */
     public void setOccupant(Object occupant) {
-        this.occupant = occupant;
+        grid.setOccupant(index, occupant);
     }
 
     /**
      * Removes the occupant from this tile.
      */
     public void clearOccupant() {
-        this.occupant = null;
+        grid.setOccupant(index, null);
     }
 
     /**
@@ -88,7 +96,7 @@ public class Tile {
      * @return true if no occupant
      */
     public boolean isEmpty() {
-        return occupant == null;
+        return grid.getOccupant(index) == null;
     }
 
     /**
@@ -96,8 +104,9 @@ public class Tile {
      */
     @Override
     public String toString() {
+        Player owner = getOwner();
         return String.format("Tile[%s, %s, Owner=%s]", 
-            position, type.getDisplayName(), 
+            position, getType().getDisplayName(), 
             owner != null ? owner.getName() : "None");
     }
 }
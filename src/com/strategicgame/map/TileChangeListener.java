@@ -0,0 +1,19 @@
+package com.strategicgame.map;
+
+/**
+ * TileChangeListener interface - implements the Observer Design Pattern.
+ * Lets systems that cache map data (pathfinding, indexes) follow
+ * changes of the tile grid without polling it.
+ * 
+ */
+public interface TileChangeListener {
+
+    /**
+     * Called after the occupant of a tile changed.
+     * 
+     * @param index Row-major index of the tile
+     * @param previous The previous occupant, or null
+     * @param current The new occupant, or null
+     */
+    void onOccupantChanged(int index, Object previous, Object current);
+}
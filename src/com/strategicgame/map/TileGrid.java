@@ -0,0 +1,383 @@
+package com.strategicgame.map;
+
+import com.strategicgame.player.Player;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * TileGrid is the dense storage behind GameMap.
+ * Every tile is addressed by a row-major index (x + y * width) into
+ * primitive values kept by a TileStorage (arrays on heap by default, or a
+ * memory-mapped file), so a lookup never allocates nor hashes.
+ * Occupants are stored as entity ids, and an occupant index gives the
+ * tile of any entity in constant time. An entity holds one tile at a time :
+ * placing it somewhere else clears its previous tile.
+ *
+ */
+public final class TileGrid implements AutoCloseable {
+    /** Owner id stored for tiles that nobody owns. */
+    public static final int NO_OWNER = -1;
+
+    private static final TileType[] TILE_TYPES = TileType.values();
+
+    private final int width;
+    private final int height;
+    private final int size;
+    private final TileStorage storage; // TileType ordinal, playerId + 1 (0 = no owner), entity id (0 = empty)
+    private final PositionPool positions;
+    private final OccupantIndex occupantIndex;
+    private Player[] owners;         // playerId -> Player
+    private TileChangeListener[] listeners = new TileChangeListener[0];
+
+    public TileGrid(int width, int height) {
+        this(new ArrayTileStorage(width, height));
+    }
+
+    /**
+     * Creates a grid over an existing storage. Its terrain and owners are kept;
+     * occupant ids must be 0, entities being placed again by the game (a
+     * storage opened from a file never holds any, see TileStorage).
+     * @param storage The tile storage
+     */
+    public TileGrid(TileStorage storage) {
+        this(storage, new OccupantIndex());
+    }
+
+    private TileGrid(TileStorage storage, OccupantIndex occupantIndex) {
+        this.storage = storage;
+        this.occupantIndex = occupantIndex;
+        this.width = storage.getWidth();
+        this.height = storage.getHeight();
+        this.size = Math.multiplyExact(width, height);
+        this.owners = new Player[4];
+        this.positions = new PositionPool(width, height);
+    }
+
+    /**
+     * Creates a grid holding the same tiles, over a fork of the storage
+     * (see TileStorage.fork). Occupants keep their entity ids : each one is
+     * replaced by its counterpart in the forked game. Owners must be
+     * registered again, and listeners are not carried over.
+     * @param counterpart Gives the entity of the fork standing for an entity of this grid
+     * @return The fork
+     */
+    public TileGrid fork(UnaryOperator<MapEntity> counterpart) {
+        return new TileGrid(storage.fork(), new OccupantIndex(occupantIndex, counterpart));
+    }
+
+    /**
+     * Gets the position of a tile, shared by every caller (see PositionPool).
+     * @param index Row-major tile index
+     * @return The position
+     */
+    public Position positionOf(int index) {
+        return positions.get(xOf(index), yOf(index));
+    }
+
+    /**
+     * Gets the position of a tile, shared by every caller (see PositionPool).
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return The position (a new one if out of the grid)
+     */
+    public Position positionAt(int x, int y) {
+        return positions.get(x, y);
+    }
+
+    /**
+     * Converts coordinates to a tile index. Coordinates are not checked.
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return Row-major tile index
+     */
+    public int indexOf(int x, int y) {
+        return x + y * width;
+    }
+
+    /**
+     * Gets the X coordinate of a tile index.
+     * @param index Tile index
+     * @return X coordinate
+     */
+    public int xOf(int index) {
+        return index % width;
+    }
+
+    /**
+     * Gets the Y coordinate of a tile index.
+     * @param index Tile index
+     * @return Y coordinate
+     */
+    public int yOf(int index) {
+        return index / width;
+    }
+
+    /**
+     * Checks if coordinates are inside the grid.
+     * @param x X coordinate
+     * @param y Y coordinate
+     * @return true if valid coordinates
+     */
+    public boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /**
+     * Gets the tile type at an index.
+     * @param index Tile index
+     * @return The tile type
+     */
+    public TileType getType(int index) {
+        return TILE_TYPES[storage.getType(index)];
+    }
+
+    /**
+     * Sets the tile type at an index.
+     * @param index Tile index
+     * @param type The new tile type
+     */
+    public void setType(int index, TileType type) {
+        storage.setType(index, (byte) type.ordinal());
+    }
+
+    /**
+     * Copies the terrain of every tile (one TileType ordinal byte per tile,
+     * row-major) into a buffer.
+     * @param buffer Destination, with size() bytes remaining
+     */
+    public void writeTypes(ByteBuffer buffer) {
+        storage.writeTypes(buffer);
+    }
+
+    /**
+     * Reads the terrain of every tile from a buffer written by writeTypes.
+     * @param buffer Source, with size() bytes remaining
+     */
+    public void readTypes(ByteBuffer buffer) {
+        int start = buffer.position();
+        for (int i = 0; i < size; i++) {
+            byte type = buffer.get(start + i);
+            if (type < 0 || type >= TILE_TYPES.length) {
+                throw new IllegalArgumentException("Invalid tile type: " + type);
+            }
+        }
+        storage.readTypes(buffer);
+    }
+
+    /**
+     * Copies the owner ids of every tile (playerId + 1 as a short, 0 = none)
+     * into a buffer.
+     * @param buffer Destination, with 2 * size() bytes remaining
+     */
+    public void writeOwnerIds(ByteBuffer buffer) {
+        storage.writeOwnerIds(buffer);
+    }
+
+    /**
+     * Reads the owner ids of every tile from a buffer written by writeOwnerIds.
+     * The owners themselves must be registered with registerOwner.
+     * @param buffer Source, with 2 * size() bytes remaining
+     */
+    public void readOwnerIds(ByteBuffer buffer) {
+        storage.readOwnerIds(buffer);
+    }
+
+    /**
+     * Registers the player behind an owner id, without claiming any tile.
+     * @param owner The player
+     */
+    public void registerOwner(Player owner) {
+        int ownerId = owner.getPlayerId();
+        if (ownerId >= owners.length) {
+            owners = Arrays.copyOf(owners, Math.max(ownerId + 1, owners.length * 2));
+        }
+        owners[ownerId] = owner;
+    }
+
+    /**
+     * Gets the owner id at an index.
+     * @param index Tile index
+     * @return Owning player id, or NO_OWNER
+     */
+    public int getOwnerId(int index) {
+        return storage.getOwnerId(index) - 1;
+    }
+
+    /**
+     * Gets the owning player at an index.
+     * @param index Tile index
+     * @return The owning player, or null if unowned
+     */
+    public Player getOwner(int index) {
+        int ownerId = getOwnerId(index);
+        return ownerId == NO_OWNER ? null : owners[ownerId];
+    }
+
+    /**
+     * Sets the owning player at an index.
+     * @param index Tile index
+     * @param owner The new owner, or null to clear
+     */
+    public void setOwner(int index, Player owner) {
+        if (owner == null) {
+            storage.setOwnerId(index, (short) 0);
+            return;
+        }
+        registerOwner(owner);
+        storage.setOwnerId(index, (short) (owner.getPlayerId() + 1));
+    }
+
+    /**
+     * Gets the occupant at an index.
+     * @param index Tile index
+     * @return The occupant (Unit or Building), or null if empty
+     */
+    public Object getOccupant(int index) {
+        int entityId = storage.getOccupantId(index);
+        return entityId == 0 ? null : occupantIndex.entity(entityId);
+    }
+
+    /**
+     * Gets the entity id of the occupant at an index.
+     * @param index Tile index
+     * @return Entity id, or 0 if empty
+     */
+    public int getOccupantId(int index) {
+        return storage.getOccupantId(index);
+    }
+
+    /**
+     * Sets the occupant at an index, keeping the occupant index and the
+     * entity position in sync. A previous occupant of the tile is removed
+     * from the map, and the new one leaves its former tile.
+     * @param index Tile index
+     * @param occupant The occupant (a MapEntity), or null to clear
+     */
+    public void setOccupant(int index, Object occupant) {
+        if (occupant != null && !(occupant instanceof MapEntity)) {
+            throw new IllegalArgumentException("Occupant must be a MapEntity: " + occupant);
+        }
+        Object previous = getOccupant(index);
+        if (previous == occupant) {
+            return;
+        }
+
+        MapEntity entity = (MapEntity) occupant;
+        if (entity != null) {
+            int formerTile = occupantIndex.tileOf(entity.getEntityId());
+            if (formerTile >= 0) {
+                storage.setOccupantId(formerTile, 0);
+                notifyOccupantChanged(formerTile, entity, null);
+            }
+        }
+        if (previous != null) {
+            MapEntity evicted = (MapEntity) previous;
+            occupantIndex.remove(evicted.getEntityId());
+            evicted.setPosition(null);
+        }
+
+        if (entity != null) {
+            storage.setOccupantId(index, entity.getEntityId());
+            occupantIndex.put(entity, index);
+            entity.setPosition(positionOf(index));
+        } else {
+            storage.setOccupantId(index, 0);
+        }
+        notifyOccupantChanged(index, previous, occupant);
+    }
+
+    private void notifyOccupantChanged(int index, Object previous, Object current) {
+        for (TileChangeListener listener : listeners) {
+            listener.onOccupantChanged(index, previous, current);
+        }
+    }
+
+    /**
+     * Registers a listener notified of occupant changes.
+     * @param listener The listener to add
+     */
+    public void addListener(TileChangeListener listener) {
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+    }
+
+    /**
+     * Unregisters a listener.
+     * @param listener The listener to remove
+     */
+    public void removeListener(TileChangeListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                TileChangeListener[] remaining = new TileChangeListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, remaining, 0, i);
+                System.arraycopy(listeners, i + 1, remaining, i, remaining.length - i);
+                listeners = remaining;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks if units can move through the tile at an index.
+     * @param index Tile index
+     * @return true if the terrain is passable and the tile is empty
+     */
+    public boolean isPassable(int index) {
+        return TILE_TYPES[storage.getType(index)].isPassable() && storage.getOccupantId(index) == 0;
+    }
+
+    /**
+     * Gets the tile of an entity, in constant time.
+     * @param entityId Entity id
+     * @return Tile index, or -1 if the entity is not on the grid
+     */
+    public int tileOf(int entityId) {
+        return occupantIndex.tileOf(entityId);
+    }
+
+    /**
+     * Gets the number of entities on the grid.
+     * @return Occupied tile count
+     */
+    public int getOccupantCount() {
+        return occupantIndex.size();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the number of tiles in the grid.
+     * @return width * height
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the storage holding the tile values.
+     * @return The tile storage
+     */
+    public TileStorage getStorage() {
+        return storage;
+    }
+
+    OccupantIndex getOccupantIndex() {
+        return occupantIndex;
+    }
+
+    /**
+     * Closes the storage. Occupants are never persisted (see TileStorage),
+     * so nothing of them outlives the grid.
+     */
+    @Override
+    public void close() {
+        storage.close();
+    }
+}
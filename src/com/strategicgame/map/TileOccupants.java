@@ -0,0 +1,113 @@
+package com.strategicgame.map;
+
+/**
+ * TileOccupants maps tile indexes to the entity id of their occupant, for
+ * the storages backed by a file (MappedTileStorage, ChunkedTileStorage) :
+ * entity ids only make sense in the running process, so they are kept on
+ * heap and never written to the file. Few tiles of such maps are occupied,
+ * so the table holds the occupied ones only.
+ * Open addressing with linear probing over primitive arrays, like OccupantIndex.
+ *
+ */
+final class TileOccupants {
+    private static final int EMPTY = 0; // keys are tile index + 1
+
+    private int[] keys = new int[64];
+    private int[] entityIds = new int[64];
+    private int size;
+    private int mask = 63;
+
+    /**
+     * Gets the occupant of a tile.
+     * @param index Tile index
+     * @return Entity id, or 0 if empty
+     */
+    int get(int index) {
+        int key = index + 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return entityIds[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * Sets the occupant of a tile.
+     * @param index Tile index
+     * @param entityId Entity id, or 0 to clear
+     */
+    void set(int index, int entityId) {
+        if (entityId == 0) {
+            remove(index + 1);
+            return;
+        }
+        int key = index + 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                entityIds[slot] = entityId;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        entityIds[slot] = entityId;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    private void remove(int key) {
+        int slot = mix(key) & mask;
+        while (keys[slot] != key) {
+            if (keys[slot] == EMPTY) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        size--;
+        // Backward-shift deletion, as in OccupantIndex
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                entityIds[hole] = entityIds[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+    }
+
+    /**
+     * Gets the number of occupied tiles.
+     * @return Occupant count
+     */
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldEntityIds = entityIds;
+        keys = new int[oldKeys.length * 2];
+        entityIds = new int[keys.length];
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                set(oldKeys[i] - 1, oldEntityIds[i]);
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
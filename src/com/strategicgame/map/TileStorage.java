@@ -0,0 +1,90 @@
+package com.strategicgame.map;
+
+import java.nio.ByteBuffer;
+
+/**
+ * TileStorage holds the raw per-tile values behind a TileGrid :
+ * a terrain byte (TileType ordinal), an owner short (playerId + 1, 0 = none)
+ * and an occupant int (entity id, 0 = empty), addressed by row-major index.
+ * The grid gives them their meaning; a storage only keeps them, on heap
+ * (ArrayTileStorage) or in a memory-mapped file (MappedTileStorage).
+ * Occupant ids are entity ids of the running process : a storage backed by
+ * a file keeps them on heap and persists the terrain and owners only.
+ * 
+ */
+public interface TileStorage extends AutoCloseable {
+
+    int getWidth();
+
+    int getHeight();
+
+    byte getType(int index);
+
+    void setType(int index, byte type);
+
+    short getOwnerId(int index);
+
+    void setOwnerId(int index, short ownerId);
+
+    int getOccupantId(int index);
+
+    void setOccupantId(int index, int entityId);
+
+    /**
+     * Copies every terrain byte, in index order, into a buffer.
+     * @param buffer Destination with width * height bytes remaining
+     */
+    void writeTypes(ByteBuffer buffer);
+
+    /**
+     * Replaces every terrain byte with the content of a buffer.
+     * @param buffer Source with width * height bytes remaining
+     */
+    void readTypes(ByteBuffer buffer);
+
+    /**
+     * Copies every owner short, in index order and in the buffer byte order, into a buffer.
+     * @param buffer Destination with 2 * width * height bytes remaining
+     */
+    void writeOwnerIds(ByteBuffer buffer);
+
+    /**
+     * Replaces every owner short with the content of a buffer.
+     * @param buffer Source with 2 * width * height bytes remaining
+     */
+    void readOwnerIds(ByteBuffer buffer);
+
+    /**
+     * Creates a storage holding the same values, that can be changed
+     * independently of this one. This default copies every tile into an
+     * ArrayTileStorage; ArrayTileStorage shares its chunks instead.
+     * @return The fork
+     */
+    default TileStorage fork() {
+        ArrayTileStorage fork = new ArrayTileStorage(getWidth(), getHeight());
+        int size = getWidth() * getHeight();
+        for (int i = 0; i < size; i++) {
+            fork.setType(i, getType(i));
+            fork.setOwnerId(i, getOwnerId(i));
+            fork.setOccupantId(i, getOccupantId(i));
+        }
+        return fork;
+    }
+
+    /**
+     * Checks if the storage rejects writes.
+     * @return true for read-only storages
+     */
+    boolean isReadOnly();
+
+    /**
+     * Writes pending changes to the backing medium, if any.
+     */
+    void flush();
+
+    /**
+     * Releases the storage; it must not be used afterwards.
+     */
+    @Override
+    void close();
+}
@@ -6,22 +6,27 @@ package com.strategicgame.map;
  * 
  */
 public enum TileType {
-    GRASS("Grass", true, 1.0f, "Standard terrain"),
-    WATER("Water", false, 0.5f, "Impassable for land units"),
-    MOUNTAIN("Mountain", true, 1.3f, "Difficult terrain, stone bonus"),
-    FOREST("Forest", true, 1.1f, "Wood bonus, movement penalty"),
-    DESERT("Desert", true, 0.8f, "Poor resources"),
-    SWAMP("Swamp", true, 1.5f, "Difficult movement, disease risk");
+    GRASS("Grass", true, 1.0f, 1.0f, false, "Standard terrain"),
+    WATER("Water", false, 0.5f, Float.POSITIVE_INFINITY, false, "Impassable for land units"),
+    MOUNTAIN("Mountain", true, 1.3f, 2.0f, true, "Difficult terrain, stone bonus"),
+    FOREST("Forest", true, 1.1f, 1.5f, true, "Wood bonus, movement penalty"),
+    DESERT("Desert", true, 0.8f, 1.2f, false, "Poor resources"),
+    SWAMP("Swamp", true, 1.5f, 2.5f, false, "Difficult movement, disease risk");
 
     private final String name;
     private final boolean passable;
     private final float resourceBonus;
+    private final float movementCost;
+    private final boolean blocksSight;
     private final String description;
 
-    TileType(String name, boolean passable, float resourceBonus, String description) {
+    TileType(String name, boolean passable, float resourceBonus, float movementCost,
+             boolean blocksSight, String description) {
         this.name = name;
         this.passable = passable;
         this.resourceBonus = resourceBonus;
+        this.movementCost = movementCost;
+        this.blocksSight = blocksSight;
         this.description = description;
     }
 
@@ -37,6 +42,23 @@ public enum TileType {
         return resourceBonus;
     }
 
+    /**
+     * Gets the cost of entering a tile of this type (1.0 for grass).
+     * @return Movement cost, infinite if impassable
+     */
+    public float getMovementCost() {
+        return movementCost;
+    }
+
+    /**
+     * Checks if the tile hides what lies behind it (see VisibilityMap).
+     * The tile itself can be seen.
+     * @return true for mountains and forests
+     */
+    public boolean blocksSight() {
+        return blocksSight;
+    }
+
     public String getDescription() {
         return description;
     }
@@ -0,0 +1,341 @@
+package com.strategicgame.map;
+
+import com.strategicgame.buildings.Building;
+import com.strategicgame.player.Player;
+import com.strategicgame.units.Unit;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * VisibilityMap is the fog of war : which tiles each player sees now, and
+ * which it has ever seen (explored), as one bitset per player over the map.
+ * A unit sees the tiles within its sight radius (its movement speed plus its
+ * range, plus one) that are in its line of sight, a building the tiles
+ * around it. Mountains and forests block the sight : they can be seen, not
+ * what lies behind them. Lines of sight are computed by recursive
+ * shadowcasting, octant by octant.
+ * Each tile counts the entities of a player that see it, and each entity
+ * keeps the tiles it lit : it listens to the tile grid, and a move or a
+ * death only unlights the tiles of that entity and lights those of its new
+ * tile, so a turn costs one field of view per entity moved.
+ *
+ */
+public class VisibilityMap implements TileChangeListener {
+    /** Sight radius of a unit beyond the tiles it can reach and hit next turn. */
+    public static final int UNIT_SIGHT_BONUS = 1;
+    /** Sight radius of a building. */
+    public static final int BUILDING_SIGHT = 3;
+
+    // Octant transforms: (column, row) of an octant to (dx, dy) on the map
+    private static final int[] XX = {1, 0, 0, -1, -1, 0, 0, 1};
+    private static final int[] XY = {0, 1, -1, 0, 0, -1, 1, 0};
+    private static final int[] YX = {0, 1, 1, 0, 0, -1, -1, 0};
+    private static final int[] YY = {1, 0, 0, 1, -1, 0, 0, -1};
+
+    private final TileGrid grid;
+    private final int width;
+    private final int height;
+    private final int words;
+    // Per player id (null until the player has an entity): viewers per tile, and the bitsets
+    private short[][] viewers = new short[0][];
+    private long[][] visible = new long[0][];
+    private long[][] explored = new long[0][];
+    private int[] visibleCounts = new int[0];
+    // Tiles each entity lit, so that they are unlit exactly even once it is dead
+    private final Map<MapEntity, FieldOfView> fields = new IdentityHashMap<>();
+    private final ArrayDeque<FieldOfView> spare = new ArrayDeque<>();
+    // Tiles lit by the cast in progress (an octant shares its edges with the next)
+    private int[] marks = new int[0];
+    private int markEpoch;
+    private int markSide;
+
+    public VisibilityMap(TileGrid grid) {
+        this.grid = grid;
+        this.width = grid.getWidth();
+        this.height = grid.getHeight();
+        this.words = (grid.size() + 63) >>> 6;
+        lightOccupants();
+        grid.addListener(this);
+    }
+
+    /**
+     * Tiles lit by an entity.
+     */
+    private static final class FieldOfView {
+        int ownerId;
+        int[] tiles = new int[64];
+        int count;
+
+        void add(int tile) {
+            if (count == tiles.length) {
+                tiles = Arrays.copyOf(tiles, count * 2);
+            }
+            tiles[count++] = tile;
+        }
+    }
+
+    @Override
+    public void onOccupantChanged(int index, Object previous, Object current) {
+        if (previous != null) {
+            FieldOfView field = fields.remove(previous);
+            if (field != null) {
+                unlight(field);
+                spare.push(field);
+            }
+        }
+        if (current != null) {
+            place((MapEntity) current, index);
+        }
+    }
+
+    private void place(MapEntity entity, int tile) {
+        Player owner = ownerOf(entity);
+        if (owner == null) {
+            return;
+        }
+        FieldOfView field = spare.isEmpty() ? new FieldOfView() : spare.pop();
+        field.ownerId = owner.getPlayerId();
+        field.count = 0;
+        cast(field, grid.xOf(tile), grid.yOf(tile), sightOf(entity));
+        light(field);
+        fields.put(entity, field);
+    }
+
+    private static Player ownerOf(MapEntity entity) {
+        if (entity instanceof Unit) {
+            return ((Unit) entity).getOwner();
+        }
+        if (entity instanceof Building) {
+            return ((Building) entity).getOwner();
+        }
+        return null;
+    }
+
+    /**
+     * Gets the sight radius of an entity.
+     * @param entity A unit or a building
+     * @return Radius in tiles
+     */
+    public static int sightOf(MapEntity entity) {
+        if (entity instanceof Unit) {
+            Unit unit = (Unit) entity;
+            return unit.getMovementSpeed() + unit.getRange() + UNIT_SIGHT_BONUS;
+        }
+        return BUILDING_SIGHT;
+    }
+
+    private void light(FieldOfView field) {
+        ensurePlayer(field.ownerId);
+        short[] counts = viewers[field.ownerId];
+        long[] seen = visible[field.ownerId];
+        long[] known = explored[field.ownerId];
+        for (int i = 0; i < field.count; i++) {
+            int tile = field.tiles[i];
+            if (counts[tile]++ == 0) {
+                seen[tile >>> 6] |= 1L << tile;
+                known[tile >>> 6] |= 1L << tile;
+                visibleCounts[field.ownerId]++;
+            }
+        }
+    }
+
+    private void unlight(FieldOfView field) {
+        short[] counts = viewers[field.ownerId];
+        long[] seen = visible[field.ownerId];
+        for (int i = 0; i < field.count; i++) {
+            int tile = field.tiles[i];
+            if (--counts[tile] == 0) {
+                seen[tile >>> 6] &= ~(1L << tile);
+                visibleCounts[field.ownerId]--;
+            }
+        }
+    }
+
+    private void ensurePlayer(int playerId) {
+        if (playerId >= viewers.length) {
+            viewers = Arrays.copyOf(viewers, playerId + 1);
+            visible = Arrays.copyOf(visible, playerId + 1);
+            explored = Arrays.copyOf(explored, playerId + 1);
+            visibleCounts = Arrays.copyOf(visibleCounts, playerId + 1);
+        }
+        if (viewers[playerId] == null) {
+            viewers[playerId] = new short[grid.size()];
+            visible[playerId] = new long[words];
+            explored[playerId] = new long[words];
+        }
+    }
+
+    /**
+     * Collects the tiles seen from a tile into a field of view, each once.
+     */
+    private void cast(FieldOfView field, int x, int y, int radius) {
+        markSide = 2 * radius + 1;
+        if (marks.length < markSide * markSide) {
+            marks = new int[markSide * markSide];
+            markEpoch = 0;
+        }
+        if (++markEpoch == 0) {   // wrapped around: forget every mark
+            Arrays.fill(marks, 0);
+            markEpoch = 1;
+        }
+        mark(field, x, y, 0, 0, radius);
+        for (int octant = 0; octant < 8; octant++) {
+            castOctant(field, x, y, 1, 1f, 0f, radius, XX[octant], XY[octant], YX[octant], YY[octant]);
+        }
+    }
+
+    /**
+     * Scans the rows of an octant from row, between two slopes, recursing
+     * past each run of blocking tiles.
+     */
+    private void castOctant(FieldOfView field, int originX, int originY, int row, float start, float end,
+                            int radius, int xx, int xy, int yx, int yy) {
+        if (start < end) {
+            return;
+        }
+        int radiusSquared = radius * radius + radius;   // rounder than radius^2
+        float newStart = 0f;
+        for (int j = row; j <= radius; j++) {
+            boolean blocked = false;
+            for (int dx = -j; dx <= 0; dx++) {
+                int dy = -j;
+                float leftSlope = (dx - 0.5f) / (dy + 0.5f);
+                float rightSlope = (dx + 0.5f) / (dy - 0.5f);
+                if (start < rightSlope) {
+                    continue;
+                }
+                if (end > leftSlope) {
+                    break;
+                }
+                int mapX = originX + dx * xx + dy * xy;
+                int mapY = originY + dx * yx + dy * yy;
+                boolean inside = mapX >= 0 && mapY >= 0 && mapX < width && mapY < height;
+                if (inside && dx * dx + dy * dy <= radiusSquared) {
+                    mark(field, mapX, mapY, mapX - originX, mapY - originY, radius);
+                }
+                boolean opaque = !inside || grid.getType(grid.indexOf(mapX, mapY)).blocksSight();
+                if (blocked) {
+                    if (opaque) {
+                        newStart = rightSlope;
+                    } else {
+                        blocked = false;
+                        start = newStart;
+                    }
+                } else if (opaque && j < radius) {
+                    blocked = true;
+                    castOctant(field, originX, originY, j + 1, start, leftSlope, radius, xx, xy, yx, yy);
+                    newStart = rightSlope;
+                }
+            }
+            if (blocked) {
+                return;
+            }
+        }
+    }
+
+    private void mark(FieldOfView field, int x, int y, int dx, int dy, int radius) {
+        int slot = (dy + radius) * markSide + dx + radius;
+        if (marks[slot] != markEpoch) {
+            marks[slot] = markEpoch;
+            field.add(grid.indexOf(x, y));
+        }
+    }
+
+    private void lightOccupants() {
+        OccupantIndex occupants = grid.getOccupantIndex();
+        for (int slot = 0; slot < occupants.capacity(); slot++) {
+            MapEntity entity = occupants.entityAt(slot);
+            if (entity != null) {
+                place(entity, occupants.tileAt(slot));
+            }
+        }
+    }
+
+    /**
+     * Recomputes what every entity on the map sees; explored tiles stay explored.
+     * Needed after the terrain or the sight of an entity on the map changed.
+     */
+    public void rebuild() {
+        for (int playerId = 0; playerId < viewers.length; playerId++) {
+            if (viewers[playerId] != null) {
+                Arrays.fill(viewers[playerId], (short) 0);
+                Arrays.fill(visible[playerId], 0L);
+                visibleCounts[playerId] = 0;
+            }
+        }
+        spare.addAll(fields.values());
+        fields.clear();
+        lightOccupants();
+    }
+
+    /**
+     * Checks if a player sees a tile now.
+     * @param playerId The player id
+     * @param index Row-major index of the tile
+     * @return true if one of its units or buildings sees the tile
+     */
+    public boolean isVisible(int playerId, int index) {
+        return playerId >= 0 && playerId < visible.length && visible[playerId] != null
+            && (visible[playerId][index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Checks if a player has ever seen a tile.
+     * @param playerId The player id
+     * @param index Row-major index of the tile
+     * @return true if the tile was visible to the player at some point
+     */
+    public boolean isExplored(int playerId, int index) {
+        return playerId >= 0 && playerId < explored.length && explored[playerId] != null
+            && (explored[playerId][index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Checks if a player sees an entity.
+     * @param playerId The player id
+     * @param entity A unit or a building
+     * @return true if the entity is on a tile the player sees
+     */
+    public boolean canSee(int playerId, MapEntity entity) {
+        int tile = grid.tileOf(entity.getEntityId());
+        return tile >= 0 && isVisible(playerId, tile);
+    }
+
+    /**
+     * Gets the number of tiles a player sees.
+     * @param playerId The player id
+     * @return Visible tile count
+     */
+    public int getVisibleCount(int playerId) {
+        return playerId >= 0 && playerId < visibleCounts.length ? visibleCounts[playerId] : 0;
+    }
+
+    /**
+     * Gets the tiles a player sees, as a bitset by tile index, updated in place.
+     * @param playerId The player id
+     * @return The bitset (bit index & 63 of word index >>> 6), or null if the
+     *         player never had an entity on the map
+     */
+    public long[] getVisibleTiles(int playerId) {
+        return playerId >= 0 && playerId < visible.length ? visible[playerId] : null;
+    }
+
+    /**
+     * Gets the tiles a player has ever seen, as a bitset by tile index.
+     * @param playerId The player id
+     * @return The bitset, or null if the player never had an entity on the map
+     */
+    public long[] getExploredTiles(int playerId) {
+        return playerId >= 0 && playerId < explored.length ? explored[playerId] : null;
+    }
+
+    /**
+     * Gets the number of entities giving sight.
+     * @return Entity count
+     */
+    public int size() {
+        return fields.size();
+    }
+}
@@ -0,0 +1,272 @@
+package com.strategicgame.network;
+
+import com.strategicgame.buildings.Building;
+import com.strategicgame.buildings.BuildingType;
+import com.strategicgame.core.ActionResult;
+import com.strategicgame.core.GameManager;
+import com.strategicgame.map.Position;
+import com.strategicgame.persistence.GameSnapshot;
+import com.strategicgame.player.Player;
+import com.strategicgame.replay.EventType;
+import com.strategicgame.replay.Replayer;
+import com.strategicgame.units.Unit;
+import com.strategicgame.units.UnitType;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * GameClient plays a seat of a game hosted by a GameServer, over a blocking
+ * socket. It keeps a copy of the game, restored from the snapshot of the
+ * WELCOME frame and updated by the EVENT frames : an action sent is applied
+ * to the copy when its event comes back, so units and buildings are those
+ * of getGame(). Not thread-safe.
+ *
+ */
+public class GameClient implements AutoCloseable {
+    private static final int BUFFER_BYTES = 1 << 14;
+
+    private final SocketChannel channel;
+    private final ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES).flip();
+    private final ByteBuffer out = ByteBuffer.allocate(Protocol.MAX_CLIENT_FRAME_BYTES);
+    private GameManager game;
+    private Player player;
+    private int sessionId;
+    private long eventCount;
+
+    private GameClient(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Connects to a server.
+     * @param address Address of the server
+     * @return The client, to join a session with
+     * @throws IOException if the server cannot be reached
+     */
+    public static GameClient connect(InetSocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        channel.socket().setTcpNoDelay(true);
+        return new GameClient(channel);
+    }
+
+    /**
+     * Takes a seat of a session, created if it does not exist yet.
+     * @param session Session id
+     * @param seat Player id to play
+     * @throws IOException if the server refused the seat or the connection failed
+     */
+    public void join(int session, int seat) throws IOException {
+        if (game != null) {
+            throw new IllegalStateException("Already in session " + sessionId);
+        }
+        Protocol.begin(out.clear(), Protocol.JOIN).putInt(Protocol.MAGIC).putShort(Protocol.VERSION)
+            .putInt(session).put((byte) seat);
+        send();
+        ByteBuffer frame = readFrame();
+        byte kind = frame.get();
+        if (kind != Protocol.WELCOME) {
+            throw unexpected(kind, frame);
+        }
+        sessionId = frame.getInt();
+        int playerId = frame.get();
+        GameManager restored = new GameManager();
+        GameSnapshot.restore(frame, restored);
+        game = restored;
+        player = Replayer.playerOf(game, playerId);
+    }
+
+    public ActionResult trainUnit(UnitType type) throws IOException {
+        beginAction(EventType.TRAIN).put((byte) type.ordinal());
+        return act();
+    }
+
+    public ActionResult build(BuildingType type) throws IOException {
+        beginAction(EventType.BUILD).put((byte) type.ordinal());
+        return act();
+    }
+
+    public ActionResult moveUnit(Unit unit, Position target) throws IOException {
+        beginAction(EventType.MOVE).putInt(unit.getId()).putInt(target.getX()).putInt(target.getY());
+        return act();
+    }
+
+    public ActionResult attackUnit(Unit attacker, Unit defender) throws IOException {
+        beginAction(EventType.ATTACK_UNIT).putInt(attacker.getId())
+            .put((byte) defender.getOwner().getPlayerId()).putInt(defender.getId());
+        return act();
+    }
+
+    public ActionResult attackBuilding(Unit attacker, Building target) throws IOException {
+        Player owner = target.getOwner();
+        beginAction(EventType.ATTACK_BUILDING).putInt(attacker.getId())
+            .put((byte) owner.getPlayerId()).putInt(owner.getBuildings().indexOf(target));
+        return act();
+    }
+
+    /**
+     * Ends the turn. Returns once the server answered : the turns of the
+     * other players may still be coming, see awaitTurn.
+     * @return Outcome of the action
+     * @throws IOException if the connection failed or the game got out of sync
+     */
+    public ActionResult endTurn() throws IOException {
+        beginAction(EventType.END_TURN);
+        return act();
+    }
+
+    /**
+     * Applies the events of the other players until it is the turn of this
+     * client or the game is over.
+     * @throws IOException if the connection failed or the game got out of sync
+     */
+    public void awaitTurn() throws IOException {
+        checkJoined();
+        while (!game.isGameOver() && game.getCurrentPlayer() != player) {
+            ByteBuffer frame = readFrame();
+            byte kind = frame.get();
+            if (kind != Protocol.EVENT) {
+                throw unexpected(kind, frame);
+            }
+            applyEvent(frame);
+        }
+    }
+
+    private ByteBuffer beginAction(EventType type) {
+        checkJoined();
+        return Protocol.begin(out.clear(), Protocol.ACTION).put((byte) type.ordinal());
+    }
+
+    /**
+     * Sends the action in out, then applies events until its result comes.
+     */
+    private ActionResult act() throws IOException {
+        send();
+        while (true) {
+            ByteBuffer frame = readFrame();
+            byte kind = frame.get();
+            if (kind == Protocol.RESULT) {
+                return ActionResult.values()[frame.get()];
+            }
+            if (kind != Protocol.EVENT) {
+                throw unexpected(kind, frame);
+            }
+            applyEvent(frame);
+        }
+    }
+
+    private void applyEvent(ByteBuffer record) throws IOException {
+        String error;
+        try {
+            error = Replayer.applyRecord(record, game);
+        } catch (IllegalArgumentException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            error = "invalid event: " + e.getMessage();
+        }
+        if (error != null) {
+            throw new IOException("Out of sync with the server: " + error);
+        }
+        eventCount++;
+    }
+
+    private void checkJoined() {
+        if (game == null) {
+            throw new IllegalStateException("Not in a session");
+        }
+    }
+
+    private void send() throws IOException {
+        Protocol.end(out, 0);
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+    }
+
+    /**
+     * Reads the next frame.
+     * @return Its kind then payload, from position to limit
+     */
+    private ByteBuffer readFrame() throws IOException {
+        fill(4);
+        int length = in.getInt();
+        if (length < 1) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        if (length > in.capacity()) {
+            // A snapshot larger than the buffer: read it in a buffer of its own
+            ByteBuffer large = ByteBuffer.allocate(length);
+            large.put(in.slice(in.position(), Math.min(in.remaining(), length)));
+            in.position(in.position() + large.position());
+            while (large.hasRemaining()) {
+                if (channel.read(large) < 0) {
+                    throw new EOFException("Connection closed by the server");
+                }
+            }
+            return large.flip();
+        }
+        fill(length);
+        ByteBuffer frame = in.slice(in.position(), length);
+        in.position(in.position() + length);
+        return frame;
+    }
+
+    /**
+     * Reads until in holds at least a number of bytes.
+     */
+    private void fill(int bytes) throws IOException {
+        if (in.remaining() >= bytes) {
+            return;
+        }
+        in.compact();
+        while (in.position() < bytes) {
+            if (channel.read(in) < 0) {
+                throw new EOFException("Connection closed by the server");
+            }
+        }
+        in.flip();
+    }
+
+    private static IOException unexpected(byte kind, ByteBuffer frame) {
+        if (kind == Protocol.ERROR) {
+            return new IOException("Server error: " + StandardCharsets.UTF_8.decode(frame));
+        }
+        return new IOException("Unexpected frame " + kind);
+    }
+
+    /**
+     * Gets the copy of the game.
+     * @return The game, null before join
+     */
+    public GameManager getGame() {
+        return game;
+    }
+
+    /**
+     * Gets the player of this client in its copy of the game.
+     * @return The player, null before join
+     */
+    public Player getPlayer() {
+        return player;
+    }
+
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Gets the number of events applied to the game since it joined.
+     * @return Event count
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
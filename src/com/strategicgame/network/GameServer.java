@@ -0,0 +1,364 @@
+package com.strategicgame.network;
+
+import com.strategicgame.util.GameLog;
+import com.strategicgame.util.GameRandom;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * GameServer hosts many games at once over TCP : clients join a seat of a
+ * session (see Protocol), send their actions and receive every action
+ * applied in their session, so that they keep their own copy of the game.
+ * Seats nobody holds are played by the AI. A session is created by its
+ * first join and dropped when its last client leaves.
+ *
+ * One thread runs everything on a non-blocking selector : the games need
+ * no locking, and a connection costs a few small buffers, so a server holds
+ * thousands of them. A client reading too slowly is disconnected once
+ * MAX_PENDING_BYTES wait to be sent to it.
+ *
+ */
+public class GameServer implements Runnable, AutoCloseable {
+    /** Bytes waiting to be sent to a client beyond which it is disconnected. */
+    public static final int MAX_PENDING_BYTES = 1 << 20;
+    /** Players per session. */
+    public static final int PLAYERS_PER_SESSION = 2;
+
+    private final Selector selector;
+    private final ServerSocketChannel acceptor;
+    private final long seed;
+    private final int mapSize;
+    private final Map<Integer, GameSession> sessions = new HashMap<>();
+    // Connections that failed while a game was sending to them, closed once it is done
+    private final ArrayDeque<Connection> broken = new ArrayDeque<>();
+    private int connectionCount;
+    private volatile boolean running = true;
+
+    /**
+     * Opens a server; it accepts clients once run is called.
+     *
+     * @param address Address to listen on (port 0 for any free port)
+     * @param seed Seed of the games, each session deriving its own from it
+     * @param mapSize Width and height of the maps
+     * @throws IOException if the address cannot be bound
+     */
+    public GameServer(InetSocketAddress address, long seed, int mapSize) throws IOException {
+        this.selector = Selector.open();
+        this.acceptor = ServerSocketChannel.open();
+        try {
+            acceptor.bind(address, 1024);
+            acceptor.configureBlocking(false);
+            acceptor.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            acceptor.close();
+            selector.close();
+            throw e;
+        }
+        this.seed = seed;
+        this.mapSize = mapSize;
+    }
+
+    /**
+     * A client connection : its channel, the frames received not yet
+     * complete and the frames waiting to be sent.
+     */
+    final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer in = ByteBuffer.allocate(Protocol.MAX_CLIENT_FRAME_BYTES);
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        private int pendingBytes;
+        private GameSession session;
+        private int seat;
+        private boolean closed;
+        private boolean closing;   // failed : closed once out is sent
+
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.key = channel.register(selector, SelectionKey.OP_READ, this);
+        }
+
+        /**
+         * Queues a frame and sends what the socket takes now.
+         * @param frame A complete frame, flipped
+         */
+        void send(ByteBuffer frame) {
+            if (closed || closing) {
+                return;
+            }
+            out.add(frame);
+            pendingBytes += frame.remaining();
+            if (pendingBytes > MAX_PENDING_BYTES) {
+                GameLog.error("Server: client too slow, disconnected");
+                breakDown();
+                return;
+            }
+            if (out.size() == 1) {
+                write();
+            }
+        }
+
+        private void write() {
+            try {
+                while (!out.isEmpty()) {
+                    ByteBuffer frame = out.peek();
+                    pendingBytes -= channel.write(frame);
+                    if (frame.hasRemaining()) {
+                        // A failed connection is no longer read, only drained
+                        key.interestOps(closing ? SelectionKey.OP_WRITE
+                            : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    out.poll();
+                }
+                if (closing) {
+                    close();
+                    return;
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            } catch (IOException e) {
+                breakDown();
+            }
+        }
+
+        /**
+         * Stops sending to the connection, and closes it after the current
+         * event : its game may be in the middle of an action.
+         */
+        private void breakDown() {
+            if (!closed) {
+                out.clear();
+                closed = true;
+                broken.add(this);
+            }
+        }
+
+        private void read() {
+            try {
+                if (channel.read(in) < 0) {
+                    close();
+                    return;
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            in.flip();
+            while (!closed && !closing && in.remaining() >= 4) {
+                int length = in.getInt(in.position());
+                if (length < 1 || length > Protocol.MAX_CLIENT_FRAME_BYTES - 4) {
+                    fail("Invalid frame length " + length);
+                    return;
+                }
+                if (in.remaining() < 4 + length) {
+                    break;
+                }
+                int end = in.position() + 4 + length;
+                in.position(in.position() + 4);
+                byte kind = in.get();
+                handle(kind, in.slice(in.position(), end - in.position()));
+                in.position(end);
+            }
+            in.compact();
+        }
+
+        private void handle(byte kind, ByteBuffer payload) {
+            if (kind == Protocol.JOIN) {
+                if (session != null || payload.remaining() < 11 || payload.getInt() != Protocol.MAGIC
+                        || payload.getShort() != Protocol.VERSION) {
+                    fail("Invalid JOIN");
+                    return;
+                }
+                int sessionId = payload.getInt();
+                int requested = payload.get();
+                GameSession target = sessions.computeIfAbsent(sessionId, id -> new GameSession(id,
+                    GameRandom.mix(seed + id), mapSize, PLAYERS_PER_SESSION));
+                String refusal = target.join(this, requested);
+                if (refusal != null) {
+                    dropIfEmpty(target);
+                    fail(refusal);
+                    return;
+                }
+                session = target;
+                seat = requested;
+            } else if (kind == Protocol.ACTION && session != null) {
+                session.act(seat, payload);
+            } else {
+                fail("Unexpected frame " + kind);
+            }
+        }
+
+        /**
+         * Sends an ERROR frame, then closes the connection once every queued
+         * frame is sent : the client reads the error instead of a reset.
+         * Nothing is read nor queued in the meantime.
+         */
+        private void fail(String message) {
+            byte[] text = message.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer error = ByteBuffer.allocate(Protocol.HEADER_BYTES + text.length);
+            Protocol.begin(error, Protocol.ERROR).put(text);
+            Protocol.end(error, 0);
+            send(error.flip());
+            if (closed) {
+                return;   // broken down while sending
+            }
+            closing = true;
+            if (out.isEmpty()) {
+                close();
+            } else {
+                key.interestOps(SelectionKey.OP_WRITE);
+            }
+        }
+
+        void close() {
+            if (closed && !broken.remove(this)) {
+                return;
+            }
+            closed = true;
+            connectionCount--;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Closed anyway
+            }
+            if (session != null) {
+                GameSession left = session;
+                session = null;
+                left.leave(this);
+                dropIfEmpty(left);
+            }
+        }
+    }
+
+    private void dropIfEmpty(GameSession session) {
+        if (session.isEmpty()) {
+            sessions.remove(session.getId());
+        }
+    }
+
+    /**
+     * Runs the selector loop until close is called.
+     */
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isWritable()) {
+                            connection.write();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.read();
+                        }
+                    } catch (RuntimeException e) {
+                        // A broken game must not stop the other ones
+                        GameLog.error("Server: " + e);
+                        connection.close();
+                    }
+                    while (!broken.isEmpty()) {
+                        broken.peek().close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            GameLog.error("Server stopped: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : new ArrayList<>(selector.keys())) {
+                if (key.attachment() instanceof Connection) {
+                    ((Connection) key.attachment()).close();
+                }
+            }
+            try {
+                acceptor.close();
+                selector.close();
+            } catch (IOException e) {
+                GameLog.error("Server: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = acceptor.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            new Connection(channel);
+            connectionCount++;
+        }
+    }
+
+    /**
+     * Gets the port the server listens on.
+     * @return The local port
+     */
+    public int getPort() {
+        return acceptor.socket().getLocalPort();
+    }
+
+    /**
+     * Gets the number of sessions being played. To read from the server thread,
+     * or once it stopped.
+     * @return Session count
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Gets the number of connected clients. To read from the server thread,
+     * or once it stopped.
+     * @return Connection count
+     */
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * Stops the selector loop; run closes every connection before returning.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Starts a server. Arguments : port (default 7777), seed, map size.
+     * @param args Command line arguments
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        int mapSize = args.length > 2 ? Integer.parseInt(args[2]) : 24;
+        GameLog.setEnabled(false);
+        GameServer server = new GameServer(new InetSocketAddress(port), seed, mapSize);
+        System.out.println("GridWar server listening on port " + server.getPort());
+        server.run();
+    }
+}
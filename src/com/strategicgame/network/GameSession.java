@@ -0,0 +1,179 @@
+package com.strategicgame.network;
+
+import com.strategicgame.core.ActionResult;
+import com.strategicgame.core.AiController;
+import com.strategicgame.core.GameActions;
+import com.strategicgame.core.GameManager;
+import com.strategicgame.persistence.GameSnapshot;
+import com.strategicgame.player.Player;
+import com.strategicgame.replay.EventType;
+import com.strategicgame.replay.RecordWriter;
+import com.strategicgame.replay.Replayer;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * GameSession is one game hosted by a GameServer : its GameManager, the
+ * connection seated on each player (null for a free seat, played by the
+ * AI) and the broadcast of every action applied as an EVENT frame.
+ * Runs on the thread of the server only.
+ *
+ */
+final class GameSession {
+    private final int id;
+    private final GameManager gameManager;
+    private final GameServer.Connection[] seats;
+    private final AiController[] controllers;
+    private final Broadcaster broadcaster;
+    private int seated;
+
+    GameSession(int id, long seed, int mapSize, int playerCount) {
+        this.id = id;
+        this.gameManager = new GameManager(seed);
+        gameManager.initializeGame(mapSize, mapSize, playerCount);
+        gameManager.setupStartingForces();
+        this.seats = new GameServer.Connection[playerCount];
+        this.controllers = new AiController[playerCount];
+        for (int i = 0; i < playerCount; i++) {
+            controllers[i] = new AiController(gameManager.getRandom().split());
+        }
+        this.broadcaster = new Broadcaster(gameManager);
+        gameManager.getActions().setObserver(broadcaster);
+    }
+
+    /**
+     * Records encoded into EVENT frames, sent to every seated connection.
+     */
+    private final class Broadcaster extends RecordWriter {
+        private final ByteBuffer frame = ByteBuffer.allocate(Protocol.HEADER_BYTES + MAX_RECORD_BYTES);
+
+        Broadcaster(GameManager gameManager) {
+            super(gameManager);
+        }
+
+        @Override
+        protected ByteBuffer begin(EventType type, Player player) {
+            frame.clear();
+            return Protocol.begin(frame, Protocol.EVENT).put((byte) type.ordinal()).put((byte) player.getPlayerId());
+        }
+
+        @Override
+        protected void end() {
+            Protocol.end(frame, 0);
+            frame.flip();
+            byte[] bytes = new byte[frame.remaining()];
+            frame.get(bytes);
+            for (GameServer.Connection seat : seats) {
+                if (seat != null) {
+                    seat.send(ByteBuffer.wrap(bytes));
+                }
+            }
+        }
+    }
+
+    int getId() {
+        return id;
+    }
+
+    GameManager getGameManager() {
+        return gameManager;
+    }
+
+    boolean isEmpty() {
+        return seated == 0;
+    }
+
+    /**
+     * Seats a connection and sends it the WELCOME frame, then lets the AI
+     * play until the turn of a seated player.
+     * @return null, or why the seat cannot be taken
+     */
+    String join(GameServer.Connection connection, int seat) {
+        if (seat < 0 || seat >= seats.length) {
+            return "No seat " + seat + " in session " + id;
+        }
+        if (seats[seat] != null) {
+            return "Seat " + seat + " of session " + id + " is taken";
+        }
+        ByteBuffer snapshot;
+        try {
+            snapshot = GameSnapshot.capture(gameManager, null);
+        } catch (IOException e) {
+            return e.getMessage();
+        }
+        ByteBuffer welcome = ByteBuffer.allocate(Protocol.HEADER_BYTES + 5 + snapshot.remaining());
+        Protocol.begin(welcome, Protocol.WELCOME).putInt(id).put((byte) seat).put(snapshot);
+        Protocol.end(welcome, 0);
+        connection.send(welcome.flip());
+        seats[seat] = connection;
+        seated++;
+        playFreeSeats();
+        return null;
+    }
+
+    /**
+     * Frees the seat of a connection : the AI plays it from now on.
+     */
+    void leave(GameServer.Connection connection) {
+        for (int i = 0; i < seats.length; i++) {
+            if (seats[i] == connection) {
+                seats[i] = null;
+                seated--;
+            }
+        }
+        playFreeSeats();
+    }
+
+    /**
+     * Applies an ACTION frame of the player of a seat; the answer is sent as
+     * a RESULT frame, after the EVENT of the action.
+     * @param seat The seat of the connection
+     * @param action Payload of the frame
+     */
+    void act(int seat, ByteBuffer action) {
+        List<Player> players = gameManager.getPlayers();
+        Player player = players.get(seat);
+        ActionResult result;
+        boolean endTurn = false;
+        if (gameManager.isGameOver()) {
+            result = ActionResult.INVALID;
+        } else if (gameManager.getCurrentPlayer() != player) {
+            result = ActionResult.NOT_YOUR_TURN;
+        } else {
+            GameActions actions = gameManager.getActions();
+            try {
+                EventType type = EventType.fromTag(action.get());
+                endTurn = type == EventType.END_TURN;
+                result = endTurn ? actions.endTurn(player)
+                    : Replayer.apply(type, player, action, gameManager, actions);
+            } catch (IllegalArgumentException | BufferUnderflowException | IndexOutOfBoundsException e) {
+                result = ActionResult.INVALID;
+            }
+        }
+        ByteBuffer answer = ByteBuffer.allocate(Protocol.HEADER_BYTES + 1);
+        Protocol.begin(answer, Protocol.RESULT).put((byte) result.ordinal());
+        Protocol.end(answer, 0);
+        seats[seat].send(answer.flip());
+        if (endTurn && result.isSuccess()) {
+            playFreeSeats();
+        }
+    }
+
+    /**
+     * Plays the turns of the free seats with the AI, until the turn of a
+     * seated player. Nothing is played once every seat is free.
+     */
+    private void playFreeSeats() {
+        List<Player> players = gameManager.getPlayers();
+        while (seated > 0 && !gameManager.isGameOver()) {
+            int index = gameManager.getCurrentPlayerIndex();
+            if (seats[index] != null) {
+                return;
+            }
+            controllers[index].playTurn(players.get(index), gameManager);
+            gameManager.getActions().endTurn(players.get(index));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.strategicgame.network;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Protocol defines the binary frames exchanged between a GameServer and its
+ * clients over TCP, big-endian : an int length (of what follows), a byte
+ * kind, then the payload of the kind.
+ *
+ * Client to server :
+ *  - JOIN : int MAGIC, short VERSION, int session id, byte seat (player id).
+ *    The session is created on first join;
+ *  - ACTION : a record of RecordWriter without the player id (the seat of
+ *    the connection) : EventType tag then operands, none for END_TURN.
+ * Server to client :
+ *  - WELCOME : int session id, byte seat, then a GameSnapshot of the game;
+ *  - EVENT : a record of RecordWriter, for every action applied in the
+ *    session by any player : applied in order to the snapshot (see
+ *    Replayer.applyRecord) they keep a copy of the game in step, checked by
+ *    the state hash of every END_TURN;
+ *  - RESULT : byte ActionResult ordinal, the answer to an ACTION, after its EVENT;
+ *  - ERROR : a UTF-8 message, then the server closes the connection.
+ *
+ */
+public final class Protocol {
+    /** "GWNP" */
+    public static final int MAGIC = 0x47574E50;
+    public static final short VERSION = 1;
+
+    public static final byte JOIN = 1;
+    public static final byte ACTION = 2;
+
+    public static final byte WELCOME = 16;
+    public static final byte EVENT = 17;
+    public static final byte RESULT = 18;
+    public static final byte ERROR = 19;
+
+    /** Bytes before the payload : length and kind. */
+    public static final int HEADER_BYTES = 5;
+    /** Largest frame a client may send, length included. */
+    public static final int MAX_CLIENT_FRAME_BYTES = 64;
+
+    private Protocol() {
+        throw new AssertionError("Protocol class should not be instantiated");
+    }
+
+    /**
+     * Starts a frame in a buffer; finish it with end.
+     * @param buffer Destination
+     * @param kind Frame kind
+     * @return The buffer, to write the payload to
+     */
+    public static ByteBuffer begin(ByteBuffer buffer, byte kind) {
+        return buffer.putInt(0).put(kind);
+    }
+
+    /**
+     * Writes the length of the frame started at a position.
+     * @param buffer The buffer, positioned after the payload
+     * @param start Position of the frame in the buffer
+     */
+    public static void end(ByteBuffer buffer, int start) {
+        buffer.putInt(start, buffer.position() - start - 4);
+    }
+
+    /**
+     * Creates a complete frame, ready to be written.
+     * @param kind Frame kind
+     * @param payload Its payload (read from position to limit, left unchanged)
+     * @return The frame, flipped
+     */
+    public static ByteBuffer frame(byte kind, ByteBuffer payload) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + payload.remaining());
+        frame.putInt(1 + payload.remaining()).put(kind).put(payload.duplicate());
+        return frame.flip();
+    }
+}
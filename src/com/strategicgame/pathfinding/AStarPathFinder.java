@@ -0,0 +1,191 @@
+package com.strategicgame.pathfinding;
+
+import com.strategicgame.map.GameMap;
+import com.strategicgame.map.PathFinder;
+import com.strategicgame.map.Position;
+import com.strategicgame.map.TileGrid;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A* pathfinding over the 8-way neighbourhood of the map grid.
+ * Step cost is the movement cost of the entered tile (times sqrt(2) for
+ * diagonals), the heuristic is the octile distance.
+ * Diagonal moves may not cut the corner of a blocked tile.
+ * All search state lives in primitive arrays reused between calls,
+ * so an instance must not be shared between threads.
+ * 
+ */
+public class AStarPathFinder implements PathFinder {
+    static final float DIAGONAL_COST = (float) Math.sqrt(2.0);
+
+    // 4 straight directions first, then the 4 diagonals
+    static final int[] DX = {1, -1, 0, 0, 1, 1, -1, -1};
+    static final int[] DY = {0, 0, 1, -1, 1, -1, 1, -1};
+
+    // Instance of each searching thread, see perThread
+    private static final ThreadLocal<AStarPathFinder> PER_THREAD = ThreadLocal.withInitial(AStarPathFinder::new);
+    private static final PathFinder SHARED = (map, start, end) -> PER_THREAD.get().findPath(map, start, end);
+
+    private final SearchSpace space = new SearchSpace();
+    private final IntList path = new IntList();
+
+    /**
+     * Gets a path finder that may be shared between maps and threads : each
+     * calling thread searches with its own instance, so that maps and their
+     * forks reuse the search arrays of the thread instead of allocating theirs.
+     * @return The shared path finder
+     */
+    public static PathFinder perThread() {
+        return SHARED;
+    }
+
+    @Override
+    public List<Position> findPath(GameMap map, Position start, Position end) {
+        if (!map.isWithinBounds(start) || !map.isWithinBounds(end)) {
+            return new ArrayList<>();
+        }
+        TileGrid grid = map.getGrid();
+        float cost = search(grid, grid.indexOf(start.getX(), start.getY()),
+            grid.indexOf(end.getX(), end.getY()),
+            0, 0, grid.getWidth() - 1, grid.getHeight() - 1, path);
+        if (cost == Float.POSITIVE_INFINITY) {
+            return new ArrayList<>();
+        }
+        return toPositions(grid, path);
+    }
+
+    /**
+     * Searches a path between two tiles, restricted to a rectangle of the grid.
+     * 
+     * @param grid The tile grid
+     * @param start Start tile index (may be occupied)
+     * @param goal Goal tile index
+     * @param minX Smallest X the search may visit
+     * @param minY Smallest Y the search may visit
+     * @param maxX Largest X the search may visit
+     * @param maxY Largest Y the search may visit
+     * @param out Receives the tile indices from start to goal
+     * @return Path cost, or Float.POSITIVE_INFINITY if no path found
+     */
+    public float search(TileGrid grid, int start, int goal,
+                        int minX, int minY, int maxX, int maxY, IntList out) {
+        out.clear();
+        if (start == goal) {
+            out.add(start);
+            return 0f;
+        }
+        if (!grid.isPassable(goal)) {
+            return Float.POSITIVE_INFINITY;
+        }
+        if (run(grid, start, goal, minX, minY, maxX, maxY)) {
+            space.buildPath(goal, out);
+            return space.getCost(goal);
+        }
+        return Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Computes the cheapest paths from a tile to every tile reachable inside
+     * a rectangle (Dijkstra). Results are read with costTo and pathTo until
+     * the next search.
+     * 
+     * @param grid The tile grid
+     * @param start Start tile index (may be occupied)
+     * @param minX Smallest X the search may visit
+     * @param minY Smallest Y the search may visit
+     * @param maxX Largest X the search may visit
+     * @param maxY Largest Y the search may visit
+     */
+    public void explore(TileGrid grid, int start, int minX, int minY, int maxX, int maxY) {
+        run(grid, start, -1, minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Gets the cost found by the last explore call.
+     * @param node Tile index
+     * @return Path cost, or Float.POSITIVE_INFINITY if not reached
+     */
+    public float costTo(int node) {
+        return space.getCost(node);
+    }
+
+    /**
+     * Gets a path found by the last explore call.
+     * @param node Tile index, must have been reached
+     * @param out Receives the tile indices from start to node
+     */
+    public void pathTo(int node, IntList out) {
+        space.buildPath(node, out);
+    }
+
+    /**
+     * Runs the search loop; without goal (-1) it expands every reachable tile.
+     * @return true if the goal was reached
+     */
+    private boolean run(TileGrid grid, int start, int goal,
+                        int minX, int minY, int maxX, int maxY) {
+        boolean hasGoal = goal >= 0;
+        int goalX = hasGoal ? grid.xOf(goal) : 0;
+        int goalY = hasGoal ? grid.yOf(goal) : 0;
+        space.reset(grid.size());
+        space.open(start, SearchSpace.NO_PARENT, 0f,
+            hasGoal ? octile(grid.xOf(start), grid.yOf(start), goalX, goalY) : 0f);
+
+        while (space.hasOpen()) {
+            int node = space.poll();
+            if (node == goal) {
+                return true;
+            }
+
+            int x = grid.xOf(node);
+            int y = grid.yOf(node);
+            float base = space.getCost(node);
+            for (int d = 0; d < 8; d++) {
+                int nx = x + DX[d];
+                int ny = y + DY[d];
+                if (nx < minX || nx > maxX || ny < minY || ny > maxY) {
+                    continue;
+                }
+                int next = grid.indexOf(nx, ny);
+                if (!grid.isPassable(next) || space.isClosed(next)) {
+                    continue;
+                }
+                float step = grid.getType(next).getMovementCost();
+                if (d >= 4) {
+                    // No corner cutting
+                    if (!grid.isPassable(grid.indexOf(nx, y)) || !grid.isPassable(grid.indexOf(x, ny))) {
+                        continue;
+                    }
+                    step *= DIAGONAL_COST;
+                }
+                float cost = base + step;
+                if (cost < space.getCost(next)) {
+                    space.open(next, node, cost,
+                        hasGoal ? cost + octile(nx, ny, goalX, goalY) : cost);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Octile distance: the cost of the shortest 8-way path on uniform terrain.
+     */
+    static float octile(int x1, int y1, int x2, int y2) {
+        int dx = Math.abs(x1 - x2);
+        int dy = Math.abs(y1 - y2);
+        return (dx + dy) + (DIAGONAL_COST - 2f) * Math.min(dx, dy);
+    }
+
+    /**
+     * Converts a path of tile indices into positions.
+     */
+    static List<Position> toPositions(TileGrid grid, IntList indices) {
+        List<Position> result = new ArrayList<>(indices.size());
+        for (int i = 0; i < indices.size(); i++) {
+            result.add(grid.positionOf(indices.get(i)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,456 @@
+package com.strategicgame.pathfinding;
+
+import com.strategicgame.map.GameMap;
+import com.strategicgame.map.PathFinder;
+import com.strategicgame.map.Position;
+import com.strategicgame.map.TileChangeListener;
+import com.strategicgame.map.TileGrid;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hierarchical pathfinding (HPA*) for large maps.
+ * The map is cut into square clusters. Entrances are found once on the
+ * borders between clusters from the terrain (TileType.isPassable), and
+ * linked into an abstract graph whose intra-cluster edges cache the
+ * local path between every pair of entrances of a cluster.
+ * A query only searches this small graph, then stitches the cached paths.
+ * When an occupant appears or leaves a tile, only the cluster of that tile
+ * is marked dirty and its intra-cluster edges are rebuilt before the next query.
+ * Paths are near-optimal (usually within a few percent of A*); when the
+ * abstract graph finds nothing a flat A* confirms the failure.
+ * Not thread-safe.
+ *
+ */
+public class HierarchicalPathFinder implements PathFinder, TileChangeListener {
+    public static final int DEFAULT_CLUSTER_SIZE = 16;
+
+    // Entrances longer than this get two transitions (one at each end)
+    private static final int LONG_ENTRANCE = 6;
+
+    private final int clusterSize;
+    private final AStarPathFinder local = new AStarPathFinder();
+    private final SearchSpace abstractSpace = new SearchSpace();
+    private final IntList path = new IntList();
+
+    private TileGrid grid;
+    private int clustersX;
+    private int clustersY;
+    private IntList[] clusterNodes;  // cluster -> abstract node ids
+    private boolean[] dirty;
+    private final IntList dirtyClusters = new IntList();
+
+    // Abstract graph
+    private final IntList nodeTiles = new IntList();
+    private final List<List<Edge>> edges = new ArrayList<>();
+
+    // Temporary links of the start and goal tiles to the graph
+    private final List<Edge> startEdges = new ArrayList<>();
+    private final List<Edge> goalEdges = new ArrayList<>();
+    private Edge[] goalEdgeByNode = new Edge[0];
+
+    public HierarchicalPathFinder() {
+        this(DEFAULT_CLUSTER_SIZE);
+    }
+
+    public HierarchicalPathFinder(int clusterSize) {
+        if (clusterSize < 2) {
+            throw new IllegalArgumentException("Cluster size must be at least 2");
+        }
+        this.clusterSize = clusterSize;
+    }
+
+    /**
+     * Edge of the abstract graph, with its cached tile path.
+     */
+    private static final class Edge {
+        final int target;    // node id, -1 for the goal
+        final float cost;
+        final int[] tiles;   // from source tile to target tile
+        final boolean interCluster;
+
+        Edge(int target, float cost, int[] tiles, boolean interCluster) {
+            this.target = target;
+            this.cost = cost;
+            this.tiles = tiles;
+            this.interCluster = interCluster;
+        }
+    }
+
+    @Override
+    public List<Position> findPath(GameMap map, Position start, Position end) {
+        if (!map.isWithinBounds(start) || !map.isWithinBounds(end)) {
+            return new ArrayList<>();
+        }
+        bind(map.getGrid());
+        int startTile = grid.indexOf(start.getX(), start.getY());
+        int goalTile = grid.indexOf(end.getX(), end.getY());
+        if (search(startTile, goalTile) == Float.POSITIVE_INFINITY) {
+            // Occupants may block every transition of a border that still has
+            // free tiles : confirm with a flat search before giving up
+            if (!grid.isPassable(goalTile) || local.search(grid, startTile, goalTile, 0, 0,
+                    grid.getWidth() - 1, grid.getHeight() - 1, path) == Float.POSITIVE_INFINITY) {
+                return new ArrayList<>();
+            }
+        }
+        return AStarPathFinder.toPositions(grid, path);
+    }
+
+    /**
+     * Builds the abstract graph for a grid and starts following its changes.
+     * Called automatically by findPath when the map changes.
+     * The graph covers the whole grid, so grids of streamed size are refused :
+     * their maps use the bounded A* of GameMap.
+     * @param target The grid to plan on
+     * @throws IllegalArgumentException if the grid has more than GameMap.STREAMING_THRESHOLD tiles
+     */
+    public void bind(TileGrid target) {
+        if (grid == target) {
+            return;
+        }
+        if (target.size() > GameMap.STREAMING_THRESHOLD) {
+            throw new IllegalArgumentException("Grid too large for a hierarchical graph: "
+                + target.getWidth() + "x" + target.getHeight());
+        }
+        if (grid != null) {
+            grid.removeListener(this);
+        }
+        grid = target;
+        grid.addListener(this);
+        build();
+    }
+
+    @Override
+    public void onOccupantChanged(int index, Object previous, Object current) {
+        if ((previous == null) != (current == null)) {
+            int cluster = clusterOf(grid.xOf(index), grid.yOf(index));
+            if (!dirty[cluster]) {
+                dirty[cluster] = true;
+                dirtyClusters.add(cluster);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of nodes of the abstract graph.
+     * @return Entrance tile count
+     */
+    public int getAbstractNodeCount() {
+        return nodeTiles.size();
+    }
+
+    private void build() {
+        clustersX = (grid.getWidth() + clusterSize - 1) / clusterSize;
+        clustersY = (grid.getHeight() + clusterSize - 1) / clusterSize;
+        clusterNodes = new IntList[clustersX * clustersY];
+        for (int i = 0; i < clusterNodes.length; i++) {
+            clusterNodes[i] = new IntList(8);
+        }
+        dirty = new boolean[clusterNodes.length];
+        dirtyClusters.clear();
+        nodeTiles.clear();
+        edges.clear();
+
+        for (int cy = 0; cy < clustersY; cy++) {
+            for (int cx = 0; cx < clustersX; cx++) {
+                if (cx + 1 < clustersX) {
+                    int x = (cx + 1) * clusterSize - 1;
+                    findEntrances(x, cy * clusterSize, 0, 1, 1, 0);
+                }
+                if (cy + 1 < clustersY) {
+                    int y = (cy + 1) * clusterSize - 1;
+                    findEntrances(cx * clusterSize, y, 1, 0, 0, 1);
+                }
+            }
+        }
+        for (int cluster = 0; cluster < clusterNodes.length; cluster++) {
+            buildIntraEdges(cluster);
+        }
+    }
+
+    /**
+     * Scans one border between two clusters for runs of terrain passable on
+     * both sides, and links each run with one or two transitions.
+     * (x, y) is the first border tile of the first cluster, (stepX, stepY) walks
+     * along the border and (crossX, crossY) reaches the facing tile.
+     */
+    private void findEntrances(int x, int y, int stepX, int stepY, int crossX, int crossY) {
+        int runStart = -1;
+        for (int i = 0; i <= clusterSize; i++) {
+            int bx = x + i * stepX;
+            int by = y + i * stepY;
+            boolean open = i < clusterSize && grid.contains(bx + crossX, by + crossY)
+                && terrainPassable(bx, by) && terrainPassable(bx + crossX, by + crossY);
+            if (open && runStart < 0) {
+                runStart = i;
+            } else if (!open && runStart >= 0) {
+                int runEnd = i - 1;
+                if (runEnd - runStart + 1 >= LONG_ENTRANCE) {
+                    addTransition(x + runStart * stepX, y + runStart * stepY, crossX, crossY);
+                    addTransition(x + runEnd * stepX, y + runEnd * stepY, crossX, crossY);
+                } else {
+                    int mid = (runStart + runEnd) / 2;
+                    addTransition(x + mid * stepX, y + mid * stepY, crossX, crossY);
+                }
+                runStart = -1;
+            }
+        }
+    }
+
+    private boolean terrainPassable(int x, int y) {
+        return grid.contains(x, y) && grid.getType(grid.indexOf(x, y)).isPassable();
+    }
+
+    private void addTransition(int x, int y, int crossX, int crossY) {
+        int tileA = grid.indexOf(x, y);
+        int tileB = grid.indexOf(x + crossX, y + crossY);
+        int a = nodeFor(tileA);
+        int b = nodeFor(tileB);
+        edges.get(a).add(new Edge(b, grid.getType(tileB).getMovementCost(), new int[]{tileA, tileB}, true));
+        edges.get(b).add(new Edge(a, grid.getType(tileA).getMovementCost(), new int[]{tileB, tileA}, true));
+    }
+
+    private int nodeFor(int tile) {
+        IntList nodes = clusterNodes[clusterOf(grid.xOf(tile), grid.yOf(tile))];
+        for (int i = 0; i < nodes.size(); i++) {
+            if (nodeTiles.get(nodes.get(i)) == tile) {
+                return nodes.get(i);
+            }
+        }
+        int node = nodeTiles.size();
+        nodeTiles.add(tile);
+        edges.add(new ArrayList<>(4));
+        nodes.add(node);
+        return node;
+    }
+
+    private int clusterOf(int x, int y) {
+        return (y / clusterSize) * clustersX + (x / clusterSize);
+    }
+
+    /**
+     * (Re)computes the cached paths between the entrances of a cluster,
+     * considering the current occupants.
+     */
+    private void buildIntraEdges(int cluster) {
+        IntList nodes = clusterNodes[cluster];
+        for (int i = 0; i < nodes.size(); i++) {
+            edges.get(nodes.get(i)).removeIf(edge -> !edge.interCluster);
+        }
+        int minX = (cluster % clustersX) * clusterSize;
+        int minY = (cluster / clustersX) * clusterSize;
+        int maxX = Math.min(minX + clusterSize, grid.getWidth()) - 1;
+        int maxY = Math.min(minY + clusterSize, grid.getHeight()) - 1;
+
+        for (int i = 0; i < nodes.size(); i++) {
+            int from = nodes.get(i);
+            int fromTile = nodeTiles.get(from);
+            if (!grid.isPassable(fromTile)) {
+                continue;
+            }
+            local.explore(grid, fromTile, minX, minY, maxX, maxY);
+            for (int j = 0; j < nodes.size(); j++) {
+                int to = nodes.get(j);
+                int toTile = nodeTiles.get(to);
+                float cost = local.costTo(toTile);
+                if (i == j || cost == Float.POSITIVE_INFINITY || !grid.isPassable(toTile)) {
+                    continue;
+                }
+                local.pathTo(toTile, path);
+                edges.get(from).add(new Edge(to, cost, path.toArray(), false));
+            }
+        }
+    }
+
+    private void repairDirtyClusters() {
+        for (int i = 0; i < dirtyClusters.size(); i++) {
+            int cluster = dirtyClusters.get(i);
+            dirty[cluster] = false;
+            buildIntraEdges(cluster);
+        }
+        dirtyClusters.clear();
+    }
+
+    /**
+     * Searches a path between two tiles of the bound grid.
+     * @param startTile Start tile index (may be occupied)
+     * @param goalTile Goal tile index
+     * @return Path cost, or Float.POSITIVE_INFINITY; the path is left in the internal buffer
+     */
+    private float search(int startTile, int goalTile) {
+        path.clear();
+        if (startTile == goalTile) {
+            path.add(startTile);
+            return 0f;
+        }
+        if (!grid.isPassable(goalTile)) {
+            return Float.POSITIVE_INFINITY;
+        }
+        repairDirtyClusters();
+
+        int sx = grid.xOf(startTile);
+        int sy = grid.yOf(startTile);
+        int gx = grid.xOf(goalTile);
+        int gy = grid.yOf(goalTile);
+        int startCluster = clusterOf(sx, sy);
+        int goalCluster = clusterOf(gx, gy);
+
+        // Nearby goals are solved locally when possible
+        if (startCluster == goalCluster) {
+            int minX = (startCluster % clustersX) * clusterSize;
+            int minY = (startCluster / clustersX) * clusterSize;
+            float cost = local.search(grid, startTile, goalTile, minX, minY,
+                Math.min(minX + clusterSize, grid.getWidth()) - 1,
+                Math.min(minY + clusterSize, grid.getHeight()) - 1, path);
+            if (cost != Float.POSITIVE_INFINITY) {
+                return cost;
+            }
+        }
+
+        linkStart(startTile, startCluster);
+        linkGoal(goalTile, goalCluster);
+        if (startEdges.isEmpty() || goalEdges.isEmpty()) {
+            return Float.POSITIVE_INFINITY;
+        }
+
+        // A* over the abstract graph, with two extra nodes for start and goal
+        int startNode = nodeTiles.size();
+        int goalNode = startNode + 1;
+        abstractSpace.reset(goalNode + 1);
+        abstractSpace.open(startNode, SearchSpace.NO_PARENT, 0f, AStarPathFinder.octile(sx, sy, gx, gy));
+        while (abstractSpace.hasOpen()) {
+            int node = abstractSpace.poll();
+            if (node == goalNode) {
+                stitchPath(startNode, goalNode);
+                return abstractSpace.getCost(goalNode);
+            }
+            float base = abstractSpace.getCost(node);
+            List<Edge> out = node == startNode ? startEdges : edges.get(node);
+            for (Edge edge : out) {
+                relax(node, edge, base, gx, gy, goalNode);
+            }
+            if (node < goalEdgeByNode.length && goalEdgeByNode[node] != null) {
+                relax(node, goalEdgeByNode[node], base, gx, gy, goalNode);
+            }
+        }
+        return Float.POSITIVE_INFINITY;
+    }
+
+    private void relax(int node, Edge edge, float base, int gx, int gy, int goalNode) {
+        int target = edge.target < 0 ? goalNode : edge.target;
+        if (abstractSpace.isClosed(target)) {
+            return;
+        }
+        // Occupants may block a transition tile since the graph was built
+        if (edge.interCluster && !grid.isPassable(edge.tiles[1])) {
+            return;
+        }
+        float cost = base + edge.cost;
+        if (cost < abstractSpace.getCost(target)) {
+            int tile = target == goalNode ? grid.indexOf(gx, gy) : nodeTiles.get(target);
+            abstractSpace.open(target, node, cost,
+                cost + AStarPathFinder.octile(grid.xOf(tile), grid.yOf(tile), gx, gy));
+        }
+    }
+
+    /**
+     * Links the start tile to the entrances of its cluster (and to the graph
+     * directly if the start is itself an entrance).
+     */
+    private void linkStart(int startTile, int cluster) {
+        startEdges.clear();
+        exploreCluster(startTile, cluster);
+        IntList nodes = clusterNodes[cluster];
+        for (int i = 0; i < nodes.size(); i++) {
+            int node = nodes.get(i);
+            int tile = nodeTiles.get(node);
+            if (tile == startTile) {
+                startEdges.add(new Edge(node, 0f, new int[]{startTile}, false));
+            } else if (local.costTo(tile) != Float.POSITIVE_INFINITY && grid.isPassable(tile)) {
+                local.pathTo(tile, path);
+                startEdges.add(new Edge(node, local.costTo(tile), path.toArray(), false));
+            }
+        }
+    }
+
+    /**
+     * Links the entrances of the goal cluster to the goal tile. Paths are
+     * explored from the goal and reversed, so their cost is recomputed
+     * in the walking direction.
+     */
+    private void linkGoal(int goalTile, int cluster) {
+        goalEdges.clear();
+        if (goalEdgeByNode.length < nodeTiles.size()) {
+            goalEdgeByNode = new Edge[nodeTiles.size()];
+        }
+        Arrays.fill(goalEdgeByNode, null);
+        exploreCluster(goalTile, cluster);
+        IntList nodes = clusterNodes[cluster];
+        for (int i = 0; i < nodes.size(); i++) {
+            int node = nodes.get(i);
+            int tile = nodeTiles.get(node);
+            if (local.costTo(tile) == Float.POSITIVE_INFINITY) {
+                continue;
+            }
+            local.pathTo(tile, path);
+            path.reverse();
+            Edge edge = new Edge(-1, walkCost(path), path.toArray(), false);
+            goalEdges.add(edge);
+            goalEdgeByNode[node] = edge;
+        }
+    }
+
+    private void exploreCluster(int tile, int cluster) {
+        int minX = (cluster % clustersX) * clusterSize;
+        int minY = (cluster / clustersX) * clusterSize;
+        local.explore(grid, tile, minX, minY,
+            Math.min(minX + clusterSize, grid.getWidth()) - 1,
+            Math.min(minY + clusterSize, grid.getHeight()) - 1);
+    }
+
+    private float walkCost(IntList tiles) {
+        float cost = 0f;
+        for (int i = 1; i < tiles.size(); i++) {
+            int from = tiles.get(i - 1);
+            int to = tiles.get(i);
+            float step = grid.getType(to).getMovementCost();
+            if (grid.xOf(from) != grid.xOf(to) && grid.yOf(from) != grid.yOf(to)) {
+                step *= AStarPathFinder.DIAGONAL_COST;
+            }
+            cost += step;
+        }
+        return cost;
+    }
+
+    /**
+     * Concatenates the cached tile paths of the abstract route into the path buffer.
+     */
+    private void stitchPath(int startNode, int goalNode) {
+        IntList route = new IntList();
+        for (int n = goalNode; n != SearchSpace.NO_PARENT; n = abstractSpace.getParent(n)) {
+            route.add(n);
+        }
+        route.reverse();
+
+        path.clear();
+        for (int i = 1; i < route.size(); i++) {
+            int[] tiles = edgeBetween(route.get(i - 1), route.get(i), startNode, goalNode).tiles;
+            for (int t = path.isEmpty() ? 0 : 1; t < tiles.length; t++) {
+                path.add(tiles[t]);
+            }
+        }
+    }
+
+    private Edge edgeBetween(int from, int to, int startNode, int goalNode) {
+        if (to == goalNode) {
+            return goalEdgeByNode[from];
+        }
+        for (Edge edge : from == startNode ? startEdges : edges.get(from)) {
+            if (edge.target == to) {
+                return edge;
+            }
+        }
+        throw new IllegalStateException("No abstract edge " + from + " -> " + to);
+    }
+}
@@ -0,0 +1,96 @@
+package com.strategicgame.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints.
+ * Used to hold paths as tile indices without boxing.
+ * 
+ */
+public final class IntList {
+    private int[] values;
+    private int size;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(int initialCapacity) {
+        this.values = new int[Math.max(1, initialCapacity)];
+    }
+
+    /**
+     * Appends a value.
+     * @param value The value to add
+     */
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * Gets a value.
+     * @param i Position in the list
+     * @return The value
+     */
+    public int get(int i) {
+        if (i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of " + size);
+        }
+        return values[i];
+    }
+
+    /**
+     * Gets the last value.
+     * @return The last value
+     */
+    public int last() {
+        return get(size - 1);
+    }
+
+    /**
+     * Removes the last value.
+     * @return The removed value
+     */
+    public int removeLast() {
+        int value = last();
+        size--;
+        return value;
+    }
+
+    /**
+     * Reverses the list in place.
+     */
+    public void reverse() {
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            int tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+
+    /**
+     * Empties the list, keeping its capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Copies the content into a new array.
+     * @return Array of the values
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,247 @@
+package com.strategicgame.pathfinding;
+
+import com.strategicgame.map.GameMap;
+import com.strategicgame.map.PathFinder;
+import com.strategicgame.map.Position;
+import com.strategicgame.map.TileGrid;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Jump Point Search for uniform-cost terrain.
+ * Every passable tile costs the same, which lets the search skip over
+ * straight and diagonal runs and only open the "jump points" where the
+ * shape of the obstacles forces a turn. Much faster than A* on open maps,
+ * but terrain movement costs are ignored : use AStarPathFinder when they matter.
+ * Diagonal moves may not cut the corner of a blocked tile.
+ * Not thread-safe.
+ * 
+ */
+public class JumpPointPathFinder implements PathFinder {
+    private final SearchSpace space = new SearchSpace();
+    private final IntList path = new IntList();
+    private final int[] directions = new int[16]; // pruned (dx, dy) pairs
+
+    @Override
+    public List<Position> findPath(GameMap map, Position start, Position end) {
+        if (!map.isWithinBounds(start) || !map.isWithinBounds(end)) {
+            return new ArrayList<>();
+        }
+        TileGrid grid = map.getGrid();
+        float cost = search(grid, grid.indexOf(start.getX(), start.getY()),
+            grid.indexOf(end.getX(), end.getY()), path);
+        if (cost == Float.POSITIVE_INFINITY) {
+            return new ArrayList<>();
+        }
+        return AStarPathFinder.toPositions(grid, path);
+    }
+
+    /**
+     * Searches a path between two tiles.
+     * 
+     * @param grid The tile grid
+     * @param start Start tile index (may be occupied)
+     * @param goal Goal tile index
+     * @param out Receives every tile index from start to goal
+     * @return Path length in octile units, or Float.POSITIVE_INFINITY if no path found
+     */
+    public float search(TileGrid grid, int start, int goal, IntList out) {
+        out.clear();
+        if (start == goal) {
+            out.add(start);
+            return 0f;
+        }
+        if (!grid.isPassable(goal)) {
+            return Float.POSITIVE_INFINITY;
+        }
+
+        int goalX = grid.xOf(goal);
+        int goalY = grid.yOf(goal);
+        space.reset(grid.size());
+        space.open(start, SearchSpace.NO_PARENT, 0f,
+            AStarPathFinder.octile(grid.xOf(start), grid.yOf(start), goalX, goalY));
+
+        while (space.hasOpen()) {
+            int node = space.poll();
+            if (node == goal) {
+                expandPath(grid, goal, out);
+                return space.getCost(goal);
+            }
+
+            int x = grid.xOf(node);
+            int y = grid.yOf(node);
+            float base = space.getCost(node);
+            int count = prunedDirections(grid, node, x, y);
+            for (int i = 0; i < count; i += 2) {
+                int jumpPoint = jump(grid, x, y, directions[i], directions[i + 1], goalX, goalY);
+                if (jumpPoint < 0 || space.isClosed(jumpPoint)) {
+                    continue;
+                }
+                int jx = grid.xOf(jumpPoint);
+                int jy = grid.yOf(jumpPoint);
+                float cost = base + AStarPathFinder.octile(x, y, jx, jy);
+                if (cost < space.getCost(jumpPoint)) {
+                    space.open(jumpPoint, node, cost, cost + AStarPathFinder.octile(jx, jy, goalX, goalY));
+                }
+            }
+        }
+        return Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Fills the directions buffer with the moves worth exploring from a node,
+     * given the direction it was reached from.
+     * @return Number of ints written (two per direction)
+     */
+    private int prunedDirections(TileGrid grid, int node, int x, int y) {
+        int parent = space.getParent(node);
+        int count = 0;
+        if (parent == SearchSpace.NO_PARENT) {
+            for (int d = 0; d < 8; d++) {
+                int dx = AStarPathFinder.DX[d];
+                int dy = AStarPathFinder.DY[d];
+                if (d >= 4 && !(walkable(grid, x + dx, y) && walkable(grid, x, y + dy))) {
+                    continue;
+                }
+                directions[count++] = dx;
+                directions[count++] = dy;
+            }
+            return count;
+        }
+
+        int dx = Integer.signum(x - grid.xOf(parent));
+        int dy = Integer.signum(y - grid.yOf(parent));
+        if (dx != 0 && dy != 0) {
+            boolean horizontal = walkable(grid, x + dx, y);
+            boolean vertical = walkable(grid, x, y + dy);
+            if (vertical) {
+                directions[count++] = 0;
+                directions[count++] = dy;
+            }
+            if (horizontal) {
+                directions[count++] = dx;
+                directions[count++] = 0;
+            }
+            if (horizontal && vertical) {
+                directions[count++] = dx;
+                directions[count++] = dy;
+            }
+        } else if (dx != 0) {
+            boolean next = walkable(grid, x + dx, y);
+            boolean down = walkable(grid, x, y + 1);
+            boolean up = walkable(grid, x, y - 1);
+            if (next) {
+                directions[count++] = dx;
+                directions[count++] = 0;
+                if (down) {
+                    directions[count++] = dx;
+                    directions[count++] = 1;
+                }
+                if (up) {
+                    directions[count++] = dx;
+                    directions[count++] = -1;
+                }
+            }
+            if (down) {
+                directions[count++] = 0;
+                directions[count++] = 1;
+            }
+            if (up) {
+                directions[count++] = 0;
+                directions[count++] = -1;
+            }
+        } else {
+            boolean next = walkable(grid, x, y + dy);
+            boolean right = walkable(grid, x + 1, y);
+            boolean left = walkable(grid, x - 1, y);
+            if (next) {
+                directions[count++] = 0;
+                directions[count++] = dy;
+                if (right) {
+                    directions[count++] = 1;
+                    directions[count++] = dy;
+                }
+                if (left) {
+                    directions[count++] = -1;
+                    directions[count++] = dy;
+                }
+            }
+            if (right) {
+                directions[count++] = 1;
+                directions[count++] = 0;
+            }
+            if (left) {
+                directions[count++] = -1;
+                directions[count++] = 0;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Moves from (x, y) in one direction until a jump point, the goal or an obstacle.
+     * @return Index of the jump point, or -1 if the run is a dead end
+     */
+    private int jump(TileGrid grid, int x, int y, int dx, int dy, int goalX, int goalY) {
+        while (true) {
+            x += dx;
+            y += dy;
+            if (!walkable(grid, x, y)) {
+                return -1;
+            }
+            if (x == goalX && y == goalY) {
+                return grid.indexOf(x, y);
+            }
+            if (dx != 0 && dy != 0) {
+                // A diagonal step is a jump point if a straight run from it finds one
+                if (jump(grid, x, y, dx, 0, goalX, goalY) >= 0
+                        || jump(grid, x, y, 0, dy, goalX, goalY) >= 0) {
+                    return grid.indexOf(x, y);
+                }
+                if (!walkable(grid, x + dx, y) || !walkable(grid, x, y + dy)) {
+                    return -1;
+                }
+            } else if (dx != 0) {
+                if ((walkable(grid, x, y - 1) && !walkable(grid, x - dx, y - 1))
+                        || (walkable(grid, x, y + 1) && !walkable(grid, x - dx, y + 1))) {
+                    return grid.indexOf(x, y);
+                }
+            } else {
+                if ((walkable(grid, x - 1, y) && !walkable(grid, x - 1, y - dy))
+                        || (walkable(grid, x + 1, y) && !walkable(grid, x + 1, y - dy))) {
+                    return grid.indexOf(x, y);
+                }
+            }
+        }
+    }
+
+    private static boolean walkable(TileGrid grid, int x, int y) {
+        return grid.contains(x, y) && grid.isPassable(grid.indexOf(x, y));
+    }
+
+    /**
+     * Rebuilds the full tile path, filling the straight or diagonal runs
+     * between consecutive jump points.
+     */
+    private void expandPath(TileGrid grid, int goal, IntList out) {
+        out.clear();
+        int node = goal;
+        out.add(node);
+        for (int parent = space.getParent(node); parent != SearchSpace.NO_PARENT;
+                parent = space.getParent(node)) {
+            int x = grid.xOf(node);
+            int y = grid.yOf(node);
+            int px = grid.xOf(parent);
+            int py = grid.yOf(parent);
+            int dx = Integer.signum(px - x);
+            int dy = Integer.signum(py - y);
+            while (x != px || y != py) {
+                x += dx;
+                y += dy;
+                out.add(grid.indexOf(x, y));
+            }
+            node = parent;
+        }
+        out.reverse();
+    }
+}
@@ -0,0 +1,287 @@
+package com.strategicgame.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * SearchSpace holds the per-node state of a grid search in primitive arrays:
+ * cost from start, parent index, and an indexed binary heap for the open set.
+ * Arrays are reused between searches; a generation stamp replaces clearing.
+ * A grid whose whole state fits in a share of the heap is indexed densely
+ * (one slot per tile); a larger one, e.g. a streamed map, is indexed through
+ * a hash table, its slots growing with the nodes visited. A sparse search
+ * is bounded too : past its node budget it stops, as if nothing was left
+ * to expand.
+ * Not thread-safe: use one instance per searching thread.
+ * 
+ */
+final class SearchSpace {
+    static final int NO_PARENT = -1;
+    private static final int CLOSED = -1;
+    private static final int NOT_FOUND = -1;
+
+    // Share of the heap a search may take, and what a node costs in it
+    private static final int HEAP_SHARE = 16;
+    private static final int DENSE_NODE_BYTES = 20;
+    private static final int SPARSE_NODE_BYTES = 48;   // slot, plus its hash entry at half load
+    private static final int MIN_SPARSE_NODES = 1 << 12;
+
+    // Per slot : a tile when dense, the order of first visit when sparse
+    private float[] cost = new float[0];
+    private int[] parent = new int[0];
+    private int[] stamp = new int[0];
+    private int[] heapIndex = new int[0];  // position in heap, CLOSED once expanded
+    private float[] priority = new float[0];
+    private int[] heap = new int[64];      // slots
+    private int heapSize;
+    private int generation;
+
+    // Sparse layout : tile -> slot, entries of older generations being free
+    private boolean sparse;
+    private int[] nodes = new int[0];      // slot -> tile
+    private int[] tableTiles = new int[0];
+    private int[] tableSlots = new int[0];
+    private int[] tableStamps = new int[0];
+    private int used;
+    private int budget;
+    private boolean exhausted;
+
+    /**
+     * Prepares a new search over a grid of the given size.
+     * @param size Number of tiles of the grid
+     */
+    void reset(int size) {
+        long share = Runtime.getRuntime().maxMemory() / HEAP_SHARE;
+        sparse = (long) size * DENSE_NODE_BYTES > share;
+        if (sparse) {
+            budget = (int) Math.max(MIN_SPARSE_NODES, Math.min(Integer.MAX_VALUE / 2, share / SPARSE_NODE_BYTES));
+            used = 0;
+        } else if (cost.length < size) {
+            // Grown only : a thread searching maps of several sizes keeps the largest
+            cost = new float[size];
+            parent = new int[size];
+            stamp = new int[size];
+            heapIndex = new int[size];
+            priority = new float[size];
+        }
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            Arrays.fill(tableStamps, 0);
+            generation = 1;
+        }
+        heapSize = 0;
+        exhausted = false;
+    }
+
+    /**
+     * Gets the slot of a node reached during the current search.
+     * @return Slot, or NOT_FOUND
+     */
+    private int slotOf(int node) {
+        if (!sparse) {
+            return stamp[node] == generation ? node : NOT_FOUND;
+        }
+        if (used == 0) {
+            return NOT_FOUND;   // the table may not be allocated yet
+        }
+        int mask = tableTiles.length - 1;
+        for (int i = mix(node) & mask; tableStamps[i] == generation; i = (i + 1) & mask) {
+            if (tableTiles[i] == node) {
+                return tableSlots[i];
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Gives a slot to a node reached for the first time in the current search.
+     * @return Slot, or NOT_FOUND once the budget of a sparse search is spent
+     */
+    private int add(int node) {
+        if (!sparse) {
+            stamp[node] = generation;
+            return node;
+        }
+        if (used == budget) {
+            exhausted = true;
+            return NOT_FOUND;
+        }
+        if (used == cost.length) {
+            int capacity = Math.max(64, used * 2);
+            cost = Arrays.copyOf(cost, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            stamp = Arrays.copyOf(stamp, capacity);
+            heapIndex = Arrays.copyOf(heapIndex, capacity);
+            priority = Arrays.copyOf(priority, capacity);
+        }
+        if (used == nodes.length) {
+            nodes = Arrays.copyOf(nodes, cost.length);
+        }
+        if ((used + 1) * 2 > tableTiles.length) {
+            growTable();
+        }
+        insert(node, used);
+        nodes[used] = node;
+        return used++;
+    }
+
+    private void insert(int node, int slot) {
+        int mask = tableTiles.length - 1;
+        int i = mix(node) & mask;
+        while (tableStamps[i] == generation) {
+            i = (i + 1) & mask;
+        }
+        tableTiles[i] = node;
+        tableSlots[i] = slot;
+        tableStamps[i] = generation;
+    }
+
+    private void growTable() {
+        int capacity = Math.max(128, tableTiles.length * 2);
+        tableTiles = new int[capacity];
+        tableSlots = new int[capacity];
+        tableStamps = new int[capacity];
+        for (int slot = 0; slot < used; slot++) {
+            insert(nodes[slot], slot);
+        }
+    }
+
+    private static int mix(int node) {
+        int h = node * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Checks if a node was reached during the current search.
+     * @param node Tile index
+     * @return true if the node has a cost
+     */
+    boolean isVisited(int node) {
+        return slotOf(node) != NOT_FOUND;
+    }
+
+    /**
+     * Checks if a node was already expanded during the current search.
+     * @param node Tile index
+     * @return true if closed
+     */
+    boolean isClosed(int node) {
+        int slot = slotOf(node);
+        return slot != NOT_FOUND && heapIndex[slot] == CLOSED;
+    }
+
+    float getCost(int node) {
+        int slot = slotOf(node);
+        return slot != NOT_FOUND ? cost[slot] : Float.POSITIVE_INFINITY;
+    }
+
+    int getParent(int node) {
+        return parent[slotOf(node)];
+    }
+
+    /**
+     * Records a better route to a node and queues it for expansion.
+     * @param node Tile index
+     * @param nodeParent Parent tile index
+     * @param nodeCost Cost from the start
+     * @param estimate Cost plus heuristic
+     */
+    void open(int node, int nodeParent, float nodeCost, float estimate) {
+        int slot = slotOf(node);
+        boolean queued = slot != NOT_FOUND && heapIndex[slot] != CLOSED;
+        if (slot == NOT_FOUND) {
+            slot = add(node);
+            if (slot == NOT_FOUND) {
+                return;   // budget spent, see hasOpen
+            }
+        }
+        cost[slot] = nodeCost;
+        parent[slot] = nodeParent;
+        priority[slot] = estimate;
+        if (queued) {
+            siftUp(heapIndex[slot]);
+        } else {
+            if (heapSize == heap.length) {
+                heap = Arrays.copyOf(heap, heapSize * 2);
+            }
+            heap[heapSize] = slot;
+            heapIndex[slot] = heapSize;
+            siftUp(heapSize++);
+        }
+    }
+
+    /**
+     * Checks if nodes are left to expand.
+     * @return false once the open set is empty or the budget of a sparse search is spent
+     */
+    boolean hasOpen() {
+        return heapSize > 0 && !exhausted;
+    }
+
+    /**
+     * Removes the open node with the smallest estimate and closes it.
+     * @return Tile index
+     */
+    int poll() {
+        int slot = heap[0];
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            siftDown(0);
+        }
+        heapIndex[slot] = CLOSED;
+        return sparse ? nodes[slot] : slot;
+    }
+
+    private void siftUp(int i) {
+        int slot = heap[i];
+        float p = priority[slot];
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            int other = heap[up];
+            if (priority[other] <= p) {
+                break;
+            }
+            heap[i] = other;
+            heapIndex[other] = i;
+            i = up;
+        }
+        heap[i] = slot;
+        heapIndex[slot] = i;
+    }
+
+    private void siftDown(int i) {
+        int slot = heap[i];
+        float p = priority[slot];
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < heapSize && priority[heap[right]] < priority[heap[child]]) {
+                child = right;
+            }
+            if (p <= priority[heap[child]]) {
+                break;
+            }
+            heap[i] = heap[child];
+            heapIndex[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = slot;
+        heapIndex[slot] = i;
+    }
+
+    /**
+     * Walks parents back from a node into a path ordered from start to node.
+     * @param node Last tile index of the path
+     * @param out List receiving the path
+     */
+    void buildPath(int node, IntList out) {
+        out.clear();
+        for (int n = node; n != NO_PARENT; n = getParent(n)) {
+            out.add(n);
+        }
+        out.reverse();
+    }
+}
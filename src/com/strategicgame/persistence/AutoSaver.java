@@ -0,0 +1,136 @@
+package com.strategicgame.persistence;
+
+import com.strategicgame.core.GameManager;
+import com.strategicgame.util.GameLog;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * AutoSaver saves a game in the background.
+ * The snapshot is captured on the game thread (a bulk copy of the game state
+ * into a reused buffer), then written to disk by a dedicated thread, so the
+ * game loop never waits for the disk. If the previous save is still being
+ * written, the new request is skipped rather than queued.
+ * 
+ */
+public class AutoSaver implements AutoCloseable {
+    private final Path path;
+    private final ExecutorService writer;
+    private final AtomicBoolean writing = new AtomicBoolean(false);
+    private ByteBuffer buffer;
+
+    private volatile long saves;
+    private volatile long skipped;
+    private volatile long lastCaptureNanos;
+    private volatile long lastWriteNanos;
+
+    /**
+     * Creates an autosaver writing to a file.
+     * 
+     * @param path Destination file
+     */
+    public AutoSaver(Path path) {
+        this.path = path;
+        this.writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "GridWar-autosave");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Captures the game and schedules its writing. Must be called from the game thread.
+     * 
+     * @param gameManager The game to save
+     * @return false if skipped because the previous save is still being written,
+     *         or the game is too large to be saved
+     */
+    public boolean requestSave(GameManager gameManager) {
+        if (!writing.compareAndSet(false, true)) {
+            skipped++;
+            return false;
+        }
+        long start = System.nanoTime();
+        ByteBuffer snapshot;
+        try {
+            snapshot = GameSnapshot.capture(gameManager, buffer);
+        } catch (IOException e) {
+            writing.set(false);
+            GameLog.error("Autosave failed: " + e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            writing.set(false);
+            throw e;
+        }
+        buffer = snapshot;   // kept for the next save once written
+        lastCaptureNanos = System.nanoTime() - start;
+
+        writer.execute(() -> {
+            long writeStart = System.nanoTime();
+            try {
+                GameSnapshot.write(snapshot, path);
+                saves++;
+            } catch (IOException e) {
+                GameLog.error("Autosave failed: " + e.getMessage());
+            } finally {
+                lastWriteNanos = System.nanoTime() - writeStart;
+                writing.set(false);
+            }
+        });
+        return true;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the number of snapshots written.
+     * @return Save count
+     */
+    public long getSaves() {
+        return saves;
+    }
+
+    /**
+     * Gets the number of requests skipped while a save was in progress.
+     * @return Skipped request count
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Gets the time the game thread spent in the last capture.
+     * @return Capture time in nanoseconds
+     */
+    public long getLastCaptureNanos() {
+        return lastCaptureNanos;
+    }
+
+    /**
+     * Gets the time the background thread spent writing the last snapshot.
+     * @return Write time in nanoseconds
+     */
+    public long getLastWriteNanos() {
+        return lastWriteNanos;
+    }
+
+    /**
+     * Waits for the save in progress, then stops the writer thread.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
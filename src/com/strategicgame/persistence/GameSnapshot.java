@@ -0,0 +1,375 @@
+package com.strategicgame.persistence;
+
+import com.strategicgame.buildings.Building;
+import com.strategicgame.buildings.BuildingFactory;
+import com.strategicgame.buildings.BuildingType;
+import com.strategicgame.core.GameManager;
+import com.strategicgame.map.GameMap;
+import com.strategicgame.map.Position;
+import com.strategicgame.map.Tile;
+import com.strategicgame.map.TileGrid;
+import com.strategicgame.player.Faction;
+import com.strategicgame.player.Player;
+import com.strategicgame.resources.ResourceManager;
+import com.strategicgame.resources.ResourceType;
+import com.strategicgame.units.Unit;
+import com.strategicgame.units.UnitFactory;
+import com.strategicgame.units.UnitStore;
+import com.strategicgame.units.UnitType;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * GameSnapshot saves and loads the full state of a game in a compact
+ * binary format, through FileChannel and ByteBuffer.
+ *
+ * Layout (big-endian) :
+ *  - header : magic "GWSV", version (short), reserved (short), body length (int)
+ *  - body : random state, turn number, current player, game over flag, winner id,
+ *    map size, tile types (1 byte per tile), tile owners (1 short per tile),
+ *    then each player with its resources, units and buildings
+ *  - CRC32 of the body (int)
+ * Tiles are copied in bulk from the TileGrid arrays; units and buildings are
+ * stored with their position and put back on the map when loading.
+ * 
+ */
+public final class GameSnapshot {
+    /** "GWSV" */
+    public static final int MAGIC = 0x47575356;
+    /** Current format version. */
+    public static final short VERSION = 1;
+
+    /** Largest snapshot, held in one ByteBuffer. */
+    public static final long MAX_BYTES = Integer.MAX_VALUE - 8;
+
+    private static final int HEADER_BYTES = 12;
+    private static final int TRAILER_BYTES = 4;
+    private static final int UNIT_BYTES = 18;
+    private static final int BUILDING_BYTES = 18;
+    private static final int RESOURCE_BYTES = 9;
+    private static final UnitType[] UNIT_TYPES = UnitType.values();
+    private static final BuildingType[] BUILDING_TYPES = BuildingType.values();
+    private static final ResourceType[] RESOURCE_TYPES = ResourceType.values();
+    private static final Faction[] FACTIONS = Faction.values();
+
+    private GameSnapshot() {
+        throw new AssertionError("GameSnapshot class should not be instantiated");
+    }
+
+    /**
+     * Saves a game to a file. The file is replaced atomically,
+     * so a crash during the save keeps the previous one.
+     * 
+     * @param gameManager The game to save
+     * @param path Destination file
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(GameManager gameManager, Path path) throws IOException {
+        write(capture(gameManager, null), path);
+    }
+
+    /**
+     * Loads a game from a file into a game manager, replacing its game.
+     * 
+     * @param path Snapshot file
+     * @param gameManager The game manager to restore
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static void load(Path path, GameManager gameManager) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + TRAILER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a GridWar snapshot: " + path);
+            }
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Unexpected end of snapshot: " + path);
+                }
+            }
+        }
+        buffer.flip();
+        restore(buffer, gameManager);
+    }
+
+    /**
+     * Computes the exact size of the snapshot of a game; above MAX_BYTES
+     * (e.g. a huge streamed map) the game cannot be captured.
+     * 
+     * @param gameManager The game
+     * @return Snapshot size in bytes
+     */
+    public static long sizeOf(GameManager gameManager) {
+        TileGrid grid = gameManager.getGameMap().getGrid();
+        long size = HEADER_BYTES + TRAILER_BYTES
+            + 8 + 4 + 4 + 1 + 4      // random, turn, current player, over, winner
+            + 4 + 4 + 3L * grid.size() // map size, types, owners
+            + 4;                     // player count
+        for (Player player : gameManager.getPlayers()) {
+            size += 2 + player.getName().getBytes(StandardCharsets.UTF_8).length
+                + 4 + 1 + 4 + 4 + 1
+                + 1 + (long) RESOURCE_TYPES.length * RESOURCE_BYTES
+                + 4 + (long) player.getUnits().size() * UNIT_BYTES
+                + 4 + (long) player.getBuildings().size() * BUILDING_BYTES;
+        }
+        return size;
+    }
+
+    /**
+     * Writes the snapshot of a game into a buffer. This is the only part of
+     * a save that reads the game, so it must run on the game thread; the
+     * returned buffer can then be written from any thread.
+     * 
+     * @param gameManager The game to capture
+     * @param reuse A buffer to reuse if large enough, or null
+     * @return The snapshot, flipped and ready to be written
+     * @throws IOException if the snapshot would be larger than MAX_BYTES
+     */
+    public static ByteBuffer capture(GameManager gameManager, ByteBuffer reuse) throws IOException {
+        long exactSize = sizeOf(gameManager);
+        if (exactSize > MAX_BYTES) {
+            TileGrid grid = gameManager.getGameMap().getGrid();
+            throw new IOException("Game too large to save: the snapshot of a " + grid.getWidth() + "x"
+                + grid.getHeight() + " map takes " + exactSize + " bytes, at most " + MAX_BYTES);
+        }
+        int size = (int) exactSize;
+        ByteBuffer buffer = reuse != null && reuse.capacity() >= size ? reuse : ByteBuffer.allocateDirect(size);
+        buffer.clear();
+
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) 0);
+        buffer.putInt(size - HEADER_BYTES - TRAILER_BYTES);
+        int bodyStart = buffer.position();
+
+        Player winner = gameManager.getWinner();
+        buffer.putLong(gameManager.getRandom().getState());
+        buffer.putInt(gameManager.getTurnNumber());
+        buffer.putInt(gameManager.getCurrentPlayerIndex());
+        buffer.put((byte) (gameManager.isGameOver() ? 1 : 0));
+        buffer.putInt(winner == null ? -1 : winner.getPlayerId());
+
+        TileGrid grid = gameManager.getGameMap().getGrid();
+        buffer.putInt(grid.getWidth());
+        buffer.putInt(grid.getHeight());
+        grid.writeTypes(buffer);
+        grid.writeOwnerIds(buffer);
+
+        List<Player> players = gameManager.getPlayers();
+        buffer.putInt(players.size());
+        for (Player player : players) {
+            writePlayer(buffer, player);
+        }
+
+        CRC32 crc = new CRC32();
+        int bodyEnd = buffer.position();
+        crc.update(buffer.duplicate().position(bodyStart).limit(bodyEnd));
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes a captured snapshot to a file, through a temporary file
+     * moved in place once complete.
+     * 
+     * @param snapshot Snapshot returned by capture; its position is moved to its limit
+     * @param path Destination file
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(ByteBuffer snapshot, Path path) throws IOException {
+        Path absolute = path.toAbsolutePath();
+        Path temporary = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (snapshot.hasRemaining()) {
+                channel.write(snapshot);
+            }
+        }
+        try {
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (java.nio.file.AtomicMoveNotSupportedException e) {
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Restores a game from a snapshot held in a buffer.
+     * 
+     * @param buffer The snapshot, from its position to its limit
+     * @param gameManager The game manager to restore
+     * @throws IOException if the buffer is not a valid snapshot
+     */
+    public static void restore(ByteBuffer buffer, GameManager gameManager) throws IOException {
+        if (buffer.remaining() < HEADER_BYTES + TRAILER_BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a GridWar snapshot");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + " (expected " + VERSION + ")");
+        }
+        buffer.getShort();   // reserved
+        int bodyLength = buffer.getInt();
+        if (bodyLength != buffer.remaining() - TRAILER_BYTES) {
+            throw new IOException("Truncated snapshot");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().limit(buffer.position() + bodyLength));
+        if ((int) crc.getValue() != buffer.getInt(buffer.position() + bodyLength)) {
+            throw new IOException("Corrupted snapshot (bad checksum)");
+        }
+
+        try {
+            readBody(buffer, gameManager);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+                 | ArithmeticException e) {
+            throw new IOException("Invalid snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    private static void readBody(ByteBuffer buffer, GameManager gameManager) {
+        long randomState = buffer.getLong();
+        int turnNumber = buffer.getInt();
+        int currentPlayerIndex = buffer.getInt();
+        boolean gameOver = buffer.get() != 0;
+        int winnerId = buffer.getInt();
+
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        if (width <= 0 || height <= 0 || 3L * width * height > buffer.remaining()) {
+            // Checked before allocating the map : its tiles must be in the buffer
+            throw new IllegalArgumentException("bad map size " + width + "x" + height);
+        }
+        GameMap map = new GameMap(width, height, gameManager.getRandom());
+        map.getGrid().readTypes(buffer);
+        map.getGrid().readOwnerIds(buffer);
+
+        int playerCount = buffer.getInt();
+        if (playerCount <= 0 || currentPlayerIndex < 0 || currentPlayerIndex >= playerCount) {
+            throw new IllegalArgumentException("bad player count " + playerCount);
+        }
+        List<Player> players = new ArrayList<>(playerCount);
+        UnitStore unitStore = new UnitStore();
+        Player winner = null;
+        for (int i = 0; i < playerCount; i++) {
+            Player player = readPlayer(buffer, map, unitStore);
+            players.add(player);
+            if (player.getPlayerId() == winnerId) {
+                winner = player;
+            }
+        }
+        gameManager.restoreState(map, players, turnNumber, currentPlayerIndex, gameOver, winner, randomState);
+    }
+
+    private static void writePlayer(ByteBuffer buffer, Player player) {
+        byte[] name = player.getName().getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) name.length);
+        buffer.put(name);
+        buffer.putInt(player.getPlayerId());
+        buffer.put((byte) player.getFaction().ordinal());
+        buffer.putInt(player.getNextUnitId());
+        buffer.putInt(player.getScore());
+        buffer.put((byte) (player.hasLost() ? 1 : 0));
+
+        ResourceManager resources = player.getResourceManager();
+        buffer.put((byte) RESOURCE_TYPES.length);
+        for (ResourceType type : RESOURCE_TYPES) {
+            buffer.put((byte) type.ordinal());
+            buffer.putInt(resources.getResource(type));
+            buffer.putInt(resources.getProductionRate(type));
+        }
+
+        List<Unit> units = player.getUnits();
+        buffer.putInt(units.size());
+        for (Unit unit : units) {
+            buffer.put((byte) UnitType.of(unit).ordinal());
+            buffer.putInt(unit.getId());
+            buffer.putInt(unit.getHealth());
+            buffer.put((byte) (unit.hasMovedThisTurn() ? 1 : 0));
+            putPosition(buffer, unit.getPosition());
+        }
+
+        List<Building> buildings = player.getBuildings();
+        buffer.putInt(buildings.size());
+        for (Building building : buildings) {
+            buffer.put((byte) BuildingType.of(building).ordinal());
+            buffer.putInt(building.getCurrentHealth());
+            buffer.putInt(building.getRemainingConstructionTime());
+            buffer.put((byte) (building.isConstructed() ? 1 : 0));
+            putPosition(buffer, building.getPosition());
+        }
+    }
+
+    private static Player readPlayer(ByteBuffer buffer, GameMap map, UnitStore unitStore) {
+        byte[] name = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(name);
+        int playerId = buffer.getInt();
+        Player player = new Player(new String(name, StandardCharsets.UTF_8), playerId,
+            FACTIONS[buffer.get()], unitStore);
+        int nextUnitId = buffer.getInt();
+        player.addScore(buffer.getInt());
+        if (buffer.get() != 0) {
+            player.lose();
+        }
+        map.getGrid().registerOwner(player);
+
+        ResourceManager resources = player.getResourceManager();
+        int resourceCount = buffer.get();
+        for (int i = 0; i < resourceCount; i++) {
+            ResourceType type = RESOURCE_TYPES[buffer.get()];
+            resources.setResource(type, buffer.getInt());
+            resources.setProductionRate(type, buffer.getInt());
+        }
+
+        int unitCount = buffer.getInt();
+        for (int i = 0; i < unitCount; i++) {
+            Unit unit = UnitFactory.createUnit(UNIT_TYPES[buffer.get()], player.getUnitStore());
+            player.addUnit(unit);
+            unit.setId(buffer.getInt());
+            unit.setHealth(buffer.getInt());
+            if (buffer.get() != 0) {
+                unit.moveTurn();
+            }
+            place(map, unit, buffer.getInt(), buffer.getInt());
+        }
+        player.setNextUnitId(nextUnitId);
+
+        int buildingCount = buffer.getInt();
+        for (int i = 0; i < buildingCount; i++) {
+            Building building = BuildingFactory.createBuilding(BUILDING_TYPES[buffer.get()]);
+            building.setCurrentHealth(buffer.getInt());
+            int remainingTime = buffer.getInt();
+            building.setConstructionProgress(remainingTime, buffer.get() != 0);
+            player.addBuilding(building);
+            place(map, building, buffer.getInt(), buffer.getInt());
+        }
+        return player;
+    }
+
+    private static void putPosition(ByteBuffer buffer, Position position) {
+        buffer.putInt(position == null ? -1 : position.getX());
+        buffer.putInt(position == null ? -1 : position.getY());
+    }
+
+    private static void place(GameMap map, Object occupant, int x, int y) {
+        if (x < 0) {
+            return;   // not on the map
+        }
+        Tile tile = map.getTile(x, y);
+        if (tile == null) {
+            throw new IllegalArgumentException("position out of the map (" + x + "," + y + ")");
+        }
+        tile.setOccupant(occupant);
+    }
+}
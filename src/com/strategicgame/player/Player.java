@@ -1,7 +1,9 @@
 package com.strategicgame.player;
 
 import com.strategicgame.resources.ResourceManager;
+import com.strategicgame.resources.ResourceType;
 import com.strategicgame.units.Unit;
+import com.strategicgame.units.UnitStore;
 import com.strategicgame.buildings.Building;
 import java.util.*;
 
@@ -17,22 +19,71 @@ public class Player {
     private final Faction faction;
     private final ResourceManager resourceManager;
     private final List<Unit> units;
+    private final UnitStore unitStore;
     private int nextUnitId = 1;  // compteur d'ID des unités pour un joueur
     private final List<Building> buildings;
     private int score;
     private boolean hasLost;
+    private PlayerObserver observer;
 
     public Player(String name, int playerId) {
+        this(name, playerId, Faction.values()[playerId % Faction.values().length]);
+    }
+
+    public Player(String name, int playerId, Faction faction) {
+        this(name, playerId, faction, new UnitStore());
+    }
+
+    /**
+     * Creates a player whose units live in the given store, shared by the
+     * players of a game (their ids must differ).
+     * 
+     * @param name Player name
+     * @param playerId Player id
+     * @param faction Faction of the player
+     * @param unitStore Store of the units
+     */
+    public Player(String name, int playerId, Faction faction, UnitStore unitStore) {
         this.name = name;
         this.playerId = playerId;
-        this.faction = Faction.values()[playerId % Faction.values().length];
+        this.faction = faction;
         this.resourceManager = new ResourceManager();
         this.units = new ArrayList<>();
+        this.unitStore = unitStore;
         this.buildings = new ArrayList<>();
         this.score = 0;
         this.hasLost = false;
     }
 
+    /**
+     * Copies this player for a fork of the game (see GameManager.fork) :
+     * same resources, score and unit ids, its units being their
+     * counterparts in a fork of its unit store, its buildings copies.
+     * 
+     * @param forkedStore Fork of the unit store of this player
+     * @return The copy, without observer
+     */
+    public Player fork(UnitStore forkedStore) {
+        Player fork = new Player(name, playerId, faction, forkedStore);
+        forkedStore.registerOwner(fork);
+        for (ResourceType type : ResourceType.values()) {
+            fork.resourceManager.setResource(type, resourceManager.getResource(type));
+            fork.resourceManager.setProductionRate(type, resourceManager.getProductionRate(type));
+        }
+        for (Unit unit : units) {
+            fork.units.add(forkedStore.counterpart(unit));
+        }
+        for (Building building : buildings) {
+            Building copy = building.copy();
+            copy.setOwner(fork);
+            fork.buildings.add(copy);
+        }
+        fork.nextUnitId = nextUnitId;
+        fork.score = score;
+        fork.hasLost = hasLost;
+        return fork;
+    }
+
     /**
      * Gets player name.
      * @return Player name
@@ -73,6 +124,14 @@ public class Player {
         return units;
     }
   
+    /**
+     * Gets the store holding the state of this player's units.
+     * @return The unit store
+     */
+    public UnitStore getUnitStore() {
+        return unitStore;
+    }
+
     public Unit getUnitById(int id) {
     for (Unit u : units) {       // on parcourt les unités de CE joueur
         if (u.getId() == id) {   // on compare avec l'id stocké dans Unit
@@ -83,6 +142,22 @@ public class Player {
 }
 
 
+    /**
+     * Gets the id the next unit added to the army will get.
+     * @return Next unit id
+     */
+    public int getNextUnitId() {
+        return nextUnitId;
+    }
+
+    /**
+     * Sets the id of the next unit, e.g. when loading a saved game.
+     * @param nextUnitId Next unit id
+     */
+    public void setNextUnitId(int nextUnitId) {
+        this.nextUnitId = nextUnitId;
+    }
+
     /**
      * Adds a unit to this player's army. 
      * @param unit The unit to add
@@ -99,7 +174,28 @@ public class Player {
      * @param unit The unit to remove
      */
     public void removeUnit(Unit unit) {
-        units.remove(unit);
+        if (units.remove(unit)) {
+            release(unit);
+        }
+    }
+
+    /**
+     * Takes a unit removed from the army out of the shared store; it keeps
+     * its owner and state.
+     */
+    private void release(Unit unit) {
+        unitStore.detach(unit, this);
+        if (observer != null) {
+            observer.onUnitRemoved(this, unit);
+        }
+    }
+
+    /**
+     * Sets the observer notified of army changes.
+     * @param observer The observer, or null
+     */
+    public void setObserver(PlayerObserver observer) {
+        this.observer = observer;
     }
 
     /**
@@ -162,10 +258,16 @@ public class Player {
         }
 
         // Reset unit movement
-        for (Unit unit : units) {
-            unit.resetTurn();
-        }
+        unitStore.resetTurn(playerId);
+
+        applyStarvation();
+    }
 
+    /**
+     * Removes units the food cannot feed (2 food per unit per turn);
+     * the last step of endTurn.
+     */
+    public void applyStarvation() {
         // Manage population with food
         int foodAvailable = resourceManager.getResource(
             com.strategicgame.resources.ResourceType.FOOD);
@@ -174,9 +276,13 @@ public class Player {
 
         if (foodAvailable < foodNeeded) {
             // Lose some units due to starvation
-            int unitsToLose = (foodNeeded - foodAvailable) / 2;
-            for (int i = 0; i < unitsToLose && !units.isEmpty(); i++) {
-                removeUnit(units.get(0));
+            // The oldest units go first, cut from the army in one step
+            int unitsToLose = Math.min((foodNeeded - foodAvailable) / 2, unitsCount);
+            List<Unit> starved = units.subList(0, unitsToLose);
+            Unit[] lost = starved.toArray(new Unit[0]);
+            starved.clear();
+            for (Unit unit : lost) {
+                release(unit);
             }
         }
     }
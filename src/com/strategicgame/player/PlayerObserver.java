@@ -0,0 +1,19 @@
+package com.strategicgame.player;
+
+import com.strategicgame.units.Unit;
+
+/**
+ * PlayerObserver interface - implements Observer Design Pattern.
+ * Allows systems (map, indexes) to follow changes of a player's army.
+ * 
+ */
+public interface PlayerObserver {
+
+    /**
+     * Called after a unit was removed from a player (killed, starved...).
+     * 
+     * @param player The player who lost the unit
+     * @param unit The removed unit
+     */
+    void onUnitRemoved(Player player, Unit unit);
+}
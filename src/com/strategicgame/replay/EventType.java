@@ -0,0 +1,31 @@
+package com.strategicgame.replay;
+
+/**
+ * Enum of the events of a replay journal, one per player action.
+ * The ordinal is the record tag in the journal : only append new values.
+ * 
+ */
+public enum EventType {
+    TRAIN,
+    BUILD,
+    MOVE,
+    ATTACK_UNIT,
+    ATTACK_BUILDING,
+    END_TURN;
+
+    private static final EventType[] VALUES = values();
+
+    /**
+     * Gets the event type of a record tag.
+     * 
+     * @param tag Tag read from a journal
+     * @return The event type
+     * @throws IllegalArgumentException if the tag is unknown
+     */
+    public static EventType fromTag(int tag) {
+        if (tag < 0 || tag >= VALUES.length) {
+            throw new IllegalArgumentException("Unknown event tag: " + tag);
+        }
+        return VALUES[tag];
+    }
+}
@@ -0,0 +1,96 @@
+package com.strategicgame.replay;
+
+import com.strategicgame.buildings.Building;
+import com.strategicgame.buildings.BuildingType;
+import com.strategicgame.core.ActionObserver;
+import com.strategicgame.core.GameManager;
+import com.strategicgame.map.Position;
+import com.strategicgame.player.Player;
+import com.strategicgame.units.Unit;
+import com.strategicgame.units.UnitType;
+import java.nio.ByteBuffer;
+
+/**
+ * RecordWriter encodes the actions received from GameActions as binary
+ * records : a tag (EventType ordinal), the player id and the action
+ * operands. Units are referenced by their id in their player's army and
+ * buildings by their index in the player's list, which are the same in
+ * every copy of the game. Every END_TURN record carries the turn number and
+ * the hash of the state reached. Records are read back by Replayer.apply.
+ * Subclasses give the buffer records go to : a journal file (ReplayJournal)
+ * or network clients (GameServer).
+ *
+ */
+public abstract class RecordWriter implements ActionObserver {
+    /** Largest size of a record, in bytes. */
+    public static final int MAX_RECORD_BYTES = 16;
+
+    protected final GameManager gameManager;
+
+    protected RecordWriter(GameManager gameManager) {
+        this.gameManager = gameManager;
+    }
+
+    @Override
+    public void onUnitTrained(Player player, Unit unit) {
+        begin(EventType.TRAIN, player).put((byte) UnitType.of(unit).ordinal());
+        end();
+    }
+
+    @Override
+    public void onBuildingStarted(Player player, Building building) {
+        begin(EventType.BUILD, player).put((byte) BuildingType.of(building).ordinal());
+        end();
+    }
+
+    @Override
+    public void onUnitMoved(Player player, Unit unit, Position target) {
+        begin(EventType.MOVE, player).putInt(unit.getId()).putInt(target.getX()).putInt(target.getY());
+        end();
+    }
+
+    @Override
+    public void onUnitAttacked(Player player, Unit attacker, Unit defender) {
+        begin(EventType.ATTACK_UNIT, player).putInt(attacker.getId())
+            .put((byte) defender.getOwner().getPlayerId()).putInt(defender.getId());
+        end();
+    }
+
+    @Override
+    public void onBuildingAttacked(Player player, Unit attacker, Building target) {
+        Player owner = target.getOwner();
+        begin(EventType.ATTACK_BUILDING, player).putInt(attacker.getId())
+            .put((byte) owner.getPlayerId()).putInt(owner.getBuildings().indexOf(target));
+        end();
+    }
+
+    @Override
+    public void onTurnEnded(Player player) {
+        begin(EventType.END_TURN, player).putInt(gameManager.getTurnNumber()).putLong(StateHasher.hash(gameManager));
+        end();
+        turnEnded();
+    }
+
+    /**
+     * Starts a record.
+     * @param type The event
+     * @param player The acting player
+     * @return The buffer to write the operands to, with the tag and player
+     *         id written and at least MAX_RECORD_BYTES - 2 bytes remaining
+     */
+    protected abstract ByteBuffer begin(EventType type, Player player);
+
+    /**
+     * Called once the operands of a record are written.
+     */
+    protected void end() {
+        // Records are contiguous in the buffer
+    }
+
+    /**
+     * Called after the END_TURN record of every turn.
+     */
+    protected void turnEnded() {
+        // Nothing to do by default
+    }
+}
@@ -0,0 +1,124 @@
+package com.strategicgame.replay;
+
+import com.strategicgame.core.GameManager;
+import com.strategicgame.persistence.GameSnapshot;
+import com.strategicgame.player.Player;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * ReplayJournal records a game in an append-only binary file.
+ * It starts with a snapshot of the game (see GameSnapshot), then holds one
+ * record per action received from GameActions (see RecordWriter). Every
+ * END_TURN record carries the hash of the state reached, checked by the
+ * Replayer.
+ *
+ * Records are buffered and written at the end of every turn.
+ * 
+ */
+public class ReplayJournal extends RecordWriter implements AutoCloseable {
+    /** "GWRJ" */
+    public static final int MAGIC = 0x4757524A;
+    public static final short VERSION = 1;
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private long events;
+
+    private ReplayJournal(GameManager gameManager, FileChannel channel) {
+        super(gameManager);
+        this.channel = channel;
+    }
+
+    /**
+     * Starts recording a game : writes its current state to a new journal
+     * and observes its actions from now on.
+     * 
+     * @param path The journal file, replaced if it exists
+     * @param gameManager The game, ready to be played
+     * @return The journal
+     * @throws IOException if the file cannot be written
+     */
+    public static ReplayJournal start(Path path, GameManager gameManager) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer snapshot = GameSnapshot.capture(gameManager, null);
+            ByteBuffer header = ByteBuffer.allocate(12);
+            header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(snapshot.remaining()).flip();
+            writeFully(channel, header);
+            writeFully(channel, snapshot);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        ReplayJournal journal = new ReplayJournal(gameManager, channel);
+        gameManager.getActions().setObserver(journal);
+        return journal;
+    }
+
+    @Override
+    protected ByteBuffer begin(EventType type, Player player) {
+        if (buffer.remaining() < MAX_RECORD_BYTES) {
+            flush();
+        }
+        events++;
+        return buffer.put((byte) type.ordinal()).put((byte) player.getPlayerId());
+    }
+
+    @Override
+    protected void turnEnded() {
+        flush();
+    }
+
+    /**
+     * Writes the buffered records to the file.
+     */
+    public void flush() {
+        buffer.flip();
+        try {
+            writeFully(channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Gets the number of events recorded.
+     * @return Event count
+     */
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * Stops observing the game, writes the pending records and closes the file.
+     */
+    @Override
+    public void close() {
+        gameManager.getActions().setObserver(null);
+        try {
+            flush();
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.strategicgame.replay;
+
+/**
+ * ReplayReport is the outcome of a replay : events and turns replayed,
+ * time spent, the first divergence from the recorded game, if any, and
+ * whether the journal ended in the middle of a record.
+ * 
+ */
+public class ReplayReport {
+    private final long events;
+    private final int turns;
+    private final long elapsedNanos;
+    private final int desyncTurn;
+    private final String desyncReason;
+    private final boolean truncated;
+
+    ReplayReport(long events, int turns, long elapsedNanos, int desyncTurn, String desyncReason) {
+        this(events, turns, elapsedNanos, desyncTurn, desyncReason, false);
+    }
+
+    ReplayReport(long events, int turns, long elapsedNanos, int desyncTurn, String desyncReason,
+                 boolean truncated) {
+        this.events = events;
+        this.turns = turns;
+        this.elapsedNanos = elapsedNanos;
+        this.desyncTurn = desyncTurn;
+        this.desyncReason = desyncReason;
+        this.truncated = truncated;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * Gets the number of player turns replayed and verified.
+     * @return Turn count
+     */
+    public int getTurns() {
+        return turns;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Checks if the replay reproduced every recorded state.
+     * @return true if no divergence was found and the journal was complete
+     */
+    public boolean isConsistent() {
+        return desyncReason == null && !truncated;
+    }
+
+    /**
+     * Checks if the journal was cut in the middle of a record (e.g. the
+     * game crashed) : the events before it were replayed, the cut one was not.
+     * @return true if truncated
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Gets the game turn on which the replay diverged or the journal was cut.
+     * @return Turn number, or -1 if consistent
+     */
+    public int getDesyncTurn() {
+        return desyncTurn;
+    }
+
+    /**
+     * Gets what diverged.
+     * @return Description, or null if consistent
+     */
+    public String getDesyncReason() {
+        return desyncReason;
+    }
+
+    @Override
+    public String toString() {
+        String status;
+        if (desyncReason != null) {
+            status = "DESYNC at turn " + desyncTurn + ": " + desyncReason;
+        } else if (truncated) {
+            status = "TRUNCATED at turn " + desyncTurn + ": journal cut in the middle of a record";
+        } else {
+            status = "consistent";
+        }
+        return String.format("%d events, %d turns in %.2f ms (%.0f events/s) - %s",
+            events, turns, elapsedNanos / 1e6, elapsedNanos == 0 ? 0.0 : events * 1e9 / elapsedNanos, status);
+    }
+}
@@ -0,0 +1,57 @@
+package com.strategicgame.replay;
+
+import com.strategicgame.core.AiController;
+import com.strategicgame.core.GameManager;
+import com.strategicgame.core.HeadlessSimulator;
+import com.strategicgame.util.Constants;
+import com.strategicgame.util.GameLog;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command line tool to record an AI-vs-AI game in a journal and to
+ * replay a journal while checking every turn.
+ * Usage:
+ *   ReplayTool record [file] [seed] [mapSize] [maxTurns]
+ *   ReplayTool verify [file]
+ * 
+ */
+public class ReplayTool {
+
+    public static void main(String[] args) throws IOException {
+        String command = args.length > 0 ? args[0] : "verify";
+        Path path = Paths.get(args.length > 1 ? args[1] : "gridwar.replay");
+        GameLog.setEnabled(false);
+
+        if (command.equals("record")) {
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+            int size = args.length > 3 ? Integer.parseInt(args[3]) : Constants.MAP_WIDTH;
+            int maxTurns = args.length > 4 ? Integer.parseInt(args[4]) : Constants.MAX_GAME_TURNS;
+
+            GameManager gameManager = new GameManager(seed);
+            gameManager.initializeGame(size, size, Constants.PLAYER_COUNT);
+            gameManager.setupStartingForces();
+            AiController[] controllers = new AiController[Constants.PLAYER_COUNT];
+            for (int i = 0; i < controllers.length; i++) {
+                controllers[i] = new AiController(gameManager.getRandom().split());
+            }
+
+            try (ReplayJournal journal = ReplayJournal.start(path, gameManager)) {
+                int turns = HeadlessSimulator.play(gameManager, controllers, maxTurns);
+                System.out.printf("Recorded %d events over %d turns to %s (%d bytes)%n",
+                    journal.getEvents(), turns, path, Files.size(path));
+            }
+        } else if (command.equals("verify")) {
+            ReplayReport report = Replayer.replay(path);
+            System.out.println(report);
+            if (!report.isConsistent()) {
+                System.exit(1);
+            }
+        } else {
+            System.err.println("Usage: ReplayTool record|verify [file] [seed] [mapSize] [maxTurns]");
+            System.exit(2);
+        }
+    }
+}
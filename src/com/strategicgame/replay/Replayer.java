@@ -0,0 +1,193 @@
+package com.strategicgame.replay;
+
+import com.strategicgame.buildings.Building;
+import com.strategicgame.buildings.BuildingFactory;
+import com.strategicgame.buildings.BuildingType;
+import com.strategicgame.core.ActionResult;
+import com.strategicgame.core.GameActions;
+import com.strategicgame.core.GameManager;
+import com.strategicgame.map.Position;
+import com.strategicgame.persistence.GameSnapshot;
+import com.strategicgame.player.Player;
+import com.strategicgame.units.Unit;
+import com.strategicgame.units.UnitType;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Replayer plays a journal written by ReplayJournal back, as fast as
+ * possible : it restores the initial snapshot, applies every recorded
+ * action through GameActions, and compares the state hash at every end
+ * of turn. It stops at the first divergence, or at a record cut by the
+ * end of the journal (see ReplayReport.isTruncated).
+ * 
+ */
+public final class Replayer {
+    private static final UnitType[] UNIT_TYPES = UnitType.values();
+    private static final BuildingType[] BUILDING_TYPES = BuildingType.values();
+
+    private Replayer() {
+        throw new AssertionError("Replayer class should not be instantiated");
+    }
+
+    /**
+     * Replays a journal into a new game.
+     * 
+     * @param path The journal file
+     * @return The replay report
+     * @throws IOException if the file cannot be read or is not a journal
+     */
+    public static ReplayReport replay(Path path) throws IOException {
+        return replay(path, new GameManager());
+    }
+
+    /**
+     * Replays a journal into a game manager, which holds the final state afterwards.
+     * 
+     * @param path The journal file
+     * @param gameManager The game manager to replay into
+     * @return The replay report
+     * @throws IOException if the file cannot be read or is not a journal
+     */
+    public static ReplayReport replay(Path path, GameManager gameManager) throws IOException {
+        ByteBuffer journal;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            journal = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (journal.remaining() < 12 || journal.getInt() != ReplayJournal.MAGIC) {
+            throw new IOException("Not a GridWar replay journal: " + path);
+        }
+        short version = journal.getShort();
+        if (version != ReplayJournal.VERSION) {
+            throw new IOException("Unsupported journal version " + version);
+        }
+        journal.getShort();   // reserved
+        int snapshotLength = journal.getInt();
+        if (snapshotLength < 0 || snapshotLength > journal.remaining()) {
+            throw new IOException("Truncated replay journal: " + path);
+        }
+        GameSnapshot.restore(journal.slice(journal.position(), snapshotLength), gameManager);
+        journal.position(journal.position() + snapshotLength);
+
+        long start = System.nanoTime();
+        long events = 0;
+        int turns = 0;
+        try {
+            while (journal.hasRemaining()) {
+                boolean endTurn = journal.get(journal.position()) == EventType.END_TURN.ordinal();
+                events++;
+                String error = applyRecord(journal, gameManager);
+                if (error != null) {
+                    return new ReplayReport(events, turns, System.nanoTime() - start, gameManager.getTurnNumber(), error);
+                }
+                if (endTurn) {
+                    turns++;
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            // A journal cut in the middle of a record (e.g. the game crashed) : report what was replayed
+            return new ReplayReport(events - 1, turns, System.nanoTime() - start, gameManager.getTurnNumber(),
+                null, true);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Invalid replay journal: " + e.getMessage(), e);
+        }
+        return new ReplayReport(events, turns, System.nanoTime() - start, -1, null);
+    }
+
+    /**
+     * Applies one record (see RecordWriter) to a game through its GameActions,
+     * e.g. an event received from a GameServer.
+     *
+     * @param record Buffer positioned on the record, left after it
+     * @param gameManager The game
+     * @return null if the action was applied (and, at the end of a turn, the
+     *         state reached has the recorded hash), else what went wrong
+     * @throws IllegalArgumentException if the record is not valid
+     * @throws java.nio.BufferUnderflowException if the record is cut
+     */
+    public static String applyRecord(ByteBuffer record, GameManager gameManager) {
+        EventType type = EventType.fromTag(record.get());
+        Player player = playerOf(gameManager, record.get());
+        GameActions actions = gameManager.getActions();
+        if (type == EventType.END_TURN) {
+            int turnNumber = record.getInt();
+            long hash = record.getLong();
+            String error = check(actions.endTurn(player), type);
+            if (error == null && (gameManager.getTurnNumber() != turnNumber
+                    || StateHasher.hash(gameManager) != hash)) {
+                error = "state hash mismatch after " + player.getName() + "'s turn";
+            }
+            return error;
+        }
+        return check(apply(type, player, record, gameManager, actions), type);
+    }
+
+    /**
+     * Applies the action of a record whose tag and player were read.
+     *
+     * @param type The event, not END_TURN
+     * @param player The acting player
+     * @param record Buffer positioned on the operands, left after them
+     * @param gameManager The game
+     * @param actions Its actions
+     * @return Outcome of the action
+     */
+    public static ActionResult apply(EventType type, Player player, ByteBuffer record,
+                                      GameManager gameManager, GameActions actions) {
+        switch (type) {
+            case TRAIN:
+                return actions.trainUnit(player, UNIT_TYPES[record.get()]);
+            case BUILD:
+                return actions.build(player, BuildingFactory.createBuilding(BUILDING_TYPES[record.get()]));
+            case MOVE: {
+                Unit unit = unitOf(player, record.getInt());
+                Position target = gameManager.getGameMap().getPosition(record.getInt(), record.getInt());
+                return unit == null ? ActionResult.INVALID : actions.moveUnit(player, unit, target);
+            }
+            case ATTACK_UNIT: {
+                Unit attacker = unitOf(player, record.getInt());
+                Unit defender = unitOf(playerOf(gameManager, record.get()), record.getInt());
+                return attacker == null || defender == null ? ActionResult.INVALID
+                    : actions.attackUnit(player, attacker, defender);
+            }
+            case ATTACK_BUILDING: {
+                Unit attacker = unitOf(player, record.getInt());
+                List<Building> buildings = playerOf(gameManager, record.get()).getBuildings();
+                int index = record.getInt();
+                return attacker == null || index < 0 || index >= buildings.size() ? ActionResult.INVALID
+                    : actions.attackBuilding(player, attacker, buildings.get(index));
+            }
+            default:
+                throw new IllegalArgumentException("Unexpected event " + type);
+        }
+    }
+
+    private static String check(ActionResult result, EventType type) {
+        return result.isSuccess() ? null : type + " could not be applied: " + result.getMessage();
+    }
+
+    private static Unit unitOf(Player player, int unitId) {
+        return player.getUnitById(unitId);
+    }
+
+    /**
+     * Gets a player of a game by id.
+     * @param gameManager The game
+     * @param playerId The player id
+     * @return The player
+     * @throws IllegalArgumentException if no player has this id
+     */
+    public static Player playerOf(GameManager gameManager, int playerId) {
+        for (Player player : gameManager.getPlayers()) {
+            if (player.getPlayerId() == playerId) {
+                return player;
+            }
+        }
+        throw new IllegalArgumentException("Unknown player id " + playerId);
+    }
+}
@@ -0,0 +1,77 @@
+package com.strategicgame.replay;
+
+import com.strategicgame.buildings.Building;
+import com.strategicgame.buildings.BuildingType;
+import com.strategicgame.core.GameManager;
+import com.strategicgame.map.Position;
+import com.strategicgame.player.Player;
+import com.strategicgame.resources.ResourceType;
+import com.strategicgame.units.Unit;
+import com.strategicgame.units.UnitType;
+
+/**
+ * StateHasher computes a 64-bit hash of the state that changes during a
+ * game : random state, turn, players, resources, units and buildings.
+ * The terrain, fixed once generated, is left out to keep the hash cheap
+ * on large maps. Entity ids, which depend on the process, are not hashed.
+ * 
+ */
+public final class StateHasher {
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final ResourceType[] RESOURCE_TYPES = ResourceType.values();
+
+    private StateHasher() {
+        throw new AssertionError("StateHasher class should not be instantiated");
+    }
+
+    /**
+     * Hashes the current state of a game.
+     * 
+     * @param gameManager The game
+     * @return State hash
+     */
+    public static long hash(GameManager gameManager) {
+        long h = 0x243F6A8885A308D3L;
+        h = add(h, gameManager.getRandom().getState());
+        h = add(h, gameManager.getTurnNumber());
+        h = add(h, gameManager.getCurrentPlayerIndex());
+        h = add(h, gameManager.isGameOver() ? 1 : 0);
+        for (Player player : gameManager.getPlayers()) {
+            h = add(h, player.getPlayerId());
+            h = add(h, player.getScore());
+            for (ResourceType type : RESOURCE_TYPES) {
+                h = add(h, player.getResourceManager().getResource(type));
+            }
+            h = add(h, player.getUnits().size());
+            for (Unit unit : player.getUnits()) {
+                h = add(h, UnitType.of(unit).ordinal());
+                h = add(h, unit.getId());
+                h = add(h, unit.getHealth());
+                h = add(h, unit.hasMovedThisTurn() ? 1 : 0);
+                h = add(h, position(unit.getPosition()));
+            }
+            h = add(h, player.getBuildings().size());
+            for (Building building : player.getBuildings()) {
+                h = add(h, BuildingType.of(building).ordinal());
+                h = add(h, building.getCurrentHealth());
+                h = add(h, building.getRemainingConstructionTime());
+                h = add(h, position(building.getPosition()));
+            }
+        }
+        return finish(h);
+    }
+
+    private static long position(Position position) {
+        return position == null ? -1L : ((long) position.getX() << 32) | (position.getY() & 0xFFFFFFFFL);
+    }
+
+    private static long add(long h, long value) {
+        return (Long.rotateLeft(h, 23) ^ value) * MULTIPLIER;
+    }
+
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        return h ^ (h >>> 33);
+    }
+}
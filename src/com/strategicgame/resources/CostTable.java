@@ -0,0 +1,67 @@
+package com.strategicgame.resources;
+
+import com.strategicgame.buildings.BuildingType;
+import com.strategicgame.units.UnitType;
+
+/**
+ * CostTable holds the precomputed cost of every unit and building type,
+ * indexed by type ordinal, so that a price is read without creating the
+ * unit or the building nor building a map.
+ *
+ */
+public final class CostTable {
+    private static final ResourceCost[] UNIT_COSTS = new ResourceCost[UnitType.values().length];
+    private static final ResourceCost[] BUILDING_COSTS = new ResourceCost[BuildingType.values().length];
+
+    static {
+        for (UnitType type : UnitType.values()) {
+            UNIT_COSTS[type.ordinal()] = ResourceCost.of(ResourceType.GOLD, type.getCost());
+        }
+        for (BuildingType type : BuildingType.values()) {
+            BUILDING_COSTS[type.ordinal()] = buildingCost(type);
+        }
+    }
+
+    private static ResourceCost buildingCost(BuildingType type) {
+        switch (type) {
+            case COMMAND_CENTER:
+                return ResourceCost.of(ResourceType.GOLD, 200)
+                    .plus(ResourceType.WOOD, 150).plus(ResourceType.STONE, 100);
+            case TRAINING_CAMP:
+                return ResourceCost.of(ResourceType.GOLD, 100).plus(ResourceType.WOOD, 75);
+            case MINE:
+                return ResourceCost.of(ResourceType.GOLD, 50).plus(ResourceType.WOOD, 50);
+            case FARM:
+                return ResourceCost.of(ResourceType.GOLD, 30).plus(ResourceType.WOOD, 40);
+            case SAWMILL:
+                return ResourceCost.of(ResourceType.GOLD, 40).plus(ResourceType.STONE, 30);
+            default:
+                throw new AssertionError("No cost for " + type);
+        }
+    }
+
+    /**
+     * Gets the cost of training a unit type.
+     * @param type The unit type
+     * @return Its cost
+     */
+    public static ResourceCost of(UnitType type) {
+        return UNIT_COSTS[type.ordinal()];
+    }
+
+    /**
+     * Gets the cost of constructing a building type.
+     * @param type The building type
+     * @return Its cost
+     */
+    public static ResourceCost of(BuildingType type) {
+        return BUILDING_COSTS[type.ordinal()];
+    }
+
+    /**
+     * Prevent instantiation of utility class.
+     */
+    private CostTable() {
+        throw new AssertionError("CostTable class should not be instantiated");
+    }
+}
@@ -0,0 +1,99 @@
+package com.strategicgame.resources;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ResourceCost is an immutable amount of every resource type, stored as an
+ * int per ResourceType ordinal, so that checking and spending a cost
+ * neither boxes nor iterates a map.
+ *
+ */
+public final class ResourceCost {
+    private static final ResourceType[] TYPES = ResourceType.values();
+
+    /** A cost of nothing. */
+    public static final ResourceCost FREE = new ResourceCost(new int[TYPES.length]);
+
+    private final int[] amounts;
+
+    private ResourceCost(int[] amounts) {
+        this.amounts = amounts;
+    }
+
+    /**
+     * Creates a cost of a single resource.
+     * @param type The resource type
+     * @param amount Amount needed
+     * @return The cost
+     */
+    public static ResourceCost of(ResourceType type, int amount) {
+        int[] amounts = new int[TYPES.length];
+        amounts[type.ordinal()] = checkAmount(amount);
+        return new ResourceCost(amounts);
+    }
+
+    /**
+     * Creates a cost from a map of resources and amounts.
+     * @param cost Map of resources and amounts needed
+     * @return The cost
+     */
+    public static ResourceCost of(Map<ResourceType, Integer> cost) {
+        int[] amounts = new int[TYPES.length];
+        for (Map.Entry<ResourceType, Integer> entry : cost.entrySet()) {
+            amounts[entry.getKey().ordinal()] = checkAmount(entry.getValue());
+        }
+        return new ResourceCost(amounts);
+    }
+
+    /**
+     * Creates a cost adding an amount of a resource to this one.
+     * @param type The resource type
+     * @param amount Amount added
+     * @return The new cost
+     */
+    public ResourceCost plus(ResourceType type, int amount) {
+        int[] sum = amounts.clone();
+        sum[type.ordinal()] += checkAmount(amount);
+        return new ResourceCost(sum);
+    }
+
+    private static int checkAmount(int amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Negative cost: " + amount);
+        }
+        return amount;
+    }
+
+    /**
+     * Gets the amount of a resource.
+     * @param type The resource type
+     * @return Amount needed (0 if none)
+     */
+    public int get(ResourceType type) {
+        return amounts[type.ordinal()];
+    }
+
+    int get(int ordinal) {
+        return amounts[ordinal];
+    }
+
+    /**
+     * Converts the cost to a map holding its non-zero amounts.
+     * @return A new map
+     */
+    public Map<ResourceType, Integer> toMap() {
+        Map<ResourceType, Integer> map = new HashMap<>();
+        for (ResourceType type : TYPES) {
+            if (amounts[type.ordinal()] != 0) {
+                map.put(type, amounts[type.ordinal()]);
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+}
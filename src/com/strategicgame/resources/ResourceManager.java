@@ -1,25 +1,32 @@
 package com.strategicgame.resources;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * ResourceManager handles all resource operations for a player.
  * Implements the Single Responsibility Principle - only manages resources.
- * Uses HashMap for O(1) resource lookups.
+ * Balances are kept in an AtomicIntegerArray indexed by ResourceType
+ * ordinal: producers and consumers may run on several threads without
+ * locking, boxing nor losing updates. Spending several resources takes
+ * them one by one with compare-and-set and gives them back if one is
+ * short, so a cost is either fully paid or not at all.
  * 
  */
 public class ResourceManager {
-    private final Map<ResourceType, Integer> resources;
-    private final Map<ResourceType, Integer> productionRate;
+    private static final ResourceType[] TYPES = ResourceType.values();
+
+    private final AtomicIntegerArray balances;
+    private final int[] productionRates; // set up by the game thread
 
     public ResourceManager() {
-        this.resources = new HashMap<>();
-        this.productionRate = new HashMap<>();
+        this.balances = new AtomicIntegerArray(TYPES.length);
+        this.productionRates = new int[TYPES.length];
         
         // Initialize all resource types with starting amounts
-        for (ResourceType type : ResourceType.values()) {
-            resources.put(type, 500); // Starting resources
-            productionRate.put(type, 10); // Base production per turn
+        for (ResourceType type : TYPES) {
+            balances.set(type.ordinal(), 500); // Starting resources
+            productionRates[type.ordinal()] = 10; // Base production per turn
         }
     }
 
@@ -29,7 +36,7 @@ public class ResourceManager {
      * @return Amount of resource
      */
     public int getResource(ResourceType type) {
-        return resources.getOrDefault(type, 0);
+        return balances.get(type.ordinal());
     }
 
     /**
@@ -37,7 +44,11 @@ public class ResourceManager {
      * @return Map of resource types to amounts
      */
     public Map<ResourceType, Integer> getAllResources() {
-        return new HashMap<>(resources);
+        Map<ResourceType, Integer> all = new EnumMap<>(ResourceType.class);
+        for (ResourceType type : TYPES) {
+            all.put(type, balances.get(type.ordinal()));
+        }
+        return all;
     }
 
     /**
@@ -46,8 +57,16 @@ public class ResourceManager {
      * @param amount Amount to add
      */
     public void addResource(ResourceType type, int amount) {
-        int current = resources.getOrDefault(type, 0);
-        resources.put(type, current + amount);
+        balances.getAndAdd(type.ordinal(), amount);
+    }
+
+    /**
+     * Sets the amount of a resource, e.g. when loading a saved game.
+     * @param type The resource type
+     * @param amount New amount
+     */
+    public void setResource(ResourceType type, int amount) {
+        balances.set(type.ordinal(), amount);
     }
 
     /**
@@ -57,12 +76,22 @@ public class ResourceManager {
      * @return true if successful, false if insufficient resources
      */
     public boolean removeResource(ResourceType type, int amount) {
-        int current = resources.getOrDefault(type, 0);
-        if (current >= amount) {
-            resources.put(type, current - amount);
-            return true;
+        return take(type.ordinal(), amount);
+    }
+
+    /**
+     * Takes an amount from a balance if it is large enough (CAS loop).
+     */
+    private boolean take(int ordinal, int amount) {
+        while (true) {
+            int current = balances.get(ordinal);
+            if (current < amount) {
+                return false;
+            }
+            if (balances.compareAndSet(ordinal, current, current - amount)) {
+                return true;
+            }
         }
-        return false;
     }
 
     /**
@@ -85,12 +114,39 @@ public class ResourceManager {
      * @return true if successful, false if insufficient resources
      */
     public boolean spend(Map<ResourceType, Integer> cost) {
-        if (!canAfford(cost)) {
-            return false;
+        return spend(ResourceCost.of(cost));
+    }
+
+    /**
+     * Checks if player can afford a resource cost.
+     * @param cost The cost
+     * @return true if player has enough of all resources
+     */
+    public boolean canAfford(ResourceCost cost) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (balances.get(i) < cost.get(i)) {
+                return false;
+            }
         }
-        
-        for (Map.Entry<ResourceType, Integer> entry : cost.entrySet()) {
-            removeResource(entry.getKey(), entry.getValue());
+        return true;
+    }
+
+    /**
+     * Spends multiple resources at once, atomically: if one of them is
+     * short, those already taken are given back. A concurrent spend may
+     * fail while such a rollback is in progress, but no update is lost.
+     * @param cost The cost
+     * @return true if successful, false if insufficient resources
+     */
+    public boolean spend(ResourceCost cost) {
+        for (int i = 0; i < TYPES.length; i++) {
+            int amount = cost.get(i);
+            if (amount != 0 && !take(i, amount)) {
+                for (int j = 0; j < i; j++) {
+                    balances.getAndAdd(j, cost.get(j)); // rollback
+                }
+                return false;
+            }
         }
         return true;
     }
@@ -99,9 +155,8 @@ public class ResourceManager {
      * Produces resources based on production rate.
      */
     public void produceResources() {
-        for (ResourceType type : ResourceType.values()) {
-            int production = productionRate.getOrDefault(type, 0);
-            addResource(type, production);
+        for (int i = 0; i < TYPES.length; i++) {
+            balances.getAndAdd(i, productionRates[i]);
         }
     }
 
@@ -111,7 +166,7 @@ public class ResourceManager {
      * @param rate Production amount per turn
      */
     public void setProductionRate(ResourceType type, int rate) {
-        productionRate.put(type, rate);
+        productionRates[type.ordinal()] = rate;
     }
 
     /**
@@ -120,7 +175,7 @@ public class ResourceManager {
      * @return Production amount per turn
      */
     public int getProductionRate(ResourceType type) {
-        return productionRate.getOrDefault(type, 0);
+        return productionRates[type.ordinal()];
     }
 
     /**
@@ -2,9 +2,13 @@ package com.strategicgame.ui;
 
 import com.strategicgame.core.GameManager;
 import com.strategicgame.map.GameMap;
+import com.strategicgame.map.InfluenceMap;
+import com.strategicgame.map.Position;
+import com.strategicgame.map.VisibilityMap;
 import com.strategicgame.player.Player;
 import com.strategicgame.units.Unit;
 import com.strategicgame.buildings.Building;
+import com.strategicgame.resources.ResourceManager;
 import com.strategicgame.resources.ResourceType;
 import java.util.*;
 
@@ -15,11 +19,18 @@ import java.util.*;
  * 
  */
 public class GameUI {
+    /** Largest side of the map area drawn, in tiles. */
+    public static final int VIEWPORT_SIZE = 40;
+
     private final GameManager gameManager;
     private final Scanner scanner;
 
     public GameUI() {
-        this.gameManager = GameManager.getInstance();
+        this(GameManager.getInstance());
+    }
+
+    public GameUI(GameManager gameManager) {
+        this.gameManager = gameManager;
         this.scanner = new Scanner(System.in);
     }
 
@@ -61,10 +72,9 @@ public class GameUI {
      */
     private void displayResources(Player player) {
         System.out.println("\nResources:");
-        Map<ResourceType, Integer> resources = player.getResourceManager().getAllResources();
+        ResourceManager resources = player.getResourceManager();
         for (ResourceType type : ResourceType.values()) {
-            System.out.printf("  %s: %d\n", type.getDisplayName(), 
-                resources.getOrDefault(type, 0));
+            System.out.printf("  %s: %d\n", type.getDisplayName(), resources.getResource(type));
         }
     }
 
@@ -112,6 +122,7 @@ public class GameUI {
         System.out.println("6. Move Unit");
         System.out.println("7. Attack");
         System.out.println("8. End Turn");
+        System.out.println("9. Save Game");
         System.out.print("Choose action: ");
         return scanner.nextInt();
     }
@@ -165,11 +176,109 @@ public class GameUI {
      */
 
    public void displayMap(GameMap map) {
-    System.out.println("\n=== MAP ===");
-    map.displayMap();      // on réutilise la méthode de GameMap
-    System.out.println();
+    displayMap(map, null);
 }
 
+    /**
+     * Displays the map, or on a large map the area around a player
+     * (VIEWPORT_SIZE tiles around its first unit on the map).
+     * With a player, under its fog of war (see VisibilityMap) : the tiles it
+     * sees in capitals, those it only remembers in lower case, '?' elsewhere.
+     * @param map The current map
+     * @param viewer The player the map is drawn for, or null to show it all from the top left corner
+     */
+    public void displayMap(GameMap map, Player viewer) {
+        System.out.println("\n=== MAP ===");
+        Position origin = viewportOrigin(map, viewer);
+        if (viewer == null) {
+            map.displayRegion(origin.getX(), origin.getY(), VIEWPORT_SIZE, VIEWPORT_SIZE);   // on réutilise GameMap
+            System.out.println();
+            return;
+        }
+        VisibilityMap visibility = map.getVisibilityMap();
+        int playerId = viewer.getPlayerId();
+        int maxX = Math.min(map.getWidth(), origin.getX() + VIEWPORT_SIZE);
+        int maxY = Math.min(map.getHeight(), origin.getY() + VIEWPORT_SIZE);
+        for (int y = origin.getY(); y < maxY; y++) {
+            StringBuilder line = new StringBuilder(2 * VIEWPORT_SIZE);
+            for (int x = origin.getX(); x < maxX; x++) {
+                int index = map.getGrid().indexOf(x, y);
+                char letter = map.getGrid().getType(index).name().charAt(0);
+                if (visibility.isVisible(playerId, index)) {
+                    line.append(letter);
+                } else if (visibility.isExplored(playerId, index)) {
+                    line.append(Character.toLowerCase(letter));
+                } else {
+                    line.append('?');
+                }
+                line.append(' ');
+            }
+            System.out.println(line);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Gets the top left corner of the area drawn for a player.
+     */
+    private static Position viewportOrigin(GameMap map, Player viewer) {
+        int centerX = 0;
+        int centerY = 0;
+        if (viewer != null) {
+            for (Unit unit : viewer.getUnits()) {
+                Position position = map.findUnitPosition(unit);
+                if (position != null) {
+                    centerX = position.getX();
+                    centerY = position.getY();
+                    break;
+                }
+            }
+        }
+        int x = Math.max(0, Math.min(map.getWidth() - VIEWPORT_SIZE, centerX - VIEWPORT_SIZE / 2));
+        int y = Math.max(0, Math.min(map.getHeight() - VIEWPORT_SIZE, centerY - VIEWPORT_SIZE / 2));
+        return new Position(x, y);
+    }
+
+    /**
+     * Displays who controls each tile around a player (the area of displayMap) :
+     * '+' the player dominates, '-' an opponent dominates,
+     * '~' contested, '.' nobody, '?' out of the sight of the player.
+     * @param map The current map
+     * @param viewer The player the overlay is drawn for
+     */
+    public void displayInfluence(GameMap map, Player viewer) {
+        InfluenceMap influence = map.getInfluenceMap();
+        VisibilityMap visibility = map.getVisibilityMap();
+        System.out.println("=== INFLUENCE (" + viewer.getName() + ") ===");
+        int playerId = viewer.getPlayerId();
+        Position origin = viewportOrigin(map, viewer);
+        int maxX = Math.min(map.getWidth(), origin.getX() + VIEWPORT_SIZE);
+        int maxY = Math.min(map.getHeight(), origin.getY() + VIEWPORT_SIZE);
+        for (int y = origin.getY(); y < maxY; y++) {
+            StringBuilder line = new StringBuilder(2 * VIEWPORT_SIZE);
+            for (int x = origin.getX(); x < maxX; x++) {
+                int index = map.getGrid().indexOf(x, y);
+                float own = influence.getInfluence(playerId, index);
+                float threat = influence.getThreat(playerId, index);
+                char mark;
+                if (!visibility.isVisible(playerId, index)) {
+                    mark = '?';
+                } else if (own < InfluenceMap.NEGLIGIBLE && threat < InfluenceMap.NEGLIGIBLE) {
+                    mark = '.';
+                } else if (own > 2 * threat) {
+                    mark = '+';
+                } else if (threat > 2 * own) {
+                    mark = '-';
+                } else {
+                    mark = '~';
+                }
+                line.append(mark).append(' ');
+            }
+            System.out.println(line);
+        }
+        System.out.println();
+    }
+
 
 
     /**
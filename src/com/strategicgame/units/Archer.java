@@ -16,19 +16,19 @@ public class Archer extends Unit {
     private static final int MOVEMENT_SPEED = 2;
 
     public Archer() {
-        super("Archer", HEALTH, ATTACK, DEFENSE, RANGE, COST, MOVEMENT_SPEED);
+        this(null);
+    }
+
+    /**
+     * @param store Store holding the unit, or null for a store of its own
+     */
+    public Archer(UnitStore store) {
+        super(store, "Archer", HEALTH, ATTACK, DEFENSE, RANGE, COST, MOVEMENT_SPEED);
     }
 
     @Override
-    public int calculateDamage(Unit target) {
-        // Archers deal bonus damage at range
-        int baseDamage = Math.max(1, this.getAttack() - target.getDefense());
-        int rangeBonusMultiplier = 2; // Double damage at distance
-        int totalDamage = baseDamage * rangeBonusMultiplier;
-        
-        Random random = new Random();
-        int variance = random.nextInt(7) - 3; // -3 to +3
-        
-        return Math.max(1, totalDamage + variance);
+    public int calculateDamage(Unit target, Random random) {
+        // Archers deal double damage at range, with a -3 to +3 variance
+        return UnitType.ARCHER.calculateDamage(getAttack(), target.getDefense(), random);
     }
 }
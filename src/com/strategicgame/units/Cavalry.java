@@ -16,19 +16,19 @@ public class Cavalry extends Unit {
     private static final int MOVEMENT_SPEED = 5; // Fastest unit
 
     public Cavalry() {
-        super("Cavalry", HEALTH, ATTACK, DEFENSE, RANGE, COST, MOVEMENT_SPEED);
+        this(null);
+    }
+
+    /**
+     * @param store Store holding the unit, or null for a store of its own
+     */
+    public Cavalry(UnitStore store) {
+        super(store, "Cavalry", HEALTH, ATTACK, DEFENSE, RANGE, COST, MOVEMENT_SPEED);
     }
 
     @Override
-    public int calculateDamage(Unit target) {
-        // Cavalry charges deal extra damage
-        int baseDamage = Math.max(1, this.getAttack() - target.getDefense());
-        int chargeBonus = 5; // Fixed charge bonus
-        int totalDamage = baseDamage + chargeBonus;
-        
-        Random random = new Random();
-        int variance = random.nextInt(6) - 2; // -2 to +3
-        
-        return Math.max(2, totalDamage + variance);
+    public int calculateDamage(Unit target, Random random) {
+        // Cavalry charges deal a +5 bonus, with a -2 to +3 variance
+        return UnitType.CAVALRY.calculateDamage(getAttack(), target.getDefense(), random);
     }
 }
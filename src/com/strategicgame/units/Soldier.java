@@ -16,16 +16,19 @@ public class Soldier extends Unit {
     private static final int MOVEMENT_SPEED = 3;
 
     public Soldier() {
-        super("Soldier", HEALTH, ATTACK, DEFENSE, RANGE, COST, MOVEMENT_SPEED);
+        this(null);
+    }
+
+    /**
+     * @param store Store holding the unit, or null for a store of its own
+     */
+    public Soldier(UnitStore store) {
+        super(store, "Soldier", HEALTH, ATTACK, DEFENSE, RANGE, COST, MOVEMENT_SPEED);
     }
 
     @Override
-    public int calculateDamage(Unit target) {
-        // Base damage minus target defense with variance
-        int baseDamage = Math.max(1, this.getAttack() - target.getDefense());
-        Random random = new Random();
-        int variance = random.nextInt(5) - 2; // -2 to +2
-        int finalDamage = baseDamage + variance;
-        return Math.max(1, finalDamage);
+    public int calculateDamage(Unit target, Random random) {
+        // Base damage minus target defense, with a -2 to +2 variance
+        return UnitType.SOLDIER.calculateDamage(getAttack(), target.getDefense(), random);
     }
 }
@@ -1,49 +1,97 @@
 package com.strategicgame.units;
 
+import com.strategicgame.map.MapEntity;
 import com.strategicgame.map.Position;
 import com.strategicgame.player.Player;
+import com.strategicgame.util.EntityIds;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Abstract base class for all game units.
  * Defines the contract for unit behavior - HP, attack, defense, movement.
  * Implements Encapsulation and Abstraction principles from POO.
+ * The state of a unit lives in a slot of a UnitStore (the store of its
+ * owner, or a store of detached units while it has none); the unit is a
+ * view on it.
  * 
  */
-public abstract class Unit {
+public abstract class Unit implements MapEntity, Cloneable {
+    private final int entityId;
     private final String name;
-    private final int baseCost;
-    private int health;
-    private final int maxHealth;
-    private final int attack;
-    private final int defense;
-    private final int range;
-    private final int movementSpeed;
-    
-    private Position position;
-    private Player owner;
-    private boolean hasMovedThisTurn;
+    UnitStore store;
+    int slot;
 
     protected Unit(String name, int health, int attack, int defense, 
                    int range, int cost, int movementSpeed) {
+        this(null, name, health, attack, defense, range, cost, movementSpeed);
+    }
+
+    /**
+     * Creates a unit without owner in a slot of the given store, typically
+     * the store of the player it is made for (see UnitFactory), so that
+     * adding it to that player does not move its state.
+     * 
+     * @param store Store holding the unit, or null for a store of its own
+     */
+    protected Unit(UnitStore store, String name, int health, int attack, int defense,
+                   int range, int cost, int movementSpeed) {
+        this.entityId = EntityIds.next();
         this.name = name;
-        this.maxHealth = health;
-        this.health = health;
-        this.attack = attack;
-        this.defense = defense;
-        this.range = range;
-        this.baseCost = cost;
-        this.movementSpeed = movementSpeed;
-        this.hasMovedThisTurn = false;
+        this.store = store != null ? store : new UnitStore(1, true);
+        this.slot = this.store.add(this, entityId, UnitType.fromDisplayName(name),
+            health, attack, defense, range, cost, movementSpeed);
+    }
+
+    void bind(UnitStore store, int slot) {
+        this.store = store;
+        this.slot = slot;
+    }
+
+    /**
+     * Creates the view of this unit in a fork of its store : same entity
+     * id, name, id and slot.
+     */
+    Unit forkInto(UnitStore fork) {
+        try {
+            Unit view = (Unit) clone();
+            view.store = fork;
+            return view;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
     }
 
     /**
      * Calculates damage this unit deals to a target.
      * To be overridden by subclasses for specialized damage calculations.
+     * The damage variance is drawn from the given generator, so a game
+     * driven by a seeded generator is reproducible.
+     * 
+     * @param target Target unit
+     * @param random Random generator of the game
+     * @return Damage amount
+     */
+    public abstract int calculateDamage(Unit target, Random random);
+
+    /**
+     * Calculates damage this unit deals to a target, with an unseeded variance.
      * 
      * @param target Target unit
      * @return Damage amount
      */
-    public abstract int calculateDamage(Unit target);
+    public int calculateDamage(Unit target) {
+        return calculateDamage(target, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Gets the unique entity id of this unit (not the id shown to the player).
+     * @return Entity id
+     */
+    @Override
+    public int getEntityId() {
+        return entityId;
+    }
 
     /**
      * Gets the unit type name. 
@@ -53,12 +101,20 @@ public abstract class Unit {
         return name;
     }
 
+    /**
+     * Gets the type of this unit.
+     * @return Unit type, or null for a unit outside of UnitType
+     */
+    public UnitType getType() {
+        return store.typeOf(slot);
+    }
+
     /**
      * Gets current health. 
      * @return Health points
      */
     public int getHealth() {
-        return health;
+        return store.health[slot];
     }
 
     /**
@@ -66,7 +122,15 @@ public abstract class Unit {
      * @param damage Damage to take
      */
     public void takeDamage(int damage) {
-        this.health = Math.max(0, health - damage);
+        store.damage(slot, damage);
+    }
+
+    /**
+     * Sets current health, e.g. when loading a saved game.
+     * @param health Health points, kept between 0 and max health
+     */
+    public void setHealth(int health) {
+        store.health[slot] = Math.max(0, Math.min(store.maxHealth[slot], health));
     }
 
     /**
@@ -74,7 +138,7 @@ public abstract class Unit {
      * @param amount Amount to heal
      */
     public void heal(int amount) {
-        this.health = Math.min(maxHealth, health + amount);
+        store.health[slot] = Math.min(store.maxHealth[slot], store.health[slot] + amount);
     }
 
     /**
@@ -82,7 +146,7 @@ public abstract class Unit {
      * @return true if health > 0
      */
     public boolean isAlive() {
-        return health > 0;
+        return store.health[slot] > 0;
     }
 
     /**
@@ -90,7 +154,7 @@ public abstract class Unit {
      * @return Attack value
      */
     public int getAttack() {
-        return attack;
+        return store.attack[slot];
     }
 
     /**
@@ -98,7 +162,7 @@ public abstract class Unit {
      * @return Defense value
      */
     public int getDefense() {
-        return defense;
+        return store.defense[slot];
     }
 
     /**
@@ -106,7 +170,7 @@ public abstract class Unit {
      * @return Range in tiles
      */
     public int getRange() {
-        return range;
+        return store.range[slot];
     }
 
     /**
@@ -114,7 +178,7 @@ public abstract class Unit {
      * @return Resource cost
      */
     public int getCost() {
-        return baseCost;
+        return store.cost[slot];
     }
 
     /**
@@ -122,23 +186,25 @@ public abstract class Unit {
      * @return Movement range
      */
     public int getMovementSpeed() {
-        return movementSpeed;
+        return store.movement[slot];
     }
 
     /**
      * Gets unit position. 
      * @return Current position
      */
+    @Override
     public Position getPosition() {
-        return position;
+        return store.positions[slot];
     }
 
     /**
      * Sets unit position. 
      * @param position New position
      */
+    @Override
     public void setPosition(Position position) {
-        this.position = position;
+        store.setPosition(slot, position);
     }
 
     /**
@@ -146,15 +212,19 @@ public abstract class Unit {
      * @return Owning player
      */
     public Player getOwner() {
-        return owner;
+        return store.ownerOf(slot);
     }
 
     /**
-     * Sets unit owner. 
-     * @param owner New owner
+     * Sets unit owner, moving the unit into the store of its owner.
+     * @param owner New owner, or null
      */
     public void setOwner(Player owner) {
-        this.owner = owner;
+        if (owner != null) {
+            owner.getUnitStore().adopt(this, owner);
+        } else if (store.getOwnerId(slot) != UnitStore.NO_OWNER) {
+            store.detach(this, null);
+        }
     }
 
     /**
@@ -162,21 +232,21 @@ public abstract class Unit {
      * @return true if moved
      */
     public boolean hasMovedThisTurn() {
-        return hasMovedThisTurn;
+        return (store.flags[slot] & UnitStore.MOVED) != 0;
     }
 
     /**
      * Marks unit as having moved this turn.
      */
     public void moveTurn() {
-        this.hasMovedThisTurn = true;
+        store.flags[slot] |= UnitStore.MOVED;
     }
 
     /**
      * Resets movement for new turn.
      */
     public void resetTurn() {
-        this.hasMovedThisTurn = false;
+        store.flags[slot] &= ~UnitStore.MOVED;
     }
 
     /**
@@ -184,7 +254,7 @@ public abstract class Unit {
      * @return Health as percentage (0-100)
      */
     public int getHealthPercentage() {
-        return (health * 100) / maxHealth;
+        return (store.health[slot] * 100) / store.maxHealth[slot];
     }
 
     /**
@@ -193,7 +263,7 @@ public abstract class Unit {
     @Override
     public String toString() {
         return String.format("%s(HP:%d/%d, ATK:%d, DEF:%d, RNG:%d)", 
-            name, health, maxHealth, attack, defense, range);
+            name, getHealth(), store.maxHealth[slot], getAttack(), getDefense(), getRange());
     }
 
 
@@ -1,5 +1,7 @@
 package com.strategicgame.units;
 
+import com.strategicgame.util.GameLog;
+
 /**
  * UnitFactory implements the Factory Design Pattern.
  * Responsible for creating units - encapsulates unit instantiation logic.
@@ -23,7 +25,7 @@ public class UnitFactory {
             case "cavalry":
                 return new Cavalry();
             default:
-                System.err.println("Unknown unit type: " + unitType);
+                GameLog.error("Unknown unit type: " + unitType);
                 return null;
         }
     }
@@ -37,6 +39,27 @@ public class UnitFactory {
         return createUnit(type.name());
     }
 
+    /**
+     * Creates a unit straight in a store, typically the store of the
+     * player it is made for, so that adding it to that player does not
+     * move it (see Unit).
+     * @param type UnitType enum value
+     * @param store Store holding the unit
+     * @return A new Unit instance, without owner
+     */
+    public static Unit createUnit(UnitType type, UnitStore store) {
+        switch (type) {
+            case SOLDIER:
+                return new Soldier(store);
+            case ARCHER:
+                return new Archer(store);
+            case CAVALRY:
+                return new Cavalry(store);
+            default:
+                throw new IllegalArgumentException("Unknown unit type: " + type);
+        }
+    }
+
     /**
      * Gets all available unit types. 
      * @return Array of unit type names
@@ -51,7 +74,11 @@ public class UnitFactory {
      * @return Cost in resources
      */
     public static int getUnitCost(String unitType) {
-        Unit unit = createUnit(unitType);
-        return unit != null ? unit.getCost() : -1;
+        for (UnitType type : UnitType.values()) {
+            if (type.name().equalsIgnoreCase(unitType)) {
+                return type.getCost();
+            }
+        }
+        return -1;
     }
 }
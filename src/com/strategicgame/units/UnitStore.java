@@ -0,0 +1,399 @@
+package com.strategicgame.units;
+
+import com.strategicgame.map.Position;
+import com.strategicgame.player.Player;
+import java.util.Arrays;
+
+/**
+ * UnitStore keeps the state of units in parallel primitive arrays (one
+ * column per component), so that systems run over all units as linear
+ * sweeps instead of chasing one heap object per unit.
+ * A Unit is a thin view on a slot of a store. Slots are kept dense : a
+ * removed unit leaves its slot to the last one, whose view is updated, so
+ * a Unit reference (and its entity id) stays valid while slots move.
+ * The players of a game share one store; owner ids are player ids.
+ * Units are created straight in the store of their future owner (see
+ * UnitFactory); units leaving it go to small stores of detached units
+ * (see detach), so neither allocates a store per unit.
+ *
+ */
+public final class UnitStore {
+    /** Owner id of units without owner. */
+    public static final int NO_OWNER = -1;
+    /** Coordinate stored for units that are not on the map. */
+    public static final int NO_COORDINATE = Integer.MIN_VALUE;
+
+    static final byte MOVED = 1;
+
+    // Slots of a store of detached units, see detach
+    private static final int DETACHED_CAPACITY = 64;
+
+    private static final UnitType[] UNIT_TYPES = UnitType.values();
+
+    private int size;
+    private Unit[] views;
+    int[] entityIds;
+    byte[] types;          // UnitType ordinal, -1 for units outside of UnitType
+    int[] health;
+    int[] maxHealth;
+    int[] attack;
+    int[] defense;
+    int[] range;
+    int[] movement;
+    int[] cost;
+    int[] ownerIds;
+    int[] xs;
+    int[] ys;
+    byte[] flags;
+    Position[] positions;  // same as xs/ys, kept for the Unit API
+    private Player[] owners = new Player[4];   // playerId -> Player
+    private final boolean detached;  // holds units outside of any army
+    private UnitStore detachedUnits; // where units leaving this store go
+
+    public UnitStore() {
+        this(64);
+    }
+
+    /**
+     * @param capacity Number of units held without growing
+     */
+    public UnitStore(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * @param capacity Number of units held without growing
+     * @param detached true for a store of units outside of any army
+     */
+    UnitStore(int capacity, boolean detached) {
+        this.detached = detached;
+        int initial = Math.max(1, capacity);
+        views = new Unit[initial];
+        entityIds = new int[initial];
+        types = new byte[initial];
+        health = new int[initial];
+        maxHealth = new int[initial];
+        attack = new int[initial];
+        defense = new int[initial];
+        range = new int[initial];
+        movement = new int[initial];
+        cost = new int[initial];
+        ownerIds = new int[initial];
+        xs = new int[initial];
+        ys = new int[initial];
+        flags = new byte[initial];
+        positions = new Position[initial];
+    }
+
+    /**
+     * Creates a store holding the same units in the same slots, each one
+     * with a view of its own keeping its entity id (see counterpart).
+     * The owners must be registered again.
+     * @return The fork
+     */
+    public UnitStore fork() {
+        UnitStore fork = new UnitStore(size);
+        System.arraycopy(entityIds, 0, fork.entityIds, 0, size);
+        System.arraycopy(types, 0, fork.types, 0, size);
+        System.arraycopy(health, 0, fork.health, 0, size);
+        System.arraycopy(maxHealth, 0, fork.maxHealth, 0, size);
+        System.arraycopy(attack, 0, fork.attack, 0, size);
+        System.arraycopy(defense, 0, fork.defense, 0, size);
+        System.arraycopy(range, 0, fork.range, 0, size);
+        System.arraycopy(movement, 0, fork.movement, 0, size);
+        System.arraycopy(cost, 0, fork.cost, 0, size);
+        System.arraycopy(ownerIds, 0, fork.ownerIds, 0, size);
+        System.arraycopy(xs, 0, fork.xs, 0, size);
+        System.arraycopy(ys, 0, fork.ys, 0, size);
+        System.arraycopy(flags, 0, fork.flags, 0, size);
+        System.arraycopy(positions, 0, fork.positions, 0, size);
+        for (int slot = 0; slot < size; slot++) {
+            fork.views[slot] = views[slot].forkInto(fork);
+        }
+        fork.size = size;
+        return fork;
+    }
+
+    /**
+     * Gets the view, in this fork, of a unit of the store it was forked
+     * from; neither store must have added or removed units since.
+     * @param unit A unit of the original store
+     * @return Its counterpart
+     */
+    public Unit counterpart(Unit unit) {
+        Unit view = unit.slot < size ? views[unit.slot] : null;
+        if (view == null || view.getEntityId() != unit.getEntityId()) {
+            throw new IllegalArgumentException("Unit " + unit.getEntityId() + " is not in the forked store");
+        }
+        return view;
+    }
+
+    /**
+     * Gets the number of units in the store.
+     * @return Unit count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the unit held in a slot.
+     * @param slot Slot, between 0 and size() - 1
+     * @return Its view
+     */
+    public Unit view(int slot) {
+        return views[slot];
+    }
+
+    /**
+     * Registers the player behind an owner id.
+     * @param owner The player
+     */
+    public void registerOwner(Player owner) {
+        int ownerId = owner.getPlayerId();
+        if (ownerId >= owners.length) {
+            owners = Arrays.copyOf(owners, Math.max(ownerId + 1, owners.length * 2));
+        }
+        owners[ownerId] = owner;
+    }
+
+    /**
+     * Moves a unit into this store, or changes its owner if it is already here.
+     * @param unit The unit
+     * @param owner Its new owner, or null
+     */
+    public void adopt(Unit unit, Player owner) {
+        if (owner != null) {
+            registerOwner(owner);
+        }
+        int ownerId = owner == null ? NO_OWNER : owner.getPlayerId();
+        if (unit.store == this) {
+            ownerIds[unit.slot] = ownerId;
+            return;
+        }
+        UnitStore from = unit.store;
+        int source = unit.slot;
+        int slot = allocate(unit);
+        entityIds[slot] = from.entityIds[source];
+        types[slot] = from.types[source];
+        health[slot] = from.health[source];
+        maxHealth[slot] = from.maxHealth[source];
+        attack[slot] = from.attack[source];
+        defense[slot] = from.defense[source];
+        range[slot] = from.range[source];
+        movement[slot] = from.movement[source];
+        cost[slot] = from.cost[source];
+        ownerIds[slot] = ownerId;
+        xs[slot] = from.xs[source];
+        ys[slot] = from.ys[source];
+        flags[slot] = from.flags[source];
+        positions[slot] = from.positions[source];
+        from.remove(source);
+        unit.bind(this, slot);
+    }
+
+    /**
+     * Moves a unit out of this store (killed, starved, left without owner),
+     * keeping its state so that it can still be read. The units leaving a
+     * store share stores of DETACHED_CAPACITY slots, a new one being started
+     * when the current one is full : a full one is collected with the last
+     * of its units. A unit already out of any army only changes owner.
+     * @param unit The unit
+     * @param owner Owner it keeps, or null
+     */
+    public void detach(Unit unit, Player owner) {
+        if (unit.store.detached) {
+            unit.store.adopt(unit, owner);
+            return;
+        }
+        if (detachedUnits == null || detachedUnits.size == DETACHED_CAPACITY) {
+            detachedUnits = new UnitStore(DETACHED_CAPACITY, true);
+        }
+        detachedUnits.adopt(unit, owner);
+    }
+
+    /**
+     * Adds the state of a new unit; called by the Unit constructor.
+     * @return Its slot
+     */
+    int add(Unit unit, int entityId, UnitType type, int unitHealth, int unitAttack,
+            int unitDefense, int unitRange, int unitCost, int unitMovement) {
+        int slot = allocate(unit);
+        entityIds[slot] = entityId;
+        types[slot] = type == null ? -1 : (byte) type.ordinal();
+        health[slot] = unitHealth;
+        maxHealth[slot] = unitHealth;
+        attack[slot] = unitAttack;
+        defense[slot] = unitDefense;
+        range[slot] = unitRange;
+        movement[slot] = unitMovement;
+        cost[slot] = unitCost;
+        ownerIds[slot] = NO_OWNER;
+        xs[slot] = NO_COORDINATE;
+        ys[slot] = NO_COORDINATE;
+        flags[slot] = 0;
+        positions[slot] = null;
+        return slot;
+    }
+
+    private int allocate(Unit unit) {
+        if (size == views.length) {
+            grow(size * 2);
+        }
+        views[size] = unit;
+        return size++;
+    }
+
+    /**
+     * Frees a slot, moving the last unit into it.
+     */
+    private void remove(int slot) {
+        int last = --size;
+        if (slot != last) {
+            views[slot] = views[last];
+            entityIds[slot] = entityIds[last];
+            types[slot] = types[last];
+            health[slot] = health[last];
+            maxHealth[slot] = maxHealth[last];
+            attack[slot] = attack[last];
+            defense[slot] = defense[last];
+            range[slot] = range[last];
+            movement[slot] = movement[last];
+            cost[slot] = cost[last];
+            ownerIds[slot] = ownerIds[last];
+            xs[slot] = xs[last];
+            ys[slot] = ys[last];
+            flags[slot] = flags[last];
+            positions[slot] = positions[last];
+            views[slot].bind(this, slot);
+        }
+        views[last] = null;
+        positions[last] = null;
+    }
+
+    private void grow(int capacity) {
+        views = Arrays.copyOf(views, capacity);
+        entityIds = Arrays.copyOf(entityIds, capacity);
+        types = Arrays.copyOf(types, capacity);
+        health = Arrays.copyOf(health, capacity);
+        maxHealth = Arrays.copyOf(maxHealth, capacity);
+        attack = Arrays.copyOf(attack, capacity);
+        defense = Arrays.copyOf(defense, capacity);
+        range = Arrays.copyOf(range, capacity);
+        movement = Arrays.copyOf(movement, capacity);
+        cost = Arrays.copyOf(cost, capacity);
+        ownerIds = Arrays.copyOf(ownerIds, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+    }
+
+    Player ownerOf(int slot) {
+        int ownerId = ownerIds[slot];
+        return ownerId == NO_OWNER ? null : owners[ownerId];
+    }
+
+    UnitType typeOf(int slot) {
+        int type = types[slot];
+        return type < 0 ? null : UNIT_TYPES[type];
+    }
+
+    void setPosition(int slot, Position position) {
+        positions[slot] = position;
+        xs[slot] = position == null ? NO_COORDINATE : position.getX();
+        ys[slot] = position == null ? NO_COORDINATE : position.getY();
+    }
+
+    // Column accessors for systems sweeping the store
+
+    public int getEntityId(int slot) {
+        return entityIds[slot];
+    }
+
+    /**
+     * @param slot Slot
+     * @return Unit type, or null for a unit outside of UnitType
+     */
+    public UnitType getType(int slot) {
+        return typeOf(slot);
+    }
+
+    public int getHealth(int slot) {
+        return health[slot];
+    }
+
+    public int getAttack(int slot) {
+        return attack[slot];
+    }
+
+    public int getDefense(int slot) {
+        return defense[slot];
+    }
+
+    public int getRange(int slot) {
+        return range[slot];
+    }
+
+    public int getMovementSpeed(int slot) {
+        return movement[slot];
+    }
+
+    public int getOwnerId(int slot) {
+        return ownerIds[slot];
+    }
+
+    /**
+     * @param slot Slot
+     * @return X coordinate, or NO_COORDINATE if the unit is not on the map
+     */
+    public int getX(int slot) {
+        return xs[slot];
+    }
+
+    /**
+     * @param slot Slot
+     * @return Y coordinate, or NO_COORDINATE if the unit is not on the map
+     */
+    public int getY(int slot) {
+        return ys[slot];
+    }
+
+    public boolean hasMoved(int slot) {
+        return (flags[slot] & MOVED) != 0;
+    }
+
+    /**
+     * Deals damage to a unit, health not going below 0.
+     * @param slot Slot
+     * @param damage Damage to take
+     */
+    public void damage(int slot, int damage) {
+        health[slot] = Math.max(0, health[slot] - damage);
+    }
+
+    // Systems
+
+    /**
+     * Resets the movement of every unit of a player for a new turn.
+     * @param ownerId Player id
+     */
+    public void resetTurn(int ownerId) {
+        resetTurn(ownerId, 0, size);
+    }
+
+    /**
+     * Resets the movement of the units of a player held in a range of slots.
+     * Disjoint ranges may be reset from different threads.
+     * @param ownerId Player id
+     * @param from First slot
+     * @param to Slot after the last one
+     */
+    public void resetTurn(int ownerId, int from, int to) {
+        for (int slot = from; slot < to; slot++) {
+            if (ownerIds[slot] == ownerId) {
+                flags[slot] &= ~MOVED;
+            }
+        }
+    }
+}
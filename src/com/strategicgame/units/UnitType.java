@@ -1,21 +1,37 @@
 package com.strategicgame.units;
 
+import java.util.Random;
+
 /**
  * Enum for unit types.
  * Used by the UnitFactory for type-safe unit creation.
+ * Each type also carries its damage profile: the damage dealt is
+ * max(minimumDamage, max(1, attack - defense) * multiplier + bonus + variance),
+ * the variance being drawn uniformly in [varianceMin, varianceMin + varianceSpread).
  * 
  */
 public enum UnitType {
-    SOLDIER("Soldier", 50),
-    ARCHER("Archer", 60),
-    CAVALRY("Cavalry", 80);
+    SOLDIER("Soldier", 50, 1, 0, -2, 5, 1),
+    ARCHER("Archer", 60, 2, 0, -3, 7, 1),     // double damage at distance
+    CAVALRY("Cavalry", 80, 1, 5, -2, 6, 2);   // charge bonus
 
     private final String displayName;
     private final int cost;
+    private final int damageMultiplier;
+    private final int damageBonus;
+    private final int varianceMin;
+    private final int varianceSpread;
+    private final int minimumDamage;
 
-    UnitType(String displayName, int cost) {
+    UnitType(String displayName, int cost, int damageMultiplier, int damageBonus,
+             int varianceMin, int varianceSpread, int minimumDamage) {
         this.displayName = displayName;
         this.cost = cost;
+        this.damageMultiplier = damageMultiplier;
+        this.damageBonus = damageBonus;
+        this.varianceMin = varianceMin;
+        this.varianceSpread = varianceSpread;
+        this.minimumDamage = minimumDamage;
     }
 
     public String getDisplayName() {
@@ -25,4 +41,66 @@ public enum UnitType {
     public int getCost() {
         return cost;
     }
+
+    public int getDamageMultiplier() {
+        return damageMultiplier;
+    }
+
+    public int getDamageBonus() {
+        return damageBonus;
+    }
+
+    public int getVarianceMin() {
+        return varianceMin;
+    }
+
+    public int getVarianceSpread() {
+        return varianceSpread;
+    }
+
+    public int getMinimumDamage() {
+        return minimumDamage;
+    }
+
+    /**
+     * Calculates the damage of an attack of this type, drawing the variance
+     * from the given generator (one nextInt call).
+     * @param attack Attack of the attacker
+     * @param targetDefense Defense of the target
+     * @param random Random generator of the game
+     * @return Damage amount
+     */
+    public int calculateDamage(int attack, int targetDefense, Random random) {
+        int variance = random.nextInt(varianceSpread) + varianceMin;
+        return Math.max(minimumDamage,
+            Math.max(1, attack - targetDefense) * damageMultiplier + damageBonus + variance);
+    }
+
+    /**
+     * Gets the type of a unit.
+     * @param unit The unit
+     * @return Its type
+     * @throws IllegalArgumentException if the unit has no matching type
+     */
+    public static UnitType of(Unit unit) {
+        UnitType type = unit.getType();
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown unit type: " + unit.getName());
+        }
+        return type;
+    }
+
+    /**
+     * Finds a type by its display name.
+     * @param displayName Display name, e.g. "Soldier"
+     * @return The type, or null if none matches
+     */
+    static UnitType fromDisplayName(String displayName) {
+        for (UnitType type : values()) {
+            if (type.displayName.equals(displayName)) {
+                return type;
+            }
+        }
+        return null;
+    }
 }
@@ -80,6 +80,8 @@ public class Constants {
     // UI Configuration
     public static final boolean SHOW_DETAILED_COMBAT = true;
     public static final boolean AUTO_SAVE_ENABLED = false;
+    public static final String SAVE_FILE = "gridwar.sav";
+    public static final String AUTO_SAVE_FILE = "gridwar-autosave.sav";
     
     // Prevent instantiation
     private Constants() {
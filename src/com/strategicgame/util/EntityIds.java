@@ -0,0 +1,34 @@
+package com.strategicgame.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EntityIds hands out the unique ids of map entities (units and buildings).
+ * Ids start at 1 so that 0 can mean "no entity" in primitive arrays.
+ * The counter is shared by all the games of the process (forks keep the ids
+ * of their entities), so it never wraps : once Integer.MAX_VALUE ids have been
+ * handed out, next() fails instead of giving 0 or a negative id.
+ */
+public class EntityIds {
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+
+    /**
+     * Allocates a new entity id.
+     * @return A unique id, greater than 0
+     * @throws IllegalStateException if the ids are exhausted
+     */
+    public static int next() {
+        int id = NEXT_ID.getAndUpdate(next -> next > 0 ? next + 1 : next);
+        if (id <= 0) {
+            throw new IllegalStateException("Entity ids exhausted");
+        }
+        return id;
+    }
+
+    /**
+     * Prevent instantiation of utility class.
+     */
+    private EntityIds() {
+        throw new AssertionError("EntityIds class should not be instantiated");
+    }
+}
@@ -0,0 +1,73 @@
+package com.strategicgame.util;
+
+/**
+ * GameLog prints the messages of the game model (buildings, factories, AI).
+ * The console game keeps it enabled; headless simulations switch it off
+ * so that nothing is printed inside the game loop.
+ */
+public class GameLog {
+    private static volatile boolean enabled = true;
+    private static final ThreadLocal<Boolean> muted = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    /**
+     * Prints an information message.
+     * @param message The message
+     */
+    public static void info(String message) {
+        if (isLogging()) {
+            System.out.println(message);
+        }
+    }
+
+    /**
+     * Prints an error message.
+     * @param message The message
+     */
+    public static void error(String message) {
+        if (isLogging()) {
+            System.err.println(message);
+        }
+    }
+
+    /**
+     * Enables or disables all model messages.
+     * @param value true to print messages
+     */
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * Mutes or unmutes the messages of the calling thread only, for games
+     * simulated in the background of a logged game (AI playouts).
+     * @param value true to drop the messages of this thread
+     */
+    public static void setMutedOnThisThread(boolean value) {
+        muted.set(value);
+    }
+
+    /**
+     * Checks if messages are printed.
+     * @return true if enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Checks if the messages of the calling thread are printed. Call sites
+     * building their message (concatenation) check it first, so that games
+     * played with logging off (headless, AI playouts) do not allocate them.
+     * @return true if enabled and not muted on this thread
+     */
+    public static boolean isLogging() {
+        return enabled && !muted.get();
+    }
+
+    /**
+     * Prevent instantiation of utility class.
+     */
+    private GameLog() {
+        throw new AssertionError("GameLog class should not be instantiated");
+    }
+}
@@ -0,0 +1,87 @@
+package com.strategicgame.util;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GameRandom is the random generator of a game.
+ * It is a java.util.Random whose whole state is a single long
+ * (SplitMix64 stream), so the state can be read and restored exactly,
+ * e.g. to save a game and resume it with the same random sequence.
+ * split() derives independent streams, so that consumers that are not
+ * part of the game rules (the AI) do not shift the sequence of the game.
+ * Not thread-safe : a game uses its generator from one thread at a time.
+ */
+public class GameRandom extends Random {
+    private static final long serialVersionUID = 1L;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final AtomicLong SEED_UNIQUIFIER = new AtomicLong(0x2545F4914F6CDD1DL);
+
+    private long state;   // set by Random's constructor through setSeed
+
+    /**
+     * Creates a generator with a seed unique to this instance.
+     */
+    public GameRandom() {
+        this(SEED_UNIQUIFIER.addAndGet(GOLDEN_GAMMA) ^ System.nanoTime());
+    }
+
+    /**
+     * Creates a seeded generator.
+     * @param seed The seed
+     */
+    public GameRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * Gets the current state, to restore it later with setState.
+     * @return Generator state
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Restores a state read with getState.
+     * @param state Generator state
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+
+    /**
+     * Creates a new generator whose sequence is independent from this one.
+     * Advances this generator by one value.
+     * @return The new generator
+     */
+    public GameRandom split() {
+        return new GameRandom(mix(nextLong() ^ 0x6A09E667F3BCC909L));
+    }
+
+    @Override
+    public long nextLong() {
+        return mix(state += GOLDEN_GAMMA);
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    /**
+     * SplitMix64 finalizer : turns a counter into a well distributed value.
+     * @param z Input value
+     * @return Mixed value
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}